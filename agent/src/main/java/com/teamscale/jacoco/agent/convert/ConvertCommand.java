@@ -8,6 +8,7 @@ package com.teamscale.jacoco.agent.convert;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.teamscale.client.EReportCompression;
 import com.teamscale.jacoco.agent.commandline.ICommand;
 import com.teamscale.jacoco.agent.commandline.Validator;
 import org.conqat.lib.commons.assertion.CCSMAssert;
@@ -75,11 +76,27 @@ public class ConvertCommand implements ICommand {
 			"coverage or jacoco coverage should be generated.")
 	/* package */ boolean shouldGenerateTestwiseCoverage = false;
 
+	/** Whether testwise coverage should be written in the compact binary format instead of JSON. */
+	@Parameter(names = {"--binary", "-b"}, required = false, arity = 0, description = "Whether testwise coverage " +
+			"should be written in the compact binary format instead of JSON. The binary report is not split.")
+	/* package */ boolean shouldWriteBinaryTestwiseCoverage = false;
+
 	/** After how many tests testwise coverage should be split into multiple reports. */
 	@Parameter(names = {"--split-after", "-s"}, required = false, arity = 1, description = "After how many tests " +
 			"testwise coverage should be split into multiple reports (Default is 5000).")
 	private int splitAfter = 5000;
 
+	/** The compression of the written JSON testwise coverage reports. */
+	@Parameter(names = {"--compression"}, required = false, arity = 1, description = "The compression of the " +
+			"written JSON testwise coverage reports. One of NONE, GZIP or DEFLATE (Default is NONE). The suffix of " +
+			"the compression (.gz or .deflate) is appended to the names of compressed reports.")
+	/* package */ EReportCompression compression = EReportCompression.NONE;
+
+	/** Whether JSON testwise coverage reports should be written without indentation. */
+	@Parameter(names = {"--compact"}, required = false, arity = 0, description = "Whether JSON testwise coverage " +
+			"reports should be written without indentation and line breaks.")
+	/* package */ boolean shouldWriteCompactReports = false;
+
 	/** @see #classDirectoriesOrZips */
 	public List<File> getClassDirectoriesOrZips() {
 		return CollectionUtils.map(classDirectoriesOrZips, File::new);
@@ -125,6 +142,21 @@ public class ConvertCommand implements ICommand {
 		return splitAfter;
 	}
 
+	/** @see #compression */
+	public EReportCompression getCompression() {
+		return compression;
+	}
+
+	/** @see #shouldWriteCompactReports */
+	public boolean shouldWriteCompactReports() {
+		return shouldWriteCompactReports;
+	}
+
+	/** @see #shouldWriteBinaryTestwiseCoverage */
+	public boolean shouldWriteBinaryTestwiseCoverage() {
+		return shouldWriteBinaryTestwiseCoverage;
+	}
+
 	/** @see #shouldIgnoreDuplicateClassFiles */
 	public boolean shouldIgnoreDuplicateClassFiles() {
 		return shouldIgnoreDuplicateClassFiles;
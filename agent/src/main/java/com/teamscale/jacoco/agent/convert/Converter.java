@@ -6,9 +6,12 @@ import com.teamscale.jacoco.agent.util.LoggingUtils;
 import com.teamscale.report.EDuplicateClassFileBehavior;
 import com.teamscale.report.ReportUtils;
 import com.teamscale.report.jacoco.JaCoCoXmlReportGenerator;
-import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.jacoco.exec.BufferedExecutionDataReader;
+import com.teamscale.report.jacoco.exec.ExecutionDataMerger;
 import com.teamscale.report.testwise.ETestArtifactFormat;
+import com.teamscale.report.testwise.ITestwiseCoverageWriter;
 import com.teamscale.report.testwise.TestwiseCoverageReportWriter;
+import com.teamscale.report.testwise.binary.BinaryTestwiseCoverageWriter;
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
 import com.teamscale.report.testwise.model.TestExecution;
@@ -17,9 +20,6 @@ import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.CommandLineLogger;
 import com.teamscale.report.util.ILogger;
 import org.conqat.lib.commons.filesystem.FileSystemUtils;
-import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.data.SessionInfo;
-import org.jacoco.core.tools.ExecFileLoader;
 import org.slf4j.Logger;
 
 import java.io.File;
@@ -44,14 +44,15 @@ public class Converter {
 		List<File> jacocoExecutionDataList = ReportUtils
 				.listFiles(ETestArtifactFormat.JACOCO, arguments.getInputFiles());
 
-		ExecFileLoader loader = new ExecFileLoader();
+		ExecutionDataMerger merger = new ExecutionDataMerger();
 		for (File jacocoExecutionData : jacocoExecutionDataList) {
-			loader.load(jacocoExecutionData);
+			try (BufferedExecutionDataReader reader = new BufferedExecutionDataReader(jacocoExecutionData)) {
+				reader.setSessionInfoVisitor(merger);
+				reader.setClassExecutionVisitor(merger);
+				reader.read();
+			}
 		}
 
-		SessionInfo sessionInfo = loader.getSessionInfoStore().getMerged("merged");
-		ExecutionDataStore executionDataStore = loader.getExecutionDataStore();
-
 		Logger logger = LoggingUtils.getLogger(this);
 		EDuplicateClassFileBehavior duplicateClassFileBehavior;
 		if (arguments.shouldIgnoreDuplicateClassFiles()) {
@@ -64,7 +65,7 @@ public class Converter {
 				wrap(logger));
 
 		try (Benchmark benchmark = new Benchmark("Generating the XML report")) {
-			String xml = generator.convert(new Dump(sessionInfo, executionDataStore));
+			String xml = generator.convert(merger.createDump("merged"));
 			FileSystemUtils.writeFileUTF8(arguments.getOutputFile(), xml);
 		}
 	}
@@ -93,8 +94,7 @@ public class Converter {
 			logger.info(
 					"Writing report with " + testDetails.size() + " Details/" + testExecutions.size() + " Results");
 
-			try (TestwiseCoverageReportWriter coverageWriter = new TestwiseCoverageReportWriter(testInfoFactory,
-					arguments.getOutputFile(), arguments.getSplitAfter())) {
+			try (ITestwiseCoverageWriter coverageWriter = createTestwiseCoverageWriter(testInfoFactory)) {
 				for (File executionDataFile : jacocoExecutionDataList) {
 					generator.convertAndConsume(executionDataFile, coverageWriter);
 				}
@@ -102,6 +102,15 @@ public class Converter {
 		}
 	}
 
+	/** Creates the writer for the output format selected on the command line. */
+	private ITestwiseCoverageWriter createTestwiseCoverageWriter(TestInfoFactory testInfoFactory) throws IOException {
+		if (arguments.shouldWriteBinaryTestwiseCoverage()) {
+			return new BinaryTestwiseCoverageWriter(testInfoFactory, arguments.getOutputFile());
+		}
+		return new TestwiseCoverageReportWriter(testInfoFactory, arguments.getOutputFile(), arguments.getSplitAfter(),
+				arguments.getCompression(), arguments.shouldWriteCompactReports());
+	}
+
 	private ClasspathWildcardIncludeFilter getWildcardIncludeExcludeFilter() {
 		return new ClasspathWildcardIncludeFilter(
 				String.join(":", arguments.locationIncludeFilters),
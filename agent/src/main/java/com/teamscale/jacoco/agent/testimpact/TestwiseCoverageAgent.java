@@ -43,6 +43,9 @@ public class TestwiseCoverageAgent extends AgentBase {
 								 TestExecutionWriter testExecutionWriter) throws IllegalStateException {
 		super(options);
 		this.testExecutionWriter = testExecutionWriter;
+		if (options.getHttpServerPort() != null) {
+			TestwiseCoverageAgentBridge.register(this, options.getHttpServerPort());
+		}
 	}
 
 	@Override
@@ -63,15 +66,20 @@ public class TestwiseCoverageAgent extends AgentBase {
 			return "Test name is missing!";
 		}
 
+		startTest(testId);
+
+		response.status(204);
+		return "";
+	}
+
+	/** Resets the coverage and starts recording coverage for the given test. */
+	/* package */ synchronized void startTest(String testId) {
 		logger.debug("Start test " + testId);
 
 		// Dump and reset coverage so that we only record coverage that belongs to this particular test case.
 		controller.reset();
 		controller.setSessionId(testId);
 		startTimestamp = System.currentTimeMillis();
-
-		response.status(204);
-		return "";
 	}
 
 	/** Handles the end of a test case by resetting the session ID. */
@@ -84,27 +92,41 @@ public class TestwiseCoverageAgent extends AgentBase {
 			return "Test name is missing!";
 		}
 
-		logger.debug("End test " + testId);
-		controller.dump();
-
 		// Test execution is optional
+		TestExecution testExecution = null;
 		if (!request.body().isEmpty()) {
 			try {
-				TestExecution testExecution = testExecutionJsonAdapter.fromJson(request.body());
+				testExecution = testExecutionJsonAdapter.fromJson(request.body());
 				if (testExecution == null) {
 					response.status(400);
 					return "Test execution may not be null!";
 				}
-				testExecution.setUniformPath(testId);
-				long endTimestamp = System.currentTimeMillis();
-				testExecution.setDurationMillis(endTimestamp - startTimestamp);
-				testExecutionWriter.append(testExecution);
 			} catch (IOException e) {
 				logger.error("Failed to store test execution: " + e.getMessage(), e);
 			}
 		}
 
+		endTest(testId, testExecution);
+
 		response.status(204);
 		return "";
 	}
+
+	/** Dumps the coverage of the given test and stores its test execution, if given. */
+	/* package */ synchronized void endTest(String testId, TestExecution testExecution) throws DumpException {
+		logger.debug("End test " + testId);
+		controller.dump();
+
+		if (testExecution == null) {
+			return;
+		}
+		testExecution.setUniformPath(testId);
+		long endTimestamp = System.currentTimeMillis();
+		testExecution.setDurationMillis(endTimestamp - startTimestamp);
+		try {
+			testExecutionWriter.append(testExecution);
+		} catch (IOException e) {
+			logger.error("Failed to store test execution: " + e.getMessage(), e);
+		}
+	}
 }
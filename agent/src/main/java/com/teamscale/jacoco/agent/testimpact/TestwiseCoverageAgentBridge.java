@@ -0,0 +1,56 @@
+package com.teamscale.jacoco.agent.testimpact;
+
+import com.teamscale.jacoco.agent.JacocoRuntimeController.DumpException;
+import com.teamscale.jacoco.agent.util.LoggingUtils;
+import org.slf4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Makes the test events of the {@link TestwiseCoverageAgent} available as an MBean, so that test frameworks running in
+ * the same JVM can signal them by a direct method call instead of HTTP requests over the loopback interface. The MBean
+ * is registered under the name {@link #OBJECT_NAME_PREFIX} followed by the port of the agent's HTTP server, which lets
+ * callers find it from the agent URL they have been configured with.
+ */
+public class TestwiseCoverageAgentBridge implements TestwiseCoverageAgentBridgeMBean {
+
+	/** The prefix of the name of the MBean. Must be kept in sync with the impacted test engine. */
+	public static final String OBJECT_NAME_PREFIX = "com.teamscale:type=TestwiseCoverageAgent,port=";
+
+	private static final Logger LOGGER = LoggingUtils.getLogger(TestwiseCoverageAgentBridge.class);
+
+	/** The agent to which the events are passed. */
+	private final TestwiseCoverageAgent agent;
+
+	private TestwiseCoverageAgentBridge(TestwiseCoverageAgent agent) {
+		this.agent = agent;
+	}
+
+	/** Registers a bridge to the given agent at the platform MBean server. */
+	/* package */ static void register(TestwiseCoverageAgent agent, int port) {
+		try {
+			ManagementFactory.getPlatformMBeanServer()
+					.registerMBean(new TestwiseCoverageAgentBridge(agent), new ObjectName(OBJECT_NAME_PREFIX + port));
+		} catch (JMException e) {
+			// The HTTP server still works, so this only costs performance
+			LOGGER.warn("Failed to register the in-process test event bridge. Tests in this JVM will use HTTP.", e);
+		}
+	}
+
+	@Override
+	public void testStarted(String testId) {
+		agent.startTest(testId);
+	}
+
+	@Override
+	public void testFinished(String testId) throws IOException {
+		try {
+			agent.endTest(testId, null);
+		} catch (DumpException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+}
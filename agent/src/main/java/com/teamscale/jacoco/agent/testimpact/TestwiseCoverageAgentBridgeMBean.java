@@ -0,0 +1,16 @@
+package com.teamscale.jacoco.agent.testimpact;
+
+import java.io.IOException;
+
+/**
+ * Management interface of the {@link TestwiseCoverageAgentBridge}. Only uses JDK types, since callers do not share the
+ * class loader of the agent.
+ */
+public interface TestwiseCoverageAgentBridgeMBean {
+
+	/** Same as a POST to /test/start/{testId}. */
+	void testStarted(String testId);
+
+	/** Same as a POST to /test/end/{testId} without a test execution. */
+	void testFinished(String testId) throws IOException;
+}
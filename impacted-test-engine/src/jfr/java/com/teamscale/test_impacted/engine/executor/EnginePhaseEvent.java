@@ -0,0 +1,42 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event for a recorded phase of an impacted test run. Must only be used if the JVM supports JDK
+ * Flight Recorder (see {@link EnginePhaseTimings}). Part of the jfr source set, which is only compiled by JDKs that
+ * contain JDK Flight Recorder.
+ */
+@Name("com.teamscale.EnginePhase")
+@Label("Impacted Test Engine Phase")
+@Category("Teamscale")
+@Description("A phase of an impacted test run, e.g. the discovery of the tests or a notification of the agents.")
+/* package */ class EnginePhaseEvent extends Event {
+
+	/** The name of the {@link EEnginePhase}. */
+	@Label("Phase")
+	/* package */ String phase;
+
+	/** The duration of the phase. */
+	@Label("Phase Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	/* package */ long phaseDuration;
+
+	/**
+	 * Commits an event for the given phase, which has just ended, if the event is enabled in the running recording.
+	 */
+	/* package */ static void commit(EEnginePhase phase, long durationNanos) {
+		EnginePhaseEvent event = new EnginePhaseEvent();
+		if (!event.isEnabled()) {
+			return;
+		}
+		event.phase = phase.name();
+		event.phaseDuration = durationNanos;
+		event.commit();
+	}
+}
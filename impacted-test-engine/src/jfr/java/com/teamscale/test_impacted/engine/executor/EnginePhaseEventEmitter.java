@@ -0,0 +1,15 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Emits every recorded phase as an {@link EnginePhaseEvent}. Loaded by name by {@link EnginePhaseTimings}, since the
+ * main source set must compile without JDK Flight Recorder.
+ */
+/* package */ class EnginePhaseEventEmitter implements ObjLongConsumer<EEnginePhase> {
+
+	@Override
+	public void accept(EEnginePhase phase, long durationNanos) {
+		EnginePhaseEvent.commit(phase, durationNanos);
+	}
+}
@@ -0,0 +1,28 @@
+package com.teamscale.test_impacted.controllers;
+
+import com.teamscale.client.TeamscaleServiceGenerator;
+import okhttp3.OkHttpClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the client shared by all {@link ITestwiseCoverageAgentApi}s. It shares its connection pool with the Teamscale
+ * services, so the connections to an agent are kept alive and reused by the start and end notifications of all tests.
+ */
+/* package */ class AgentHttpClient {
+
+	/**
+	 * The shared client. Agents usually run on the same machine or network, so a connection that cannot be established
+	 * quickly means that the agent is not running.
+	 */
+	/* package */ static final OkHttpClient INSTANCE = TeamscaleServiceGenerator.newSharedOkHttpClientBuilder()
+			.connectTimeout(2, TimeUnit.SECONDS)
+			.readTimeout(30, TimeUnit.SECONDS)
+			.writeTimeout(30, TimeUnit.SECONDS)
+			.retryOnConnectionFailure(true)
+			.build();
+
+	private AgentHttpClient() {
+		// Only holds the client
+	}
+}
@@ -19,12 +19,18 @@ public interface ITestwiseCoverageAgentApi {
 	Call<ResponseBody> testFinished(@Path("testUniformPath") String testUniformPath);
 
 	/**
-	 * Generates a {@link Retrofit} instance for the given service, which uses basic auth to authenticate against the
-	 * server and which sets the accept header to json.
+	 * Generates a {@link Retrofit} instance for the given service. All agent services share a single client (see {@link
+	 * AgentHttpClient}). If the agent runs in this JVM, it is called directly instead (see {@link
+	 * InProcessTestwiseCoverageAgentApi}).
 	 */
 	static ITestwiseCoverageAgentApi createService(HttpUrl baseUrl) {
+		ITestwiseCoverageAgentApi inProcessApi = InProcessTestwiseCoverageAgentApi.lookup(baseUrl);
+		if (inProcessApi != null) {
+			return inProcessApi;
+		}
 		Retrofit retrofit = new Retrofit.Builder()
 				.baseUrl(baseUrl)
+				.client(AgentHttpClient.INSTANCE)
 				.build();
 		return retrofit.create(ITestwiseCoverageAgentApi.class);
 	}
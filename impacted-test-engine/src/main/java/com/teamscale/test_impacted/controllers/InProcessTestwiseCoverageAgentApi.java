@@ -0,0 +1,147 @@
+package com.teamscale.test_impacted.controllers;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * {@link ITestwiseCoverageAgentApi} for an agent that runs in the same JVM as the tests. Signals test start and end by
+ * invoking the MBean the agent registers for its HTTP port, which avoids the HTTP requests over the loopback interface.
+ */
+/* package */ class InProcessTestwiseCoverageAgentApi implements ITestwiseCoverageAgentApi {
+
+	/** The prefix of the name of the agent's MBean, followed by the port of its HTTP server. */
+	private static final String OBJECT_NAME_PREFIX = "com.teamscale:type=TestwiseCoverageAgent,port=";
+
+	private static final String[] STRING_SIGNATURE = {String.class.getName()};
+
+	private final MBeanServer mBeanServer;
+
+	private final ObjectName objectName;
+
+	/** The URL of the agent, which is used for the requests reported by the calls. */
+	private final HttpUrl baseUrl;
+
+	private InProcessTestwiseCoverageAgentApi(MBeanServer mBeanServer, ObjectName objectName, HttpUrl baseUrl) {
+		this.mBeanServer = mBeanServer;
+		this.objectName = objectName;
+		this.baseUrl = baseUrl;
+	}
+
+	/**
+	 * Returns an API for the agent with the given URL if that agent runs in this JVM or null otherwise. Only agents on
+	 * the loopback interface are considered, since the port alone does not identify agents on other machines.
+	 */
+	/* package */ static ITestwiseCoverageAgentApi lookup(HttpUrl baseUrl) {
+		try {
+			if (!InetAddress.getByName(baseUrl.host()).isLoopbackAddress()) {
+				return null;
+			}
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + baseUrl.port());
+			if (!mBeanServer.isRegistered(objectName)) {
+				return null;
+			}
+			return new InProcessTestwiseCoverageAgentApi(mBeanServer, objectName, baseUrl);
+		} catch (UnknownHostException | MalformedObjectNameException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public Call<ResponseBody> testStarted(String testUniformPath) {
+		return new InProcessCall("testStarted", testUniformPath, baseUrl.resolve("test/start/" + testUniformPath));
+	}
+
+	@Override
+	public Call<ResponseBody> testFinished(String testUniformPath) {
+		return new InProcessCall("testFinished", testUniformPath, baseUrl.resolve("test/end/" + testUniformPath));
+	}
+
+	/** A {@link Call} that invokes an operation of the agent's MBean. */
+	private class InProcessCall implements Call<ResponseBody> {
+
+		private final String operation;
+
+		private final String testUniformPath;
+
+		/** The URL of the equivalent HTTP request. */
+		private final HttpUrl url;
+
+		private volatile boolean executed = false;
+
+		private volatile boolean canceled = false;
+
+		private InProcessCall(String operation, String testUniformPath, HttpUrl url) {
+			this.operation = operation;
+			this.testUniformPath = testUniformPath;
+			this.url = url;
+		}
+
+		@Override
+		public Response<ResponseBody> execute() throws IOException {
+			synchronized (this) {
+				if (executed) {
+					throw new IllegalStateException("Already executed.");
+				}
+				executed = true;
+			}
+			if (canceled) {
+				throw new IOException("Canceled");
+			}
+			try {
+				mBeanServer.invoke(objectName, operation, new Object[]{testUniformPath}, STRING_SIGNATURE);
+			} catch (JMException e) {
+				throw new IOException("Failed to invoke " + operation + " of the agent in this JVM", e);
+			}
+			return Response.success(null);
+		}
+
+		@Override
+		public void enqueue(Callback<ResponseBody> callback) {
+			try {
+				callback.onResponse(this, execute());
+			} catch (IOException e) {
+				callback.onFailure(this, e);
+			}
+		}
+
+		@Override
+		public boolean isExecuted() {
+			return executed;
+		}
+
+		@Override
+		public void cancel() {
+			canceled = true;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return canceled;
+		}
+
+		@Override
+		public Call<ResponseBody> clone() {
+			return new InProcessCall(operation, testUniformPath, url);
+		}
+
+		@Override
+		public Request request() {
+			return new Request.Builder().url(url).post(RequestBody.create(null, new byte[0])).build();
+		}
+	}
+}
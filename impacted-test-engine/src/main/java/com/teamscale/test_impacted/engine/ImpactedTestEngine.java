@@ -28,9 +28,8 @@ public class ImpactedTestEngine implements TestEngine {
 		ImpactedTestEngineConfiguration configuration = engineOptions.createTestEngineConfiguration();
 
 		// Re-initialize the configuration for this discovery (and optional following execution).
-		internalImpactedTestEngine =
-				new InternalImpactedTestEngine(configuration.testEngineRegistry, configuration.testExecutor,
-						new TestDataWriter(configuration.reportDirectory));
+		internalImpactedTestEngine = new InternalImpactedTestEngine(configuration,
+				new TestDataWriter(configuration.reportDirectory, configuration.testDurationsFile));
 
 		return internalImpactedTestEngine.discover(discoveryRequest, uniqueId);
 	}
@@ -1,6 +1,10 @@
 package com.teamscale.test_impacted.engine;
 
+import com.teamscale.test_impacted.engine.executor.EnginePhaseTimings;
 import com.teamscale.test_impacted.engine.executor.ITestExecutor;
+import com.teamscale.test_impacted.engine.executor.TestDiscoveryCache;
+import com.teamscale.test_impacted.test_descriptor.TestClassFingerprinter;
+import org.junit.platform.commons.util.ClassLoaderUtils;
 import org.junit.platform.engine.TestEngine;
 
 import java.io.File;
@@ -9,20 +13,98 @@ import java.io.File;
 public class ImpactedTestEngineConfiguration {
 
 	/** The directory to write testwise coverage and available tests to. */
-	final File reportDirectory;
+	File reportDirectory;
 
-	/** The test engine registry used to determine the {@link TestEngine}s to use. */
-	final TestEngineRegistry testEngineRegistry;
+	/** The file in which the durations of tests are kept across test runs. May be null. */
+	File testDurationsFile;
 
-	/** The {@link ITestExecutor} to use for execution of tests. */
-	final ITestExecutor testExecutor;
+	/** The test engine registry used to determine the {@link TestEngine}s to use. May not be null. */
+	TestEngineRegistry testEngineRegistry;
 
-	public ImpactedTestEngineConfiguration(
-			File reportDirectory,
-			TestEngineRegistry testEngineRegistry,
-			ITestExecutor testExecutor) {
-		this.reportDirectory = reportDirectory;
-		this.testEngineRegistry = testEngineRegistry;
-		this.testExecutor = testExecutor;
+	/** The {@link ITestExecutor} to use for execution of tests. May not be null. */
+	ITestExecutor testExecutor;
+
+	/** Caches the tests discovered by the delegate engines. May be null to always discover all tests. */
+	TestDiscoveryCache testDiscoveryCache;
+
+	/** Measures the durations of the phases of the test run. */
+	EnginePhaseTimings phaseTimings = new EnginePhaseTimings();
+
+	/**
+	 * Computes the contents of the available tests. Defaults to a new instance for every configuration, since the test
+	 * classes may have been recompiled since the last test run.
+	 */
+	TestClassFingerprinter fingerprinter = new TestClassFingerprinter(ClassLoaderUtils.getDefaultClassLoader());
+
+	private ImpactedTestEngineConfiguration() {
+		// Only needed to make constructor private
+	}
+
+	/** Returns the builder for {@link ImpactedTestEngineConfiguration}. */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/** The builder for {@link ImpactedTestEngineConfiguration}. */
+	public static class Builder {
+
+		private final ImpactedTestEngineConfiguration configuration = new ImpactedTestEngineConfiguration();
+
+		private Builder() {
+			// Only needed to make constructor private
+		}
+
+		/** @see #reportDirectory */
+		public Builder reportDirectory(File reportDirectory) {
+			configuration.reportDirectory = reportDirectory;
+			return this;
+		}
+
+		/** @see #testDurationsFile */
+		public Builder testDurationsFile(File testDurationsFile) {
+			configuration.testDurationsFile = testDurationsFile;
+			return this;
+		}
+
+		/** @see #testEngineRegistry */
+		public Builder testEngineRegistry(TestEngineRegistry testEngineRegistry) {
+			configuration.testEngineRegistry = testEngineRegistry;
+			return this;
+		}
+
+		/** @see #testExecutor */
+		public Builder testExecutor(ITestExecutor testExecutor) {
+			configuration.testExecutor = testExecutor;
+			return this;
+		}
+
+		/** @see #testDiscoveryCache */
+		public Builder testDiscoveryCache(TestDiscoveryCache testDiscoveryCache) {
+			configuration.testDiscoveryCache = testDiscoveryCache;
+			return this;
+		}
+
+		/** @see #phaseTimings */
+		public Builder phaseTimings(EnginePhaseTimings phaseTimings) {
+			configuration.phaseTimings = phaseTimings;
+			return this;
+		}
+
+		/** @see #fingerprinter */
+		public Builder fingerprinter(TestClassFingerprinter fingerprinter) {
+			configuration.fingerprinter = fingerprinter;
+			return this;
+		}
+
+		/** Checks field conditions and returns the built {@link ImpactedTestEngineConfiguration}. */
+		public ImpactedTestEngineConfiguration build() {
+			if (configuration.testEngineRegistry == null) {
+				throw new AssertionError("Test engine registry must be set.");
+			}
+			if (configuration.testExecutor == null) {
+				throw new AssertionError("Test executor must be set.");
+			}
+			return configuration;
+		}
 	}
-}
\ No newline at end of file
+}
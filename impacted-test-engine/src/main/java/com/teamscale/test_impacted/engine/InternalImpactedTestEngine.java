@@ -1,10 +1,13 @@
 package com.teamscale.test_impacted.engine;
 
-import com.teamscale.client.TestDetails;
-import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.test_impacted.engine.executor.AvailableTests;
+import com.teamscale.test_impacted.engine.executor.CachedEngineTestDescriptor;
+import com.teamscale.test_impacted.engine.executor.EEnginePhase;
+import com.teamscale.test_impacted.engine.executor.EnginePhaseTimings;
 import com.teamscale.test_impacted.engine.executor.ITestExecutor;
+import com.teamscale.test_impacted.engine.executor.TestDiscoveryCache;
 import com.teamscale.test_impacted.engine.executor.TestExecutorRequest;
+import com.teamscale.test_impacted.test_descriptor.TestClassFingerprinter;
 import com.teamscale.test_impacted.test_descriptor.TestDescriptorUtils;
 import org.junit.platform.commons.logging.Logger;
 import org.junit.platform.commons.logging.LoggerFactory;
@@ -18,9 +21,13 @@ import org.junit.platform.engine.UniqueId;
 import org.junit.platform.engine.support.descriptor.EngineDescriptor;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static com.teamscale.test_impacted.engine.ImpactedTestEngine.ENGINE_ID;
 
@@ -37,29 +44,76 @@ class InternalImpactedTestEngine {
 
 	private final TestDataWriter testDataWriter;
 
-	InternalImpactedTestEngine(TestEngineRegistry testEngineRegistry,
-							   ITestExecutor testExecutor,
-							   TestDataWriter testDataWriter) {
-		this.testEngineRegistry = testEngineRegistry;
-		this.testExecutor = testExecutor;
+	/** Caches the tests discovered by the delegate engines. May be null to always discover all tests. */
+	private final TestDiscoveryCache testDiscoveryCache;
+
+	/** Measures the durations of the phases of the test run. */
+	private final EnginePhaseTimings phaseTimings;
+
+	/** Computes the contents of the available tests. */
+	private final TestClassFingerprinter fingerprinter;
+
+	/**
+	 * The tests found by the last discovery by the ID of their delegate engine. Computing them fingerprints all test
+	 * classes, so they are computed only once and reused for the execution.
+	 */
+	private Map<String, AvailableTests> discoveredTestsByEngine = new HashMap<>();
+
+	InternalImpactedTestEngine(ImpactedTestEngineConfiguration configuration, TestDataWriter testDataWriter) {
+		this.testEngineRegistry = configuration.testEngineRegistry;
+		this.testExecutor = configuration.testExecutor;
 		this.testDataWriter = testDataWriter;
+		this.testDiscoveryCache = configuration.testDiscoveryCache;
+		this.phaseTimings = configuration.phaseTimings;
+		this.fingerprinter = configuration.fingerprinter;
 	}
 
 	/**
 	 * Performs test discovery by aggregating the result of all {@link TestEngine}s from the {@link TestEngineRegistry}
-	 * in a single engine {@link TestDescriptor}.
+	 * in a single engine {@link TestDescriptor}. Afterwards the {@link ITestExecutor} may start preparing the execution
+	 * of the discovered tests (see {@link ITestExecutor#prepare(AvailableTests)}).
 	 */
 	TestDescriptor discover(EngineDiscoveryRequest discoveryRequest, UniqueId uniqueId) {
+		long startNanos = System.nanoTime();
+		TestDescriptor engineDescriptor;
+		try {
+			engineDescriptor = discoverDelegateEngines(discoveryRequest, uniqueId);
+		} finally {
+			phaseTimings.record(EEnginePhase.DISCOVERY, startNanos);
+		}
+		discoveredTestsByEngine.values().forEach(testExecutor::prepare);
+		return engineDescriptor;
+	}
+
+	private TestDescriptor discoverDelegateEngines(EngineDiscoveryRequest discoveryRequest, UniqueId uniqueId) {
 		EngineDescriptor engineDescriptor = new EngineDescriptor(uniqueId, "Teamscale Impacted Tests");
 
 		LOGGER.debug(() -> "Starting test discovery for engine " + ENGINE_ID);
 
+		String cacheKey = null;
+		if (testDiscoveryCache != null) {
+			List<String> engineIds = new ArrayList<>();
+			testEngineRegistry.forEach(delegateTestEngine -> engineIds.add(delegateTestEngine.getId()));
+			cacheKey = testDiscoveryCache.computeKey(engineIds, discoveryRequest);
+			if (addCachedEngineDescriptors(engineDescriptor, testDiscoveryCache.get(cacheKey))) {
+				return engineDescriptor;
+			}
+		}
+
+		Map<String, AvailableTests> availableTestsByEngine = new HashMap<>();
 		for (TestEngine delegateTestEngine : testEngineRegistry) {
 			LOGGER.debug(() -> "Starting test discovery for delegate engine: " + delegateTestEngine.getId());
 			TestDescriptor delegateEngineDescriptor = delegateTestEngine.discover(discoveryRequest,
 					UniqueId.forEngine(delegateTestEngine.getId()));
 
 			engineDescriptor.addChild(delegateEngineDescriptor);
+			availableTestsByEngine.put(delegateTestEngine.getId(),
+					TestDescriptorUtils.getAvailableTests(delegateTestEngine, delegateEngineDescriptor, fingerprinter));
+		}
+		discoveredTestsByEngine = availableTestsByEngine;
+
+		if (cacheKey != null) {
+			testDiscoveryCache.put(cacheKey, availableTestsByEngine);
 		}
 
 		LOGGER.debug(() -> "Discovered test descriptor for engine " + ENGINE_ID + ":\n" + TestDescriptorUtils
@@ -68,6 +122,31 @@ class InternalImpactedTestEngine {
 		return engineDescriptor;
 	}
 
+	/**
+	 * Adds a {@link CachedEngineTestDescriptor} for every delegate engine to the engine descriptor. Returns false and
+	 * adds nothing if the cached tests are missing or do not cover all delegate engines.
+	 */
+	private boolean addCachedEngineDescriptors(EngineDescriptor engineDescriptor,
+											   Map<String, AvailableTests> availableTestsByEngine) {
+		if (availableTestsByEngine == null) {
+			return false;
+		}
+		List<CachedEngineTestDescriptor> cachedEngineDescriptors = new ArrayList<>();
+		for (TestEngine delegateTestEngine : testEngineRegistry) {
+			AvailableTests availableTests = availableTestsByEngine.get(delegateTestEngine.getId());
+			if (availableTests == null) {
+				return false;
+			}
+			cachedEngineDescriptors.add(new CachedEngineTestDescriptor(UniqueId.forEngine(delegateTestEngine.getId()),
+					delegateTestEngine.getId(), availableTests));
+		}
+
+		LOGGER.debug(() -> "Skipping test discovery of delegate engines, since their tests are cached");
+		cachedEngineDescriptors.forEach(engineDescriptor::addChild);
+		discoveredTestsByEngine = availableTestsByEngine;
+		return true;
+	}
+
 	/**
 	 * Executes the request by requesting execution of the {@link TestDescriptor} children aggregated in {@link
 	 * #discover(EngineDiscoveryRequest, UniqueId)} with the corresponding {@link TestEngine}.
@@ -85,9 +164,15 @@ class InternalImpactedTestEngine {
 	}
 
 	private void runTestExecutor(ExecutionRequest request) {
-		List<TestDetails> availableTests = new ArrayList<>();
-		List<TestExecution> testExecutions = new ArrayList<>();
+		try {
+			runTestExecutorForEngines(request);
+		} finally {
+			testDataWriter.close();
+			testDataWriter.writePhaseTimings(phaseTimings);
+		}
+	}
 
+	private void runTestExecutorForEngines(ExecutionRequest request) {
 		for (TestDescriptor engineTestDescriptor : request.getRootTestDescriptor().getChildren()) {
 			Optional<String> engineId = engineTestDescriptor.getUniqueId().getEngineId();
 
@@ -98,17 +183,31 @@ class InternalImpactedTestEngine {
 			}
 
 			TestEngine testEngine = testEngineRegistry.getTestEngine(engineId.get());
-			AvailableTests availableTestsForEngine = TestDescriptorUtils
-					.getAvailableTests(testEngine, engineTestDescriptor);
-			TestExecutorRequest testExecutorRequest = new TestExecutorRequest(testEngine, engineTestDescriptor,
-					request.getEngineExecutionListener(), request.getConfigurationParameters());
-			List<TestExecution> testExecutionsOfEngine = testExecutor.execute(testExecutorRequest);
+			AvailableTests availableTestsForEngine = getAvailableTests(testEngine, engineTestDescriptor);
+			// Written before the execution, so the test list is complete even if the execution is aborted
+			testDataWriter.writeTestDetails(availableTestsForEngine.getTestList());
 
-			testExecutions.addAll(testExecutionsOfEngine);
-			availableTests.addAll(availableTestsForEngine.getTestList());
+			TestExecutorRequest testExecutorRequest = new TestExecutorRequest(testEngine, engineTestDescriptor,
+					request.getEngineExecutionListener(), request.getConfigurationParameters(),
+					testDataWriter::writeTestExecution, availableTestsForEngine);
+			testExecutor.execute(testExecutorRequest);
 		}
+	}
 
-		testDataWriter.dumpTestDetails(availableTests);
-		testDataWriter.dumpTestExecutions(testExecutions);
+	/**
+	 * Returns the tests of the given engine descriptor. These are the tests found by the discovery without the ones that
+	 * the launcher removed afterwards with post-discovery filters, so the test classes are not fingerprinted again.
+	 */
+	private AvailableTests getAvailableTests(TestEngine testEngine, TestDescriptor engineTestDescriptor) {
+		AvailableTests discoveredTests = discoveredTestsByEngine.get(testEngine.getId());
+		if (discoveredTests == null) {
+			return TestDescriptorUtils.getAvailableTests(testEngine, engineTestDescriptor, fingerprinter);
+		}
+		if (engineTestDescriptor instanceof CachedEngineTestDescriptor) {
+			return discoveredTests;
+		}
+		Set<UniqueId> remainingUniqueIds = TestDescriptorUtils.streamTestRepresentatives(engineTestDescriptor)
+				.map(TestDescriptor::getUniqueId).collect(Collectors.toSet());
+		return discoveredTests.retainAll(remainingUniqueIds);
 	}
 }
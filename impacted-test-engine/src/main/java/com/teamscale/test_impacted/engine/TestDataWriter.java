@@ -1,43 +1,196 @@
 package com.teamscale.test_impacted.engine;
 
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonWriter;
+import com.squareup.moshi.Moshi;
+import com.teamscale.client.EReportCompression;
 import com.teamscale.client.TestDetails;
 import com.teamscale.report.ReportUtils;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
 import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.test_impacted.engine.executor.EnginePhaseTimings;
+import com.teamscale.test_impacted.engine.executor.TestTimeBudget;
 import org.junit.platform.commons.logging.Logger;
 import org.junit.platform.commons.logging.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
-/** Class for writing test data to a report directory. */
-class TestDataWriter {
+/**
+ * Class for writing test data to a report directory. The records are streamed to the report files while the tests are
+ * running and flushed after every test, so that they are not lost if the test run is aborted. The JSON arrays are closed by
+ * {@link #close()} or, if the JVM is shut down before, by a shutdown hook.
+ */
+class TestDataWriter implements Closeable {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TestDataWriter.class);
 
-	private final File reportDirectory;
+	private static final Moshi MOSHI = new Moshi.Builder().build();
+
+	/** The file in which the durations of tests are kept across test runs. May be null. */
+	private final File testDurationsFile;
+
+	/** Writes the test-list.json. */
+	private final JsonArrayFile<TestDetails> testDetailsFile;
+
+	/** Writes the test-execution.json. */
+	private final JsonArrayFile<TestExecution> testExecutionsFile;
+
+	/**
+	 * The durations of the written test executions, which are stored in the {@link #testDurationsFile}. Only collected
+	 * if there is such a file.
+	 */
+	private final List<TestExecution> testDurations = new ArrayList<>();
+
+	/** The file to which the durations of the engine phases are written. */
+	private final File phaseTimingsFile;
+
+	/** Closes the files if the JVM is shut down before {@link #close()} has been called. */
+	private Thread shutdownHook;
 
 	TestDataWriter(File reportDirectory) {
-		this.reportDirectory = reportDirectory;
+		this(reportDirectory, null);
 	}
 
-	/** Writes the given test executions to a report file. */
-	void dumpTestExecutions(List<TestExecution> testExecutions) {
-		File file = new File(reportDirectory, "test-execution.json");
-		try {
-			ReportUtils.writeTestExecutionReport(file, testExecutions);
-		} catch (IOException e) {
-			LOGGER.error(e, () -> "Error while writing report to file: " + file);
+	TestDataWriter(File reportDirectory, File testDurationsFile) {
+		this.testDurationsFile = testDurationsFile;
+		this.phaseTimingsFile = new File(reportDirectory, "engine-timings.json");
+		this.testDetailsFile = new JsonArrayFile<>(new File(reportDirectory, "test-list.json"),
+				MOSHI.adapter(TestDetails.class));
+		this.testExecutionsFile = new JsonArrayFile<>(new File(reportDirectory, "test-execution.json"),
+				MOSHI.adapter(TestExecution.class));
+	}
+
+	/** Appends the given test execution to the report file. */
+	synchronized void writeTestExecution(TestExecution testExecution) {
+		registerShutdownHook();
+		testExecutionsFile.append(testExecution);
+		testExecutionsFile.flush();
+		if (testDurationsFile != null && testExecution.getResult() != ETestExecutionResult.SKIPPED) {
+			testDurations.add(new TestExecution(testExecution.getUniformPath(), testExecution.getDurationMillis(),
+					testExecution.getResult()));
 		}
 	}
 
-	/** Writes the given test details to a report file. */
-	void dumpTestDetails(List<TestDetails> testDetails) {
-		File file = new File(reportDirectory, "test-list.json");
+	/** Appends the given test details to the report file. */
+	synchronized void writeTestDetails(List<? extends TestDetails> testDetails) {
+		registerShutdownHook();
+		testDetails.forEach(testDetailsFile::append);
+		testDetailsFile.flush();
+	}
+
+	/** Writes the summary of the durations of the engine phases to the report directory. */
+	void writePhaseTimings(EnginePhaseTimings phaseTimings) {
 		try {
-			ReportUtils.writeTestListReport(file, testDetails);
+			phaseTimings.writeSummary(phaseTimingsFile);
 		} catch (IOException e) {
-			LOGGER.error(e, () -> "Error while writing report to file: " + file);
+			LOGGER.error(e, () -> "Error while writing engine timings to file: " + phaseTimingsFile);
+		}
+	}
+
+	/**
+	 * Closes the JSON arrays of the report files, even if nothing has been written, and updates the test durations
+	 * file, if configured.
+	 */
+	@Override
+	public synchronized void close() {
+		testDetailsFile.close();
+		testExecutionsFile.close();
+		if (testDurationsFile != null) {
+			try {
+				TestTimeBudget.writeTestDurations(testDurationsFile, testDurations);
+			} catch (IOException e) {
+				LOGGER.error(e, () -> "Error while writing test durations to file: " + testDurationsFile);
+			}
+			testDurations.clear();
+		}
+		if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// The JVM is already shutting down, so the hook will find the files closed
+			}
+			shutdownHook = null;
+		}
+	}
+
+	private void registerShutdownHook() {
+		if (shutdownHook == null) {
+			shutdownHook = new Thread(this::close, "Teamscale test data writer");
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+		}
+	}
+
+	/** A JSON array in a file to which elements are appended one by one. */
+	private static class JsonArrayFile<T> {
+
+		private final File file;
+
+		private final JsonAdapter<T> adapter;
+
+		/** Null before the first element has been written and after the array has been closed. */
+		private JsonWriter writer;
+
+		/** Whether the array has been closed. */
+		private boolean closed = false;
+
+		private JsonArrayFile(File file, JsonAdapter<T> adapter) {
+			this.file = file;
+			this.adapter = adapter;
+		}
+
+		private void append(T element) {
+			try {
+				if (!open()) {
+					return;
+				}
+				adapter.toJson(writer, element);
+			} catch (IOException e) {
+				LOGGER.error(e, () -> "Error while writing report to file: " + file);
+			}
+		}
+
+		/** Writes the appended elements to the file, so they are not lost if the JVM is killed. */
+		private void flush() {
+			if (writer == null) {
+				return;
+			}
+			try {
+				writer.flush();
+			} catch (IOException e) {
+				LOGGER.error(e, () -> "Error while writing report to file: " + file);
+			}
+		}
+
+		/** Opens the array if it has not been opened yet. Returns false if it has already been closed. */
+		private boolean open() throws IOException {
+			if (closed) {
+				return false;
+			}
+			if (writer == null) {
+				writer = JsonWriter.of(ReportUtils.openReportSink(file, EReportCompression.NONE));
+				writer.setIndent(ReportUtils.getIndent(false));
+				writer.beginArray();
+			}
+			return true;
+		}
+
+		private void close() {
+			try {
+				if (!open()) {
+					return;
+				}
+				closed = true;
+				writer.endArray();
+				writer.close();
+			} catch (IOException e) {
+				LOGGER.error(e, () -> "Error while writing report to file: " + file);
+			} finally {
+				writer = null;
+			}
 		}
 	}
 }
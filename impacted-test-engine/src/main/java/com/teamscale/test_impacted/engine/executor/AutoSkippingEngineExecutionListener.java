@@ -11,9 +11,13 @@ import org.junit.platform.engine.TestExecutionResult;
 import org.junit.platform.engine.UniqueId;
 import org.junit.platform.engine.reporting.ReportEntry;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -60,11 +64,35 @@ class AutoSkippingEngineExecutionListener implements EngineExecutionListener {
 	 */
 	private final Map<UniqueId, TestDescriptor> requestedTestDescriptorsById = new HashMap<>();
 
+	/**
+	 * The children of the requested {@link TestDescriptor}s as they were requested. The executed tree may only contain
+	 * some of them, since it has been pruned to the tests of a single cluster.
+	 */
+	private final Map<UniqueId, List<TestDescriptor>> requestedChildrenById = new HashMap<>();
+
+	/** The requested engine {@link TestDescriptor}. */
+	private final TestDescriptor requestedEngineTestDescriptor;
+
+	/**
+	 * The reasons with which {@link TestDescriptor}s are skipped if it is not {@link #TEST_NOT_IMPACTED_REASON}, e.g.
+	 * because the tests are executed by another shard. Containers inherit the reason of their children.
+	 */
+	private final Map<UniqueId, String> skipReasonsById;
+
 	AutoSkippingEngineExecutionListener(Set<UniqueId> impactedTestDescriptorIds,
 										EngineExecutionListener delegateExecutionListener,
 										TestDescriptor requestedEngineTestDescriptor) {
+		this(impactedTestDescriptorIds, Collections.emptyMap(), delegateExecutionListener,
+				requestedEngineTestDescriptor);
+	}
+
+	AutoSkippingEngineExecutionListener(Set<UniqueId> impactedTestDescriptorIds, Map<UniqueId, String> skipReasonsById,
+										EngineExecutionListener delegateExecutionListener,
+										TestDescriptor requestedEngineTestDescriptor) {
 		this.openImpactedTestDescriptorIds = new HashSet<>(impactedTestDescriptorIds);
+		this.skipReasonsById = new HashMap<>(skipReasonsById);
 		this.delegateExecutionListener = delegateExecutionListener;
+		this.requestedEngineTestDescriptor = requestedEngineTestDescriptor;
 		registerTestDescriptors(requestedEngineTestDescriptor);
 	}
 
@@ -85,8 +113,17 @@ class AutoSkippingEngineExecutionListener implements EngineExecutionListener {
 			// that we have added impacted child test descriptors to the open impacted test descriptors first.
 			testDescriptor.getParent().map(TestDescriptor::getUniqueId).ifPresent(openImpactedTestDescriptorIds::add);
 		}
+		if (!skipReasonsById.containsKey(uniqueId)) {
+			testDescriptor.getChildren().stream().map(child -> skipReasonsById.get(child.getUniqueId()))
+					.filter(Objects::nonNull).findFirst().ifPresent(reason -> skipReasonsById.put(uniqueId, reason));
+		}
 
 		requestedTestDescriptorsById.put(uniqueId, testDescriptor);
+		requestedChildrenById.put(uniqueId, new ArrayList<>(testDescriptor.getChildren()));
+	}
+
+	private List<TestDescriptor> getRequestedChildren(TestDescriptor testDescriptor) {
+		return requestedChildrenById.getOrDefault(testDescriptor.getUniqueId(), Collections.emptyList());
 	}
 
 	private TestDescriptor resolveOriginalTestDescriptor(TestDescriptor testDescriptor) {
@@ -108,9 +145,10 @@ class AutoSkippingEngineExecutionListener implements EngineExecutionListener {
 	 * unfinished child {@link TestDescriptor}s represent not impacted tests and skips them.
 	 */
 	private void finishTestDescriptor(TestDescriptor testDescriptor) {
-		for (TestDescriptor testDescriptorChild : testDescriptor.getChildren()) {
+		for (TestDescriptor testDescriptorChild : getRequestedChildren(testDescriptor)) {
 			if (!finishedImpactedTestDescriptorIds.contains(testDescriptorChild.getUniqueId())) {
-				delegateExecutionListener.executionSkipped(testDescriptorChild, TEST_NOT_IMPACTED_REASON);
+				delegateExecutionListener.executionSkipped(testDescriptorChild,
+						skipReasonsById.getOrDefault(testDescriptorChild.getUniqueId(), TEST_NOT_IMPACTED_REASON));
 			}
 		}
 		Preconditions.condition(openImpactedTestDescriptorIds.remove(testDescriptor.getUniqueId()),
@@ -119,6 +157,33 @@ class AutoSkippingEngineExecutionListener implements EngineExecutionListener {
 				() -> "Expected impacted and unfinished test descriptor to not be part of the finished impacted nodes: " + testDescriptor);
 	}
 
+	/**
+	 * Skips all impacted {@link TestDescriptor}s that have not been executed with the given reason and finishes the
+	 * containers that have been started. Used once no further impacted tests will be executed, e.g. because the time
+	 * budget is used up.
+	 */
+	void skipOpenTestDescriptors(String reason) {
+		skipOpenTestDescriptors(requestedEngineTestDescriptor, reason);
+	}
+
+	private void skipOpenTestDescriptors(TestDescriptor testDescriptor, String reason) {
+		if (!openImpactedTestDescriptorIds.contains(testDescriptor.getUniqueId())) {
+			return;
+		}
+		if (!startedTestDescriptorIds.contains(testDescriptor.getUniqueId())) {
+			// Skipping a container implicitly skips all of its children
+			delegateExecutionListener.executionSkipped(testDescriptor, reason);
+			openImpactedTestDescriptorIds.remove(testDescriptor.getUniqueId());
+			finishedImpactedTestDescriptorIds.add(testDescriptor.getUniqueId());
+			return;
+		}
+		for (TestDescriptor testDescriptorChild : getRequestedChildren(testDescriptor)) {
+			skipOpenTestDescriptors(testDescriptorChild, reason);
+		}
+		finishTestDescriptor(testDescriptor);
+		delegateExecutionListener.executionFinished(testDescriptor, TestExecutionResult.successful());
+	}
+
 	/**
 	 * Wraps the dynamicall registered {@link TestDescriptor} into a new one which is part of the parent-child hierarchy
 	 * of the requested {@link TestDescriptor}s in {@link #requestedTestDescriptorsById}.
@@ -139,7 +204,10 @@ class AutoSkippingEngineExecutionListener implements EngineExecutionListener {
 				.get(parentTestDescriptor.get().getUniqueId());
 
 		originalParentTestDescriptor.addChild(wrappedTestDescriptor);
+		requestedChildrenById.computeIfAbsent(originalParentTestDescriptor.getUniqueId(), id -> new ArrayList<>())
+				.add(wrappedTestDescriptor);
 		requestedTestDescriptorsById.put(uniqueId, wrappedTestDescriptor);
+		requestedChildrenById.put(uniqueId, new ArrayList<>());
 		openImpactedTestDescriptorIds.add(uniqueId);
 		delegateExecutionListener.dynamicTestRegistered(wrappedTestDescriptor);
 	}
@@ -164,7 +232,7 @@ class AutoSkippingEngineExecutionListener implements EngineExecutionListener {
 	public void executionFinished(TestDescriptor testDescriptor, TestExecutionResult testExecutionResult) {
 		TestDescriptor originalTestDescriptor = resolveOriginalTestDescriptor(testDescriptor);
 
-		if (originalTestDescriptor.getChildren().stream().map(TestDescriptor::getUniqueId)
+		if (getRequestedChildren(originalTestDescriptor).stream().map(TestDescriptor::getUniqueId)
 				.anyMatch(openImpactedTestDescriptorIds::contains)) {
 			// Still open impacted child test descriptors left. Postpone finish until the last child is finished.
 			return;
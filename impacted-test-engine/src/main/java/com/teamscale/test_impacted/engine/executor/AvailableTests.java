@@ -46,6 +46,34 @@ public class AvailableTests {
 		return testList;
 	}
 
+	/** Returns the {@link UniqueId} of the test with the given uniform path or null if there is no such test. */
+	public UniqueId getUniqueId(String uniformPath) {
+		return uniformPathToUniqueIdMapping.get(uniformPath);
+	}
+
+	/**
+	 * Returns the available tests that have one of the given {@link UniqueId}s, e.g. the ones that remain after the
+	 * launcher applied post-discovery filters.
+	 */
+	public AvailableTests retainAll(Set<UniqueId> uniqueIds) {
+		if (uniqueIds.containsAll(uniformPathToUniqueIdMapping.values())) {
+			return this;
+		}
+		AvailableTests retainedTests = new AvailableTests();
+		for (ClusteredTestDetails testDetails : testList) {
+			UniqueId uniqueId = uniformPathToUniqueIdMapping.get(testDetails.uniformPath);
+			if (uniqueIds.contains(uniqueId)) {
+				retainedTests.add(uniqueId, testDetails);
+			}
+		}
+		return retainedTests;
+	}
+
+	/** Returns the {@link UniqueId}s of all available tests. */
+	public Set<UniqueId> getAllUniqueIds() {
+		return new HashSet<>(uniformPathToUniqueIdMapping.values());
+	}
+
 	/**
 	 * Converts the {@link PrioritizableTest}s which are match the {@link UniqueId}s returned by the {@link TestEngine}s
 	 * used by the {@link ImpactedTestEngine}.
@@ -64,7 +92,7 @@ public class AvailableTests {
 						.forEach(testAlternative -> LOGGER.error(() -> " - " + testAlternative));
 
 				LOGGER.error(() -> "Falling back to execute all...");
-				return new HashSet<>(uniformPathToUniqueIdMapping.values());
+				return getAllUniqueIds();
 			}
 			list.add(testUniqueId);
 		}
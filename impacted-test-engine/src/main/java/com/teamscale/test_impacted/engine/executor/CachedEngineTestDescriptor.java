@@ -0,0 +1,27 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.EngineDescriptor;
+
+/**
+ * Stands in for the {@link TestDescriptor} of a delegate engine whose discovery has been skipped, because its tests
+ * were found in the {@link TestDiscoveryCache}. It has no children, since the tests are only discovered once it is
+ * known which of them are impacted. They are then registered dynamically.
+ */
+public class CachedEngineTestDescriptor extends EngineDescriptor {
+
+	/** The tests that the delegate engine discovered in a previous run. */
+	public final AvailableTests availableTests;
+
+	public CachedEngineTestDescriptor(UniqueId uniqueId, String displayName, AvailableTests availableTests) {
+		super(uniqueId, displayName);
+		this.availableTests = availableTests;
+	}
+
+	/** Keeps the launcher from pruning this descriptor although it has no children yet. */
+	@Override
+	public boolean mayRegisterTests() {
+		return true;
+	}
+}
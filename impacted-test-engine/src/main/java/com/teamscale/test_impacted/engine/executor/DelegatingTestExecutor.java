@@ -1,19 +1,14 @@
 package com.teamscale.test_impacted.engine.executor;
 
-import com.teamscale.report.testwise.model.TestExecution;
 import org.junit.platform.engine.ExecutionRequest;
 
-import java.util.Collections;
-import java.util.List;
-
 /** Simple test executor that does nothing but execute the whole {@link TestExecutorRequest}. */
 public class DelegatingTestExecutor implements ITestExecutor {
 
 	@Override
-	public List<TestExecution> execute(TestExecutorRequest testExecutorRequest) {
+	public void execute(TestExecutorRequest testExecutorRequest) {
 		testExecutorRequest.testEngine.execute(new ExecutionRequest(testExecutorRequest.engineTestDescriptor,
 				testExecutorRequest.engineExecutionListener, testExecutorRequest.configurationParameters));
-		return Collections.emptyList();
 	}
 }
 
@@ -0,0 +1,20 @@
+package com.teamscale.test_impacted.engine.executor;
+
+/** The phases of an impacted test run whose durations are measured by {@link EnginePhaseTimings}. */
+public enum EEnginePhase {
+
+	/** Discovery of all tests by the delegate engines (or lookup in the discovery cache). */
+	DISCOVERY,
+
+	/** Retrieval of the impacted tests from Teamscale or from the impacted tests cache. */
+	IMPACTED_TESTS_QUERY,
+
+	/** Discovery of the tests to execute by their unique ids, e.g. for the vintage engine or after a cache hit. */
+	REDISCOVERY,
+
+	/** Execution of the tests by the delegate engines, including the agent notifications. */
+	TEST_EXECUTION,
+
+	/** A single notification of the agents about the start or end of a test (round trip to all agents). */
+	AGENT_NOTIFICATION
+}
@@ -0,0 +1,138 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import com.teamscale.client.EReportCompression;
+import com.teamscale.report.ReportUtils;
+import okio.BufferedSink;
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Measures how long the phases of an impacted test run take, so it can be seen where the time is spent. Each phase
+ * may be recorded several times (e.g. once per engine or once per test). The summary contains the total duration and
+ * the percentiles of the single durations of every phase.
+ * <p>
+ * If the JVM supports JDK Flight Recorder (Java 8u262 and later), every recorded phase is also emitted as a JDK Flight
+ * Recorder event, so the phases show up in the recordings together with e.g. garbage collection and I/O. The event is
+ * compiled in a separate source set (src/jfr), which is left out if the building JDK lacks JDK Flight Recorder.
+ */
+public class EnginePhaseTimings {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EnginePhaseTimings.class);
+
+	/** The name of the class that emits the JDK Flight Recorder events, which is not available in all builds. */
+	private static final String EVENT_EMITTER_CLASS_NAME = EnginePhaseTimings.class.getPackage().getName()
+			+ ".EnginePhaseEventEmitter";
+
+	/**
+	 * Emits the recorded phases as JDK Flight Recorder events or null if the JVM does not support them or the events
+	 * have not been compiled.
+	 */
+	private static final ObjLongConsumer<EEnginePhase> EVENT_EMITTER = createEventEmitter();
+
+	/** The recorded durations in nanoseconds by phase. */
+	private final Map<EEnginePhase, List<Long>> durationsByPhase = new EnumMap<>(EEnginePhase.class);
+
+	/** Records that the given phase, which started at the given {@link System#nanoTime()}, has just ended. */
+	public void record(EEnginePhase phase, long startNanos) {
+		recordDuration(phase, System.nanoTime() - startNanos);
+	}
+
+	/** Records that the given phase, which took the given number of nanoseconds, has just ended. */
+	/* package */ void recordDuration(EEnginePhase phase, long durationNanos) {
+		synchronized (this) {
+			durationsByPhase.computeIfAbsent(phase, key -> new ArrayList<>()).add(durationNanos);
+		}
+		if (EVENT_EMITTER != null) {
+			EVENT_EMITTER.accept(phase, durationNanos);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ObjLongConsumer<EEnginePhase> createEventEmitter() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (ObjLongConsumer<EEnginePhase>) Class.forName(EVENT_EMITTER_CLASS_NAME).getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/** Writes the summary of all recorded phases to the given file as json. */
+	public void writeSummary(File summaryFile) throws IOException {
+		Map<String, PhaseSummary> summary = createSummary();
+		summary.forEach((phase, phaseSummary) -> LOGGER.debug(
+				() -> phase + ": " + phaseSummary.count + " times, " + phaseSummary.totalMillis + "ms in total"));
+
+		JsonAdapter<Map<String, PhaseSummary>> adapter = new Moshi.Builder().build()
+				.adapter(Types.newParameterizedType(Map.class, String.class, PhaseSummary.class));
+		try (BufferedSink sink = ReportUtils.openReportSink(summaryFile, EReportCompression.NONE)) {
+			adapter.indent(ReportUtils.getIndent(false)).toJson(sink, summary);
+		}
+	}
+
+	/** Returns the summaries of the recorded phases by phase name in the order of {@link EEnginePhase}. */
+	/* package */ synchronized Map<String, PhaseSummary> createSummary() {
+		Map<String, PhaseSummary> summary = new LinkedHashMap<>();
+		durationsByPhase.forEach((phase, durations) -> summary.put(phase.name(), new PhaseSummary(durations)));
+		return summary;
+	}
+
+	/** The summary of the durations of a phase. All durations are in milliseconds. */
+	/* package */ static class PhaseSummary {
+
+		/** How often the phase has been recorded. */
+		/* package */ final int count;
+
+		/** The sum of all durations. */
+		/* package */ final double totalMillis;
+
+		/** The median duration. */
+		/* package */ final double p50Millis;
+
+		/** The duration that 90% of the recordings did not exceed. */
+		/* package */ final double p90Millis;
+
+		/** The duration that 99% of the recordings did not exceed. */
+		/* package */ final double p99Millis;
+
+		/** The longest duration. */
+		/* package */ final double maxMillis;
+
+		private PhaseSummary(List<Long> durationsNanos) {
+			List<Long> sortedDurations = new ArrayList<>(durationsNanos);
+			Collections.sort(sortedDurations);
+			this.count = sortedDurations.size();
+			this.totalMillis = toMillis(sortedDurations.stream().mapToLong(Long::longValue).sum());
+			this.p50Millis = percentile(sortedDurations, 50);
+			this.p90Millis = percentile(sortedDurations, 90);
+			this.p99Millis = percentile(sortedDurations, 99);
+			this.maxMillis = toMillis(sortedDurations.get(count - 1));
+		}
+
+		/** Returns the given percentile of the sorted durations (nearest-rank method). */
+		private static double percentile(List<Long> sortedDurations, int percentile) {
+			int rank = (int) Math.ceil(percentile / 100.0 * sortedDurations.size());
+			return toMillis(sortedDurations.get(Math.max(0, rank - 1)));
+		}
+
+		/** Converts to milliseconds, keeping microsecond precision. */
+		private static double toMillis(long nanos) {
+			return TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+		}
+	}
+}
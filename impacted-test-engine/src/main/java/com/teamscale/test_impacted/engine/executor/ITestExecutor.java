@@ -2,14 +2,21 @@ package com.teamscale.test_impacted.engine.executor;
 
 import com.teamscale.report.testwise.model.TestExecution;
 
-import java.util.List;
-
 /** Interface for implementing different ways of executing tests. */
 public interface ITestExecutor {
 
 	/**
-	 * The {@link TestExecution}s that have been tracked. May be empty if no {@link TestExecution}s are recorded by the
-	 * {@link ITestExecutor}.
+	 * Executes the tests of the request. The {@link TestExecution}s that are tracked are passed to the {@link
+	 * TestExecutorRequest#testExecutionConsumer} as soon as each test is finished. {@link ITestExecutor}s may also not
+	 * record any {@link TestExecution}s.
+	 */
+	void execute(TestExecutorRequest testExecutorRequest);
+
+	/**
+	 * Called with the discovered tests of every delegate engine right after the discovery, so work needed for the
+	 * execution can overlap with the rest of the launcher's preparations. Does nothing by default.
 	 */
-	List<TestExecution> execute(TestExecutorRequest testExecutorRequest);
+	default void prepare(AvailableTests availableTests) {
+		// Nothing to prepare
+	}
 }
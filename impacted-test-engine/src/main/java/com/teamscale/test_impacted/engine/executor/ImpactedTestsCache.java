@@ -0,0 +1,195 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.teamscale.client.ClusteredTestDetails;
+import com.teamscale.client.CommitDescriptor;
+import com.teamscale.client.PrioritizableTestCluster;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the impacted tests returned by Teamscale on disk, so that repeated test runs with identical inputs, e.g.
+ * re-runs of a build or retries of flaky builds, do not need to query Teamscale again. Entries are identified by a hash
+ * of the server, project, baseline, end commit, partition and the available tests and expire after a configurable
+ * time. Expired entries are still used as a fallback in case Teamscale cannot be reached.
+ * <p>
+ * Only results for settled end commits may be cached (see {@link #isCacheable(CommitDescriptor, long)}), since the
+ * impacted tests of HEAD or of a commit that has just been made change as soon as Teamscale processes new commits or
+ * uploads.
+ */
+public class ImpactedTestsCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ImpactedTestsCache.class);
+
+	/** How old an end commit must be before Teamscale is assumed to have processed it and the uploads for it. */
+	private static final long MIN_END_COMMIT_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	/** Matches commit timestamps, optionally followed by a parent suffix like "p1". */
+	private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("(\\d+)(p\\d+)?");
+
+	/** The directory that contains the cache entries. */
+	private final File cacheDirectory;
+
+	/** Identifies the Teamscale server and project, whose results are cached. */
+	private final String scope;
+
+	/** How long an entry is valid in milliseconds. */
+	private final long timeToLiveMillis;
+
+	/** Reads and writes the cache entries. */
+	private final JsonAdapter<CacheEntry> entryAdapter = new Moshi.Builder().build().adapter(CacheEntry.class);
+
+	/** Constructor. */
+	public ImpactedTestsCache(File cacheDirectory, String serverUrl, String project, long timeToLiveMillis) {
+		this.cacheDirectory = cacheDirectory;
+		this.scope = serverUrl + "\n" + project;
+		this.timeToLiveMillis = timeToLiveMillis;
+	}
+
+	/**
+	 * Returns whether the impacted tests for the given end commit may be cached at the given time (epoch millis). This
+	 * is not the case for HEAD, which moves with every commit, and for commits younger than {@link
+	 * #MIN_END_COMMIT_AGE_MILLIS}, since Teamscale may not have processed all uploads for them yet.
+	 */
+	public static boolean isCacheable(CommitDescriptor endCommit, long now) {
+		Matcher matcher = TIMESTAMP_PATTERN.matcher(endCommit.timestamp);
+		if (!matcher.matches()) {
+			return false;
+		}
+		try {
+			return now - Long.parseLong(matcher.group(1)) >= MIN_END_COMMIT_AGE_MILLIS;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/** Computes the key under which the impacted tests for the given inputs are stored. */
+	public String computeKey(Long baseline, CommitDescriptor endCommit, String partition,
+							 List<ClusteredTestDetails> availableTests) {
+		MessageDigest digest = createDigest();
+		update(digest, scope);
+		update(digest, String.valueOf(baseline));
+		update(digest, String.valueOf(endCommit));
+		update(digest, partition);
+		for (ClusteredTestDetails test : availableTests) {
+			update(digest, test.uniformPath);
+			update(digest, test.sourcePath);
+			update(digest, test.content);
+			update(digest, test.clusterId);
+		}
+		return ByteString.of(digest.digest()).hex();
+	}
+
+	/**
+	 * Returns the cached impacted tests for the given key or null if there are none. Expired entries are only returned
+	 * if requested explicitly.
+	 */
+	public List<PrioritizableTestCluster> get(String key, boolean includeExpired) {
+		File entryFile = getEntryFile(key);
+		if (!entryFile.exists()) {
+			return null;
+		}
+		try (BufferedSource source = Okio.buffer(Okio.source(entryFile))) {
+			CacheEntry entry = entryAdapter.fromJson(source);
+			if (entry == null) {
+				return null;
+			}
+			if (!includeExpired && System.currentTimeMillis() - entry.timestamp > timeToLiveMillis) {
+				return null;
+			}
+			return entry.testClusters;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn(e, () -> "Failed to read cached impacted tests from " + entryFile);
+			return null;
+		}
+	}
+
+	/** Stores the impacted tests under the given key. */
+	public void put(String key, List<PrioritizableTestCluster> testClusters) {
+		File entryFile = getEntryFile(key);
+		Path temporaryFile = null;
+		try {
+			Files.createDirectories(cacheDirectory.toPath());
+			temporaryFile = Files.createTempFile(cacheDirectory.toPath(), key, ".tmp");
+			try (BufferedSink sink = Okio.buffer(Okio.sink(temporaryFile))) {
+				entryAdapter.toJson(sink, new CacheEntry(System.currentTimeMillis(), testClusters));
+			}
+			// Concurrent test runs may write the same entry, so it must never be visible half-written
+			try {
+				Files.move(temporaryFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			LOGGER.warn(e, () -> "Failed to cache impacted tests in " + entryFile);
+			if (temporaryFile != null) {
+				temporaryFile.toFile().delete();
+			}
+		}
+	}
+
+	/** Removes the entry with the given key, e.g. because Teamscale rejected the request. */
+	public void invalidate(String key) {
+		File entryFile = getEntryFile(key);
+		if (entryFile.exists() && !entryFile.delete()) {
+			LOGGER.warn(() -> "Failed to delete cached impacted tests " + entryFile);
+		}
+	}
+
+	private File getEntryFile(String key) {
+		return new File(cacheDirectory, key + ".json");
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		if (value == null) {
+			digest.update((byte) 1);
+		} else {
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+		}
+		// Separates the values, so that different inputs cannot produce the same byte sequence
+		digest.update((byte) 0);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+		}
+	}
+
+	/** The content of a cache file. */
+	private static class CacheEntry {
+
+		/** When the impacted tests have been retrieved from Teamscale (epoch millis). */
+		private final long timestamp;
+
+		/** The impacted tests. */
+		private final List<PrioritizableTestCluster> testClusters;
+
+		private CacheEntry(long timestamp, List<PrioritizableTestCluster> testClusters) {
+			this.timestamp = timestamp;
+			this.testClusters = testClusters;
+		}
+	}
+}
@@ -1,16 +1,23 @@
 package com.teamscale.test_impacted.engine.executor;
 
+import com.teamscale.client.ClusteredTestDetails;
+import com.teamscale.client.PrioritizableTest;
 import com.teamscale.client.PrioritizableTestCluster;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
 import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.test_impacted.controllers.ITestwiseCoverageAgentApi;
-import com.teamscale.test_impacted.test_descriptor.TestDescriptorUtils;
 import org.junit.platform.commons.logging.Logger;
 import org.junit.platform.commons.logging.LoggerFactory;
+import org.junit.platform.engine.EngineExecutionListener;
 import org.junit.platform.engine.TestDescriptor;
 import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.hierarchical.HierarchicalTestEngine;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -21,47 +28,172 @@ public class ImpactedTestsExecutor extends TestwiseCoverageCollectingTestExecuto
 
 	private final ImpactedTestsProvider impactedTestsProvider;
 
-	public ImpactedTestsExecutor(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis,
-								 ImpactedTestsProvider impactedTestsProvider) {
-		super(testwiseCoverageAgentApis);
-		this.impactedTestsProvider = impactedTestsProvider;
+	/** Limits the time spent executing impacted tests. May be null to execute all impacted tests. */
+	private final TestTimeBudget timeBudget;
+
+	/** Selects the impacted tests executed by this shard. May be null to execute all impacted tests. */
+	private final TestSharding sharding;
+
+	private ImpactedTestsExecutor(Builder builder) {
+		super(builder.testwiseCoverageAgentApis, builder.agentNotificationTimeoutMillis, builder.phaseTimings);
+		this.impactedTestsProvider = builder.impactedTestsProvider;
+		this.timeBudget = builder.timeBudget;
+		this.sharding = builder.sharding;
+	}
+
+	/** Returns the builder for {@link ImpactedTestsExecutor}. */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/** Starts the impacted tests query for the discovered tests, so it runs while the launcher prepares the execution. */
+	@Override
+	public void prepare(AvailableTests availableTests) {
+		impactedTestsProvider.prefetchImpactedTests(getTestsOfThisShard(availableTests.getTestList()));
 	}
 
 	@Override
-	public List<TestExecution> execute(TestExecutorRequest executorRequest) {
-		AvailableTests availableTestDetails = TestDescriptorUtils
-				.getAvailableTests(executorRequest.testEngine, executorRequest.engineTestDescriptor);
+	public void execute(TestExecutorRequest executorRequest) {
+		AvailableTests availableTestDetails = executorRequest.availableTests;
+		List<ClusteredTestDetails> testsOfThisShard = getTestsOfThisShard(availableTestDetails.getTestList());
 		List<PrioritizableTestCluster> testClusters = impactedTestsProvider.getImpactedTestsFromTeamscale(
-				availableTestDetails.getTestList());
+				testsOfThisShard);
 
 		if (testClusters == null) {
 			LOGGER.debug(() -> "Falling back to execute all!");
-			return super.execute(executorRequest);
+			super.execute(discoverCachedTests(executorRequest, availableTestDetails.getAllUniqueIds()));
+			return;
 		}
 
-		AutoSkippingEngineExecutionListener executionListener = new AutoSkippingEngineExecutionListener(
-				getImpactedTestUniqueIds(availableTestDetails, testClusters),
-				executorRequest.engineExecutionListener, executorRequest.engineTestDescriptor);
+		Map<UniqueId, String> skipReasons = new HashMap<>();
+		if (sharding != null) {
+			Set<ClusteredTestDetails> testsOfThisShardSet = new HashSet<>(testsOfThisShard);
+			for (ClusteredTestDetails test : availableTestDetails.getTestList()) {
+				if (!testsOfThisShardSet.contains(test)) {
+					skipReasons.put(availableTestDetails.getUniqueId(test.uniformPath),
+							TestSharding.OTHER_SHARD_REASON);
+				}
+			}
+		}
 
-		List<TestExecution> testExecutions = new ArrayList<>();
+		Set<UniqueId> impactedTestUniqueIds = getImpactedTestUniqueIds(availableTestDetails, testClusters);
+		executorRequest = discoverCachedTests(executorRequest, impactedTestUniqueIds);
+		AutoSkippingEngineExecutionListener executionListener = new AutoSkippingEngineExecutionListener(
+				impactedTestUniqueIds, skipReasons, executorRequest.engineExecutionListener,
+				executorRequest.engineTestDescriptor);
 
-		LOGGER.debug(() -> "Re-discovering tests for delegate engine " + executorRequest.testEngine.getId());
+		boolean testsSkipped = false;
 
 		for (PrioritizableTestCluster testCluster : testClusters) {
-			Set<UniqueId> uniqueIdsOfTestsToExecute = availableTestDetails.convertToUniqueIds(testCluster.tests);
-			UniqueIdsDiscoveryRequest engineDiscoveryRequest = new UniqueIdsDiscoveryRequest(
-					uniqueIdsOfTestsToExecute, executorRequest.configurationParameters);
-			TestDescriptor testDescriptor = executorRequest.testEngine.discover(engineDiscoveryRequest,
-					UniqueId.forEngine(executorRequest.testEngine.getId()));
-			TestExecutorRequest impactedExecutorRequest = new TestExecutorRequest(executorRequest.testEngine,
-					testDescriptor, executionListener, executorRequest.configurationParameters);
-			List<TestExecution> testExecutionsForCluster = super
-					.execute(impactedExecutorRequest);
+			List<PrioritizableTest> testsToExecute = testCluster.tests;
+			if (timeBudget != null) {
+				testsToExecute = timeBudget.selectTests(testCluster.tests);
+				Set<PrioritizableTest> selectedTests = new HashSet<>(testsToExecute);
+				for (PrioritizableTest test : testCluster.tests) {
+					if (selectedTests.contains(test)) {
+						continue;
+					}
+					executorRequest.testExecutionConsumer.accept(new TestExecution(test.uniformPath, 0L,
+							ETestExecutionResult.SKIPPED, TestTimeBudget.TIME_BUDGET_EXCEEDED_REASON));
+					testsSkipped = true;
+				}
+				if (testsToExecute.isEmpty()) {
+					continue;
+				}
+			}
 
-			testExecutions.addAll(testExecutionsForCluster);
+			Set<UniqueId> uniqueIdsOfTestsToExecute = availableTestDetails.convertToUniqueIds(testsToExecute);
+			if (executorRequest.testEngine instanceof HierarchicalTestEngine) {
+				executePrunedTree(executorRequest, uniqueIdsOfTestsToExecute, executionListener);
+			} else {
+				executeRediscoveredTree(executorRequest, uniqueIdsOfTestsToExecute, executionListener);
+			}
 		}
 
-		return testExecutions;
+		if (testsSkipped) {
+			executionListener.skipOpenTestDescriptors(TestTimeBudget.TIME_BUDGET_EXCEEDED_REASON);
+		}
+	}
+
+	/**
+	 * Returns the available tests assigned to this shard. Only these are sent to Teamscale, so each shard only queries
+	 * the impacted tests among its own tests.
+	 */
+	private List<ClusteredTestDetails> getTestsOfThisShard(List<ClusteredTestDetails> availableTests) {
+		if (sharding == null) {
+			return availableTests;
+		}
+		return sharding.selectTests(availableTests);
+	}
+
+	/**
+	 * Executes the given tests by pruning the already discovered tree of the delegate engine. This only works for
+	 * {@link HierarchicalTestEngine}s, which execute exactly the tree they are given.
+	 */
+	private void executePrunedTree(TestExecutorRequest executorRequest, Set<UniqueId> uniqueIdsOfTestsToExecute,
+								   AutoSkippingEngineExecutionListener executionListener) {
+		TestDescriptorPruning pruning = TestDescriptorPruning
+				.prune(executorRequest.engineTestDescriptor, uniqueIdsOfTestsToExecute);
+		try {
+			super.execute(new TestExecutorRequest(executorRequest.testEngine, executorRequest.engineTestDescriptor,
+					executionListener, executorRequest.configurationParameters, executorRequest.testExecutionConsumer,
+					executorRequest.availableTests));
+		} finally {
+			pruning.restore();
+		}
+	}
+
+	/**
+	 * Executes the given tests by discovering them again. Needed for engines that do not respect the structure of the
+	 * tree they are given, e.g. the vintage engine, which runs whole JUnit 4 runners.
+	 */
+	private void executeRediscoveredTree(TestExecutorRequest executorRequest, Set<UniqueId> uniqueIdsOfTestsToExecute,
+										 AutoSkippingEngineExecutionListener executionListener) {
+		LOGGER.debug(() -> "Re-discovering tests for delegate engine " + executorRequest.testEngine.getId());
+		TestDescriptor testDescriptor = discoverUniqueIds(executorRequest, uniqueIdsOfTestsToExecute);
+		super.execute(new TestExecutorRequest(executorRequest.testEngine, testDescriptor, executionListener,
+				executorRequest.configurationParameters, executorRequest.testExecutionConsumer,
+				executorRequest.availableTests));
+	}
+
+	/**
+	 * Discovers the given tests if the discovery of the delegate engine has been skipped, because its tests were cached
+	 * (see {@link CachedEngineTestDescriptor}). The launcher only knows the childless engine descriptor, so the
+	 * discovered descriptors are registered dynamically before they are executed.
+	 */
+	private TestExecutorRequest discoverCachedTests(TestExecutorRequest executorRequest, Set<UniqueId> uniqueIds) {
+		if (!(executorRequest.engineTestDescriptor instanceof CachedEngineTestDescriptor)) {
+			return executorRequest;
+		}
+		LOGGER.debug(() -> "Discovering " + uniqueIds.size() + " cached tests for delegate engine " + executorRequest
+				.testEngine.getId());
+		TestDescriptor engineTestDescriptor = discoverUniqueIds(executorRequest, uniqueIds);
+		for (TestDescriptor child : engineTestDescriptor.getChildren()) {
+			registerDynamically(child, executorRequest.engineExecutionListener);
+		}
+		return new TestExecutorRequest(executorRequest.testEngine, engineTestDescriptor,
+				executorRequest.engineExecutionListener, executorRequest.configurationParameters,
+				executorRequest.testExecutionConsumer, executorRequest.availableTests);
+	}
+
+	/** Discovers the tests with the given unique ids with the delegate engine. */
+	private TestDescriptor discoverUniqueIds(TestExecutorRequest executorRequest, Set<UniqueId> uniqueIds) {
+		long startNanos = System.nanoTime();
+		UniqueIdsDiscoveryRequest engineDiscoveryRequest = new UniqueIdsDiscoveryRequest(uniqueIds,
+				executorRequest.configurationParameters);
+		TestDescriptor engineTestDescriptor = executorRequest.testEngine.discover(engineDiscoveryRequest,
+				UniqueId.forEngine(executorRequest.testEngine.getId()));
+		phaseTimings.record(EEnginePhase.REDISCOVERY, startNanos);
+		return engineTestDescriptor;
+	}
+
+	/** Registers the test descriptor and all its descendants, parents first. */
+	private static void registerDynamically(TestDescriptor testDescriptor,
+											EngineExecutionListener engineExecutionListener) {
+		engineExecutionListener.dynamicTestRegistered(testDescriptor);
+		for (TestDescriptor child : testDescriptor.getChildren()) {
+			registerDynamically(child, engineExecutionListener);
+		}
 	}
 
 	private static Set<UniqueId> getImpactedTestUniqueIds(AvailableTests availableTests,
@@ -70,4 +202,77 @@ public class ImpactedTestsExecutor extends TestwiseCoverageCollectingTestExecuto
 				.flatMap(testCluster -> availableTests.convertToUniqueIds(testCluster.tests).stream())
 				.collect(Collectors.toSet());
 	}
+
+	/** The builder for {@link ImpactedTestsExecutor}. */
+	public static class Builder {
+
+		/** The agents to notify about the start and end of tests. May be empty but not null. */
+		private List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis = Collections.emptyList();
+
+		/** How long to wait for the agents to acknowledge the start or end of a test. */
+		private long agentNotificationTimeoutMillis = DEFAULT_AGENT_NOTIFICATION_TIMEOUT_MILLIS;
+
+		/** Retrieves the impacted tests from Teamscale. May not be null. */
+		private ImpactedTestsProvider impactedTestsProvider;
+
+		/** @see ImpactedTestsExecutor#timeBudget */
+		private TestTimeBudget timeBudget;
+
+		/** @see ImpactedTestsExecutor#sharding */
+		private TestSharding sharding;
+
+		/** Measures the durations of the phases of the test run. */
+		private EnginePhaseTimings phaseTimings = new EnginePhaseTimings();
+
+		private Builder() {
+			// Only needed to make constructor private
+		}
+
+		/** @see #testwiseCoverageAgentApis */
+		public Builder testwiseCoverageAgentApis(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis) {
+			this.testwiseCoverageAgentApis = testwiseCoverageAgentApis;
+			return this;
+		}
+
+		/** @see #agentNotificationTimeoutMillis */
+		public Builder agentNotificationTimeoutMillis(long agentNotificationTimeoutMillis) {
+			this.agentNotificationTimeoutMillis = agentNotificationTimeoutMillis;
+			return this;
+		}
+
+		/** @see #impactedTestsProvider */
+		public Builder impactedTestsProvider(ImpactedTestsProvider impactedTestsProvider) {
+			this.impactedTestsProvider = impactedTestsProvider;
+			return this;
+		}
+
+		/** @see #timeBudget */
+		public Builder timeBudget(TestTimeBudget timeBudget) {
+			this.timeBudget = timeBudget;
+			return this;
+		}
+
+		/** @see #sharding */
+		public Builder sharding(TestSharding sharding) {
+			this.sharding = sharding;
+			return this;
+		}
+
+		/** @see #phaseTimings */
+		public Builder phaseTimings(EnginePhaseTimings phaseTimings) {
+			this.phaseTimings = phaseTimings;
+			return this;
+		}
+
+		/** Checks field conditions and returns the built {@link ImpactedTestsExecutor}. */
+		public ImpactedTestsExecutor build() {
+			if (testwiseCoverageAgentApis == null) {
+				throw new AssertionError("Agent APIs may be empty but not null.");
+			}
+			if (impactedTestsProvider == null) {
+				throw new AssertionError("Impacted tests provider must be set.");
+			}
+			return new ImpactedTestsExecutor(this);
+		}
+	}
 }
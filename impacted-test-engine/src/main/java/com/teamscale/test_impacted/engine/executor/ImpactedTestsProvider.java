@@ -9,7 +9,13 @@ import org.junit.platform.commons.logging.LoggerFactory;
 import retrofit2.Response;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -28,33 +34,151 @@ public class ImpactedTestsProvider {
 
 	private final String partition;
 
+	/**
+	 * Caches the impacted tests across test runs. May be null if the results should not be cached, which is always the
+	 * case for end commits that are not settled yet (see {@link ImpactedTestsCache#isCacheable(CommitDescriptor,
+	 * long)}).
+	 */
+	private final ImpactedTestsCache cache;
+
+	/** Measures how long the retrieval of impacted tests takes. */
+	private final EnginePhaseTimings phaseTimings;
+
+	/** The queries started by {@link #prefetchImpactedTests(List)} by the test list they were started for. */
+	private final Map<List<ClusteredTestDetails>, CompletableFuture<Response<List<PrioritizableTestCluster>>>>
+			prefetchedQueries = new HashMap<>();
+
 	public ImpactedTestsProvider(TeamscaleClient client, Long baseline, CommitDescriptor endCommit, String partition) {
+		this(client, baseline, endCommit, partition, null);
+	}
+
+	public ImpactedTestsProvider(TeamscaleClient client, Long baseline, CommitDescriptor endCommit, String partition,
+								 ImpactedTestsCache cache) {
+		this(client, baseline, endCommit, partition, cache, new EnginePhaseTimings());
+	}
+
+	public ImpactedTestsProvider(TeamscaleClient client, Long baseline, CommitDescriptor endCommit, String partition,
+								 ImpactedTestsCache cache, EnginePhaseTimings phaseTimings) {
 		this.client = client;
 		this.baseline = baseline;
 		this.endCommit = endCommit;
 		this.partition = partition;
+		if (cache != null && !ImpactedTestsCache.isCacheable(endCommit, System.currentTimeMillis())) {
+			LOGGER.info(() -> "Not caching the impacted tests, since the end commit " + endCommit
+					+ " is not settled yet.");
+			cache = null;
+		}
+		this.cache = cache;
+		this.phaseTimings = phaseTimings;
 	}
 
-	/** Queries Teamscale for impacted tests. */
+	/**
+	 * Starts querying Teamscale for the impacted tests of the given tests without waiting for the answer, so the query
+	 * overlaps with other work, e.g. the preparation of the test execution by the launcher. A later call to {@link
+	 * #getImpactedTestsFromTeamscale(List)} with the same tests uses the answer of this query. Does nothing if the
+	 * impacted tests are cached.
+	 */
+	public void prefetchImpactedTests(List<ClusteredTestDetails> availableTestDetails) {
+		if (cache != null && cache.get(cache.computeKey(baseline, endCommit, partition, availableTestDetails),
+				false) != null) {
+			return;
+		}
+		prefetchedQueries.computeIfAbsent(availableTestDetails, this::startQuery);
+	}
+
+	/**
+	 * Queries Teamscale for impacted tests. Returns the cached result of a previous query with the same inputs instead
+	 * if there is one and falls back to an expired cached result if Teamscale cannot be reached.
+	 */
 	public List<PrioritizableTestCluster> getImpactedTestsFromTeamscale(
 			List<ClusteredTestDetails> availableTestDetails) {
+		long startNanos = System.nanoTime();
 		try {
-			LOGGER.info(() -> "Getting impacted tests...");
-			Response<List<PrioritizableTestCluster>> response = client
-					.getImpactedTests(availableTestDetails, baseline, endCommit, partition);
+			return queryImpactedTests(availableTestDetails);
+		} finally {
+			phaseTimings.record(EEnginePhase.IMPACTED_TESTS_QUERY, startNanos);
+		}
+	}
+
+	private List<PrioritizableTestCluster> queryImpactedTests(List<ClusteredTestDetails> availableTestDetails) {
+		String cacheKey = null;
+		if (cache != null) {
+			cacheKey = cache.computeKey(baseline, endCommit, partition, availableTestDetails);
+			List<PrioritizableTestCluster> cachedTestClusters = cache.get(cacheKey, false);
+			if (cachedTestClusters != null) {
+				LOGGER.info(() -> "Using cached impacted tests.");
+				return cachedTestClusters;
+			}
+		}
+
+		try {
+			CompletableFuture<Response<List<PrioritizableTestCluster>>> query = prefetchedQueries
+					.remove(availableTestDetails);
+			if (query == null) {
+				query = startQuery(availableTestDetails);
+			}
+			Response<List<PrioritizableTestCluster>> response = await(query);
 			if (response.isSuccessful()) {
 				List<PrioritizableTestCluster> testClusters = response.body();
 				if (testClusters != null) {
+					if (cache != null) {
+						cache.put(cacheKey, testClusters);
+					}
 					return testClusters;
 				}
 				LOGGER.error(() -> "Teamscale was not able to determine impacted tests:\n" + response.errorBody());
 			} else {
 				LOGGER.error(() -> "Retrieval of impacted tests failed: " + response.code() + " " + response
 						.message() + "\n" + response.errorBody());
+				if (response.code() >= 500) {
+					return getExpiredCachedResult(cacheKey);
+				}
 			}
 		} catch (IOException e) {
 			LOGGER.error(e, () -> "Retrieval of impacted tests failed.");
+			return getExpiredCachedResult(cacheKey);
+		}
+		// Teamscale rejected the request, so a cached result for it is not trustworthy anymore
+		if (cache != null) {
+			cache.invalidate(cacheKey);
 		}
 		return null;
 	}
+
+	/** Sends the impacted tests query for the given tests to Teamscale. */
+	private CompletableFuture<Response<List<PrioritizableTestCluster>>> startQuery(
+			List<ClusteredTestDetails> availableTestDetails) {
+		LOGGER.info(() -> "Getting impacted tests...");
+		return client.getImpactedTestsAsync(availableTestDetails, baseline, endCommit, partition, 0,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/** Waits for the answer of the given query. Cancels the query if the thread is interrupted while waiting. */
+	private static Response<List<PrioritizableTestCluster>> await(
+			CompletableFuture<Response<List<PrioritizableTestCluster>>> query) throws IOException {
+		try {
+			return query.get();
+		} catch (InterruptedException e) {
+			query.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the impacted tests");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/** Returns the last result for the given key if Teamscale cannot be reached, even if it is expired. */
+	private List<PrioritizableTestCluster> getExpiredCachedResult(String cacheKey) {
+		if (cache == null) {
+			return null;
+		}
+		List<PrioritizableTestCluster> testClusters = cache.get(cacheKey, true);
+		if (testClusters != null) {
+			LOGGER.warn(() -> "Using the impacted tests of a previous run, because Teamscale could not be reached.");
+		}
+		return testClusters;
+	}
 }
@@ -0,0 +1,73 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.hierarchical.HierarchicalTestEngine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Temporarily removes all {@link TestDescriptor}s from a discovered tree that do not lead to one of the given tests.
+ * Engines that execute exactly the tree they are given (i.e. {@link HierarchicalTestEngine}s) then only execute these
+ * tests without having to discover them again. {@link #restore()} puts back all removed {@link TestDescriptor}s in
+ * their original order and removes all {@link TestDescriptor}s that have been added during the execution, e.g. dynamic
+ * tests or the invocations of test templates. Otherwise the next execution of the tree would execute them again.
+ */
+/* package */ class TestDescriptorPruning {
+
+	/** The original children of all {@link TestDescriptor}s that have been pruned or that are executed. */
+	private final Map<TestDescriptor, List<TestDescriptor>> originalChildren = new LinkedHashMap<>();
+
+	private TestDescriptorPruning() {
+		// Only created by prune
+	}
+
+	/** Removes all descendants of the root that are neither one of the given tests nor an ancestor of one. */
+	/* package */ static TestDescriptorPruning prune(TestDescriptor root, Set<UniqueId> uniqueIdsToKeep) {
+		TestDescriptorPruning pruning = new TestDescriptorPruning();
+		pruning.pruneChildren(root, uniqueIdsToKeep);
+		return pruning;
+	}
+
+	/** Removes the children that do not lead to the given tests and returns whether any child has been kept. */
+	private boolean pruneChildren(TestDescriptor testDescriptor, Set<UniqueId> uniqueIdsToKeep) {
+		if (uniqueIdsToKeep.contains(testDescriptor.getUniqueId())) {
+			// The whole subtree belongs to the test, e.g. the invocations of a test template
+			recordChildren(testDescriptor);
+			return true;
+		}
+		List<TestDescriptor> children = new ArrayList<>(testDescriptor.getChildren());
+		originalChildren.put(testDescriptor, children);
+		List<TestDescriptor> childrenToRemove = new ArrayList<>();
+		for (TestDescriptor child : children) {
+			if (!pruneChildren(child, uniqueIdsToKeep)) {
+				childrenToRemove.add(child);
+			}
+		}
+		childrenToRemove.forEach(testDescriptor::removeChild);
+		return childrenToRemove.size() < children.size();
+	}
+
+	/** Records the children of the given {@link TestDescriptor} and all its descendants. */
+	private void recordChildren(TestDescriptor testDescriptor) {
+		List<TestDescriptor> children = new ArrayList<>(testDescriptor.getChildren());
+		originalChildren.put(testDescriptor, children);
+		children.forEach(this::recordChildren);
+	}
+
+	/**
+	 * Restores the original tree. Children that have been added during the execution, e.g. dynamic tests, are removed,
+	 * so every {@link TestDescriptor} has exactly the children it had before pruning.
+	 */
+	/* package */ void restore() {
+		originalChildren.forEach((testDescriptor, children) -> {
+			new ArrayList<>(testDescriptor.getChildren()).forEach(testDescriptor::removeChild);
+			children.forEach(testDescriptor::addChild);
+		});
+		originalChildren.clear();
+	}
+}
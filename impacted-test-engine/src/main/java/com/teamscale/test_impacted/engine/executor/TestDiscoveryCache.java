@@ -0,0 +1,264 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.teamscale.client.ClusteredTestDetails;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+import org.junit.platform.engine.DiscoveryFilter;
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.EngineDiscoveryRequest;
+import org.junit.platform.engine.UniqueId;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Caches the tests discovered by the delegate engines on disk, so that the (potentially slow) discovery of all tests
+ * can be skipped if only impacted tests are executed. Entries are identified by a hash of the engine ids, the
+ * selectors and filters of the discovery request and a fingerprint of the test classes, which consists of the path,
+ * size and modification time of every jar and class file in the test class directories and on the system classpath.
+ * Only the most recent entries are kept.
+ * <p>
+ * The test class directories must be passed explicitly (e.g. by the Gradle plugin), since the system classpath of a
+ * test JVM does not necessarily contain the test classes. Gradle's test workers, for instance, load them with a
+ * separate class loader. Without them, changes of the test classes are only noticed if they are on the system
+ * classpath.
+ * <p>
+ * Post-discovery filters (e.g. tags) are applied by the launcher after the discovery and are therefore not part of the
+ * key. The cache must not be used together with them.
+ */
+public class TestDiscoveryCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestDiscoveryCache.class);
+
+	/** How many entries are kept in the cache directory. Older ones belong to outdated class files. */
+	private static final int MAX_ENTRIES = 3;
+
+	/** The directory that contains the cache entries. */
+	private final File cacheDirectory;
+
+	/** The directories and jars that contain the test classes. */
+	private final List<File> testClassesDirs;
+
+	/** Reads and writes the cache entries. */
+	private final JsonAdapter<CacheEntry> entryAdapter = new Moshi.Builder().build().adapter(CacheEntry.class);
+
+	/** Constructor. */
+	public TestDiscoveryCache(File cacheDirectory) {
+		this(cacheDirectory, Collections.emptyList());
+	}
+
+	/** Constructor. */
+	public TestDiscoveryCache(File cacheDirectory, List<File> testClassesDirs) {
+		this.cacheDirectory = cacheDirectory;
+		this.testClassesDirs = testClassesDirs;
+	}
+
+	/** Computes the key under which the tests discovered by the given engines for the request are stored. */
+	public String computeKey(List<String> engineIds, EngineDiscoveryRequest discoveryRequest) {
+		MessageDigest digest = createDigest();
+		for (String engineId : engineIds) {
+			update(digest, engineId);
+		}
+		for (DiscoverySelector selector : discoveryRequest.getSelectorsByType(DiscoverySelector.class)) {
+			update(digest, selector.toString());
+		}
+		for (DiscoveryFilter<?> filter : getDiscoveryFilters(discoveryRequest)) {
+			update(digest, filter.getClass().getName() + " " + filter);
+		}
+		for (File testClassesDir : testClassesDirs) {
+			updateClasspathEntry(digest, testClassesDir);
+		}
+		String classpath = System.getProperty("java.class.path", "");
+		for (String classpathEntry : classpath.split(File.pathSeparator)) {
+			updateClasspathEntry(digest, new File(classpathEntry));
+		}
+		return ByteString.of(digest.digest()).hex();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<DiscoveryFilter<?>> getDiscoveryFilters(EngineDiscoveryRequest discoveryRequest) {
+		return discoveryRequest.getFiltersByType((Class<DiscoveryFilter<?>>) (Class<?>) DiscoveryFilter.class);
+	}
+
+	/**
+	 * Returns the cached tests by engine id for the given key or null if there are none or they cannot be read.
+	 */
+	public Map<String, AvailableTests> get(String key) {
+		File entryFile = getEntryFile(key);
+		if (!entryFile.exists()) {
+			return null;
+		}
+		try (BufferedSource source = Okio.buffer(Okio.source(entryFile))) {
+			CacheEntry entry = entryAdapter.fromJson(source);
+			if (entry == null) {
+				return null;
+			}
+			Map<String, AvailableTests> availableTestsByEngine = new HashMap<>();
+			entry.testsByEngine.forEach((engineId, tests) -> {
+				AvailableTests availableTests = new AvailableTests();
+				for (CachedTest test : tests) {
+					availableTests.add(UniqueId.parse(test.uniqueId),
+							new ClusteredTestDetails(test.uniformPath, test.sourcePath, test.content, test.clusterId));
+				}
+				availableTestsByEngine.put(engineId, availableTests);
+			});
+			return availableTestsByEngine;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn(e, () -> "Failed to read cached test discovery from " + entryFile);
+			return null;
+		}
+	}
+
+	/** Stores the discovered tests by engine id under the given key and removes outdated entries. */
+	public void put(String key, Map<String, AvailableTests> availableTestsByEngine) {
+		Map<String, List<CachedTest>> testsByEngine = new HashMap<>();
+		availableTestsByEngine.forEach((engineId, availableTests) -> {
+			List<CachedTest> tests = new ArrayList<>();
+			for (ClusteredTestDetails testDetails : availableTests.getTestList()) {
+				tests.add(new CachedTest(availableTests.getUniqueId(testDetails.uniformPath).toString(),
+						testDetails.uniformPath, testDetails.sourcePath, testDetails.content, testDetails.clusterId));
+			}
+			testsByEngine.put(engineId, tests);
+		});
+
+		File entryFile = getEntryFile(key);
+		Path temporaryFile = null;
+		try {
+			Files.createDirectories(cacheDirectory.toPath());
+			temporaryFile = Files.createTempFile(cacheDirectory.toPath(), key, ".tmp");
+			try (BufferedSink sink = Okio.buffer(Okio.sink(temporaryFile))) {
+				entryAdapter.toJson(sink, new CacheEntry(testsByEngine));
+			}
+			// Concurrent test runs may write the same entry, so it must never be visible half-written
+			try {
+				Files.move(temporaryFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			LOGGER.warn(e, () -> "Failed to cache test discovery in " + entryFile);
+			if (temporaryFile != null) {
+				temporaryFile.toFile().delete();
+			}
+			return;
+		}
+		removeOutdatedEntries();
+	}
+
+	private void removeOutdatedEntries() {
+		File[] entryFiles = cacheDirectory.listFiles((directory, name) -> name.endsWith(".json"));
+		if (entryFiles == null || entryFiles.length <= MAX_ENTRIES) {
+			return;
+		}
+		Arrays.sort(entryFiles, Comparator.comparingLong(File::lastModified).reversed());
+		for (int i = MAX_ENTRIES; i < entryFiles.length; i++) {
+			File entryFile = entryFiles[i];
+			if (!entryFile.delete()) {
+				LOGGER.warn(() -> "Failed to delete outdated cached test discovery " + entryFile);
+			}
+		}
+	}
+
+	private File getEntryFile(String key) {
+		return new File(cacheDirectory, key + ".json");
+	}
+
+	/**
+	 * Adds the path, size and modification time of the given jar or of all files in the given class directory. Hashing
+	 * the contents would take about as long as the discovery itself.
+	 */
+	private static void updateClasspathEntry(MessageDigest digest, File classpathEntry) {
+		update(digest, classpathEntry.getAbsolutePath());
+		if (!classpathEntry.isDirectory()) {
+			updateFile(digest, classpathEntry.getName(), classpathEntry);
+			return;
+		}
+		Path root = classpathEntry.toPath();
+		try (Stream<Path> files = Files.walk(root)) {
+			files.filter(Files::isRegularFile).sorted()
+					.forEach(file -> updateFile(digest, root.relativize(file).toString(), file.toFile()));
+		} catch (IOException | RuntimeException e) {
+			// Makes sure that the key never matches an existing entry if the directory cannot be fingerprinted
+			LOGGER.warn(e, () -> "Failed to fingerprint classpath entry " + classpathEntry);
+			update(digest, String.valueOf(System.nanoTime()));
+		}
+	}
+
+	private static void updateFile(MessageDigest digest, String path, File file) {
+		update(digest, path + ":" + file.length() + ":" + file.lastModified());
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		// Separates the values, so that different inputs cannot produce the same byte sequence
+		digest.update((byte) 0);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+		}
+	}
+
+	/** The content of a cache file. */
+	private static class CacheEntry {
+
+		/** The discovered tests by engine id. */
+		private final Map<String, List<CachedTest>> testsByEngine;
+
+		private CacheEntry(Map<String, List<CachedTest>> testsByEngine) {
+			this.testsByEngine = testsByEngine;
+		}
+	}
+
+	/** A discovered test. */
+	private static class CachedTest {
+
+		/** The {@link UniqueId} of the test as string. */
+		private final String uniqueId;
+
+		/** @see ClusteredTestDetails#uniformPath */
+		private final String uniformPath;
+
+		/** @see ClusteredTestDetails#sourcePath */
+		private final String sourcePath;
+
+		/** @see ClusteredTestDetails#content */
+		private final String content;
+
+		/** @see ClusteredTestDetails#clusterId */
+		private final String clusterId;
+
+		private CachedTest(String uniqueId, String uniformPath, String sourcePath, String content, String clusterId) {
+			this.uniqueId = uniqueId;
+			this.uniformPath = uniformPath;
+			this.sourcePath = sourcePath;
+			this.content = content;
+			this.clusterId = clusterId;
+		}
+	}
+}
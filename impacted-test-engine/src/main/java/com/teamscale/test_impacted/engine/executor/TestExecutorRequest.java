@@ -1,10 +1,13 @@
 package com.teamscale.test_impacted.engine.executor;
 
+import com.teamscale.report.testwise.model.TestExecution;
 import org.junit.platform.engine.ConfigurationParameters;
 import org.junit.platform.engine.EngineExecutionListener;
 import org.junit.platform.engine.TestDescriptor;
 import org.junit.platform.engine.TestEngine;
 
+import java.util.function.Consumer;
+
 /** Wrapper class for an execution request passed to a {@link ITestExecutor}. */
 public class TestExecutorRequest {
 
@@ -20,12 +23,24 @@ public class TestExecutorRequest {
 	/** Configuration parameters. */
 	public final ConfigurationParameters configurationParameters;
 
+	/** Receives every {@link TestExecution} as soon as it is known. */
+	public final Consumer<TestExecution> testExecutionConsumer;
+
+	/**
+	 * The tests of the {@link #engineTestDescriptor} with their contents, which have been computed once for the whole
+	 * test run.
+	 */
+	public final AvailableTests availableTests;
+
 	public TestExecutorRequest(TestEngine testEngine, TestDescriptor engineTestDescriptor,
 							   EngineExecutionListener engineExecutionListener,
-							   ConfigurationParameters configurationParameters) {
+							   ConfigurationParameters configurationParameters,
+							   Consumer<TestExecution> testExecutionConsumer, AvailableTests availableTests) {
 		this.testEngine = testEngine;
 		this.engineTestDescriptor = engineTestDescriptor;
 		this.engineExecutionListener = engineExecutionListener;
 		this.configurationParameters = configurationParameters;
+		this.testExecutionConsumer = testExecutionConsumer;
+		this.availableTests = availableTests;
 	}
 }
@@ -0,0 +1,108 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.client.ClusteredTestDetails;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Distributes the available test clusters among several shards (e.g. CI containers) before Teamscale is asked for the
+ * impacted tests, so that each shard only queries and executes the impacted tests among its share of the available
+ * tests. The clusters are assigned longest-processing-time-first: ordered by their expected duration, each cluster is
+ * assigned to the shard with the least expected total duration so far, so the full test suite is split into parts of
+ * about the same duration. The impacted tests are a subset of each part, so the shards finish at about the same time on
+ * average, but the balance of a single run depends on which tests are impacted.
+ * <p>
+ * The assignment is deterministic, but it is only consistent between the shards if all of them use the same expected
+ * durations and discover the same tests. Therefore sharded runs never update the durations (each shard would only
+ * learn the durations of its own tests) and the durations file must be the same on all shards, e.g. from a previous
+ * unsharded run. Tests without a known duration are expected to take as long as an average known test and if no
+ * durations are known at all, every test counts the same.
+ */
+public class TestSharding {
+
+	/** Skip reason message if a test is assigned to another shard. */
+	/* package */ static final String OTHER_SHARD_REASON = "Test assigned to another shard.";
+
+	/** The index of this shard (starting at 0). */
+	private final int shardIndex;
+
+	/** The total number of shards. */
+	private final int shardCount;
+
+	/** The durations in milliseconds of previous executions by uniform path. */
+	private final Map<String, Long> expectedDurations;
+
+	/** The expected duration of tests that have not been executed before. */
+	private final long defaultDurationMillis;
+
+	/** Constructor. */
+	public TestSharding(int shardIndex, int shardCount, Map<String, Long> expectedDurations) {
+		this.shardIndex = shardIndex;
+		this.shardCount = shardCount;
+		this.expectedDurations = expectedDurations;
+		this.defaultDurationMillis = Math.max(1,
+				(long) expectedDurations.values().stream().mapToLong(Long::longValue).average().orElse(1));
+	}
+
+	/**
+	 * Returns the available tests assigned to this shard in their original order. Tests of the same cluster are always
+	 * assigned to the same shard, tests without a cluster form a cluster of their own.
+	 */
+	/* package */ List<ClusteredTestDetails> selectTests(List<ClusteredTestDetails> availableTests) {
+		Map<String, List<ClusteredTestDetails>> testsByCluster = new LinkedHashMap<>();
+		for (ClusteredTestDetails test : availableTests) {
+			testsByCluster.computeIfAbsent(getClusterKey(test), key -> new ArrayList<>()).add(test);
+		}
+		Map<String, Long> clusterDurations = new HashMap<>();
+		testsByCluster.forEach((clusterKey, tests) -> clusterDurations.put(clusterKey, getExpectedDuration(tests)));
+
+		List<String> clustersByDuration = new ArrayList<>(testsByCluster.keySet());
+		clustersByDuration.sort(Comparator.comparingLong((String clusterKey) -> clusterDurations.get(clusterKey))
+				.reversed().thenComparing(Comparator.naturalOrder()));
+
+		long[] shardDurations = new long[shardCount];
+		Set<String> clustersOfThisShard = new HashSet<>();
+		for (String clusterKey : clustersByDuration) {
+			int shard = 0;
+			for (int i = 1; i < shardCount; i++) {
+				if (shardDurations[i] < shardDurations[shard]) {
+					shard = i;
+				}
+			}
+			shardDurations[shard] += clusterDurations.get(clusterKey);
+			if (shard == shardIndex) {
+				clustersOfThisShard.add(clusterKey);
+			}
+		}
+
+		return availableTests.stream().filter(test -> clustersOfThisShard.contains(getClusterKey(test)))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the key that identifies the cluster of the test. The uniform path of tests without a cluster is prefixed,
+	 * so it cannot be confused with a cluster ID.
+	 */
+	private static String getClusterKey(ClusteredTestDetails test) {
+		if (test.clusterId == null) {
+			return "test:" + test.uniformPath;
+		}
+		return "cluster:" + test.clusterId;
+	}
+
+	private long getExpectedDuration(List<ClusteredTestDetails> tests) {
+		long duration = 0;
+		for (ClusteredTestDetails test : tests) {
+			duration += expectedDurations.getOrDefault(test.uniformPath, defaultDurationMillis);
+		}
+		return duration;
+	}
+}
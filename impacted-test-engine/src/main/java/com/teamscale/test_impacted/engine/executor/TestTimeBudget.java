@@ -0,0 +1,113 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.client.PrioritizableTest;
+import com.teamscale.report.ReportUtils;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Limits the wall-clock time spent executing impacted tests. The budget starts when the engine starts, i.e. when the
+ * budget is created. Tests are selected in the order in which they have been prioritized if their expected duration
+ * fits into the remaining budget. A test that does not fit is skipped, but shorter tests after it are still selected if
+ * they fit. The expected durations are taken from previous test runs. Tests without a known duration are expected to
+ * take as long as an average known test.
+ */
+public class TestTimeBudget {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestTimeBudget.class);
+
+	/** Skip reason message if an impacted test is not executed, because the time budget is used up. */
+	public static final String TIME_BUDGET_EXCEEDED_REASON = "Test not executed because the time budget is used up.";
+
+	/** The available time in milliseconds. */
+	private final long budgetMillis;
+
+	/** The durations in milliseconds of previous executions by uniform path. */
+	private final Map<String, Long> expectedDurations;
+
+	/** The expected duration of tests that have not been executed before. */
+	private final long defaultDurationMillis;
+
+	/** When the budget has been created (epoch millis). */
+	private final long startTime = System.currentTimeMillis();
+
+	/** Whether it has already been logged that a test did not fit into the budget. */
+	private boolean exceededLogged = false;
+
+	/** Constructor. */
+	public TestTimeBudget(long budgetMillis, Map<String, Long> expectedDurations) {
+		this.budgetMillis = budgetMillis;
+		this.expectedDurations = expectedDurations;
+		this.defaultDurationMillis = (long) expectedDurations.values().stream().mapToLong(Long::longValue).average()
+				.orElse(0);
+	}
+
+	/**
+	 * Returns the given prioritized tests that are expected to finish within the remaining budget in their original
+	 * order. Each test is checked against the budget that remains after the tests selected before it.
+	 */
+	/* package */ List<PrioritizableTest> selectTests(List<PrioritizableTest> tests) {
+		long remainingMillis = budgetMillis - (System.currentTimeMillis() - startTime);
+		List<PrioritizableTest> selectedTests = new ArrayList<>();
+		for (PrioritizableTest test : tests) {
+			long expectedDurationMillis = expectedDurations.getOrDefault(test.uniformPath, defaultDurationMillis);
+			if (expectedDurationMillis > remainingMillis) {
+				if (!exceededLogged) {
+					LOGGER.info(() -> "Time budget of " + budgetMillis
+							+ "ms is not sufficient for all impacted tests. Skipping tests that do not fit.");
+					exceededLogged = true;
+				}
+				continue;
+			}
+			remainingMillis -= expectedDurationMillis;
+			selectedTests.add(test);
+		}
+		return selectedTests;
+	}
+
+	/**
+	 * Reads the test durations from a file written by {@link #writeTestDurations(File, List)}. Returns an empty map if
+	 * the file does not exist or cannot be read.
+	 */
+	public static Map<String, Long> readTestDurations(File testDurationsFile) {
+		Map<String, Long> testDurations = new HashMap<>();
+		if (!testDurationsFile.exists()) {
+			return testDurations;
+		}
+		try {
+			for (TestExecution testExecution : ReportUtils.readTestExecutionReport(testDurationsFile)) {
+				testDurations.put(testExecution.getUniformPath(), testExecution.getDurationMillis());
+			}
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn(e, () -> "Failed to read test durations from " + testDurationsFile);
+		}
+		return testDurations;
+	}
+
+	/**
+	 * Updates the test durations in the given file with the durations of the given test executions. Durations of tests
+	 * that have not been executed this time are kept.
+	 */
+	public static void writeTestDurations(File testDurationsFile,
+										  List<TestExecution> testExecutions) throws IOException {
+		Map<String, Long> testDurations = readTestDurations(testDurationsFile);
+		for (TestExecution testExecution : testExecutions) {
+			if (testExecution.getResult() != ETestExecutionResult.SKIPPED) {
+				testDurations.put(testExecution.getUniformPath(), testExecution.getDurationMillis());
+			}
+		}
+		List<TestExecution> report = new ArrayList<>();
+		testDurations.forEach((uniformPath, durationMillis) -> report
+				.add(new TestExecution(uniformPath, durationMillis, ETestExecutionResult.PASSED)));
+		ReportUtils.writeTestExecutionReport(testDurationsFile, report);
+	}
+}
@@ -0,0 +1,171 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.test_impacted.controllers.ITestwiseCoverageAgentApi;
+import okhttp3.ResponseBody;
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+import retrofit2.Call;
+import retrofit2.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Notifies all Teamscale agents about test starts and ends concurrently, so the latency of a notification is that of the
+ * slowest agent instead of the sum of all agents. Each notification waits at most a configurable time for the agents.
+ * Agents that fail, reject notifications or time out repeatedly are considered dead and are not contacted for a while (circuit breaker), so a
+ * crashed agent does not slow down every test.
+ */
+/* package */ class TestwiseCoverageAgentNotifier {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestwiseCoverageAgentNotifier.class);
+
+	/** How long to wait for the agents to acknowledge a notification by default. */
+	/* package */ static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+	/** After how many consecutive failures an agent is no longer contacted. */
+	private static final int FAILURE_THRESHOLD = 3;
+
+	/** How long an agent is not contacted after it reached the {@link #FAILURE_THRESHOLD}. */
+	private static final long OPEN_CIRCUIT_MILLIS = 30000;
+
+	/** The agents to notify. */
+	private final List<AgentCircuit> agentCircuits = new ArrayList<>();
+
+	/** How long to wait for the agents to acknowledge a notification. */
+	private final long timeoutMillis;
+
+	/** Sends the notifications. Threads are daemons so a hanging agent never prevents the JVM from exiting. */
+	private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "Teamscale agent notifier");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Constructor. */
+	/* package */ TestwiseCoverageAgentNotifier(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis) {
+		this(testwiseCoverageAgentApis, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/** Constructor. */
+	/* package */ TestwiseCoverageAgentNotifier(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis,
+												long timeoutMillis) {
+		for (ITestwiseCoverageAgentApi testwiseCoverageAgentApi : testwiseCoverageAgentApis) {
+			agentCircuits.add(new AgentCircuit(testwiseCoverageAgentApi));
+		}
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/** Notifies all agents that the given test is about to start and waits until they are ready. */
+	/* package */ void testStarted(String testUniformPath) {
+		notifyAgents(agentApi -> agentApi.testStarted(testUniformPath), "start of " + testUniformPath);
+	}
+
+	/** Notifies all agents that the given test has finished and waits until they have recorded its coverage. */
+	/* package */ void testFinished(String testUniformPath) {
+		notifyAgents(agentApi -> agentApi.testFinished(testUniformPath), "end of " + testUniformPath);
+	}
+
+	private void notifyAgents(Function<ITestwiseCoverageAgentApi, Call<ResponseBody>> callFactory, String event) {
+		long now = System.currentTimeMillis();
+		List<AgentCircuit> notifiedCircuits = new ArrayList<>();
+		List<Call<ResponseBody>> calls = new ArrayList<>();
+		List<Future<Response<ResponseBody>>> responses = new ArrayList<>();
+		for (AgentCircuit agentCircuit : agentCircuits) {
+			if (!agentCircuit.isClosed(now)) {
+				continue;
+			}
+			Call<ResponseBody> call = callFactory.apply(agentCircuit.agentApi);
+			notifiedCircuits.add(agentCircuit);
+			calls.add(call);
+			responses.add(executor.submit(call::execute));
+		}
+
+		// All agents are contacted concurrently, so they share a single deadline
+		long deadline = now + timeoutMillis;
+		for (int i = 0; i < responses.size(); i++) {
+			AgentCircuit agentCircuit = notifiedCircuits.get(i);
+			try {
+				Response<ResponseBody> response = responses.get(i)
+						.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				if (response != null) {
+					closeBody(response);
+					if (!response.isSuccessful()) {
+						// The agent did not record the event, so the coverage of the test is lost or misattributed
+						LOGGER.error(() -> "Agent rejected " + event + " with status " + response.code());
+						agentCircuit.recordFailure();
+						continue;
+					}
+				}
+				agentCircuit.recordSuccess();
+			} catch (TimeoutException e) {
+				calls.get(i).cancel();
+				LOGGER.error(() -> "Agent did not acknowledge " + event + " within " + timeoutMillis + "ms.");
+				agentCircuit.recordFailure();
+			} catch (ExecutionException e) {
+				LOGGER.error(e.getCause(), () -> "Error contacting test wise coverage agent about " + event + ".");
+				agentCircuit.recordFailure();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				calls.subList(i, calls.size()).forEach(Call::cancel);
+				return;
+			}
+		}
+	}
+
+	/** Closes the body of the response, so that its connection can be reused for the next notification. */
+	private static void closeBody(Response<ResponseBody> response) {
+		ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+		if (body != null) {
+			body.close();
+		}
+	}
+
+	/** Tracks whether an agent is reachable. The circuit is open while the agent is considered dead. */
+	private static class AgentCircuit {
+
+		/** The agent. */
+		private final ITestwiseCoverageAgentApi agentApi;
+
+		/** The number of failed notifications since the last successful one. */
+		private int consecutiveFailures = 0;
+
+		/** Until when (epoch millis) the agent is not contacted. */
+		private long openUntil = 0;
+
+		private AgentCircuit(ITestwiseCoverageAgentApi agentApi) {
+			this.agentApi = agentApi;
+		}
+
+		/**
+		 * Returns whether the agent should be contacted. After the circuit was open for a while, the agent is tried
+		 * again and a single further failure opens the circuit again.
+		 */
+		private boolean isClosed(long now) {
+			return now >= openUntil;
+		}
+
+		private void recordSuccess() {
+			if (consecutiveFailures >= FAILURE_THRESHOLD) {
+				LOGGER.info(() -> "Agent is reachable again.");
+			}
+			consecutiveFailures = 0;
+		}
+
+		private void recordFailure() {
+			consecutiveFailures++;
+			if (consecutiveFailures >= FAILURE_THRESHOLD) {
+				openUntil = System.currentTimeMillis() + OPEN_CIRCUIT_MILLIS;
+				LOGGER.error(() -> "Agent failed " + consecutiveFailures + " times in a row. Not contacting it for the next "
+						+ OPEN_CIRCUIT_MILLIS + "ms.");
+			}
+		}
+	}
+}
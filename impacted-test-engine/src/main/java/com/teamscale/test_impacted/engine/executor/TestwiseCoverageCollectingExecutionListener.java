@@ -2,7 +2,6 @@ package com.teamscale.test_impacted.engine.executor;
 
 import com.teamscale.report.testwise.model.ETestExecutionResult;
 import com.teamscale.report.testwise.model.TestExecution;
-import com.teamscale.test_impacted.controllers.ITestwiseCoverageAgentApi;
 import com.teamscale.test_impacted.test_descriptor.ITestDescriptorResolver;
 import com.teamscale.test_impacted.test_descriptor.TestDescriptorUtils;
 import org.junit.platform.commons.logging.Logger;
@@ -13,12 +12,10 @@ import org.junit.platform.engine.TestExecutionResult;
 import org.junit.platform.engine.TestExecutionResult.Status;
 import org.junit.platform.engine.reporting.ReportEntry;
 
-import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static com.teamscale.test_impacted.test_descriptor.TestDescriptorUtils.isTestRepresentative;
 
@@ -30,11 +27,11 @@ class TestwiseCoverageCollectingExecutionListener implements EngineExecutionList
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TestwiseCoverageCollectingExecutionListener.class);
 
-	/** An API service to signal test start and end to the agent. */
-	private List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis;
+	/** Signals test start and end to the agents. */
+	private final TestwiseCoverageAgentNotifier agentNotifier;
 
-	/** List of tests that have been executed, skipped or failed. */
-	private final List<TestExecution> testExecutions = new ArrayList<>();
+	/** Receives the tests that have been executed, skipped or failed. */
+	private final Consumer<TestExecution> testExecutionConsumer;
 
 	/** Time when the current test execution started. */
 	private long executionStartTime;
@@ -43,12 +40,19 @@ class TestwiseCoverageCollectingExecutionListener implements EngineExecutionList
 
 	private final EngineExecutionListener delegateEngineExecutionListener;
 
-	TestwiseCoverageCollectingExecutionListener(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis,
+	/** Records the round trip time of every agent notification. */
+	private final EnginePhaseTimings phaseTimings;
+
+	TestwiseCoverageCollectingExecutionListener(TestwiseCoverageAgentNotifier agentNotifier,
 												ITestDescriptorResolver testDescriptorResolver,
-												EngineExecutionListener engineExecutionListener) {
-		this.testwiseCoverageAgentApis = testwiseCoverageAgentApis;
+												EngineExecutionListener engineExecutionListener,
+												Consumer<TestExecution> testExecutionConsumer,
+												EnginePhaseTimings phaseTimings) {
+		this.agentNotifier = agentNotifier;
+		this.testExecutionConsumer = testExecutionConsumer;
 		this.testDescriptorResolver = testDescriptorResolver;
 		this.delegateEngineExecutionListener = engineExecutionListener;
+		this.phaseTimings = phaseTimings;
 	}
 
 	@Override
@@ -66,8 +70,11 @@ class TestwiseCoverageCollectingExecutionListener implements EngineExecutionList
 		}
 
 		testDescriptorResolver.getUniformPath(testDescriptor).ifPresent(testUniformPath -> {
-			if (!AutoSkippingEngineExecutionListener.TEST_NOT_IMPACTED_REASON.equals(reason)) {
-				testExecutions.add(new TestExecution(testUniformPath, 0L, ETestExecutionResult.SKIPPED, reason));
+			// Tests of other shards are reported by the shard that executes them
+			if (!AutoSkippingEngineExecutionListener.TEST_NOT_IMPACTED_REASON.equals(reason)
+					&& !TestSharding.OTHER_SHARD_REASON.equals(reason)) {
+				testExecutionConsumer
+						.accept(new TestExecution(testUniformPath, 0L, ETestExecutionResult.SKIPPED, reason));
 			}
 			delegateEngineExecutionListener.executionSkipped(testDescriptor, reason);
 		});
@@ -82,13 +89,9 @@ class TestwiseCoverageCollectingExecutionListener implements EngineExecutionList
 	}
 
 	private void startTest(String testUniformPath) {
-		try {
-			for (ITestwiseCoverageAgentApi apiService : testwiseCoverageAgentApis) {
-				apiService.testStarted(testUniformPath).execute();
-			}
-		} catch (IOException e) {
-			LOGGER.error(e, () -> "Error while calling service api.");
-		}
+		long notificationStartNanos = System.nanoTime();
+		agentNotifier.testStarted(testUniformPath);
+		phaseTimings.record(EEnginePhase.AGENT_NOTIFICATION, notificationStartNanos);
 		executionStartTime = System.currentTimeMillis();
 	}
 
@@ -103,15 +106,11 @@ class TestwiseCoverageCollectingExecutionListener implements EngineExecutionList
 	}
 
 	private void endTest(TestExecutionResult testExecutionResult, String testUniformPath) {
-		try {
-			for (ITestwiseCoverageAgentApi apiService : testwiseCoverageAgentApis) {
-				apiService.testFinished(testUniformPath).execute();
-			}
-		} catch (IOException e) {
-			LOGGER.error(e, () -> "Error contacting test wise coverage agent.");
-		}
+		long notificationStartNanos = System.nanoTime();
+		agentNotifier.testFinished(testUniformPath);
+		phaseTimings.record(EEnginePhase.AGENT_NOTIFICATION, notificationStartNanos);
 
-		getTestExecution(testExecutionResult, testUniformPath).ifPresent(testExecutions::add);
+		getTestExecution(testExecutionResult, testUniformPath).ifPresent(testExecutionConsumer);
 	}
 
 	private Optional<TestExecution> getTestExecution(TestExecutionResult testExecutionResult, String testUniformPath) {
@@ -150,9 +149,4 @@ class TestwiseCoverageCollectingExecutionListener implements EngineExecutionList
 	public void reportingEntryPublished(TestDescriptor testDescriptor, ReportEntry entry) {
 		delegateEngineExecutionListener.reportingEntryPublished(testDescriptor, entry);
 	}
-
-	/** @see #testExecutions */
-	List<TestExecution> getTestExecutions() {
-		return testExecutions;
-	}
 }
@@ -1,6 +1,5 @@
 package com.teamscale.test_impacted.engine.executor;
 
-import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.test_impacted.controllers.ITestwiseCoverageAgentApi;
 import com.teamscale.test_impacted.test_descriptor.ITestDescriptorResolver;
 import com.teamscale.test_impacted.test_descriptor.TestDescriptorResolverRegistry;
@@ -11,23 +10,36 @@ import java.util.List;
 /** Test executor that records test wise coverage and executes the full {@link TestExecutorRequest}. */
 public class TestwiseCoverageCollectingTestExecutor implements ITestExecutor {
 
-	private List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis;
+	/** How long to wait for the agents to acknowledge the start or end of a test by default. */
+	public static final long DEFAULT_AGENT_NOTIFICATION_TIMEOUT_MILLIS =
+			TestwiseCoverageAgentNotifier.DEFAULT_TIMEOUT_MILLIS;
 
-	public TestwiseCoverageCollectingTestExecutor(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis) {
-		this.testwiseCoverageAgentApis = testwiseCoverageAgentApis;
+	/** Notifies the agents. Shared between all executions, so dead agents are remembered. */
+	private final TestwiseCoverageAgentNotifier agentNotifier;
+
+	/** Measures the durations of the execution phases. */
+	/* package */ final EnginePhaseTimings phaseTimings;
+
+	public TestwiseCoverageCollectingTestExecutor(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis,
+												  long agentNotificationTimeoutMillis,
+												  EnginePhaseTimings phaseTimings) {
+		this.agentNotifier = new TestwiseCoverageAgentNotifier(testwiseCoverageAgentApis,
+				agentNotificationTimeoutMillis);
+		this.phaseTimings = phaseTimings;
 	}
 
 	@Override
-	public List<TestExecution> execute(TestExecutorRequest testExecutorRequest) {
+	public void execute(TestExecutorRequest testExecutorRequest) {
 		ITestDescriptorResolver testDescriptorResolver = TestDescriptorResolverRegistry
 				.getTestDescriptorResolver(testExecutorRequest.testEngine);
 		TestwiseCoverageCollectingExecutionListener executionListener =
-				new TestwiseCoverageCollectingExecutionListener(testwiseCoverageAgentApis, testDescriptorResolver,
-						testExecutorRequest.engineExecutionListener);
+				new TestwiseCoverageCollectingExecutionListener(agentNotifier, testDescriptorResolver,
+						testExecutorRequest.engineExecutionListener, testExecutorRequest.testExecutionConsumer,
+						phaseTimings);
 
+		long startNanos = System.nanoTime();
 		testExecutorRequest.testEngine.execute(new ExecutionRequest(testExecutorRequest.engineTestDescriptor,
 				executionListener, testExecutorRequest.configurationParameters));
-
-		return executionListener.getTestExecutions();
+		phaseTimings.record(EEnginePhase.TEST_EXECUTION, startNanos);
 	}
 }
@@ -15,6 +15,9 @@ public class ServerOptions {
 	/** The access token of the user. */
 	private String userAccessToken;
 
+	/** Whether request bodies are compressed with gzip, which is only supported by some servers. */
+	private boolean compressRequests = false;
+
 	/** @see #url */
 	public String getUrl() {
 		return url;
@@ -35,6 +38,11 @@ public class ServerOptions {
 		return userAccessToken;
 	}
 
+	/** @see #compressRequests */
+	public boolean isCompressRequests() {
+		return compressRequests;
+	}
+
 	/** Returns the builder for {@link ServerOptions}. */
 	public static Builder builder() {
 		return new Builder();
@@ -73,6 +81,12 @@ public class ServerOptions {
 			return this;
 		}
 
+		/** @see #compressRequests */
+		public Builder compressRequests(boolean compressRequests) {
+			serverOptions.compressRequests = compressRequests;
+			return this;
+		}
+
 		/** Checks field conditions and returns the built {@link ServerOptions}. */
 		public ServerOptions build() {
 			TestEngineOptionUtils.assertNotBlank(serverOptions.url, "The server URL must be set.");
@@ -4,6 +4,7 @@ import com.teamscale.client.CommitDescriptor;
 import com.teamscale.client.StringUtils;
 import org.junit.platform.engine.ConfigurationParameters;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -22,6 +23,7 @@ public class TestEngineOptionUtils {
 				.project(propertyReader.getString("server.project"))
 				.userName(propertyReader.getString("server.userName"))
 				.userAccessToken(propertyReader.getString("server.userAccessToken"))
+				.compressRequests(Boolean.TRUE.equals(propertyReader.getBoolean("server.compressRequests")))
 				.build();
 
 		return TestEngineOptions.builder()
@@ -32,8 +34,17 @@ public class TestEngineOptionUtils {
 				.endCommit(propertyReader.getCommitDescriptor("endCommit"))
 				.baseline(propertyReader.getLong("baseline"))
 				.agentUrls(propertyReader.getStringList("agentsUrls"))
+				.agentNotificationTimeoutMillis(propertyReader.getLong("agentNotificationTimeoutMillis"))
 				.testEngineIds(propertyReader.getStringList("engines"))
 				.reportDirectory(propertyReader.getString("reportDirectory"))
+				.impactedTestsCacheDirectory(propertyReader.getString("impactedTestsCacheDirectory"))
+				.impactedTestsCacheTtlSeconds(propertyReader.getLong("impactedTestsCacheTtlSeconds"))
+				.testDiscoveryCacheDirectory(propertyReader.getString("testDiscoveryCacheDirectory"))
+				.testClassesDirs(propertyReader.getPathList("testClassesDirs"))
+				.testDurationsFile(propertyReader.getString("testDurationsFile"))
+				.timeBudgetSeconds(propertyReader.getLong("timeBudgetSeconds"))
+				.shardIndex(propertyReader.getInteger("shardIndex"))
+				.shardCount(propertyReader.getInteger("shardCount"))
 				.build();
 	}
 
@@ -92,8 +103,23 @@ public class TestEngineOptionUtils {
 			});
 		}
 
+		/** Reads a list of paths separated by the platform's path separator. */
+		private List<String> getPathList(String propertyName) {
+			return get(propertyName, pathsAsString -> {
+				if (StringUtils.isEmpty(pathsAsString)) {
+					return Collections.emptyList();
+				}
+
+				return Arrays.asList(pathsAsString.split(File.pathSeparator));
+			});
+		}
+
 		private Long getLong(String propertyName) {
 			return get(propertyName, Long::valueOf);
 		}
+
+		private Integer getInteger(String propertyName) {
+			return get(propertyName, Integer::valueOf);
+		}
 	}
 }
@@ -7,9 +7,14 @@ import com.teamscale.test_impacted.engine.ImpactedTestEngine;
 import com.teamscale.test_impacted.engine.ImpactedTestEngineConfiguration;
 import com.teamscale.test_impacted.engine.TestEngineRegistry;
 import com.teamscale.test_impacted.engine.executor.DelegatingTestExecutor;
+import com.teamscale.test_impacted.engine.executor.EnginePhaseTimings;
 import com.teamscale.test_impacted.engine.executor.ITestExecutor;
+import com.teamscale.test_impacted.engine.executor.ImpactedTestsCache;
 import com.teamscale.test_impacted.engine.executor.ImpactedTestsExecutor;
 import com.teamscale.test_impacted.engine.executor.ImpactedTestsProvider;
+import com.teamscale.test_impacted.engine.executor.TestDiscoveryCache;
+import com.teamscale.test_impacted.engine.executor.TestSharding;
+import com.teamscale.test_impacted.engine.executor.TestTimeBudget;
 import com.teamscale.test_impacted.engine.executor.TestwiseCoverageCollectingTestExecutor;
 import okhttp3.HttpUrl;
 import org.junit.platform.engine.TestEngine;
@@ -18,7 +23,9 @@ import java.io.File;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /** Represents options for the {@link ImpactedTestEngine}. */
@@ -48,12 +55,60 @@ public class TestEngineOptions {
 	/** The URLs (including port) at which the agents listen. May be empty but not null. */
 	private List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis = Collections.emptyList();
 
+	/**
+	 * How long to wait for the agents to acknowledge the start or end of a test. Agents that do not answer in time
+	 * repeatedly are no longer contacted for a while.
+	 */
+	private long agentNotificationTimeoutMillis =
+			TestwiseCoverageCollectingTestExecutor.DEFAULT_AGENT_NOTIFICATION_TIMEOUT_MILLIS;
+
 	/** The test engine ids of all {@link TestEngine}s to use. If empty all available {@link TestEngine}s are used. */
 	private Set<String> testEngineIds = Collections.emptySet();
 
 	/** The directory used to store test-wise coverage reports. Must be a writeable directory. */
 	private File reportDirectory;
 
+	/** The directory in which impacted tests are cached across test runs. May be null to disable the cache. */
+	private File impactedTestsCacheDirectory;
+
+	/** How long cached impacted tests are used before Teamscale is queried again. Defaults to one hour. */
+	private long impactedTestsCacheTtlSeconds = TimeUnit.HOURS.toSeconds(1);
+
+	/**
+	 * The directory in which the tests discovered by the delegate engines are cached across test runs. The cache is only
+	 * used if only impacted tests are executed and must not be combined with post-discovery filters like tags. May be
+	 * null to disable the cache.
+	 */
+	private File testDiscoveryCacheDirectory;
+
+	/**
+	 * The directories that contain the test classes. Their content is part of the key of the {@link
+	 * #testDiscoveryCacheDirectory test discovery cache}. May be empty but not null.
+	 */
+	private List<File> testClassesDirs = Collections.emptyList();
+
+	/**
+	 * The file in which the durations of executed tests are kept across test runs. They are used to estimate which
+	 * tests fit into the {@link #timeBudgetSeconds} and to distribute the tests among shards. Sharded runs only read
+	 * the file. May be null.
+	 */
+	private File testDurationsFile;
+
+	/**
+	 * The wall-clock time after which no further impacted tests are started. The remaining impacted tests are reported
+	 * as skipped. May be null to execute all impacted tests.
+	 */
+	private Long timeBudgetSeconds;
+
+	/**
+	 * The index (starting at 0) of the shard executed by this test run. Only the impacted tests assigned to this shard
+	 * are executed. May be null if tests are not sharded.
+	 */
+	private Integer shardIndex;
+
+	/** The total number of shards. May be null if tests are not sharded. */
+	private Integer shardCount;
+
 	/** @see #runImpacted */
 	private boolean isRunImpacted() {
 		return runImpacted;
@@ -65,26 +120,73 @@ public class TestEngineOptions {
 	}
 
 	public ImpactedTestEngineConfiguration createTestEngineConfiguration() {
-		ITestExecutor testExecutor = createTestExecutor();
+		EnginePhaseTimings phaseTimings = new EnginePhaseTimings();
+		ITestExecutor testExecutor = createTestExecutor(phaseTimings);
 		TestEngineRegistry testEngineRegistry = new TestEngineRegistry(testEngineIds);
 
-		return new ImpactedTestEngineConfiguration(reportDirectory, testEngineRegistry, testExecutor);
+		TestDiscoveryCache testDiscoveryCache = null;
+		if (testDiscoveryCacheDirectory != null && isRunImpacted() && !isRunAllTests()) {
+			testDiscoveryCache = new TestDiscoveryCache(testDiscoveryCacheDirectory, testClassesDirs);
+		}
+
+		// Each shard only executes some of the tests, so updating the durations would make the shards disagree
+		File updatedTestDurationsFile = shardCount == null ? testDurationsFile : null;
+		return ImpactedTestEngineConfiguration.builder()
+				.reportDirectory(reportDirectory)
+				.testDurationsFile(updatedTestDurationsFile)
+				.testEngineRegistry(testEngineRegistry)
+				.testExecutor(testExecutor)
+				.testDiscoveryCache(testDiscoveryCache)
+				.phaseTimings(phaseTimings)
+				.build();
 	}
 
-	private ITestExecutor createTestExecutor() {
+	private ITestExecutor createTestExecutor(EnginePhaseTimings phaseTimings) {
 		if (!isRunImpacted()) {
 			return new DelegatingTestExecutor();
 		}
 		if (isRunAllTests()) {
-			return new TestwiseCoverageCollectingTestExecutor(testwiseCoverageAgentApis);
+			return new TestwiseCoverageCollectingTestExecutor(testwiseCoverageAgentApis, agentNotificationTimeoutMillis,
+					phaseTimings);
+		}
+
+		TeamscaleClient client = TeamscaleClient.builder()
+				.baseUrl(serverOptions.getUrl())
+				.user(serverOptions.getUserName())
+				.accessToken(serverOptions.getUserAccessToken())
+				.projectId(serverOptions.getProject())
+				.requestLogFile(new File(reportDirectory, "server-request.txt"))
+				.compressRequests(serverOptions.isCompressRequests())
+				.build();
+		ImpactedTestsCache cache = null;
+		if (impactedTestsCacheDirectory != null) {
+			cache = new ImpactedTestsCache(impactedTestsCacheDirectory, serverOptions.getUrl(),
+					serverOptions.getProject(), TimeUnit.SECONDS.toMillis(impactedTestsCacheTtlSeconds));
 		}
+		ImpactedTestsProvider testsProvider = new ImpactedTestsProvider(client, baseline, endCommit, partition, cache,
+				phaseTimings);
 
-		TeamscaleClient client = new TeamscaleClient(serverOptions.getUrl(), serverOptions.getUserName(),
-				serverOptions.getUserAccessToken(), serverOptions.getProject(),
-				new File(reportDirectory, "server-request.txt"));
-		ImpactedTestsProvider testsProvider = new ImpactedTestsProvider(client, baseline, endCommit, partition);
+		Map<String, Long> testDurations = Collections.emptyMap();
+		if (testDurationsFile != null && (timeBudgetSeconds != null || shardCount != null)) {
+			testDurations = TestTimeBudget.readTestDurations(testDurationsFile);
+		}
+		TestTimeBudget timeBudget = null;
+		if (timeBudgetSeconds != null) {
+			timeBudget = new TestTimeBudget(TimeUnit.SECONDS.toMillis(timeBudgetSeconds), testDurations);
+		}
+		TestSharding sharding = null;
+		if (shardCount != null) {
+			sharding = new TestSharding(shardIndex, shardCount, testDurations);
+		}
 
-		return new ImpactedTestsExecutor(testwiseCoverageAgentApis, testsProvider);
+		return ImpactedTestsExecutor.builder()
+				.testwiseCoverageAgentApis(testwiseCoverageAgentApis)
+				.agentNotificationTimeoutMillis(agentNotificationTimeoutMillis)
+				.impactedTestsProvider(testsProvider)
+				.timeBudget(timeBudget)
+				.sharding(sharding)
+				.phaseTimings(phaseTimings)
+				.build();
 	}
 
 	/** Returns the builder for {@link TestEngineOptions}. */
@@ -146,6 +248,14 @@ public class TestEngineOptions {
 			return this;
 		}
 
+		/** @see #agentNotificationTimeoutMillis */
+		public Builder agentNotificationTimeoutMillis(Long agentNotificationTimeoutMillis) {
+			if (agentNotificationTimeoutMillis != null) {
+				testEngineOptions.agentNotificationTimeoutMillis = agentNotificationTimeoutMillis;
+			}
+			return this;
+		}
+
 		/** @see #testEngineIds */
 		public Builder testEngineIds(List<String> testEngineIds) {
 			testEngineOptions.testEngineIds = new HashSet<>(testEngineIds);
@@ -158,6 +268,65 @@ public class TestEngineOptions {
 			return this;
 		}
 
+		/** @see #impactedTestsCacheDirectory */
+		public Builder impactedTestsCacheDirectory(String impactedTestsCacheDirectory) {
+			if (impactedTestsCacheDirectory != null) {
+				testEngineOptions.impactedTestsCacheDirectory = new File(impactedTestsCacheDirectory);
+			}
+			return this;
+		}
+
+		/** @see #impactedTestsCacheTtlSeconds */
+		public Builder impactedTestsCacheTtlSeconds(Long impactedTestsCacheTtlSeconds) {
+			if (impactedTestsCacheTtlSeconds != null) {
+				testEngineOptions.impactedTestsCacheTtlSeconds = impactedTestsCacheTtlSeconds;
+			}
+			return this;
+		}
+
+		/** @see #testDiscoveryCacheDirectory */
+		public Builder testDiscoveryCacheDirectory(String testDiscoveryCacheDirectory) {
+			if (testDiscoveryCacheDirectory != null) {
+				testEngineOptions.testDiscoveryCacheDirectory = new File(testDiscoveryCacheDirectory);
+			}
+			return this;
+		}
+
+		/** @see #testClassesDirs */
+		public Builder testClassesDirs(List<String> testClassesDirs) {
+			if (testClassesDirs != null) {
+				testEngineOptions.testClassesDirs = testClassesDirs.stream().map(File::new)
+						.collect(Collectors.toList());
+			}
+			return this;
+		}
+
+		/** @see #testDurationsFile */
+		public Builder testDurationsFile(String testDurationsFile) {
+			if (testDurationsFile != null) {
+				testEngineOptions.testDurationsFile = new File(testDurationsFile);
+			}
+			return this;
+		}
+
+		/** @see #timeBudgetSeconds */
+		public Builder timeBudgetSeconds(Long timeBudgetSeconds) {
+			testEngineOptions.timeBudgetSeconds = timeBudgetSeconds;
+			return this;
+		}
+
+		/** @see #shardIndex */
+		public Builder shardIndex(Integer shardIndex) {
+			testEngineOptions.shardIndex = shardIndex;
+			return this;
+		}
+
+		/** @see #shardCount */
+		public Builder shardCount(Integer shardCount) {
+			testEngineOptions.shardCount = shardCount;
+			return this;
+		}
+
 		/** Checks field conditions and returns the built {@link TestEngineOptions}. */
 		public TestEngineOptions build() {
 			TestEngineOptionUtils.assertNotNull(testEngineOptions.endCommit, "End commit must be set.");
@@ -169,6 +338,18 @@ public class TestEngineOptions {
 				throw new AssertionError(
 						"Report directory must be readable directory: " + testEngineOptions.reportDirectory);
 			}
+			if (testEngineOptions.agentNotificationTimeoutMillis <= 0) {
+				throw new AssertionError("Agent notification timeout must be positive but was "
+						+ testEngineOptions.agentNotificationTimeoutMillis);
+			}
+			if ((testEngineOptions.shardIndex == null) != (testEngineOptions.shardCount == null)) {
+				throw new AssertionError("Shard index and shard count must be set together.");
+			}
+			if (testEngineOptions.shardCount != null && (testEngineOptions.shardIndex < 0
+					|| testEngineOptions.shardIndex >= testEngineOptions.shardCount)) {
+				throw new AssertionError("Shard index must be between 0 and " + (testEngineOptions.shardCount - 1)
+						+ " but was " + testEngineOptions.shardIndex);
+			}
 			return testEngineOptions;
 		}
 	}
@@ -0,0 +1,203 @@
+package com.teamscale.test_impacted.test_descriptor;
+
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes fingerprints of tests from their bytecode, which are sent to Teamscale as test content, so that it can tell
+ * which tests themselves have changed. The fingerprint of a test covers the bytecode of its test method and the
+ * class-level parts of its class and all superclasses, i.e. the class headers, fields and all methods that are not
+ * test methods (e.g. setup and lifecycle methods or helpers), since inherited and setup code is part of the test as
+ * well. Test methods are recognized by the test annotations of JUnit 4 and 5.
+ * <p>
+ * Debug information, e.g. line numbers and local variable names, is not part of the fingerprint, so moving a test
+ * within its file or changing another test method of the class does not change the fingerprint. Changing a field or a
+ * setup method changes the fingerprints of all tests of the class and its subclasses. Tests without a known test
+ * method, e.g. whole test classes, are fingerprinted with all methods of their classes.
+ * <p>
+ * Class files are read only once, so base classes shared by many test classes do not slow down the computation. They
+ * are kept by the location of the class file instead of the class name, so classes with the same name from different
+ * class path entries never share an entry. An instance should only be used for a single test run, since class files
+ * may be recompiled between test runs in the same JVM.
+ */
+public class TestClassFingerprinter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestClassFingerprinter.class);
+
+	/** The descriptors of the annotations that mark test methods. */
+	private static final Set<String> TEST_ANNOTATIONS = new HashSet<>(Arrays.asList(
+			"Lorg/junit/Test;",
+			"Lorg/junit/jupiter/api/Test;",
+			"Lorg/junit/jupiter/api/RepeatedTest;",
+			"Lorg/junit/jupiter/api/TestFactory;",
+			"Lorg/junit/jupiter/api/TestTemplate;",
+			"Lorg/junit/jupiter/params/ParameterizedTest;"));
+
+	/** Loads the class files of the test classes. */
+	private final ClassLoader classLoader;
+
+	/** The parsed class files by their URL. Empty if the class file cannot be read. */
+	private final Map<String, Optional<ClassFingerprint>> classFingerprints = new ConcurrentHashMap<>();
+
+	public TestClassFingerprinter(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Returns the fingerprint of the given test method of the given class or null if the class cannot be found. If the
+	 * method name is null, the fingerprint covers all methods of the class and its superclasses. Can be called
+	 * concurrently.
+	 */
+	public String computeFingerprint(String className, String methodName) {
+		List<ClassFingerprint> hierarchy = getClassHierarchy(className);
+		if (hierarchy.isEmpty()) {
+			LOGGER.debug(() -> "Unable to find test class " + className + " to compute its fingerprint");
+			return null;
+		}
+
+		boolean methodFound = methodName != null && hierarchy.stream()
+				.anyMatch(classFingerprint -> classFingerprint.methodNames.contains(methodName));
+		MessageDigest digest = createDigest();
+		for (ClassFingerprint classFingerprint : hierarchy) {
+			update(digest, classFingerprint.classLevelHash);
+			if (methodFound) {
+				classFingerprint.testMethodHashes.getOrDefault(methodName, Collections.emptyList())
+						.forEach(hash -> update(digest, hash));
+			} else {
+				classFingerprint.testMethodHashes.values()
+						.forEach(hashes -> hashes.forEach(hash -> update(digest, hash)));
+			}
+		}
+		return ByteString.of(digest.digest()).hex();
+	}
+
+	/**
+	 * Returns the given class and its superclasses that have a class file, e.g. not the ones of the JDK, starting with
+	 * the given class.
+	 */
+	private List<ClassFingerprint> getClassHierarchy(String className) {
+		List<ClassFingerprint> hierarchy = new ArrayList<>();
+		String currentClassName = className.replace('.', '/');
+		while (currentClassName != null && !currentClassName.equals("java/lang/Object")) {
+			Optional<ClassFingerprint> classFingerprint = getClassFingerprint(currentClassName);
+			if (!classFingerprint.isPresent()) {
+				break;
+			}
+			hierarchy.add(classFingerprint.get());
+			currentClassName = classFingerprint.get().superName;
+		}
+		return hierarchy;
+	}
+
+	/** Returns the fingerprint of the class with the given internal name or an empty optional without class file. */
+	private Optional<ClassFingerprint> getClassFingerprint(String internalClassName) {
+		URL classFileUrl = classLoader.getResource(internalClassName + ".class");
+		if (classFileUrl == null) {
+			return Optional.empty();
+		}
+		return classFingerprints.computeIfAbsent(classFileUrl.toString(), url -> readClassFile(classFileUrl));
+	}
+
+	private static Optional<ClassFingerprint> readClassFile(URL classFileUrl) {
+		try (InputStream classFile = classFileUrl.openStream();
+			 BufferedSource source = Okio.buffer(Okio.source(classFile))) {
+			ClassNode classNode = new ClassNode();
+			new ClassReader(source.readByteArray()).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			return Optional.of(new ClassFingerprint(classNode));
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn(e, () -> "Failed to read class file " + classFileUrl);
+			return Optional.empty();
+		}
+	}
+
+	private static boolean isTestMethod(MethodNode method) {
+		return method.visibleAnnotations != null && method.visibleAnnotations.stream()
+				.map(annotation -> annotation.desc).anyMatch(TEST_ANNOTATIONS::contains);
+	}
+
+	/** Returns the hash of the bytecode of the given class. */
+	private static String hash(ClassNode classNode) {
+		ClassWriter classWriter = new ClassWriter(0);
+		classNode.accept(classWriter);
+		return ByteString.of(classWriter.toByteArray()).sha256().hex();
+	}
+
+	/** Returns the hash of the bytecode of the given method. */
+	private static String hash(MethodNode method) {
+		ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "Method", null, "java/lang/Object", null);
+		method.accept(classWriter);
+		classWriter.visitEnd();
+		return ByteString.of(classWriter.toByteArray()).sha256().hex();
+	}
+
+	private static void update(MessageDigest digest, String hash) {
+		digest.update(hash.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+		}
+	}
+
+	/** The hashes of the parts of a single class file. */
+	private static class ClassFingerprint {
+
+		/** The internal name of the superclass or null if there is none. */
+		private final String superName;
+
+		/** The names of all methods of the class. */
+		private final Set<String> methodNames = new HashSet<>();
+
+		/** The hashes of the test methods by their name in the order in which they appear in the class file. */
+		private final Map<String, List<String>> testMethodHashes = new LinkedHashMap<>();
+
+		/** The hash of the class without its test methods. */
+		private final String classLevelHash;
+
+		/** Constructor. Removes the test methods from the given class. */
+		private ClassFingerprint(ClassNode classNode) {
+			this.superName = classNode.superName;
+			Iterator<MethodNode> methods = classNode.methods.iterator();
+			while (methods.hasNext()) {
+				MethodNode method = methods.next();
+				methodNames.add(method.name);
+				if (isTestMethod(method)) {
+					testMethodHashes.computeIfAbsent(method.name, name -> new ArrayList<>()).add(hash(method));
+					methods.remove();
+				}
+			}
+			this.classLevelHash = hash(classNode);
+		}
+	}
+}
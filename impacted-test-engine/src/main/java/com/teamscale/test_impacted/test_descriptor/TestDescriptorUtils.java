@@ -4,6 +4,7 @@ import com.teamscale.client.ClusteredTestDetails;
 import com.teamscale.client.TestDetails;
 import com.teamscale.test_impacted.commons.IndentingWriter;
 import com.teamscale.test_impacted.engine.executor.AvailableTests;
+import com.teamscale.test_impacted.engine.executor.CachedEngineTestDescriptor;
 import org.junit.platform.commons.logging.Logger;
 import org.junit.platform.commons.logging.LoggerFactory;
 import org.junit.platform.engine.TestDescriptor;
@@ -16,6 +17,7 @@ import org.junit.platform.engine.support.descriptor.MethodSource;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /** Class containing utility methods for {@link TestDescriptor}s. */
@@ -92,46 +94,78 @@ public class TestDescriptorUtils {
 
 	/** Returns {@link TestDetails#sourcePath} for a {@link TestDescriptor}. */
 	public static String getSource(TestDescriptor testDescriptor) {
+		return getClassName(testDescriptor).map(className -> className.replace('.', '/')).orElse(null);
+	}
+
+	/** Returns the fully qualified name of the class that contains the test or {@link Optional#empty()} if unknown. */
+	public static Optional<String> getClassName(TestDescriptor testDescriptor) {
 		Optional<TestSource> source = testDescriptor.getSource();
 		if (source.isPresent() && source.get() instanceof MethodSource) {
 			MethodSource ms = (MethodSource) source.get();
-			return ms.getClassName().replace('.', '/');
+			return Optional.of(ms.getClassName());
 		}
 		if (source.isPresent() && source.get() instanceof ClassSource) {
 			ClassSource classSource = (ClassSource) source.get();
-			return classSource.getClassName().replace('.', '/');
+			return Optional.of(classSource.getClassName());
+		}
+		return Optional.empty();
+	}
+
+	/** Returns the name of the test method or null if the test is not a method, e.g. a whole test class. */
+	private static String getMethodName(TestDescriptor testDescriptor) {
+		Optional<TestSource> source = testDescriptor.getSource();
+		if (source.isPresent() && source.get() instanceof MethodSource) {
+			return ((MethodSource) source.get()).getMethodName();
 		}
 		return null;
 	}
 
-	/** Returns the {@link AvailableTests} contained within the root {@link TestDescriptor}. */
-	public static AvailableTests getAvailableTests(TestEngine testEngine, TestDescriptor rootTestDescriptor) {
+	/**
+	 * Returns the {@link AvailableTests} contained within the root {@link TestDescriptor}. For a {@link
+	 * CachedEngineTestDescriptor} these are the cached tests. The content of each test is the fingerprint of its
+	 * bytecode (see {@link TestClassFingerprinter}), computed by the given fingerprinter. Computing the fingerprints
+	 * reads all test classes, so the result should be reused for the whole test run.
+	 */
+	public static AvailableTests getAvailableTests(TestEngine testEngine, TestDescriptor rootTestDescriptor,
+												   TestClassFingerprinter fingerprinter) {
+		if (rootTestDescriptor instanceof CachedEngineTestDescriptor) {
+			return ((CachedEngineTestDescriptor) rootTestDescriptor).availableTests;
+		}
+
 		AvailableTests availableTests = new AvailableTests();
 		ITestDescriptorResolver testDescriptorResolver = TestDescriptorResolverRegistry
 				.getTestDescriptorResolver(testEngine);
 
-		TestDescriptorUtils.streamTestRepresentatives(rootTestDescriptor)
-				.forEach(testDescriptor -> {
-					Optional<String> clusterId = testDescriptorResolver.getClusterId(testDescriptor);
-					Optional<String> uniformPath = testDescriptorResolver.getUniformPath(testDescriptor);
-					String source = TestDescriptorUtils.getSource(testDescriptor);
-
-					if (!uniformPath.isPresent()) {
-						LOGGER.error(() -> "Unable to determine uniform path for test descriptor: " + testDescriptor);
-						return;
-					}
-
-					if (!clusterId.isPresent()) {
-						LOGGER.error(
-								() -> "Unable to determine cluster id path for test descriptor: " + testDescriptor);
-						return;
-					}
+		List<TestDescriptor> testRepresentatives = TestDescriptorUtils.streamTestRepresentatives(rootTestDescriptor)
+				.collect(Collectors.toList());
+		// Computed in parallel, since reading the class files takes most of the time
+		List<String> fingerprints = testRepresentatives.parallelStream()
+				.map(testDescriptor -> getClassName(testDescriptor)
+						.map(className -> fingerprinter.computeFingerprint(className, getMethodName(testDescriptor)))
+						.orElse(null))
+				.collect(Collectors.toList());
+
+		for (int i = 0; i < testRepresentatives.size(); i++) {
+			TestDescriptor testDescriptor = testRepresentatives.get(i);
+			String content = fingerprints.get(i);
+			Optional<String> clusterId = testDescriptorResolver.getClusterId(testDescriptor);
+			Optional<String> uniformPath = testDescriptorResolver.getUniformPath(testDescriptor);
+			String source = getSource(testDescriptor);
+
+			if (!uniformPath.isPresent()) {
+				LOGGER.error(() -> "Unable to determine uniform path for test descriptor: " + testDescriptor);
+				continue;
+			}
 
-					ClusteredTestDetails testDetails = new ClusteredTestDetails(uniformPath.get(), source, null,
-							clusterId.get());
-					availableTests.add(testDescriptor.getUniqueId(), testDetails);
-				});
+			if (!clusterId.isPresent()) {
+				LOGGER.error(() -> "Unable to determine cluster id path for test descriptor: " + testDescriptor);
+				continue;
+			}
 
+			ClusteredTestDetails testDetails = new ClusteredTestDetails(uniformPath.get(), source, content,
+					clusterId.get());
+			availableTests.add(testDescriptor.getUniqueId(), testDetails);
+		}
 
 		return availableTests;
 	}
@@ -0,0 +1,77 @@
+package com.teamscale.test_impacted.controllers;
+
+import okhttp3.HttpUrl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link InProcessTestwiseCoverageAgentApi}. */
+class InProcessTestwiseCoverageAgentApiTest {
+
+	private static final int PORT = 48123;
+
+	private final FakeAgent agent = new FakeAgent();
+
+	private ObjectName objectName;
+
+	@BeforeEach
+	void registerAgent() throws JMException {
+		objectName = new ObjectName("com.teamscale:type=TestwiseCoverageAgent,port=" + PORT);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(agent, objectName);
+	}
+
+	@AfterEach
+	void unregisterAgent() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+
+	/** Tests that agents in this JVM are called directly and all others via HTTP. */
+	@Test
+	void callsAgentInThisJvmDirectly() throws IOException {
+		ITestwiseCoverageAgentApi api = ITestwiseCoverageAgentApi
+				.createService(HttpUrl.parse("http://localhost:" + PORT + "/"));
+
+		assertThat(api).isInstanceOf(InProcessTestwiseCoverageAgentApi.class);
+		assertThat(api.testStarted("MyTest/test()").execute().isSuccessful()).isTrue();
+		assertThat(api.testFinished("MyTest/test()").execute().isSuccessful()).isTrue();
+		assertThat(agent.events).containsExactly("start MyTest/test()", "end MyTest/test()");
+
+		assertThat(ITestwiseCoverageAgentApi.createService(HttpUrl.parse("http://localhost:" + (PORT + 1) + "/")))
+				.isNotInstanceOf(InProcessTestwiseCoverageAgentApi.class);
+	}
+
+	/** Management interface of the {@link FakeAgent}. */
+	public interface FakeAgentMBean {
+
+		/** Test start. */
+		void testStarted(String testId);
+
+		/** Test end. */
+		void testFinished(String testId);
+	}
+
+	/** Records the test events it receives. */
+	public static class FakeAgent implements FakeAgentMBean {
+
+		private final List<String> events = new ArrayList<>();
+
+		@Override
+		public void testStarted(String testId) {
+			events.add("start " + testId);
+		}
+
+		@Override
+		public void testFinished(String testId) {
+			events.add("end " + testId);
+		}
+	}
+}
@@ -39,6 +39,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -63,7 +64,10 @@ class InternalImpactedTestEngineTest {
 	private final ITestwiseCoverageAgentApi testwiseCoverageAgentApi = mock(ITestwiseCoverageAgentApi.class);
 
 	private InternalImpactedTestEngine createInternalImpactedTestEngine(ITestExecutor testExecutor) {
-		return new InternalImpactedTestEngine(testEngineRegistry, testExecutor, testDataWriter);
+		return new InternalImpactedTestEngine(ImpactedTestEngineConfiguration.builder()
+				.testEngineRegistry(testEngineRegistry)
+				.testExecutor(testExecutor)
+				.build(), testDataWriter);
 	}
 
 	@BeforeEach
@@ -95,8 +99,10 @@ class InternalImpactedTestEngineTest {
 
 	@Test
 	void impactedTestsAreExecutedCorrectly() {
-		ImpactedTestsExecutor testExecutor = new ImpactedTestsExecutor(
-				singletonList(testwiseCoverageAgentApi), impactedTestsProvider);
+		ImpactedTestsExecutor testExecutor = ImpactedTestsExecutor.builder()
+				.testwiseCoverageAgentApis(singletonList(testwiseCoverageAgentApi))
+				.impactedTestsProvider(impactedTestsProvider)
+				.build();
 		InternalImpactedTestEngine internalImpactedTestEngine = createInternalImpactedTestEngine(testExecutor);
 
 		setupTestEngineDiscoveries(
@@ -184,8 +190,10 @@ class InternalImpactedTestEngineTest {
 		verify(executionListener).executionFinished(impactedTestEngineDescriptor, successful());
 
 		// Ensure test data is written.
-		verify(testDataWriter).dumpTestDetails(any());
-		verify(testDataWriter).dumpTestExecutions(any());
+		verify(testDataWriter).writeTestDetails(any());
+		verify(testDataWriter, times(4)).writeTestExecution(any());
+		verify(testDataWriter).close();
+		verify(testDataWriter).writePhaseTimings(any());
 
 		verifyNoMoreInteractions(executionListener);
 		verifyNoMoreInteractions(testDataWriter);
@@ -0,0 +1,64 @@
+package com.teamscale.test_impacted.engine;
+
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.ReportUtils;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link TestDataWriter}. */
+class TestDataWriterTest {
+
+	/** Tests that the streamed records form valid reports once the writer is closed. */
+	@Test
+	void writesValidReports(@TempDir File reportDirectory) throws IOException {
+		File durationsFile = new File(reportDirectory, "durations/test-durations.json");
+		TestDataWriter writer = new TestDataWriter(reportDirectory, durationsFile);
+
+		writer.writeTestDetails(Collections.singletonList(new TestDetails("MyTest/a()", "MyTest", "content")));
+		writer.writeTestExecution(new TestExecution("MyTest/a()", 42, ETestExecutionResult.PASSED));
+		writer.writeTestExecution(new TestExecution("MyTest/b()", 0, ETestExecutionResult.SKIPPED, "Disabled"));
+		writer.close();
+
+		assertThat(ReportUtils.readTestExecutionReport(new File(reportDirectory, "test-execution.json")))
+				.extracting(TestExecution::getUniformPath).containsExactly("MyTest/a()", "MyTest/b()");
+		assertThat(readFile(new File(reportDirectory, "test-list.json"))).contains("MyTest/a()");
+		assertThat(ReportUtils.readTestExecutionReport(durationsFile)).extracting(TestExecution::getUniformPath)
+				.containsExactly("MyTest/a()");
+	}
+
+	/** Tests that every record is on disk as soon as it has been written. */
+	@Test
+	void flushesEveryRecord(@TempDir File reportDirectory) throws IOException {
+		TestDataWriter writer = new TestDataWriter(reportDirectory);
+
+		writer.writeTestDetails(Collections.singletonList(new TestDetails("MyTest/a()", "MyTest", "content")));
+		writer.writeTestExecution(new TestExecution("MyTest/a()", 42, ETestExecutionResult.PASSED));
+
+		assertThat(readFile(new File(reportDirectory, "test-list.json"))).contains("MyTest/a()");
+		assertThat(readFile(new File(reportDirectory, "test-execution.json"))).contains("MyTest/a()");
+		writer.close();
+	}
+
+	/** Tests that empty reports are written if no tests have been executed. */
+	@Test
+	void writesEmptyReports(@TempDir File reportDirectory) throws IOException {
+		new TestDataWriter(reportDirectory).close();
+
+		assertThat(readFile(new File(reportDirectory, "test-execution.json"))).isEqualTo("[]");
+		assertThat(readFile(new File(reportDirectory, "test-list.json"))).isEqualTo("[]");
+	}
+
+	private static String readFile(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+	}
+}
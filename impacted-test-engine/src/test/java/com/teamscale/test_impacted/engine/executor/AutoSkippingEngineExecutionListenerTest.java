@@ -8,7 +8,10 @@ import org.junit.platform.engine.UniqueId;
 import org.mockito.Mockito;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.dynamicTestCase;
 import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.testCase;
@@ -99,4 +102,36 @@ class AutoSkippingEngineExecutionListenerTest {
 
 		Mockito.verifyNoMoreInteractions(executionListenerMock);
 	}
+
+	/** Tests that tests of other shards and their containers are skipped with the dedicated reason. */
+	@Test
+	void testSkippingTestsOfOtherShards() {
+		UniqueId testClassId = rootId.append("CLASS", "TestClass");
+		UniqueId otherTestClassId = rootId.append("CLASS", "OtherTestClass");
+		UniqueId impactedTestId = testClassId.append("TEST", "impactedTest()");
+		UniqueId otherShardTestId = testClassId.append("TEST", "otherShardTest()");
+		UniqueId otherClassTestId = otherTestClassId.append("TEST", "otherShardTest()");
+
+		TestDescriptor impactedTest = testCase(impactedTestId);
+		TestDescriptor otherShardTest = testCase(otherShardTestId);
+		TestDescriptor testClass = testContainer(testClassId, impactedTest, otherShardTest);
+		TestDescriptor otherTestClass = testContainer(otherTestClassId, testCase(otherClassTestId));
+		TestDescriptor testRoot = testContainer(rootId, testClass, otherTestClass);
+
+		Map<UniqueId, String> skipReasons = new HashMap<>();
+		skipReasons.put(otherShardTestId, TestSharding.OTHER_SHARD_REASON);
+		skipReasons.put(otherClassTestId, TestSharding.OTHER_SHARD_REASON);
+		executionListener = new AutoSkippingEngineExecutionListener(Collections.singleton(impactedTestId),
+				skipReasons, executionListenerMock, testRoot);
+
+		executionListener.executionStarted(testRoot);
+		executionListener.executionStarted(testClass);
+		executionListener.executionStarted(impactedTest);
+		executionListener.executionFinished(impactedTest, successful());
+		executionListener.executionFinished(testClass, successful());
+		executionListener.executionFinished(testRoot, successful());
+
+		Mockito.verify(executionListenerMock).executionSkipped(otherShardTest, TestSharding.OTHER_SHARD_REASON);
+		Mockito.verify(executionListenerMock).executionSkipped(otherTestClass, TestSharding.OTHER_SHARD_REASON);
+	}
 }
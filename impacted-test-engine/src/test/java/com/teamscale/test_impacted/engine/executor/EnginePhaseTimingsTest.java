@@ -0,0 +1,36 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.test_impacted.engine.executor.EnginePhaseTimings.PhaseSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link EnginePhaseTimings}. */
+class EnginePhaseTimingsTest {
+
+	/** Tests that the summary contains the totals and percentiles of the recorded phases. */
+	@Test
+	void summarizesRecordedPhases() {
+		EnginePhaseTimings timings = new EnginePhaseTimings();
+		for (int millis = 1; millis <= 100; millis++) {
+			timings.recordDuration(EEnginePhase.AGENT_NOTIFICATION, TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+		timings.recordDuration(EEnginePhase.DISCOVERY, TimeUnit.MICROSECONDS.toNanos(500_250));
+
+		Map<String, PhaseSummary> summary = timings.createSummary();
+
+		assertThat(summary).containsOnlyKeys("DISCOVERY", "AGENT_NOTIFICATION");
+		assertThat(summary.keySet()).containsExactly("DISCOVERY", "AGENT_NOTIFICATION");
+		PhaseSummary notifications = summary.get("AGENT_NOTIFICATION");
+		assertThat(notifications.count).isEqualTo(100);
+		assertThat(notifications.totalMillis).isEqualTo(5050);
+		assertThat(notifications.p50Millis).isEqualTo(50);
+		assertThat(notifications.p90Millis).isEqualTo(90);
+		assertThat(notifications.p99Millis).isEqualTo(99);
+		assertThat(notifications.maxMillis).isEqualTo(100);
+		assertThat(summary.get("DISCOVERY").maxMillis).isEqualTo(500.25);
+	}
+}
@@ -0,0 +1,69 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.client.ClusteredTestDetails;
+import com.teamscale.client.CommitDescriptor;
+import com.teamscale.client.PrioritizableTest;
+import com.teamscale.client.PrioritizableTestCluster;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link ImpactedTestsCache}. */
+class ImpactedTestsCacheTest {
+
+	private static final CommitDescriptor END_COMMIT = new CommitDescriptor("master", 1234);
+
+	/** Tests that cached impacted tests are returned for identical inputs only. */
+	@Test
+	void returnsCachedTestsForIdenticalInputs(@TempDir File cacheDirectory) {
+		ImpactedTestsCache cache = new ImpactedTestsCache(cacheDirectory, "http://localhost", "project", 60000);
+		String key = cache.computeKey(null, END_COMMIT, "Unit Tests", tests("content"));
+		cache.put(key, Collections.singletonList(
+				new PrioritizableTestCluster("cluster", Collections.singletonList(new PrioritizableTest("Test1")))));
+
+		List<PrioritizableTestCluster> cachedTestClusters = cache
+				.get(cache.computeKey(null, END_COMMIT, "Unit Tests", tests("content")), false);
+
+		assertThat(cachedTestClusters).hasSize(1);
+		assertThat(cachedTestClusters.get(0).clusterId).isEqualTo("cluster");
+		assertThat(cachedTestClusters.get(0).tests).extracting(test -> test.uniformPath).containsExactly("Test1");
+		assertThat(cache.computeKey(null, END_COMMIT, "Unit Tests", tests("changed content"))).isNotEqualTo(key);
+		assertThat(cache.computeKey(1L, END_COMMIT, "Unit Tests", tests("content"))).isNotEqualTo(key);
+	}
+
+	/** Tests that expired entries are only used as fallback and that invalidated entries are gone. */
+	@Test
+	void expiredAndInvalidatedEntries(@TempDir File cacheDirectory) {
+		ImpactedTestsCache cache = new ImpactedTestsCache(cacheDirectory, "http://localhost", "project", -1);
+		String key = cache.computeKey(null, END_COMMIT, "Unit Tests", tests("content"));
+		cache.put(key, Collections.emptyList());
+
+		assertThat(cache.get(key, false)).isNull();
+		assertThat(cache.get(key, true)).isEmpty();
+
+		cache.invalidate(key);
+
+		assertThat(cache.get(key, true)).isNull();
+	}
+
+	/** Tests that only impacted tests of settled end commits may be cached. */
+	@Test
+	void onlySettledEndCommitsAreCacheable() {
+		long now = 1_000_000_000L;
+
+		assertThat(ImpactedTestsCache.isCacheable(new CommitDescriptor("master", "HEAD"), now)).isFalse();
+		assertThat(ImpactedTestsCache.isCacheable(new CommitDescriptor("master", now - 1000), now)).isFalse();
+		assertThat(ImpactedTestsCache.isCacheable(new CommitDescriptor("master", now - 3_600_000), now)).isTrue();
+		assertThat(ImpactedTestsCache.isCacheable(new CommitDescriptor("master", (now - 3_600_000) + "p1"), now))
+				.isTrue();
+	}
+
+	private static List<ClusteredTestDetails> tests(String content) {
+		return Collections.singletonList(new ClusteredTestDetails("Test1", "Test1", content, "cluster"));
+	}
+}
@@ -0,0 +1,79 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.client.ClusteredTestDetails;
+import com.teamscale.client.CommitDescriptor;
+import com.teamscale.client.PrioritizableTestCluster;
+import com.teamscale.client.TeamscaleClient;
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Tests the {@link ImpactedTestsProvider}. */
+class ImpactedTestsProviderTest {
+
+	private final List<ClusteredTestDetails> testDetails = Collections.singletonList(
+			new ClusteredTestDetails("FooTest/test()", "FooTest", "content", "FooTest"));
+
+	private final List<ClusteredTestDetails> otherTestDetails = Collections.singletonList(
+			new ClusteredTestDetails("BarTest/test()", "BarTest", "content", "BarTest"));
+
+	private final List<PrioritizableTestCluster> testClusters = Collections.singletonList(
+			new PrioritizableTestCluster("FooTest", Collections.emptyList()));
+
+	private final TeamscaleClient client = mock(TeamscaleClient.class);
+
+	private final ImpactedTestsProvider provider = new ImpactedTestsProvider(client, null,
+			new CommitDescriptor("master", 1), "Tests");
+
+	/** Tests that the answer of a prefetched query is used instead of querying Teamscale again. */
+	@Test
+	void usesPrefetchedQuery() {
+		answerQueries(CompletableFuture.completedFuture(Response.success(testClusters)));
+
+		provider.prefetchImpactedTests(testDetails);
+
+		assertThat(provider.getImpactedTestsFromTeamscale(testDetails)).isEqualTo(testClusters);
+		verify(client, times(1)).getImpactedTestsAsync(eq(testDetails), any(), any(), any(), anyLong(), any());
+	}
+
+	/** Tests that Teamscale is queried again if the tests changed since the query was prefetched. */
+	@Test
+	void ignoresPrefetchedQueryForOtherTests() {
+		answerQueries(CompletableFuture.completedFuture(Response.success(testClusters)));
+
+		provider.prefetchImpactedTests(otherTestDetails);
+		provider.getImpactedTestsFromTeamscale(testDetails);
+
+		verify(client).getImpactedTestsAsync(eq(otherTestDetails), any(), any(), any(), anyLong(), any());
+		verify(client).getImpactedTestsAsync(eq(testDetails), any(), any(), any(), anyLong(), any());
+	}
+
+	/** Tests that a failed query results in no impacted tests, so all tests are executed. */
+	@Test
+	void returnsNullIfQueryFailed() {
+		CompletableFuture<Response<List<PrioritizableTestCluster>>> failedQuery = new CompletableFuture<>();
+		failedQuery.completeExceptionally(new IOException("Connection refused"));
+		answerQueries(failedQuery);
+
+		provider.prefetchImpactedTests(testDetails);
+
+		assertThat(provider.getImpactedTestsFromTeamscale(testDetails)).isNull();
+	}
+
+	private void answerQueries(CompletableFuture<Response<List<PrioritizableTestCluster>>> answer) {
+		when(client.getImpactedTestsAsync(any(), any(), any(), any(), anyLong(), any())).thenReturn(answer);
+	}
+}
@@ -0,0 +1,58 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.UniqueId;
+
+import java.util.Collections;
+
+import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.dynamicTestCase;
+import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.testCase;
+import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.testContainer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link TestDescriptorPruning}. */
+class TestDescriptorPruningTest {
+
+	private final UniqueId engineId = UniqueId.forEngine("engine");
+
+	private final UniqueId firstClassId = engineId.append("class", "FirstClass");
+
+	private final UniqueId secondClassId = engineId.append("class", "SecondClass");
+
+	private final TestDescriptor impactedTest = dynamicTestCase(firstClassId.append("method", "impacted()"));
+
+	private final TestDescriptor otherTest = testCase(firstClassId.append("method", "other()"));
+
+	private final TestDescriptor firstClass = testContainer(firstClassId, otherTest, impactedTest);
+
+	private final TestDescriptor secondClass = testContainer(secondClassId,
+			testCase(secondClassId.append("method", "test()")));
+
+	private final TestDescriptor engine = testContainer(engineId, firstClass, secondClass);
+
+	/**
+	 * Tests that only the paths to the given tests remain and that exactly the original tree is restored afterwards,
+	 * without the descriptors that have been added during the execution.
+	 */
+	@Test
+	void prunesAndRestoresTree() {
+		TestDescriptorPruning pruning = TestDescriptorPruning
+				.prune(engine, Collections.singleton(impactedTest.getUniqueId()));
+
+		assertThat(engine.getChildren()).containsExactly(firstClass);
+		assertThat(firstClass.getChildren()).containsExactly(impactedTest);
+
+		TestDescriptor dynamicTest = testCase(firstClassId.append("dynamic", "#1"));
+		firstClass.addChild(dynamicTest);
+		TestDescriptor invocation = testCase(impactedTest.getUniqueId().append("invocation", "#1"));
+		impactedTest.addChild(invocation);
+		pruning.restore();
+
+		assertThat(engine.getChildren()).containsExactly(firstClass, secondClass);
+		assertThat(firstClass.getChildren()).containsExactly(otherTest, impactedTest);
+		assertThat(impactedTest.getChildren()).isEmpty();
+		assertThat(otherTest.getParent()).contains(firstClass);
+		assertThat(dynamicTest.getParent()).isEmpty();
+	}
+}
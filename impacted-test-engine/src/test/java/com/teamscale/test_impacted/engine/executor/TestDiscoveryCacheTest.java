@@ -0,0 +1,75 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.client.ClusteredTestDetails;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.EngineDiscoveryRequest;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Tests the {@link TestDiscoveryCache}. */
+class TestDiscoveryCacheTest {
+
+	private static final UniqueId TEST_UNIQUE_ID = UniqueId.forEngine("junit-jupiter")
+			.append("class", "com.example.MyTest").append("method", "myTest()");
+
+	/** Tests that the discovered tests are returned for identical requests only. */
+	@Test
+	void returnsCachedTestsForIdenticalRequests(@TempDir File cacheDirectory) {
+		TestDiscoveryCache cache = new TestDiscoveryCache(cacheDirectory);
+		List<String> engineIds = Collections.singletonList("junit-jupiter");
+		String key = cache.computeKey(engineIds, request("com.example.MyTest"));
+		AvailableTests availableTests = new AvailableTests();
+		availableTests.add(TEST_UNIQUE_ID,
+				new ClusteredTestDetails("com/example/MyTest/myTest()", "com/example/MyTest", null, "cluster"));
+		cache.put(key, Collections.singletonMap("junit-jupiter", availableTests));
+
+		Map<String, AvailableTests> cachedTests = cache.get(cache.computeKey(engineIds, request("com.example.MyTest")));
+
+		assertThat(cachedTests).containsOnlyKeys("junit-jupiter");
+		AvailableTests cachedAvailableTests = cachedTests.get("junit-jupiter");
+		assertThat(cachedAvailableTests.getTestList()).hasSize(1);
+		assertThat(cachedAvailableTests.getTestList().get(0).clusterId).isEqualTo("cluster");
+		assertThat(cachedAvailableTests.getUniqueId("com/example/MyTest/myTest()")).isEqualTo(TEST_UNIQUE_ID);
+		assertThat(cache.computeKey(engineIds, request("com.example.OtherTest"))).isNotEqualTo(key);
+		assertThat(cache.computeKey(Collections.singletonList("junit-vintage"), request("com.example.MyTest")))
+				.isNotEqualTo(key);
+		assertThat(cache.get(cache.computeKey(engineIds, request("com.example.OtherTest")))).isNull();
+	}
+
+	/** Tests that changes of the test classes in the given directories change the key. */
+	@Test
+	void keyDependsOnTestClasses(@TempDir File directory) throws IOException {
+		File testClassesDir = new File(directory, "classes");
+		File classFile = new File(testClassesDir, "com/example/MyTest.class");
+		Files.createDirectories(classFile.getParentFile().toPath());
+		Files.write(classFile.toPath(), new byte[]{1, 2, 3});
+		TestDiscoveryCache cache = new TestDiscoveryCache(new File(directory, "cache"),
+				Collections.singletonList(testClassesDir));
+		List<String> engineIds = Collections.singletonList("junit-jupiter");
+		String key = cache.computeKey(engineIds, request("com.example.MyTest"));
+
+		Files.write(classFile.toPath(), new byte[]{1, 2, 3, 4});
+
+		assertThat(cache.computeKey(engineIds, request("com.example.MyTest"))).isNotEqualTo(key);
+	}
+
+	private static EngineDiscoveryRequest request(String className) {
+		EngineDiscoveryRequest discoveryRequest = mock(EngineDiscoveryRequest.class);
+		List<DiscoverySelector> selectors = Collections.singletonList(DiscoverySelectors.selectClass(className));
+		when(discoveryRequest.getSelectorsByType(DiscoverySelector.class)).thenReturn(selectors);
+		return discoveryRequest;
+	}
+}
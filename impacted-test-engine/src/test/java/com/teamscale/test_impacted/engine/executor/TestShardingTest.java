@@ -0,0 +1,59 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.client.ClusteredTestDetails;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link TestSharding}. */
+class TestShardingTest {
+
+	private final List<ClusteredTestDetails> availableTests = Arrays.asList(
+			test("A1", "A"),
+			test("B1", "B"),
+			test("C1", "C"),
+			test("B2", "B"),
+			test("D1", null));
+
+	/** Tests that the clusters are balanced by duration and the tests keep their order. */
+	@Test
+	void balancesClustersByDuration() {
+		Map<String, Long> durations = new HashMap<>();
+		durations.put("A1", 100L);
+		durations.put("B1", 300L);
+		durations.put("B2", 300L);
+		durations.put("C1", 400L);
+		durations.put("D1", 200L);
+
+		// B (600) -> shard 0, C (400) -> shard 1, D1 (200) -> shard 1, A (100) -> shard 0
+		assertThat(uniformPaths(new TestSharding(0, 2, durations).selectTests(availableTests)))
+				.containsExactly("A1", "B1", "B2");
+		assertThat(uniformPaths(new TestSharding(1, 2, durations).selectTests(availableTests)))
+				.containsExactly("C1", "D1");
+	}
+
+	/** Tests that every test counts the same if no durations are known. */
+	@Test
+	void balancesClustersBySizeWithoutDurations() {
+		// B (2) -> shard 0, A (1) -> shard 1, C (1) -> shard 1, D1 (1) -> shard 0
+		assertThat(uniformPaths(new TestSharding(0, 2, Collections.emptyMap()).selectTests(availableTests)))
+				.containsExactly("B1", "B2", "D1");
+		assertThat(uniformPaths(new TestSharding(1, 2, Collections.emptyMap()).selectTests(availableTests)))
+				.containsExactly("A1", "C1");
+	}
+
+	private static ClusteredTestDetails test(String uniformPath, String clusterId) {
+		return new ClusteredTestDetails(uniformPath, null, null, clusterId);
+	}
+
+	private static List<String> uniformPaths(List<ClusteredTestDetails> tests) {
+		return tests.stream().map(test -> test.uniformPath).collect(Collectors.toList());
+	}
+}
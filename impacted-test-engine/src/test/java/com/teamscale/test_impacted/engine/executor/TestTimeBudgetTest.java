@@ -0,0 +1,72 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.client.PrioritizableTest;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link TestTimeBudget}. */
+class TestTimeBudgetTest {
+
+	/** Tests that each test is selected in order if it still fits into the remaining budget. */
+	@Test
+	void selectsPrioritizedTestsWithinBudget() {
+		Map<String, Long> durations = new HashMap<>();
+		durations.put("A", 20000L);
+		durations.put("B", 40000L);
+		durations.put("C", 30000L);
+		durations.put("E", 5000L);
+		TestTimeBudget budget = new TestTimeBudget(60000, durations);
+
+		// The unknown test D is expected to take as long as an average test (23.75 seconds). B does not fit anymore,
+		// but the shorter E after it still does.
+		assertThat(budget.selectTests(tests("A", "D", "B", "E"))).extracting(test -> test.uniformPath)
+				.containsExactly("A", "D", "E");
+		// Only the time that actually passed is subtracted from the budget, not the expected durations
+		assertThat(budget.selectTests(tests("C", "E"))).extracting(test -> test.uniformPath)
+				.containsExactly("C", "E");
+	}
+
+	/** Tests that the budget already runs while the engine is busy with anything but executing tests. */
+	@Test
+	void budgetStartsWithEngine() throws InterruptedException {
+		TestTimeBudget budget = new TestTimeBudget(50, Collections.singletonMap("A", 40L));
+
+		Thread.sleep(20);
+
+		assertThat(budget.selectTests(tests("A"))).isEmpty();
+	}
+
+	/** Tests that the durations of executed tests are merged into the existing ones. */
+	@Test
+	void updatesTestDurations(@TempDir File directory) throws IOException {
+		File durationsFile = new File(directory, "test-durations.json");
+		TestTimeBudget.writeTestDurations(durationsFile, Arrays.asList(
+				new TestExecution("A", 100, ETestExecutionResult.PASSED),
+				new TestExecution("B", 200, ETestExecutionResult.FAILURE)));
+		TestTimeBudget.writeTestDurations(durationsFile, Arrays.asList(
+				new TestExecution("A", 300, ETestExecutionResult.PASSED),
+				new TestExecution("B", 0, ETestExecutionResult.SKIPPED)));
+
+		Map<String, Long> durations = TestTimeBudget.readTestDurations(durationsFile);
+
+		assertThat(durations).containsEntry("A", 300L).containsEntry("B", 200L).hasSize(2);
+		assertThat(TestTimeBudget.readTestDurations(new File(directory, "missing.json"))).isEmpty();
+	}
+
+	private static List<PrioritizableTest> tests(String... uniformPaths) {
+		return Arrays.stream(uniformPaths).map(PrioritizableTest::new).collect(Collectors.toList());
+	}
+}
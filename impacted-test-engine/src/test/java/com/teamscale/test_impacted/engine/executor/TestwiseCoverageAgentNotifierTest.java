@@ -0,0 +1,76 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.test_impacted.controllers.ITestwiseCoverageAgentApi;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+import retrofit2.Call;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Tests the {@link TestwiseCoverageAgentNotifier}. */
+class TestwiseCoverageAgentNotifierTest {
+
+	private final ITestwiseCoverageAgentApi healthyAgent = mock(ITestwiseCoverageAgentApi.class);
+
+	private final ITestwiseCoverageAgentApi deadAgent = mock(ITestwiseCoverageAgentApi.class);
+
+	private final ITestwiseCoverageAgentApi hangingAgent = mock(ITestwiseCoverageAgentApi.class);
+
+	/** Tests that failing agents neither prevent notifying the others nor are contacted again after repeated failures. */
+	@Test
+	@SuppressWarnings("unchecked")
+	void notifiesAllAgentsAndStopsContactingDeadOnes() throws IOException {
+		when(healthyAgent.testStarted(anyString())).thenReturn(mock(Call.class));
+		Call<ResponseBody> failingCall = mock(Call.class);
+		when(failingCall.execute()).thenThrow(new IOException("Connection refused"));
+		when(deadAgent.testStarted(anyString())).thenReturn(failingCall);
+		Call<ResponseBody> hangingCall = mock(Call.class);
+		when(hangingCall.execute()).thenAnswer(invocation -> {
+			Thread.sleep(10000);
+			return null;
+		});
+		when(hangingAgent.testStarted(anyString())).thenReturn(hangingCall);
+
+		TestwiseCoverageAgentNotifier notifier = new TestwiseCoverageAgentNotifier(
+				Arrays.asList(deadAgent, hangingAgent, healthyAgent), 100);
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			notifier.testStarted("Test" + i);
+		}
+
+		// Only the first three notifications wait for the hanging agent
+		assertThat(System.currentTimeMillis() - start).isLessThan(3000);
+		verify(healthyAgent, times(5)).testStarted(anyString());
+		verify(deadAgent, times(3)).testStarted(anyString());
+		verify(hangingAgent, times(3)).testStarted(anyString());
+		verify(hangingCall, times(3)).cancel();
+	}
+
+	/** Tests that an agent that keeps rejecting notifications is treated like a dead agent. */
+	@Test
+	@SuppressWarnings("unchecked")
+	void stopsContactingAgentThatRejectsNotifications() throws IOException {
+		Call<ResponseBody> rejectedCall = mock(Call.class);
+		when(rejectedCall.execute()).thenReturn(Response.error(500, ResponseBody.create(null, "Internal error")));
+		when(deadAgent.testFinished(anyString())).thenReturn(rejectedCall);
+
+		TestwiseCoverageAgentNotifier notifier = new TestwiseCoverageAgentNotifier(
+				Collections.singletonList(deadAgent), 1000);
+		for (int i = 0; i < 5; i++) {
+			notifier.testFinished("Test" + i);
+		}
+
+		verify(deadAgent, times(3)).testFinished(anyString());
+	}
+}
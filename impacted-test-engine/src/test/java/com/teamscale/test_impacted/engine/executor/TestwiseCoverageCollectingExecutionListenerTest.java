@@ -11,6 +11,7 @@ import org.junit.platform.engine.UniqueId;
 import org.mockito.Mockito;
 import retrofit2.Call;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,8 +35,11 @@ class TestwiseCoverageCollectingExecutionListenerTest {
 
 	private final EngineExecutionListener executionListenerMock = mock(EngineExecutionListener.class);
 
+	private final List<TestExecution> testExecutions = new ArrayList<>();
+
 	private final TestwiseCoverageCollectingExecutionListener executionListener = new TestwiseCoverageCollectingExecutionListener(
-			singletonList(mockApi), resolver, executionListenerMock);
+			new TestwiseCoverageAgentNotifier(singletonList(mockApi)), resolver, executionListenerMock,
+			testExecutions::add, new EnginePhaseTimings());
 
 	private final UniqueId rootId = UniqueId.forEngine("dummy");
 
@@ -95,8 +99,6 @@ class TestwiseCoverageCollectingExecutionListenerTest {
 		verifyNoMoreInteractions(mockApi);
 		verifyNoMoreInteractions(executionListenerMock);
 
-		List<TestExecution> testExecutions = executionListener.getTestExecutions();
-
 		assertThat(testExecutions).hasSize(2);
 		assertThat(testExecutions).allSatisfy(testExecution -> {
 			assertThat(testExecution.getUniformPath()).isNotEqualTo("MyClass/nonImpactedTestCase()");
@@ -140,8 +142,6 @@ class TestwiseCoverageCollectingExecutionListenerTest {
 
 		verifyNoMoreInteractions(executionListenerMock);
 
-		List<TestExecution> testExecutions = executionListener.getTestExecutions();
-
 		assertThat(testExecutions).hasSize(2);
 		assertThat(testExecutions)
 				.allMatch(testExecution -> testExecution.getResult().equals(ETestExecutionResult.SKIPPED));
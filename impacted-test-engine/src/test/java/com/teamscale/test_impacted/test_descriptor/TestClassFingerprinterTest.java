@@ -0,0 +1,62 @@
+package com.teamscale.test_impacted.test_descriptor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link TestClassFingerprinter}. */
+class TestClassFingerprinterTest {
+
+	private final TestClassFingerprinter fingerprinter = new TestClassFingerprinter(getClass().getClassLoader());
+
+	/** Tests that fingerprints are stable and distinguish the test methods of a class. */
+	@Test
+	void computesStableFingerprintsPerTestMethod() {
+		String firstTest = fingerprinter.computeFingerprint(SubTest.class.getName(), "firstTest");
+		String secondTest = fingerprinter.computeFingerprint(SubTest.class.getName(), "secondTest");
+		String inheritedTest = fingerprinter.computeFingerprint(SubTest.class.getName(), "baseTest");
+
+		assertThat(firstTest).isNotNull().isNotEqualTo(secondTest).isNotEqualTo(inheritedTest)
+				.isEqualTo(new TestClassFingerprinter(getClass().getClassLoader())
+						.computeFingerprint(SubTest.class.getName(), "firstTest"));
+		assertThat(inheritedTest).isNotNull()
+				.isNotEqualTo(fingerprinter.computeFingerprint(BaseTest.class.getName(), "baseTest"));
+	}
+
+	/** Tests that a test without a test method covers all methods of its class. */
+	@Test
+	void fingerprintsWholeClassWithoutTestMethod() {
+		String wholeClass = fingerprinter.computeFingerprint(SubTest.class.getName(), null);
+
+		assertThat(wholeClass).isNotNull()
+				.isNotEqualTo(fingerprinter.computeFingerprint(SubTest.class.getName(), "firstTest"))
+				.isEqualTo(fingerprinter.computeFingerprint(SubTest.class.getName(), "unknownMethod"));
+		assertThat(fingerprinter.computeFingerprint("com.example.DoesNotExist", "test")).isNull();
+	}
+
+	private static class BaseTest {
+
+		void setUp() {
+			// Only needed for the class hierarchy
+		}
+
+		@Test
+		void baseTest() {
+			setUp();
+		}
+	}
+
+	private static class SubTest extends BaseTest {
+
+		@Test
+		void firstTest() {
+			setUp();
+		}
+
+		@Test
+		void secondTest() {
+			setUp();
+			setUp();
+		}
+	}
+}
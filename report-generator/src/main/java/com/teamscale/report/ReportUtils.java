@@ -3,6 +3,7 @@ package com.teamscale.report;
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.Types;
+import com.teamscale.client.EReportCompression;
 import com.teamscale.client.FileSystemUtils;
 import com.teamscale.client.TestDetails;
 import com.teamscale.report.testwise.ETestArtifactFormat;
@@ -25,53 +26,115 @@ public class ReportUtils {
 
 	private static Moshi moshi = new Moshi.Builder().build();
 
-	private static JsonAdapter<List<TestDetails>> testDetailsAdapter = moshi.<List<TestDetails>>adapter(
-			Types.newParameterizedType(List.class, TestDetails.class)).indent("\t");
+	/** Indentation used for human readable reports. */
+	private static final String INDENT = "\t";
 
-	private static JsonAdapter<List<TestExecution>> testExecutionAdapter = moshi.<List<TestExecution>>adapter(
-			Types.newParameterizedType(List.class, TestExecution.class)).indent("\t");
+	private static JsonAdapter<List<TestDetails>> testDetailsAdapter = moshi.adapter(
+			Types.newParameterizedType(List.class, TestDetails.class));
+
+	private static JsonAdapter<List<TestExecution>> testExecutionAdapter = moshi.adapter(
+			Types.newParameterizedType(List.class, TestExecution.class));
 
 	private static JsonAdapter<TestwiseCoverageReport> testwiseCoverageReportAdapter = moshi
-			.adapter(TestwiseCoverageReport.class).indent("\t");
+			.adapter(TestwiseCoverageReport.class);
 
 	/** Converts to given test list to a json report and writes it to the given file. */
 	public static void writeTestListReport(File reportFile, List<TestDetails> report) throws IOException {
-		writeReportToFile(reportFile, report, testDetailsAdapter);
+		writeTestListReport(reportFile, report, EReportCompression.NONE, false);
+	}
+
+	/**
+	 * Converts to given test list to a json report and writes it to the given file with the given compression. A
+	 * compact report is written without any whitespace.
+	 */
+	public static void writeTestListReport(File reportFile, List<TestDetails> report, EReportCompression compression,
+										   boolean compact) throws IOException {
+		writeReportToFile(reportFile, report, testDetailsAdapter, compression, compact);
 	}
 
 	/** Converts to given test execution report to a json report and writes it to the given file. */
 	public static void writeTestExecutionReport(File reportFile, List<TestExecution> report) throws IOException {
-		writeReportToFile(reportFile, report, testExecutionAdapter);
+		writeTestExecutionReport(reportFile, report, EReportCompression.NONE, false);
+	}
+
+	/**
+	 * Converts to given test execution report to a json report and writes it to the given file with the given
+	 * compression. A compact report is written without any whitespace.
+	 */
+	public static void writeTestExecutionReport(File reportFile, List<TestExecution> report,
+												EReportCompression compression, boolean compact) throws IOException {
+		writeReportToFile(reportFile, report, testExecutionAdapter, compression, compact);
+	}
+
+	/** Reads a test execution report written by {@link #writeTestExecutionReport(File, List)}. */
+	public static List<TestExecution> readTestExecutionReport(File reportFile) throws IOException {
+		try (BufferedSource source = EReportCompression.openDecompressed(reportFile)) {
+			List<TestExecution> report = testExecutionAdapter.fromJson(source);
+			if (report == null) {
+				return new ArrayList<>();
+			}
+			return report;
+		}
 	}
 
 	/** Converts to given testwise coverage report to a json report and writes it to the given file. */
 	public static void writeTestwiseCoverageReport(File reportFile, TestwiseCoverageReport report) throws IOException {
-		writeReportToFile(reportFile, report, testwiseCoverageReportAdapter);
+		writeTestwiseCoverageReport(reportFile, report, EReportCompression.NONE, false);
+	}
+
+	/**
+	 * Converts to given testwise coverage report to a json report and writes it to the given file with the given
+	 * compression. A compact report is written without any whitespace.
+	 */
+	public static void writeTestwiseCoverageReport(File reportFile, TestwiseCoverageReport report,
+												   EReportCompression compression, boolean compact) throws IOException {
+		writeReportToFile(reportFile, report, testwiseCoverageReportAdapter, compression, compact);
 	}
 
 	/** Converts to given report to a json string. For testing only. */
 	public static String getTestwiseCoverageReportAsString(TestwiseCoverageReport report) {
-		return testwiseCoverageReportAdapter.toJson(report);
+		return testwiseCoverageReportAdapter.indent(INDENT).toJson(report);
 	}
 
-	/** Writes the report object to the given file as json. */
-	private static <T> void writeReportToFile(File reportFile, T report, JsonAdapter<T> adapter) throws IOException {
-		File directory = reportFile.getParentFile();
+	/** Returns the indentation to use for reports in the given mode. */
+	public static String getIndent(boolean compact) {
+		if (compact) {
+			return "";
+		}
+		return INDENT;
+	}
+
+	/**
+	 * Opens a sink to the given report file that compresses the written data with the given compression. The parent
+	 * directory is created if it does not exist yet. The name of the file must end with the suffix of the compression
+	 * (see {@link EReportCompression#fromFileName(String)}), otherwise readers cannot decompress it.
+	 */
+	public static BufferedSink openReportSink(File reportFile, EReportCompression compression) throws IOException {
+		File directory = reportFile.getAbsoluteFile().getParentFile();
 		if (!directory.isDirectory() && !directory.mkdirs()) {
 			throw new IOException("Failed to create directory " + directory.getAbsolutePath());
 		}
-		try (BufferedSink sink = Okio.buffer(Okio.sink(reportFile))) {
-			adapter.toJson(sink, report);
+		return Okio.buffer(compression.compress(Okio.sink(reportFile)));
+	}
+
+	/** Writes the report object to the given file as json. */
+	private static <T> void writeReportToFile(File reportFile, T report, JsonAdapter<T> adapter,
+											  EReportCompression compression, boolean compact) throws IOException {
+		try (BufferedSink sink = openReportSink(reportFile, compression)) {
+			adapter.indent(getIndent(compact)).toJson(sink, report);
 		}
 	}
 
-	/** Recursively lists all files in the given directory that match the specified extension. */
+	/**
+	 * Recursively lists all files in the given directory that match the specified extension and reads their contents.
+	 * Compressed files are recognized by their suffix and decompressed transparently.
+	 */
 	public static <T> List<T> readObjects(ETestArtifactFormat format, Class<T[]> clazz,
 										  List<File> directoriesOrFiles) throws IOException {
 		List<File> files = listFiles(format, directoriesOrFiles);
 		ArrayList<T> result = new ArrayList<>();
 		for (File file : files) {
-			try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+			try (BufferedSource source = EReportCompression.openDecompressed(file)) {
 				T[] t = moshi.adapter(clazz).fromJson(source);
 				if (t != null) {
 					result.addAll(Arrays.asList(t));
@@ -81,10 +144,22 @@ public class ReportUtils {
 		return result;
 	}
 
-	/** Recursively lists all files of the given artifact type. */
+	/** Recursively lists all files of the given artifact type, including compressed ones. */
 	public static List<File> listFiles(ETestArtifactFormat format, List<File> directoriesOrFiles) {
 		return directoriesOrFiles.stream().flatMap(directory -> FileSystemUtils.listFilesRecursively(directory,
-				pathname -> pathname.isFile() && pathname.getName().startsWith(format.filePrefix) && FileSystemUtils
-						.getFileExtension(pathname).equalsIgnoreCase(format.extension)).stream()).collect(toList());
+				pathname -> pathname.isFile() && isFileOfFormat(format, pathname)).stream()).collect(toList());
+	}
+
+	/**
+	 * Checks name and extension of the given file. Json reports may be compressed, so a compression suffix is ignored
+	 * for them.
+	 */
+	private static boolean isFileOfFormat(ETestArtifactFormat format, File file) {
+		String name = file.getName();
+		if ("json".equals(format.extension)) {
+			name = EReportCompression.stripSuffix(name);
+		}
+		return name.startsWith(format.filePrefix) && format.extension
+				.equalsIgnoreCase(FileSystemUtils.getFileExtension(new File(name)));
 	}
 }
@@ -0,0 +1,279 @@
+package com.teamscale.report.jacoco.exec;
+
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IncompatibleExecDataVersionException;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads JaCoCo's binary .exec format through a reusable buffer. This is a replacement for {@link
+ * org.jacoco.core.data.ExecutionDataReader} that decodes the session and class execution blocks in place: Class
+ * execution records are passed to the {@link IClassExecutionVisitor} as a reused {@link ClassExecutionView} instead of
+ * a freshly allocated {@link org.jacoco.core.data.ExecutionData} with its own probe array. This allows to process
+ * testwise .exec files of several GB without producing garbage for every record.
+ * <p>
+ * The file is read in consecutive windows of {@link #DEFAULT_WINDOW_SIZE} bytes into the same heap buffer. A window
+ * always starts at a record boundary so records are never split between two windows. The file is not memory-mapped,
+ * since Java 8 cannot unmap a file explicitly: A mapping would keep the file locked on Windows until it is garbage
+ * collected, which breaks e.g. cleaning the build directory while the Gradle daemon is still running. Closing the
+ * reader releases the file immediately.
+ * <p>
+ * Besides reading the whole file, {@link #read(long, long)} allows to read only a range of blocks, e.g. a single
+ * session as recorded in a {@link SessionIndex}.
+ */
+public class BufferedExecutionDataReader implements Closeable {
+
+	/** The default number of bytes that are read at once. */
+	private static final int DEFAULT_WINDOW_SIZE = 1024 * 1024;
+
+	/** The maximum number of bytes a var int can occupy. */
+	private static final int MAX_VAR_INT_LENGTH = 5;
+
+	/** The channel of the .exec file. */
+	private final FileChannel channel;
+
+	/** The total size of the .exec file. */
+	private final long fileSize;
+
+	/** The number of bytes that are read at once. */
+	private final int windowSize;
+
+	/** The flyweight that is passed to the {@link #classExecutionVisitor}. */
+	private final ClassExecutionView classExecutionView = new ClassExecutionView();
+
+	/**
+	 * The window of the file that has been read last. Reused for all windows unless a record is larger than the
+	 * window size.
+	 */
+	private ByteBuffer buffer;
+
+	/** Offset of the current window in the file. */
+	private long windowStart = 0;
+
+	/** Offset of the block that is currently being read. */
+	private long blockOffset = 0;
+
+	/** The visitor for session info blocks. */
+	private ISessionInfoVisitor sessionInfoVisitor = null;
+
+	/** The visitor for class execution data blocks. */
+	private IClassExecutionVisitor classExecutionVisitor = null;
+
+	/** Constructor. */
+	public BufferedExecutionDataReader(File executionDataFile) throws IOException {
+		this(executionDataFile, DEFAULT_WINDOW_SIZE);
+	}
+
+	/** Constructor. Allows to customize the window size for testing. */
+	/* package */ BufferedExecutionDataReader(File executionDataFile, int windowSize) throws IOException {
+		this.channel = FileChannel.open(executionDataFile.toPath(), StandardOpenOption.READ);
+		this.fileSize = channel.size();
+		this.windowSize = windowSize;
+		this.buffer = ByteBuffer.allocate((int) Math.min(windowSize, fileSize));
+		// Nothing has been read yet
+		this.buffer.limit(0);
+	}
+
+	/** @see #sessionInfoVisitor */
+	public void setSessionInfoVisitor(ISessionInfoVisitor sessionInfoVisitor) {
+		this.sessionInfoVisitor = sessionInfoVisitor;
+	}
+
+	/** @see #classExecutionVisitor */
+	public void setClassExecutionVisitor(IClassExecutionVisitor classExecutionVisitor) {
+		this.classExecutionVisitor = classExecutionVisitor;
+	}
+
+	/**
+	 * Returns the offset in the file of the block that is currently being read. When called from one of the visitors,
+	 * this is the offset of the block that is being visited.
+	 */
+	public long getBlockOffset() {
+		return blockOffset;
+	}
+
+	/** Returns the size of the .exec file in bytes. */
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * Reads all blocks of the file and passes them to the registered visitors.
+	 *
+	 * @return <code>true</code> if at least one block has been read
+	 */
+	public boolean read() throws IOException {
+		readWindow(0, 0);
+		if (fileSize == 0) {
+			return false;
+		}
+		require(1);
+		if (buffer.get(0) != ExecutionDataWriter.BLOCK_HEADER) {
+			throw new IOException("Invalid execution data file.");
+		}
+		readBlocks(fileSize);
+		return true;
+	}
+
+	/**
+	 * Reads all blocks in the given range of the file and passes them to the registered visitors. The range must start
+	 * at a block boundary and must not cut a block in half, e.g. a session taken from a {@link SessionIndex}. If the
+	 * range starts within the window that has been read last, the window is reused, so reading many small ranges that
+	 * are close to each other does not read the same part of the file again and again.
+	 */
+	public void read(long offset, long length) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > fileSize) {
+			throw new IllegalArgumentException(
+					"Range " + offset + "+" + length + " exceeds execution data file of size " + fileSize);
+		}
+		if (offset >= windowStart && offset - windowStart <= buffer.limit()) {
+			buffer.position((int) (offset - windowStart));
+		} else {
+			readWindow(offset, 0);
+		}
+		readBlocks(offset + length);
+	}
+
+	/** Reads blocks from the current position until the given end offset is reached. */
+	private void readBlocks(long end) throws IOException {
+		while (getPosition() < end) {
+			blockOffset = getPosition();
+			require(1);
+			readBlock(buffer.get());
+		}
+	}
+
+	/** Reads the contents of a block of the given type. */
+	private void readBlock(byte type) throws IOException {
+		switch (type) {
+			case ExecutionDataWriter.BLOCK_HEADER:
+				readHeader();
+				break;
+			case ExecutionDataWriter.BLOCK_SESSIONINFO:
+				readSessionInfo();
+				break;
+			case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+				readExecutionData();
+				break;
+			default:
+				throw new IOException(String.format("Unknown block type %x.", type));
+		}
+	}
+
+	private void readHeader() throws IOException {
+		require(4);
+		if (buffer.getChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid execution data file.");
+		}
+		char version = buffer.getChar();
+		if (version != ExecutionDataWriter.FORMAT_VERSION) {
+			throw new IncompatibleExecDataVersionException(version);
+		}
+	}
+
+	private void readSessionInfo() throws IOException {
+		require(2);
+		int idLength = Short.toUnsignedInt(buffer.getShort(buffer.position()));
+		require(2 + idLength + 16);
+		String id = ModifiedUtf8.decode(buffer, buffer.position() + 2, idLength);
+		buffer.position(buffer.position() + 2 + idLength);
+		long start = buffer.getLong();
+		long dump = buffer.getLong();
+		if (sessionInfoVisitor != null) {
+			sessionInfoVisitor.visitSessionInfo(new SessionInfo(id, start, dump));
+		}
+	}
+
+	/**
+	 * Reads a class execution data record, which consists of the class ID (long), the class name (modified UTF-8), the
+	 * number of probes (var int) and the bit-packed probes. We first determine the total length of the record and then
+	 * make sure it is completely in the buffer before pointing the {@link #classExecutionView} to it.
+	 */
+	private void readExecutionData() throws IOException {
+		require(8 + 2);
+		int nameLength = Short.toUnsignedInt(buffer.getShort(buffer.position() + 8));
+		int probeCountOffset = 8 + 2 + nameLength;
+		ensureAvailable(probeCountOffset + MAX_VAR_INT_LENGTH);
+		require(probeCountOffset + 1);
+
+		int index = buffer.position() + probeCountOffset;
+		int probeCount = 0;
+		int shift = 0;
+		int currentByte;
+		do {
+			if (index >= buffer.limit()) {
+				throw new EOFException("Unexpected end of execution data file.");
+			}
+			currentByte = buffer.get(index++);
+			probeCount |= (currentByte & 0x7F) << shift;
+			shift += 7;
+		} while ((currentByte & 0x80) != 0);
+
+		int probesOffset = index - buffer.position();
+		int recordLength = probesOffset + ((probeCount + 7) >>> 3);
+		// This may read a new window, so all absolute offsets have to be computed afterwards
+		require(recordLength);
+
+		int recordStart = buffer.position();
+		classExecutionView.set(buffer, buffer.getLong(recordStart), recordStart + 8 + 2, nameLength, probeCount,
+				recordStart + probesOffset);
+		buffer.position(recordStart + recordLength);
+		if (classExecutionVisitor != null) {
+			classExecutionVisitor.visitClassExecution(classExecutionView);
+		}
+	}
+
+	/** Returns the absolute read position in the file. */
+	private long getPosition() {
+		return windowStart + buffer.position();
+	}
+
+	/** Ensures that the given number of bytes can be read from the current position or throws an {@link EOFException}. */
+	private void require(int byteCount) throws IOException {
+		ensureAvailable(byteCount);
+		if (buffer.remaining() < byteCount) {
+			throw new EOFException("Unexpected end of execution data file.");
+		}
+	}
+
+	/**
+	 * Makes sure that at least the given number of bytes starting at the current position are in the buffer, unless
+	 * the end of the file is reached before.
+	 */
+	private void ensureAvailable(int byteCount) throws IOException {
+		if (buffer.remaining() >= byteCount || windowStart + buffer.limit() >= fileSize) {
+			return;
+		}
+		readWindow(getPosition(), byteCount);
+	}
+
+	/** Reads the window at at the given position that has at least the given size if the file is big enough. */
+	private void readWindow(long position, int minimumSize) throws IOException {
+		int size = (int) Math.min(Math.max(windowSize, minimumSize), fileSize - position);
+		if (buffer.capacity() < size) {
+			buffer = ByteBuffer.allocate(size);
+		}
+		buffer.clear();
+		buffer.limit(size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of execution data file.");
+			}
+		}
+		buffer.flip();
+		windowStart = position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,114 @@
+package com.teamscale.report.jacoco.exec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view on a single class execution data record of an .exec file. In contrast to JaCoCo's {@link
+ * org.jacoco.core.data.ExecutionData} the probes are not copied into a boolean array, but are read directly from the
+ * underlying buffer.
+ * <p>
+ * The same instance is reused for all records that are read by a {@link BufferedExecutionDataReader}. It is therefore
+ * only valid during the call to {@link IClassExecutionVisitor#visitClassExecution(ClassExecutionView)} and must not be
+ * stored.
+ */
+public class ClassExecutionView {
+
+	/** The buffer holding the record. */
+	private ByteBuffer buffer;
+
+	/** The class ID (CRC64 of the class file). */
+	private long classId;
+
+	/** Absolute offset of the modified UTF-8 encoded class name in {@link #buffer}. */
+	private int nameOffset;
+
+	/** Length of the encoded class name in bytes. */
+	private int nameLength;
+
+	/** Number of probes of the class. */
+	private int probeCount;
+
+	/** Absolute offset of the bit-packed probe array in {@link #buffer}. */
+	private int probesOffset;
+
+	/** Constructor. */
+	/* package */ ClassExecutionView() {
+	}
+
+	/** Points this view to the record at the given buffer offsets. */
+	/* package */ void set(ByteBuffer buffer, long classId, int nameOffset, int nameLength, int probeCount,
+						   int probesOffset) {
+		this.buffer = buffer;
+		this.classId = classId;
+		this.nameOffset = nameOffset;
+		this.nameLength = nameLength;
+		this.probeCount = probeCount;
+		this.probesOffset = probesOffset;
+	}
+
+	/** @see #classId */
+	public long getClassId() {
+		return classId;
+	}
+
+	/**
+	 * Returns the VM name of the class (e.g. com/company/Example). The name is decoded on every call, so callers
+	 * should only ask for it when it is actually needed.
+	 */
+	public String getName() {
+		return ModifiedUtf8.decode(buffer, nameOffset, nameLength);
+	}
+
+	/** @see #probeCount */
+	public int getProbeCount() {
+		return probeCount;
+	}
+
+	/** Returns whether the probe with the given index has been executed. */
+	public boolean isProbeHit(int probeId) {
+		return (buffer.get(probesOffset + (probeId >>> 3)) & (1 << (probeId & 7))) != 0;
+	}
+
+	/** Returns whether at least one probe of the class has been executed. */
+	public boolean hasHits() {
+		int probeBytes = getProbeByteCount();
+		for (int i = 0; i < probeBytes; i++) {
+			if (buffer.get(probesOffset + i) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns a copy of the probes as boolean array like {@link org.jacoco.core.data.ExecutionData#getProbes()}. */
+	public boolean[] copyProbes() {
+		boolean[] probes = new boolean[probeCount];
+		mergeInto(probes);
+		return probes;
+	}
+
+	/**
+	 * Merges the executed probes of this view into the given array, i.e. sets all entries to true that have been
+	 * executed according to this record.
+	 */
+	public void mergeInto(boolean[] probes) {
+		int probeBytes = getProbeByteCount();
+		for (int i = 0; i < probeBytes; i++) {
+			int packedProbes = buffer.get(probesOffset + i);
+			if (packedProbes == 0) {
+				continue;
+			}
+			int end = Math.min(probeCount, (i + 1) * 8);
+			for (int probeId = i * 8; probeId < end; probeId++) {
+				if ((packedProbes & (1 << (probeId & 7))) != 0) {
+					probes[probeId] = true;
+				}
+			}
+		}
+	}
+
+	/** Returns the number of bytes the bit-packed probes occupy. */
+	private int getProbeByteCount() {
+		return (probeCount + 7) >>> 3;
+	}
+}
@@ -0,0 +1,48 @@
+package com.teamscale.report.jacoco.exec;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Merges all sessions read by one or more {@link BufferedExecutionDataReader}s into a single {@link Dump}. Probes of
+ * classes that have already been seen are merged in place, so only one {@link ExecutionData} is allocated per class
+ * no matter how many sessions the files contain.
+ */
+public class ExecutionDataMerger implements ISessionInfoVisitor, IClassExecutionVisitor {
+
+	/** The merged execution data. */
+	private final ExecutionDataStore store = new ExecutionDataStore();
+
+	/** All sessions that have been read. */
+	private final SessionInfoStore sessionInfoStore = new SessionInfoStore();
+
+	@Override
+	public void visitSessionInfo(SessionInfo info) {
+		sessionInfoStore.visitSessionInfo(info);
+	}
+
+	@Override
+	public void visitClassExecution(ClassExecutionView classExecution) {
+		ExecutionData executionData = store.get(classExecution.getClassId());
+		if (executionData == null) {
+			store.put(new ExecutionData(classExecution.getClassId(), classExecution.getName(),
+					classExecution.copyProbes()));
+			return;
+		}
+		boolean[] probes = executionData.getProbes();
+		if (probes.length != classExecution.getProbeCount()) {
+			throw new IllegalStateException(String.format("Incompatible execution data for class %s with id %016x.",
+					executionData.getName(), Long.valueOf(executionData.getId())));
+		}
+		classExecution.mergeInto(probes);
+	}
+
+	/** Returns a {@link Dump} with the merged execution data and a session with the given ID that spans all sessions. */
+	public Dump createDump(String sessionId) {
+		return new Dump(sessionInfoStore.getMerged(sessionId), store);
+	}
+}
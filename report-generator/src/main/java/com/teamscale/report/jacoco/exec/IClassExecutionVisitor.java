@@ -0,0 +1,11 @@
+package com.teamscale.report.jacoco.exec;
+
+/** Callback for class execution data records read by a {@link BufferedExecutionDataReader}. */
+public interface IClassExecutionVisitor {
+
+	/**
+	 * Called for every class execution data record. The given view is only valid during this call and will be reused
+	 * for the next record.
+	 */
+	void visitClassExecution(ClassExecutionView classExecution);
+}
@@ -0,0 +1,51 @@
+package com.teamscale.report.jacoco.exec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decoder for the modified UTF-8 encoding used by {@link java.io.DataOutput#writeUTF(String)}, which is how JaCoCo
+ * writes strings to .exec files. Works directly on a {@link ByteBuffer} so we do not need to copy the bytes into a
+ * stream first.
+ */
+/* package */ class ModifiedUtf8 {
+
+	/** Decodes the given number of bytes starting at the given absolute offset of the buffer. */
+	/* package */
+	static String decode(ByteBuffer buffer, int offset, int length) {
+		char[] chars = new char[length];
+		int charCount = 0;
+		int end = offset + length;
+		int position = offset;
+		while (position < end) {
+			int first = buffer.get(position) & 0xFF;
+			switch (first >> 4) {
+				case 0:
+				case 1:
+				case 2:
+				case 3:
+				case 4:
+				case 5:
+				case 6:
+				case 7:
+					chars[charCount++] = (char) first;
+					position++;
+					break;
+				case 12:
+				case 13:
+					int second = buffer.get(position + 1);
+					chars[charCount++] = (char) (((first & 0x1F) << 6) | (second & 0x3F));
+					position += 2;
+					break;
+				case 14:
+					int secondOfThree = buffer.get(position + 1);
+					int third = buffer.get(position + 2);
+					chars[charCount++] = (char) (((first & 0x0F) << 12) | ((secondOfThree & 0x3F) << 6) | (third & 0x3F));
+					position += 3;
+					break;
+				default:
+					throw new IllegalArgumentException("Malformed modified UTF-8 input around byte " + position);
+			}
+		}
+		return new String(chars, 0, charCount);
+	}
+}
@@ -0,0 +1,99 @@
+package com.teamscale.report.jacoco.exec;
+
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of the byte offset and length of every session in an .exec file. A testwise .exec file is one long sequence of
+ * session headers and class records. With the index single sessions can be read with {@link
+ * BufferedExecutionDataReader#read(long, long)}, e.g. to convert the sessions in a different order than they have been
+ * recorded.
+ * <p>
+ * The index is built with a quick scan over the file ({@link #build(File)}), which only decodes the session headers
+ * and skips the class records.
+ */
+public class SessionIndex {
+
+	/** The sessions in the order in which they appear in the file. */
+	private final List<Entry> sessions;
+
+	private SessionIndex(List<Entry> sessions) {
+		this.sessions = sessions;
+	}
+
+	/** @see #sessions */
+	public List<Entry> getSessions() {
+		return Collections.unmodifiableList(sessions);
+	}
+
+	/** Builds the index by scanning the given .exec file. */
+	public static SessionIndex build(File executionDataFile) throws IOException {
+		List<Entry> sessions = new ArrayList<>();
+		try (BufferedExecutionDataReader reader = new BufferedExecutionDataReader(executionDataFile)) {
+			SessionCollector collector = new SessionCollector(reader, sessions);
+			reader.setSessionInfoVisitor(collector);
+			reader.read();
+			collector.finishSession(reader.getFileSize());
+			return new SessionIndex(sessions);
+		}
+	}
+
+	/** Location of a single session in the .exec file. */
+	public static class Entry {
+
+		/** The ID of the session, which is the uniform path of the test in testwise mode. */
+		public final String sessionId;
+
+		/** Offset of the session info block in the file. */
+		public final long offset;
+
+		/** Number of bytes of the session info block and all following blocks that belong to the session. */
+		public final long length;
+
+		public Entry(String sessionId, long offset, long length) {
+			this.sessionId = sessionId;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/** Records the offsets of the visited session info blocks. */
+	private static class SessionCollector implements ISessionInfoVisitor {
+
+		private final BufferedExecutionDataReader reader;
+
+		private final List<Entry> sessions;
+
+		/** The session that is currently being read. */
+		private String currentSessionId = null;
+
+		/** Offset of the session that is currently being read. */
+		private long currentSessionOffset;
+
+		private SessionCollector(BufferedExecutionDataReader reader, List<Entry> sessions) {
+			this.reader = reader;
+			this.sessions = sessions;
+		}
+
+		@Override
+		public void visitSessionInfo(SessionInfo info) {
+			finishSession(reader.getBlockOffset());
+			currentSessionId = info.getId();
+			currentSessionOffset = reader.getBlockOffset();
+		}
+
+		/** Adds the current session to the index, which ends at the given offset. */
+		private void finishSession(long endOffset) {
+			if (currentSessionId != null) {
+				sessions.add(new Entry(currentSessionId, currentSessionOffset, endOffset - currentSessionOffset));
+			}
+			currentSessionId = null;
+		}
+	}
+}
@@ -13,7 +13,13 @@ public enum ETestArtifactFormat {
 	JACOCO("Jacoco", "", "exec"),
 
 	/** Google closure coverage files with additional uniformPath entries. */
-	CLOSURE("Closure Coverage", "closure-coverage", "json");
+	CLOSURE("Closure Coverage", "closure-coverage", "json"),
+
+	/**
+	 * Testwise coverage in the compact binary format written by {@link
+	 * com.teamscale.report.testwise.binary.BinaryTestwiseCoverageWriter}.
+	 */
+	BINARY_TESTWISE_COVERAGE("Binary Testwise Coverage", "", "tcov");
 
 	/** A readable name for the report type. */
 	public final String readableName;
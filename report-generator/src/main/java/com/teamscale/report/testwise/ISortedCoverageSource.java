@@ -0,0 +1,33 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.report.testwise.model.TestwiseCoverage;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestwiseCoverageReportBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Source of testwise coverage that hands out the tests ordered by their uniform path without the arguments of
+ * parameterized tests (see {@link TestwiseCoverageReportBuilder#stripParameterizedTestArguments(String)}), e.g. a
+ * {@link com.teamscale.report.testwise.binary.BinaryTestwiseCoverageReader} of a file that has been written in this
+ * order. Several sources can be merged in a single pass by {@link MergingTestwiseCoverageWriter}.
+ */
+@FunctionalInterface
+public interface ISortedCoverageSource {
+
+	/** Returns the next test or null if all tests have been handed out. */
+	TestCoverageBuilder next() throws IOException;
+
+	/** Returns a source that hands out the tests of the given coverage in the required order. */
+	static ISortedCoverageSource of(TestwiseCoverage coverage) {
+		List<TestCoverageBuilder> tests = new ArrayList<>(coverage.getTests());
+		tests.sort(Comparator.comparing(
+				test -> TestwiseCoverageReportBuilder.stripParameterizedTestArguments(test.getUniformPath())));
+		Iterator<TestCoverageBuilder> iterator = tests.iterator();
+		return () -> iterator.hasNext() ? iterator.next() : null;
+	}
+}
@@ -0,0 +1,16 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes out a testwise coverage report one {@link TestCoverageBuilder} after the other. Tests without coverage are
+ * written when the writer is closed.
+ */
+public interface ITestwiseCoverageWriter extends Consumer<TestCoverageBuilder>, AutoCloseable {
+
+	@Override
+	void close() throws IOException;
+}
@@ -0,0 +1,154 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.testwise.model.TestwiseCoverage;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestwiseCoverageReportBuilder;
+import com.teamscale.report.util.ILogger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Merges the coverage of all coverage sessions of a test, e.g. from several .exec files, and additional coverage, e.g.
+ * Google Closure coverage of JavaScript files, by the test's uniform path and passes every test on to another {@link
+ * ITestwiseCoverageWriter} exactly once. Like {@link TestwiseCoverageReportBuilder}, coverage of parameterized tests is
+ * attributed to the test without arguments if only that one has test details and coverage of tests without test
+ * details is dropped.
+ * <p>
+ * The coverage must be passed in the order of {@link ISortedCoverageSource}, e.g. by {@link #merge(List)}. All coverage
+ * that belongs to the same test is then passed one after the other and each test is written as soon as the coverage of
+ * the next test arrives. Only the coverage of a single test (including all invocations of a parameterized test) is
+ * kept in memory.
+ */
+public class MergingTestwiseCoverageWriter implements ITestwiseCoverageWriter {
+
+	/** The writer that receives the merged tests. */
+	private final ITestwiseCoverageWriter delegate;
+
+	/** The uniform paths of all tests with test details. */
+	private final Set<String> uniformPathsWithDetails = new HashSet<>();
+
+	/** The logger. */
+	private final ILogger logger;
+
+	/** The uniform path without parameterized test arguments of the test whose coverage is currently collected. */
+	private String currentTest = null;
+
+	/** The coverage of the current test and of its invocations that have their own test details. */
+	private TestwiseCoverage currentCoverage = new TestwiseCoverage();
+
+	public MergingTestwiseCoverageWriter(ITestwiseCoverageWriter delegate, Collection<TestDetails> testDetails,
+										 ILogger logger) {
+		this.delegate = delegate;
+		this.logger = logger;
+		for (TestDetails testDetail : testDetails) {
+			uniformPathsWithDetails.add(testDetail.uniformPath);
+		}
+	}
+
+	/**
+	 * Merges the coverage of all given sources in a single pass and passes it to this writer. Does not close the
+	 * writer.
+	 */
+	public void merge(List<ISortedCoverageSource> sources) throws IOException {
+		PriorityQueue<SourceHead> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+				Comparator.comparing((SourceHead head) -> head.test));
+		for (ISortedCoverageSource source : sources) {
+			SourceHead head = new SourceHead(source);
+			if (head.advance()) {
+				heads.add(head);
+			}
+		}
+		while (!heads.isEmpty()) {
+			SourceHead head = heads.poll();
+			accept(head.coverage);
+			if (head.advance()) {
+				heads.add(head);
+			}
+		}
+	}
+
+	@Override
+	public void accept(TestCoverageBuilder testCoverageBuilder) {
+		String test = TestwiseCoverageReportBuilder.stripParameterizedTestArguments(
+				testCoverageBuilder.getUniformPath());
+		if (currentTest != null && !test.equals(currentTest)) {
+			if (test.compareTo(currentTest) < 0) {
+				throw new IllegalArgumentException("Coverage of test '" + testCoverageBuilder.getUniformPath() +
+						"' is not sorted by uniform path. It was passed after '" + currentTest + "'.");
+			}
+			writeCurrentTest();
+		}
+		currentTest = test;
+
+		String uniformPath = resolveUniformPath(testCoverageBuilder.getUniformPath(), test);
+		if (uniformPath == null) {
+			return;
+		}
+		// Sharing does not copy the coverage and the given builder is never modified by the container
+		currentCoverage.add(testCoverageBuilder.shareWith(uniformPath));
+	}
+
+	/** Returns the uniform path of the test details the coverage belongs to or null if there are none. */
+	private String resolveUniformPath(String uniformPath, String shortenedUniformPath) {
+		if (uniformPathsWithDetails.contains(uniformPath)) {
+			return uniformPath;
+		}
+		if (uniformPathsWithDetails.contains(shortenedUniformPath)) {
+			return shortenedUniformPath;
+		}
+		logger.warn("No container found for test '" + uniformPath + "'!");
+		return null;
+	}
+
+	/** Passes the collected coverage of the current test to the delegate. */
+	private void writeCurrentTest() {
+		List<TestCoverageBuilder> tests = new ArrayList<>(currentCoverage.getTests());
+		tests.sort(Comparator.comparing(TestCoverageBuilder::getUniformPath));
+		tests.forEach(delegate);
+		currentCoverage = new TestwiseCoverage();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			writeCurrentTest();
+		} finally {
+			delegate.close();
+		}
+	}
+
+	/** The next test of a source that takes part in {@link #merge(List)}. */
+	private static class SourceHead {
+
+		/** The source of the coverage. */
+		private final ISortedCoverageSource source;
+
+		/** The next coverage of the source. */
+		private TestCoverageBuilder coverage;
+
+		/** The uniform path without parameterized test arguments of the {@link #coverage}. */
+		private String test;
+
+		private SourceHead(ISortedCoverageSource source) {
+			this.source = source;
+		}
+
+		/** Moves on to the next test of the source. Returns false if the source has no more tests. */
+		private boolean advance() throws IOException {
+			coverage = source.next();
+			if (coverage == null) {
+				return false;
+			}
+			test = TestwiseCoverageReportBuilder.stripParameterizedTestArguments(coverage.getUniformPath());
+			return true;
+		}
+	}
+}
@@ -3,21 +3,22 @@ package com.teamscale.report.testwise;
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.JsonWriter;
 import com.squareup.moshi.Moshi;
+import com.teamscale.client.EReportCompression;
 import com.teamscale.client.StringUtils;
+import com.teamscale.report.ReportUtils;
 import com.teamscale.report.testwise.model.TestInfo;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 import com.teamscale.report.testwise.model.factory.TestInfoFactory;
-import okio.Okio;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.function.Consumer;
 
 /**
  * Writes out a {@link com.teamscale.report.testwise.model.TestwiseCoverageReport} one {@link TestInfo} after the other
- * so that we do not need to keep them all in memory during the conversion.
+ * so that we do not need to keep them all in memory during the conversion. The JSON is optionally compressed while it
+ * is written and can be written without indentation to keep large reports small.
  */
-public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilder>, AutoCloseable {
+public class TestwiseCoverageReportWriter implements ITestwiseCoverageWriter {
 
 	/** Factory for converting {@link TestCoverageBuilder} objects to {@link TestInfo}s. */
 	private final TestInfoFactory testInfoFactory;
@@ -26,9 +27,15 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 	private final JsonAdapter<TestInfo> testInfoJsonAdapter;
 
 	private final File outputFile;
-	/** After how many written tests a new file should be started. */
+	/** After how many written tests a new file should be started or 0 if the report should not be split. */
 	private final int splitAfter;
 
+	/** The compression of the written files, whose names always end with its suffix. */
+	private final EReportCompression compression;
+
+	/** Whether the JSON is written without any whitespace. */
+	private final boolean compact;
+
 	/** Writer instance to where the {@link com.teamscale.report.testwise.model.TestwiseCoverageReport} is written to. */
 	private JsonWriter writer;
 
@@ -38,12 +45,26 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 	/** Number of test files that have been written. */
 	private int testFileCounter = 0;
 
+	/** Constructor. Writes all tests into exactly the given output file without splitting the report. */
+	public TestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile,
+										EReportCompression compression, boolean compact) throws IOException {
+		this(testInfoFactory, outputFile, 0, compression, compact);
+	}
+
 	public TestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile,
 										int splitAfter) throws IOException {
+		this(testInfoFactory, outputFile, splitAfter, EReportCompression.NONE, false);
+	}
+
+	public TestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile, int splitAfter,
+										EReportCompression compression, boolean compact) throws IOException {
 		this.testInfoFactory = testInfoFactory;
 		this.outputFile = outputFile;
 		this.splitAfter = splitAfter;
-		this.testInfoJsonAdapter = new Moshi.Builder().build().adapter(TestInfo.class).indent("\t");
+		this.compression = compression;
+		this.compact = compact;
+		this.testInfoJsonAdapter = new Moshi.Builder().build().adapter(TestInfo.class)
+				.indent(ReportUtils.getIndent(compact));
 
 		startReport();
 	}
@@ -69,21 +90,28 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 
 	private void startReport() throws IOException {
 		testFileCounter++;
-		writer = JsonWriter.of(Okio.buffer(Okio.sink(getOutputFile(testFileCounter))));
+		writer = JsonWriter.of(ReportUtils.openReportSink(getOutputFile(testFileCounter), compression));
 		writer.beginObject();
 		writer.name("tests");
 		writer.beginArray();
 	}
 
 	private File getOutputFile(int testFileCounter) {
+		if (splitAfter <= 0) {
+			// Readers recognize compressed reports by their suffix
+			if (outputFile.getName().endsWith(compression.fileSuffix)) {
+				return outputFile;
+			}
+			return new File(outputFile.getParent(), outputFile.getName() + compression.fileSuffix);
+		}
 		String name = this.outputFile.getName();
 		name = StringUtils.stripSuffix(name, ".json");
-		name = name + "-" + testFileCounter + ".json";
+		name = name + "-" + testFileCounter + ".json" + compression.fileSuffix;
 		return new File(this.outputFile.getParent(), name);
 	}
 
 	private void writeTestInfo(TestInfo testInfo) throws IOException {
-		if (testsWritten >= splitAfter) {
+		if (splitAfter > 0 && testsWritten >= splitAfter) {
 			endReport();
 			testsWritten = 0;
 			startReport();
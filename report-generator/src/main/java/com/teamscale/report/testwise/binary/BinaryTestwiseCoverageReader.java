@@ -0,0 +1,250 @@
+package com.teamscale.report.testwise.binary;
+
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.PathCoverage;
+import com.teamscale.report.testwise.model.TestInfo;
+import com.teamscale.report.testwise.model.TestwiseCoverageReport;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.teamscale.report.testwise.binary.BinaryTestwiseCoverageWriter.BLOCK_COVERAGE;
+import static com.teamscale.report.testwise.binary.BinaryTestwiseCoverageWriter.BLOCK_END;
+import static com.teamscale.report.testwise.binary.BinaryTestwiseCoverageWriter.BLOCK_STRING;
+import static com.teamscale.report.testwise.binary.BinaryTestwiseCoverageWriter.BLOCK_TEST;
+
+/**
+ * Reads testwise coverage written by {@link BinaryTestwiseCoverageWriter} one test after the other and converts it
+ * back to the JSON model ({@link TestInfo}) or to {@link TestCoverageBuilder}s. Tests with the same coverage share the
+ * same {@link PathCoverage} or {@link TestCoverageBuilder} objects.
+ */
+public class BinaryTestwiseCoverageReader implements Closeable {
+
+	/** The stream to read from. */
+	private final DataInputStream input;
+
+	/** The string dictionary read so far. The index in the list is the ID of the string. */
+	private final List<String> stringDictionary = new ArrayList<>();
+
+	/** The coverage dictionary read so far. The index in the list is the ID of the coverage. */
+	private final List<TestCoverageBuilder> coverageDictionary = new ArrayList<>();
+
+	/** Caches the converted paths of the entries in the {@link #coverageDictionary}. */
+	private final Map<Integer, List<PathCoverage>> pathsCache = new HashMap<>();
+
+	/** Whether the end block has been read. */
+	private boolean endReached = false;
+
+	public BinaryTestwiseCoverageReader(File inputFile) throws IOException {
+		this(new FileInputStream(inputFile));
+	}
+
+	public BinaryTestwiseCoverageReader(InputStream inputStream) throws IOException {
+		this.input = new DataInputStream(new BufferedInputStream(inputStream));
+		if (input.readInt() != BinaryTestwiseCoverageWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid binary testwise coverage file.");
+		}
+		int version = readVarInt();
+		if (version != BinaryTestwiseCoverageWriter.FORMAT_VERSION) {
+			throw new IOException("Unsupported binary testwise coverage format version " + version + ".");
+		}
+	}
+
+	/** Reads all tests and passes them to the given consumer. */
+	public void read(Consumer<TestInfo> consumer) throws IOException {
+		readBlocks((testInfo, coverageId) -> {
+			if (coverageId >= 0) {
+				testInfo.paths.addAll(pathsCache.computeIfAbsent(coverageId,
+						id -> coverageDictionary.get(id).getPaths()));
+			}
+			consumer.accept(testInfo);
+		});
+	}
+
+	/**
+	 * Reads only the coverage of all tests that have coverage and passes it to the given consumer. Test details and
+	 * execution results are ignored. The passed builders must not be modified, since they are shared by all tests with
+	 * the same coverage.
+	 */
+	public void readCoverage(Consumer<TestCoverageBuilder> consumer) throws IOException {
+		readBlocks((testInfo, coverageId) -> {
+			if (coverageId >= 0) {
+				consumer.accept(coverageDictionary.get(coverageId).shareWith(testInfo.uniformPath));
+			}
+		});
+	}
+
+	/**
+	 * Reads the coverage of the next test that has coverage, e.g. to merge several files that are sorted by uniform
+	 * path. Like {@link #readCoverage(Consumer)}, the returned builder must not be modified.
+	 *
+	 * @return the coverage or null if all tests have been read
+	 */
+	public TestCoverageBuilder readNextCoverage() throws IOException {
+		TestCoverageBuilder[] nextCoverage = new TestCoverageBuilder[1];
+		while (nextCoverage[0] == null && readNextTest((testInfo, coverageId) -> {
+			if (coverageId >= 0) {
+				nextCoverage[0] = coverageDictionary.get(coverageId).shareWith(testInfo.uniformPath);
+			}
+		})) {
+			// Skip tests without coverage
+		}
+		return nextCoverage[0];
+	}
+
+	/** Reads all blocks and passes the tests to the given handler. */
+	private void readBlocks(ITestHandler testHandler) throws IOException {
+		while (readNextTest(testHandler)) {
+			// Continue with the next test
+		}
+	}
+
+	/**
+	 * Reads all blocks up to and including the next test and passes the test to the given handler.
+	 *
+	 * @return false if the end of the file has been reached instead
+	 */
+	private boolean readNextTest(ITestHandler testHandler) throws IOException {
+		while (!endReached) {
+			byte type = input.readByte();
+			switch (type) {
+				case BLOCK_STRING:
+					stringDictionary.add(readString());
+					break;
+				case BLOCK_COVERAGE:
+					coverageDictionary.add(readCoverage());
+					break;
+				case BLOCK_TEST:
+					readTest(testHandler);
+					return true;
+				case BLOCK_END:
+					endReached = true;
+					break;
+				default:
+					throw new IOException(String.format("Unknown block type %x.", type));
+			}
+		}
+		return false;
+	}
+
+	/** Reads the whole file into a {@link TestwiseCoverageReport}, which can then be written as JSON. */
+	public static TestwiseCoverageReport readReport(File inputFile) throws IOException {
+		TestwiseCoverageReport report = new TestwiseCoverageReport();
+		try (BinaryTestwiseCoverageReader reader = new BinaryTestwiseCoverageReader(inputFile)) {
+			reader.read(report.tests::add);
+		}
+		return report;
+	}
+
+	private void readTest(ITestHandler testHandler) throws IOException {
+		String uniformPath = readString();
+		String sourcePath = readNullableString();
+		String content = readNullableString();
+		Double duration = null;
+		if (input.readBoolean()) {
+			duration = input.readDouble();
+		}
+		ETestExecutionResult result = null;
+		int resultOrdinal = readVarInt();
+		if (resultOrdinal > 0) {
+			result = ETestExecutionResult.values()[resultOrdinal - 1];
+		}
+		String message = readNullableString();
+		TestInfo testInfo = new TestInfo(uniformPath, sourcePath, content, duration, result, message);
+
+		int coverageId = readVarInt() - 1;
+		if (coverageId >= coverageDictionary.size()) {
+			throw new IOException("Reference to undefined coverage " + coverageId + ".");
+		}
+		testHandler.handle(testInfo, coverageId);
+	}
+
+	private TestCoverageBuilder readCoverage() throws IOException {
+		// The uniform path is set by shareWith when the coverage is handed out for a test
+		TestCoverageBuilder coverage = new TestCoverageBuilder(null);
+		int fileCount = readVarInt();
+		for (int i = 0; i < fileCount; i++) {
+			String path = lookupString(readVarInt());
+			String fileName = lookupString(readVarInt());
+			FileCoverageBuilder fileCoverage = new FileCoverageBuilder(path, fileName);
+			readLineRanges(fileCoverage);
+			coverage.add(fileCoverage);
+		}
+		return coverage;
+	}
+
+	/** Reads the line ranges and adds them to the given file coverage. */
+	private void readLineRanges(FileCoverageBuilder fileCoverage) throws IOException {
+		int rangeCount = readVarInt();
+		int previousEnd = 0;
+		for (int i = 0; i < rangeCount; i++) {
+			int start = previousEnd + readVarInt();
+			int end = start + readVarInt();
+			fileCoverage.addLineRange(start, end);
+			previousEnd = end;
+		}
+	}
+
+	private String lookupString(int id) throws IOException {
+		if (id >= stringDictionary.size()) {
+			throw new IOException("Reference to undefined string " + id + ".");
+		}
+		return stringDictionary.get(id);
+	}
+
+	private String readNullableString() throws IOException {
+		int length = readVarInt();
+		if (length == 0) {
+			return null;
+		}
+		return readString(length - 1);
+	}
+
+	private String readString() throws IOException {
+		return readString(readVarInt());
+	}
+
+	private String readString(int length) throws IOException {
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int readVarInt() throws IOException {
+		int value = 0;
+		int shift = 0;
+		int currentByte;
+		do {
+			currentByte = input.readUnsignedByte();
+			value |= (currentByte & 0x7F) << shift;
+			shift += 7;
+		} while ((currentByte & 0x80) != 0);
+		return value;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+	/** Receives a test and the ID of its coverage, which is -1 if the test has no coverage. */
+	@FunctionalInterface
+	private interface ITestHandler {
+
+		/** Handles the test. */
+		void handle(TestInfo testInfo, int coverageId);
+	}
+}
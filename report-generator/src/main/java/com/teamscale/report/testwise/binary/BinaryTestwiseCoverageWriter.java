@@ -0,0 +1,240 @@
+package com.teamscale.report.testwise.binary;
+
+import com.teamscale.report.testwise.ITestwiseCoverageWriter;
+import com.teamscale.report.testwise.model.LineRange;
+import com.teamscale.report.testwise.model.builder.CoverageInterner;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestInfoBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes testwise coverage in a compact binary format as alternative to the JSON {@link
+ * com.teamscale.report.testwise.model.TestwiseCoverageReport}. Like {@link com.teamscale.report.testwise.TestwiseCoverageReportWriter}
+ * the tests are written one after the other, so they do not need to be kept in memory.
+ * <p>
+ * The file starts with {@link #MAGIC_NUMBER} and {@link #FORMAT_VERSION} followed by a sequence of blocks, each
+ * introduced by a block type byte:
+ * <ul>
+ * <li>{@link #BLOCK_STRING}: Adds a path or file name to the string dictionary. The strings are numbered in the order
+ * in which they appear in the file, starting at 0. A string is always defined before the first test that references
+ * it.</li>
+ * <li>{@link #BLOCK_COVERAGE}: Adds a distinct coverage to the coverage dictionary. The coverage is a list of files,
+ * each given as string IDs of its path and file name and the covered line ranges. Line ranges are stored as var ints
+ * relative to the end of the previous range. Coverage is numbered like strings. Identical coverage of several tests
+ * (see {@link CoverageInterner}) is only written once.</li>
+ * <li>{@link #BLOCK_TEST}: A single test with its details, execution result and the ID of its coverage + 1, or 0 if
+ * the test has no coverage.</li>
+ * <li>{@link #BLOCK_END}: Marks the end of the report.</li>
+ * </ul>
+ * All integers are unsigned var ints (7 bits per byte, least significant group first) and strings are stored as var
+ * int length followed by the UTF-8 bytes. Nullable strings store the length + 1 and 0 for null.
+ */
+public class BinaryTestwiseCoverageWriter implements ITestwiseCoverageWriter {
+
+	/** Magic number at the start of every binary testwise coverage file ("TSTC"). */
+	public static final int MAGIC_NUMBER = 0x54535443;
+
+	/** Version of the binary format. */
+	public static final int FORMAT_VERSION = 2;
+
+	/** Block type that marks the end of the report. */
+	public static final byte BLOCK_END = 0x00;
+
+	/** Block type of a string dictionary entry. */
+	public static final byte BLOCK_STRING = 0x01;
+
+	/** Block type of a single test. */
+	public static final byte BLOCK_TEST = 0x02;
+
+	/** Block type of a coverage dictionary entry. */
+	public static final byte BLOCK_COVERAGE = 0x03;
+
+	/**
+	 * Factory for augmenting {@link TestCoverageBuilder} with test details and test executions or null if only the
+	 * coverage should be written.
+	 */
+	private final TestInfoFactory testInfoFactory;
+
+	/** The stream the report is written to. */
+	private final DataOutputStream output;
+
+	/** Maps strings that have already been written to the dictionary to their IDs. */
+	private final Map<String, Integer> stringDictionary = new HashMap<>();
+
+	/** Maps the IDs of coverage that has already been written to the dictionary to their IDs in the file. */
+	private final Map<String, Integer> coverageDictionary = new HashMap<>();
+
+	/**
+	 * Constructor. Writes only the uniform paths and coverage of the tests, e.g. for intermediate results that are
+	 * merged with the test details and executions later on (see {@link BinaryTestwiseCoverageReader#readCoverage}).
+	 */
+	public BinaryTestwiseCoverageWriter(File outputFile) throws IOException {
+		this(null, new FileOutputStream(outputFile));
+	}
+
+	public BinaryTestwiseCoverageWriter(TestInfoFactory testInfoFactory, File outputFile) throws IOException {
+		this(testInfoFactory, new FileOutputStream(outputFile));
+	}
+
+	public BinaryTestwiseCoverageWriter(TestInfoFactory testInfoFactory, OutputStream outputStream) throws IOException {
+		this.testInfoFactory = testInfoFactory;
+		this.output = new DataOutputStream(new BufferedOutputStream(outputStream));
+		output.writeInt(MAGIC_NUMBER);
+		writeVarInt(FORMAT_VERSION);
+	}
+
+	@Override
+	public void accept(TestCoverageBuilder testCoverageBuilder) {
+		try {
+			if (testInfoFactory == null) {
+				TestInfoBuilder testInfo = new TestInfoBuilder(testCoverageBuilder.getUniformPath());
+				testInfo.setCoverage(testCoverageBuilder);
+				writeTest(testInfo);
+			} else {
+				writeTest(testInfoFactory.createBuilderFor(testCoverageBuilder));
+			}
+		} catch (IOException e) {
+			// Need to be wrapped in RuntimeException as Consumer does not allow to throw a checked Exception
+			throw new RuntimeException("Writing test info to report failed.", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (testInfoFactory != null) {
+				for (TestInfoBuilder testInfo : testInfoFactory.createBuildersWithoutCoverage()) {
+					writeTest(testInfo);
+				}
+			}
+			output.writeByte(BLOCK_END);
+		} finally {
+			output.close();
+		}
+	}
+
+	private void writeTest(TestInfoBuilder testInfo) throws IOException {
+		int coverageReference = getCoverageReference(testInfo.getCoverage());
+
+		output.writeByte(BLOCK_TEST);
+		writeString(testInfo.getUniformPath());
+		writeNullableString(testInfo.getSourcePath());
+		writeNullableString(testInfo.getContent());
+		Double duration = testInfo.getDurationSeconds();
+		output.writeBoolean(duration != null);
+		if (duration != null) {
+			output.writeDouble(duration);
+		}
+		if (testInfo.getResult() == null) {
+			writeVarInt(0);
+		} else {
+			writeVarInt(testInfo.getResult().ordinal() + 1);
+		}
+		writeNullableString(testInfo.getMessage());
+		writeVarInt(coverageReference);
+	}
+
+	/**
+	 * Returns the dictionary ID + 1 of the given coverage and writes a dictionary entry if the same coverage has not
+	 * been written before. Returns 0 if there is no coverage.
+	 */
+	private int getCoverageReference(TestCoverageBuilder coverage) throws IOException {
+		if (coverage == null || coverage.isEmpty()) {
+			return 0;
+		}
+		String coverageId = CoverageInterner.computeCoverageId(coverage);
+		Integer id = coverageDictionary.get(coverageId);
+		if (id == null) {
+			id = coverageDictionary.size();
+			coverageDictionary.put(coverageId, id);
+			writeCoverage(coverage);
+		}
+		return id + 1;
+	}
+
+	private void writeCoverage(TestCoverageBuilder coverage) throws IOException {
+		List<FileCoverageBuilder> files = getSortedFiles(coverage);
+		int[] pathIds = new int[files.size()];
+		int[] fileIds = new int[files.size()];
+		for (int i = 0; i < files.size(); i++) {
+			pathIds[i] = getStringId(files.get(i).getPath());
+			fileIds[i] = getStringId(files.get(i).getFileName());
+		}
+
+		output.writeByte(BLOCK_COVERAGE);
+		writeVarInt(files.size());
+		for (int i = 0; i < files.size(); i++) {
+			writeVarInt(pathIds[i]);
+			writeVarInt(fileIds[i]);
+			writeLineRanges(files.get(i).getCoveredLineRanges());
+		}
+	}
+
+	/** Returns the files of the given coverage sorted by path and file name. */
+	private static List<FileCoverageBuilder> getSortedFiles(TestCoverageBuilder coverage) {
+		List<FileCoverageBuilder> files = coverage.getFiles();
+		files.sort(Comparator.comparing(FileCoverageBuilder::getPath).thenComparing(FileCoverageBuilder::getFileName));
+		return files;
+	}
+
+	/** Writes the ranges as var ints relative to the end of the previous range. */
+	private void writeLineRanges(List<LineRange> ranges) throws IOException {
+		writeVarInt(ranges.size());
+		int previousEnd = 0;
+		for (LineRange range : ranges) {
+			writeVarInt(range.getStart() - previousEnd);
+			writeVarInt(range.getEnd() - range.getStart());
+			previousEnd = range.getEnd();
+		}
+	}
+
+	/** Returns the dictionary ID of the given string and writes a dictionary entry if it is not yet known. */
+	private int getStringId(String value) throws IOException {
+		Integer id = stringDictionary.get(value);
+		if (id != null) {
+			return id;
+		}
+		id = stringDictionary.size();
+		stringDictionary.put(value, id);
+		output.writeByte(BLOCK_STRING);
+		writeString(value);
+		return id;
+	}
+
+	private void writeNullableString(String value) throws IOException {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length + 1);
+		output.write(bytes);
+	}
+
+	private void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private void writeVarInt(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte(0x80 | (value & 0x7F));
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+}
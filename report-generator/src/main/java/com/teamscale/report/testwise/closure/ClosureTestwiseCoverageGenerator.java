@@ -3,6 +3,7 @@ package com.teamscale.report.testwise.closure;
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.JsonReader;
 import com.squareup.moshi.Moshi;
+import com.teamscale.client.EReportCompression;
 import com.teamscale.client.FileSystemUtils;
 import com.teamscale.client.StringUtils;
 import com.teamscale.report.testwise.closure.model.ClosureCoverage;
@@ -11,7 +12,6 @@ import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 import com.teamscale.report.util.ILogger;
 import okio.BufferedSource;
-import okio.Okio;
 
 import java.io.File;
 import java.io.IOException;
@@ -80,7 +80,7 @@ public class ClosureTestwiseCoverageGenerator {
 	 * the method returns null.
 	 */
 	private TestCoverageBuilder readTestCoverage(File file) {
-		try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+		try (BufferedSource source = EReportCompression.openDecompressed(file)) {
 			ClosureCoverage coverage = closureCoverageAdapter.fromJson(JsonReader.of(source));
 			return convertToTestCoverage(coverage);
 		} catch (IOException e) {
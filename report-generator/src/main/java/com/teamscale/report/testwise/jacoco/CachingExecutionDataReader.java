@@ -1,14 +1,17 @@
 package com.teamscale.report.testwise.jacoco;
 
 import com.teamscale.report.EDuplicateClassFileBehavior;
-import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.jacoco.exec.BufferedExecutionDataReader;
+import com.teamscale.report.jacoco.exec.ClassExecutionView;
+import com.teamscale.report.jacoco.exec.IClassExecutionVisitor;
 import com.teamscale.report.testwise.jacoco.cache.AnalyzerCache;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
+import com.teamscale.report.testwise.jacoco.cache.PersistentProbesCache;
 import com.teamscale.report.testwise.jacoco.cache.ProbesCache;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 import com.teamscale.report.util.ILogger;
-import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
 
 import java.io.File;
 import java.io.IOException;
@@ -38,11 +41,21 @@ class CachingExecutionDataReader {
 	 */
 	public void analyzeClassDirs(Collection<File> classesDirectories, Predicate<String> locationIncludeFilter,
 								 EDuplicateClassFileBehavior duplicateClassFileBehavior) throws CoverageGenerationException {
+		analyzeClassDirs(classesDirectories, locationIncludeFilter, duplicateClassFileBehavior, null);
+	}
+
+	/**
+	 * Analyzes the given class/jar/war/... files and creates a lookup of which probes belong to which method. Reuses
+	 * and extends the analysis results in the given persistent cache, which may be null.
+	 */
+	public void analyzeClassDirs(Collection<File> classesDirectories, Predicate<String> locationIncludeFilter,
+								 EDuplicateClassFileBehavior duplicateClassFileBehavior,
+								 PersistentProbesCache persistentProbesCache) throws CoverageGenerationException {
 		if (probesCache != null) {
 			return;
 		}
 		probesCache = new ProbesCache(logger, duplicateClassFileBehavior);
-		AnalyzerCache analyzer = new AnalyzerCache(probesCache, locationIncludeFilter, logger);
+		AnalyzerCache analyzer = new AnalyzerCache(probesCache, persistentProbesCache, locationIncludeFilter, logger);
 		for (File classDir : classesDirectories) {
 			if (classDir.exists()) {
 				try {
@@ -61,18 +74,21 @@ class CachingExecutionDataReader {
 	}
 
 	/**
-	 * Converts the given store to coverage data. The coverage will only contain line range coverage information.
+	 * Creates a consumer for sessions and class execution data that converts them to coverage data. The coverage will
+	 * only contain line range coverage information.
 	 */
-	public DumpConsumer buildCoverageConsumer(Predicate<String> locationIncludeFilter,
-											  Consumer<TestCoverageBuilder> nextConsumer) {
-		return new DumpConsumer(logger, locationIncludeFilter, nextConsumer);
+	public SessionConsumer buildCoverageConsumer(Predicate<String> locationIncludeFilter,
+												 Consumer<TestCoverageBuilder> nextConsumer) {
+		return new SessionConsumer(logger, locationIncludeFilter, nextConsumer);
 	}
 
 	/**
-	 * Consumer of {@link Dump} objects. Converts them to {@link TestCoverageBuilder} and passes them to the
-	 * nextConsumer.
+	 * Consumer of the sessions and class execution data read by a {@link BufferedExecutionDataReader}. Converts the
+	 * class execution data of each session directly to a {@link TestCoverageBuilder} without collecting it in an
+	 * intermediate {@link org.jacoco.core.data.ExecutionDataStore} and passes it to the nextConsumer once the session
+	 * is complete.
 	 */
-	public class DumpConsumer implements Consumer<Dump> {
+	public class SessionConsumer implements ISessionInfoVisitor, IClassExecutionVisitor {
 
 		/** The logger. */
 		private final ILogger logger;
@@ -83,41 +99,51 @@ class CachingExecutionDataReader {
 		/** Consumer that should be called with the newly built TestCoverageBuilder. */
 		private final Consumer<TestCoverageBuilder> nextConsumer;
 
-		private DumpConsumer(ILogger logger, Predicate<String> locationIncludeFilter,
-							 Consumer<TestCoverageBuilder> nextConsumer) {
+		/** The coverage of the session that is currently being read or null if the session is ignored. */
+		private TestCoverageBuilder currentTestCoverage = null;
+
+		private SessionConsumer(ILogger logger, Predicate<String> locationIncludeFilter,
+								Consumer<TestCoverageBuilder> nextConsumer) {
 			this.logger = logger;
 			this.locationIncludeFilter = locationIncludeFilter;
 			this.nextConsumer = nextConsumer;
 		}
 
 		@Override
-		public void accept(Dump dump) {
-			String testId = dump.info.getId();
+		public void visitSessionInfo(SessionInfo info) {
+			finishSession();
+			String testId = info.getId();
 			if (testId.isEmpty()) {
 				// Ignore intermediate coverage that does not belong to any specific test
 				logger.debug("Found a session with empty name! This could indicate that coverage is dumped also for " +
 						"coverage in between tests or that the given test name was empty");
 				return;
 			}
+			currentTestCoverage = new TestCoverageBuilder(testId);
+		}
+
+		@Override
+		public void visitClassExecution(ClassExecutionView classExecution) {
+			if (currentTestCoverage == null) {
+				return;
+			}
 			try {
-				TestCoverageBuilder testCoverage = buildCoverage(testId, dump.store, locationIncludeFilter);
-				nextConsumer.accept(testCoverage);
+				currentTestCoverage.add(probesCache.getCoverage(classExecution, locationIncludeFilter));
 			} catch (CoverageGenerationException e) {
-				logger.error("Failed to generate coverage for test " + testId + "! Skipping to the next test.", e);
+				logger.error("Failed to generate coverage for test " + currentTestCoverage.getUniformPath() +
+						"! Skipping to the next test.", e);
+				currentTestCoverage = null;
 			}
 		}
 
-		/**
-		 * Converts the given store to coverage data. The coverage will only contain line range coverage information.
-		 */
-		private TestCoverageBuilder buildCoverage(String testId, ExecutionDataStore executionDataStore,
-												  Predicate<String> locationIncludeFilter) throws CoverageGenerationException {
-			TestCoverageBuilder testCoverage = new TestCoverageBuilder(testId);
-			for (ExecutionData executionData : executionDataStore.getContents()) {
-				testCoverage.add(probesCache.getCoverage(executionData, locationIncludeFilter));
+		/** Passes the coverage of the current session to the nextConsumer. Must be called after the last session. */
+		public void finishSession() {
+			if (currentTestCoverage == null) {
+				return;
 			}
 			probesCache.flushLogger();
-			return testCoverage;
+			nextConsumer.accept(currentTestCoverage);
+			currentTestCoverage = null;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -1,24 +1,21 @@
 package com.teamscale.report.testwise.jacoco;
 
 import com.teamscale.report.EDuplicateClassFileBehavior;
-import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.jacoco.exec.BufferedExecutionDataReader;
+import com.teamscale.report.jacoco.exec.SessionIndex;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
+import com.teamscale.report.testwise.jacoco.cache.PersistentProbesCache;
 import com.teamscale.report.testwise.model.TestwiseCoverage;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestwiseCoverageReportBuilder;
 import com.teamscale.report.util.ILogger;
-import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataReader;
-import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.data.IExecutionDataVisitor;
-import org.jacoco.core.data.ISessionInfoVisitor;
-import org.jacoco.core.data.SessionInfo;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -26,11 +23,14 @@ import java.util.function.Predicate;
  * Creates a XML report for an execution data store. The report is grouped by session.
  * <p>
  * The class files under test must be compiled with debug information otherwise no coverage will be collected.
+ * <p>
+ * The class files are only analyzed once in the constructor. Afterwards several .exec files can be converted
+ * concurrently with the same instance.
  */
 public class JaCoCoTestwiseReportGenerator {
 
 	/** The execution data reader and converter. */
-	private CachingExecutionDataReader executionDataReader;
+	private final CachingExecutionDataReader executionDataReader;
 
 	/** The filter for the analyzed class files. */
 	private final Predicate<String> locationIncludeFilter;
@@ -46,74 +46,87 @@ public class JaCoCoTestwiseReportGenerator {
 										 Predicate<String> locationIncludeFilter,
 										 EDuplicateClassFileBehavior duplicateClassFileBehavior,
 										 ILogger logger) throws CoverageGenerationException {
+		this(codeDirectoriesOrArchives, locationIncludeFilter, duplicateClassFileBehavior, null, logger);
+	}
+
+	/**
+	 * Create a new generator with a collection of class directories.
+	 *
+	 * @param codeDirectoriesOrArchives Root directory that contains the projects class files.
+	 * @param locationIncludeFilter     Filter for class files
+	 * @param probesCacheDirectory      Directory in which analyzed class files are cached across runs or null to
+	 *                                  analyze all class files
+	 * @param logger                    The logger
+	 */
+	public JaCoCoTestwiseReportGenerator(Collection<File> codeDirectoriesOrArchives,
+										 Predicate<String> locationIncludeFilter,
+										 EDuplicateClassFileBehavior duplicateClassFileBehavior,
+										 File probesCacheDirectory,
+										 ILogger logger) throws CoverageGenerationException {
 		this.locationIncludeFilter = locationIncludeFilter;
 		this.executionDataReader = new CachingExecutionDataReader(logger);
-		this.executionDataReader
-				.analyzeClassDirs(codeDirectoriesOrArchives, locationIncludeFilter, duplicateClassFileBehavior);
+		PersistentProbesCache persistentProbesCache = null;
+		if (probesCacheDirectory != null) {
+			persistentProbesCache = new PersistentProbesCache(probesCacheDirectory, logger);
+		}
+		this.executionDataReader.analyzeClassDirs(codeDirectoriesOrArchives, locationIncludeFilter,
+				duplicateClassFileBehavior, persistentProbesCache);
+		if (persistentProbesCache != null) {
+			// After the analysis, so the entries of the current class files have just been marked as used
+			persistentProbesCache.evictStaleEntries();
+		}
 	}
 
 	/** Converts the given dumps to a report. */
 	public TestwiseCoverage convert(File executionDataFile) throws IOException {
 		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
-		CachingExecutionDataReader.DumpConsumer dumpConsumer = executionDataReader
-				.buildCoverageConsumer(locationIncludeFilter, testwiseCoverage::add);
-		readAndConsumeDumps(executionDataFile, dumpConsumer);
+		convertAndConsume(executionDataFile, testwiseCoverage::add);
 		return testwiseCoverage;
 	}
 
 	/** Converts the given dumps to a report. */
 	public void convertAndConsume(File executionDataFile, Consumer<TestCoverageBuilder> consumer) throws IOException {
-		CachingExecutionDataReader.DumpConsumer dumpConsumer = executionDataReader
-				.buildCoverageConsumer(locationIncludeFilter, consumer);
-		readAndConsumeDumps(executionDataFile, dumpConsumer);
+		readAndConsumeSessions(executionDataFile, consumer, BufferedExecutionDataReader::read);
 	}
 
-	/** Reads the dumps from the given *.exec file. */
-	private void readAndConsumeDumps(File executionDataFile, Consumer<Dump> dumpConsumer) throws IOException {
-		try (InputStream input = new BufferedInputStream(new FileInputStream(executionDataFile))) {
-			ExecutionDataReader executionDataReader = new ExecutionDataReader(input);
-			DumpCallback dumpCallback = new DumpCallback(dumpConsumer);
-			executionDataReader.setExecutionDataVisitor(dumpCallback);
-			executionDataReader.setSessionInfoVisitor(dumpCallback);
-			executionDataReader.read();
-			// Ensure that the last read dump is also consumed
-			dumpCallback.processDump();
-		}
+	/**
+	 * Converts the given dumps like {@link #convertAndConsume(File, Consumer)}, but passes the tests to the consumer
+	 * ordered by their uniform path without the arguments of parameterized tests (see {@link
+	 * TestwiseCoverageReportBuilder#stripParameterizedTestArguments(String)}). All sessions of a test are therefore
+	 * passed one after the other and the converted coverage of several .exec files can be merged in a single pass. The
+	 * order of the sessions is taken from a {@link SessionIndex}, so only the session headers are read twice.
+	 */
+	public void convertSortedAndConsume(File executionDataFile,
+										Consumer<TestCoverageBuilder> consumer) throws IOException {
+		List<SessionIndex.Entry> sessions = new ArrayList<>(SessionIndex.build(executionDataFile).getSessions());
+		sessions.sort(Comparator.comparing(
+				session -> TestwiseCoverageReportBuilder.stripParameterizedTestArguments(session.sessionId)));
+		readAndConsumeSessions(executionDataFile, consumer, reader -> {
+			for (SessionIndex.Entry session : sessions) {
+				reader.read(session.offset, session.length);
+			}
+		});
 	}
 
-	/** Collects execution information per session and passes it to the consumer . */
-	private static class DumpCallback implements IExecutionDataVisitor, ISessionInfoVisitor {
-
-		/** The dump that is currently being read. */
-		private Dump currentDump = null;
-
-		/** The store to which coverage is currently written to. */
-		private ExecutionDataStore store;
-
-		/** The consumer to pass {@link Dump}s to. */
-		private Consumer<Dump> dumpConsumer;
-
-		private DumpCallback(Consumer<Dump> dumpConsumer) {
-			this.dumpConsumer = dumpConsumer;
-		}
-
-		@Override
-		public void visitSessionInfo(SessionInfo info) {
-			processDump();
-			store = new ExecutionDataStore();
-			currentDump = new Dump(info, store);
+	/** Reads the sessions from the given *.exec file with the given read action. */
+	private void readAndConsumeSessions(File executionDataFile, Consumer<TestCoverageBuilder> consumer,
+										IReadAction readAction) throws IOException {
+		CachingExecutionDataReader.SessionConsumer sessionConsumer = executionDataReader
+				.buildCoverageConsumer(locationIncludeFilter, consumer);
+		try (BufferedExecutionDataReader reader = new BufferedExecutionDataReader(executionDataFile)) {
+			reader.setSessionInfoVisitor(sessionConsumer);
+			reader.setClassExecutionVisitor(sessionConsumer);
+			readAction.read(reader);
 		}
+		// Ensure that the last read session is also consumed
+		sessionConsumer.finishSession();
+	}
 
-		@Override
-		public void visitClassExecution(ExecutionData data) {
-			store.put(data);
-		}
+	/** Reads (parts of) the file with the given reader. */
+	@FunctionalInterface
+	private interface IReadAction {
 
-		private void processDump() {
-			if (currentDump != null) {
-				dumpConsumer.accept(currentDump);
-				currentDump = null;
-			}
-		}
+		/** Reads the blocks. */
+		void read(BufferedExecutionDataReader reader) throws IOException;
 	}
-}
\ No newline at end of file
+}
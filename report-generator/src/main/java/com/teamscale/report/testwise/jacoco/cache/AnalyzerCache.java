@@ -33,13 +33,25 @@ public class AnalyzerCache extends FilteringAnalyzer {
 	/** The probes cache. */
 	private final ProbesCache probesCache;
 
+	/** Stores the analysis results across builds or null if they are not stored. */
+	private final PersistentProbesCache persistentProbesCache;
 
 	private final StringPool stringPool = new StringPool();
 
 	/** Creates a new analyzer filling the given cache. */
 	public AnalyzerCache(ProbesCache probesCache, Predicate<String> locationIncludeFilter, ILogger logger) {
+		this(probesCache, null, locationIncludeFilter, logger);
+	}
+
+	/**
+	 * Creates a new analyzer filling the given cache. Classes that are contained in the given persistent cache are not
+	 * analyzed again and newly analyzed classes are added to it.
+	 */
+	public AnalyzerCache(ProbesCache probesCache, PersistentProbesCache persistentProbesCache,
+						 Predicate<String> locationIncludeFilter, ILogger logger) {
 		super(null, null, locationIncludeFilter, logger);
 		this.probesCache = probesCache;
+		this.persistentProbesCache = persistentProbesCache;
 	}
 
 	/**
@@ -51,6 +63,13 @@ public class AnalyzerCache extends FilteringAnalyzer {
 		if (probesCache.containsClassId(classId)) {
 			return;
 		}
+		if (persistentProbesCache != null) {
+			ClassCoverageLookup cachedLookup = persistentProbesCache.load(classId);
+			if (cachedLookup != null) {
+				probesCache.addClass(classId, cachedLookup);
+				return;
+			}
+		}
 		final ClassReader reader = InstrSupport.classReaderFor(source);
 		ClassCoverageLookup classCoverageLookup = probesCache.createClass(classId, reader.getClassName());
 
@@ -63,6 +82,9 @@ public class AnalyzerCache extends FilteringAnalyzer {
 				stringPool);
 		final ClassVisitor visitor = new ClassProbesAdapter(classAnalyzer, false);
 		reader.accept(visitor, 0);
+		if (persistentProbesCache != null) {
+			persistentProbesCache.store(classId, classCoverageLookup);
+		}
 	}
 
 	/**
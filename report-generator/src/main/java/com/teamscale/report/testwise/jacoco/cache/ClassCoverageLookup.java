@@ -1,14 +1,19 @@
 package com.teamscale.report.testwise.jacoco.cache;
 
 import com.teamscale.client.StringUtils;
+import com.teamscale.report.jacoco.exec.ClassExecutionView;
 import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
 import com.teamscale.report.util.ILogger;
 import com.teamscale.report.util.SortedIntList;
 import org.jacoco.core.data.ExecutionData;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.IntPredicate;
 
 /**
  * Holds information about a class' probes and to which line ranges they refer.
@@ -43,6 +48,11 @@ public class ClassCoverageLookup {
 		this.className = className;
 	}
 
+	/** @see #className */
+	/* package */ String getClassName() {
+		return className;
+	}
+
 	/** Sets the file name of the currently analyzed class (without path). */
 	public void setSourceFileName(String sourceFileName) {
 		this.sourceFileName = sourceFileName;
@@ -77,10 +87,24 @@ public class ClassCoverageLookup {
 	public FileCoverageBuilder getFileCoverage(ExecutionData executionData,
 											   ILogger logger) throws CoverageGenerationException {
 		boolean[] executedProbes = executionData.getProbes();
+		return getFileCoverage(executedProbes.length, probeId -> executedProbes[probeId], logger);
+	}
 
-		if (checkProbeInvariant(executedProbes)) {
+	/**
+	 * Generates {@link FileCoverageBuilder} from a {@link ClassExecutionView}. Same as {@link
+	 * #getFileCoverage(ExecutionData, ILogger)}, but reads the executed probes directly from the buffer of the .exec
+	 * file reader.
+	 */
+	public FileCoverageBuilder getFileCoverage(ClassExecutionView classExecution,
+											   ILogger logger) throws CoverageGenerationException {
+		return getFileCoverage(classExecution.getProbeCount(), classExecution::isProbeHit, logger);
+	}
+
+	private FileCoverageBuilder getFileCoverage(int executedProbeCount, IntPredicate isProbeExecuted,
+												ILogger logger) throws CoverageGenerationException {
+		if (checkProbeInvariant(executedProbeCount)) {
 			throw new CoverageGenerationException("Probe lookup does not match with actual probe size for " +
-					sourceFileName + " " + className + " (" + probes.size() + " vs " + executedProbes.length + ")! " +
+					sourceFileName + " " + className + " (" + probes.size() + " vs " + executedProbeCount + ")! " +
 					"This is a bug in the profiler tooling. Please report it back to CQSE.");
 		}
 		if (sourceFileName == null) {
@@ -92,22 +116,23 @@ public class ClassCoverageLookup {
 
 		String packageName = StringUtils.removeLastPart(className, '/');
 		final FileCoverageBuilder fileCoverage = new FileCoverageBuilder(packageName, sourceFileName);
-		fillFileCoverage(fileCoverage, executedProbes, logger);
+		fillFileCoverage(fileCoverage, executedProbeCount, isProbeExecuted, logger);
 
 		return fileCoverage;
 	}
 
-	private void fillFileCoverage(FileCoverageBuilder fileCoverage, boolean[] executedProbes, ILogger logger) {
+	private void fillFileCoverage(FileCoverageBuilder fileCoverage, int executedProbeCount,
+								  IntPredicate isProbeExecuted, ILogger logger) {
 		for (int i = 0; i < probes.size(); i++) {
 			SortedIntList coveredLines = probes.get(i);
-			if (!executedProbes[i]) {
+			if (!isProbeExecuted.test(i)) {
 				continue;
 			}
 			// coveredLines is null if the probe is outside of a method
 			// Happens e.g. for methods generated by Lombok
 			if (coveredLines == null) {
 				logger.info(sourceFileName + " " + className + " did contain a covered probe " + i + "(of " +
-						executedProbes.length + ") that could not be " +
+						executedProbeCount + ") that could not be " +
 						"matched to any method. This could be a bug in the profiler tooling. Please report it back " +
 						"to CQSE.");
 				continue;
@@ -122,8 +147,50 @@ public class ClassCoverageLookup {
 		}
 	}
 
+	/** Writes the lookup to the given stream so that it can be restored with {@link #readFrom(DataInput)}. */
+	/* package */ void writeTo(DataOutput output) throws IOException {
+		output.writeUTF(className);
+		output.writeBoolean(sourceFileName != null);
+		if (sourceFileName != null) {
+			output.writeUTF(sourceFileName);
+		}
+		output.writeInt(probes.size());
+		for (SortedIntList lines : probes) {
+			if (lines == null) {
+				output.writeInt(-1);
+				continue;
+			}
+			output.writeInt(lines.size());
+			for (int i = 0; i < lines.size(); i++) {
+				output.writeInt(lines.get(i));
+			}
+		}
+	}
+
+	/** Reads a lookup that has been written with {@link #writeTo(DataOutput)}. */
+	/* package */ static ClassCoverageLookup readFrom(DataInput input) throws IOException {
+		ClassCoverageLookup lookup = new ClassCoverageLookup(input.readUTF());
+		if (input.readBoolean()) {
+			lookup.setSourceFileName(input.readUTF());
+		}
+		int probeCount = input.readInt();
+		lookup.setTotalProbeCount(probeCount);
+		for (int probeId = 0; probeId < probeCount; probeId++) {
+			int lineCount = input.readInt();
+			if (lineCount < 0) {
+				continue;
+			}
+			SortedIntList lines = new SortedIntList();
+			for (int i = 0; i < lineCount; i++) {
+				lines.add(input.readInt());
+			}
+			lookup.addProbe(probeId, lines);
+		}
+		return lookup;
+	}
+
 	/** Checks that the executed probes is not smaller than the cached probes. */
-	private boolean checkProbeInvariant(boolean[] executedProbes) {
-		return probes.size() > executedProbes.length;
+	private boolean checkProbeInvariant(int executedProbeCount) {
+		return probes.size() > executedProbeCount;
 	}
 }
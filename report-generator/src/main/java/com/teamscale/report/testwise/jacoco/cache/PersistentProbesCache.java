@@ -0,0 +1,181 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import com.teamscale.report.util.ILogger;
+import org.jacoco.core.JaCoCo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stores analyzed {@link ClassCoverageLookup}s on disk so that unchanged class files do not need to be analyzed again,
+ * e.g. in later builds or on other machines that share the directory. Entries are keyed by the class ID, which is
+ * JaCoCo's CRC64 hash of the class file, so an entry is valid as long as the class file is identical.
+ * <p>
+ * The probes of a class depend on the JaCoCo version that analyzed it, so the directory of the entries is named after
+ * the entry format version and the JaCoCo version. Entries of other versions are simply ignored and deleted by {@link
+ * #evictStaleEntries()}, which also deletes entries that have not been used for {@link #MAX_ENTRY_AGE_MILLIS}.
+ * <p>
+ * Several processes may use the same directory concurrently: Each entry is written to a temporary file first and then
+ * atomically moved to its final location, so readers either see a complete entry or none at all. If two processes
+ * analyze the same class at the same time, both write identical entries and the last one wins.
+ */
+public class PersistentProbesCache {
+
+	/** Version of the entry format. Part of the directory name, so entries of other versions are simply ignored. */
+	private static final int FORMAT_VERSION = 1;
+
+	/** How long an entry is kept after it has been used for the last time. */
+	/* package */ static final long MAX_ENTRY_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+	/**
+	 * How often the last use of an entry is recorded in its modification time and how often stale entries are evicted
+	 * at most, so neither happens on every build.
+	 */
+	private static final long MAINTENANCE_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	/** The file whose modification time records the last eviction. */
+	private static final String LAST_EVICTION_FILE_NAME = "last-eviction";
+
+	/** The directory that holds the directories of all versions. */
+	private final File cacheDirectory;
+
+	/** The directory that holds the entries of the current format and JaCoCo version. */
+	private final File directory;
+
+	/** The logger. */
+	private final ILogger logger;
+
+	/** Constructor. */
+	public PersistentProbesCache(File cacheDirectory, ILogger logger) {
+		this.cacheDirectory = cacheDirectory;
+		this.directory = new File(cacheDirectory, "v" + FORMAT_VERSION + "-jacoco-" + JaCoCo.VERSION);
+		this.logger = logger;
+	}
+
+	/** Returns the stored lookup of the class with the given ID or null if it has not been stored yet. */
+	public ClassCoverageLookup load(long classId) {
+		File entry = getEntryFile(classId);
+		long lastModified = entry.lastModified();
+		if (lastModified == 0) {
+			return null;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry.toPath())))) {
+			ClassCoverageLookup lookup = ClassCoverageLookup.readFrom(input);
+			long now = System.currentTimeMillis();
+			if (now - lastModified > MAINTENANCE_INTERVAL_MILLIS) {
+				// Records the use of the entry, so it is not evicted
+				entry.setLastModified(now);
+			}
+			return lookup;
+		} catch (IOException e) {
+			logger.debug("Failed to read cached probes from " + entry + ". The class will be analyzed again: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the entries of other format or JaCoCo versions and entries that have not been used for {@link
+	 * #MAX_ENTRY_AGE_MILLIS}. Does nothing if the last eviction happened less than a day ago. Failures are only logged,
+	 * since the cache is optional.
+	 */
+	public void evictStaleEntries() {
+		evictStaleEntries(System.currentTimeMillis());
+	}
+
+	/** Evicts the stale entries as seen at the given time. */
+	/* package */ void evictStaleEntries(long now) {
+		File lastEvictionFile = new File(cacheDirectory, LAST_EVICTION_FILE_NAME);
+		if (now - lastEvictionFile.lastModified() < MAINTENANCE_INTERVAL_MILLIS) {
+			return;
+		}
+		try {
+			Files.createDirectories(cacheDirectory.toPath());
+			if (!lastEvictionFile.createNewFile()) {
+				lastEvictionFile.setLastModified(now);
+			}
+			File[] versionDirectories = cacheDirectory.listFiles(File::isDirectory);
+			if (versionDirectories == null) {
+				return;
+			}
+			for (File versionDirectory : versionDirectories) {
+				boolean isOtherVersion = !versionDirectory.equals(directory);
+				try (Stream<Path> files = Files.walk(versionDirectory.toPath())) {
+					files.filter(Files::isRegularFile)
+							.filter(file -> isOtherVersion || now - file.toFile().lastModified() > MAX_ENTRY_AGE_MILLIS)
+							.forEach(PersistentProbesCache::deleteQuietly);
+				}
+				if (isOtherVersion) {
+					deleteEmptyDirectories(versionDirectory);
+				}
+			}
+		} catch (IOException | UncheckedIOException e) {
+			logger.debug("Failed to evict stale entries from the probes cache in " + cacheDirectory + ": " + e);
+		}
+	}
+
+	/** Deletes the given directory and all its subdirectories if they are empty. */
+	private static void deleteEmptyDirectories(File directory) {
+		File[] subdirectories = directory.listFiles(File::isDirectory);
+		if (subdirectories != null) {
+			for (File subdirectory : subdirectories) {
+				deleteEmptyDirectories(subdirectory);
+			}
+		}
+		// Fails if another process added an entry in the meantime, which is fine
+		directory.delete();
+	}
+
+	/** Stores the lookup of the class with the given ID. Failures are only logged, since the cache is optional. */
+	public void store(long classId, ClassCoverageLookup classCoverageLookup) {
+		File entry = getEntryFile(classId);
+		Path temporaryFile = null;
+		try {
+			Files.createDirectories(entry.getParentFile().toPath());
+			temporaryFile = Files.createTempFile(entry.getParentFile().toPath(), entry.getName(), ".tmp");
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+				classCoverageLookup.writeTo(output);
+			}
+			moveAtomically(temporaryFile, entry.toPath());
+		} catch (IOException e) {
+			logger.debug("Failed to cache probes in " + entry + ": " + e);
+			deleteQuietly(temporaryFile);
+		}
+	}
+
+	private static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// Nothing we can do about it
+		}
+	}
+
+	/** Returns the file of the entry. Entries are distributed over 256 subdirectories to keep the directories small. */
+	private File getEntryFile(long classId) {
+		String name = String.format("%016x", classId);
+		return new File(new File(directory, name.substring(0, 2)), name);
+	}
+}
@@ -1,6 +1,7 @@
 package com.teamscale.report.testwise.jacoco.cache;
 
 import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.jacoco.exec.ClassExecutionView;
 import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
 import com.teamscale.report.util.ILogger;
 import org.jacoco.core.data.ExecutionData;
@@ -10,6 +11,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Holds {@link ClassCoverageLookup}s for all analyzed classes.
@@ -39,6 +41,14 @@ public class ProbesCache {
 
 	/** Adds a new class entry to the cache and returns its {@link ClassCoverageLookup}. */
 	public ClassCoverageLookup createClass(long classId, String className) {
+		ClassCoverageLookup classCoverageLookup = new ClassCoverageLookup(className);
+		addClass(classId, classCoverageLookup);
+		return classCoverageLookup;
+	}
+
+	/** Adds a class entry that has already been analyzed before, e.g. one restored from a {@link PersistentProbesCache}. */
+	public void addClass(long classId, ClassCoverageLookup classCoverageLookup) {
+		String className = classCoverageLookup.getClassName();
 		if (containedClasses.contains(className)) {
 			if (duplicateClassFileBehavior != EDuplicateClassFileBehavior.IGNORE) {
 				logger.warn("Non-identical class file for class " + className + "."
@@ -53,9 +63,7 @@ public class ProbesCache {
 			}
 		}
 		containedClasses.add(className);
-		ClassCoverageLookup classCoverageLookup = new ClassCoverageLookup(className);
 		classCoverageLookups.put(classId, classCoverageLookup);
-		return classCoverageLookup;
 	}
 
 	/** Returns whether a class with the given class ID has already been analyzed. */
@@ -69,19 +77,44 @@ public class ProbesCache {
 	 */
 	public FileCoverageBuilder getCoverage(ExecutionData executionData,
 										   Predicate<String> locationIncludeFilter) throws CoverageGenerationException {
-		long classId = executionData.getId();
-		if (!containsClassId(classId)) {
-			String fullyQualifiedClassName = new JavaNames().getQualifiedClassName(executionData.getName());
-			if (locationIncludeFilter.test(fullyQualifiedClassName + ".class")) {
-				classNotFoundLogger.log(fullyQualifiedClassName);
-			}
+		ClassCoverageLookup classCoverageLookup = getLookup(executionData.getId(), executionData::getName,
+				locationIncludeFilter);
+		if (classCoverageLookup == null || !executionData.hasHits()) {
 			return null;
 		}
-		if (!executionData.hasHits()) {
+
+		return classCoverageLookup.getFileCoverage(executionData, logger);
+	}
+
+	/**
+	 * Converts the given {@link ClassExecutionView} to {@link FileCoverageBuilder} using the cached lookups or null if
+	 * the class file of this class has not been included in the analysis or was not covered.
+	 */
+	public FileCoverageBuilder getCoverage(ClassExecutionView classExecution,
+										   Predicate<String> locationIncludeFilter) throws CoverageGenerationException {
+		ClassCoverageLookup classCoverageLookup = getLookup(classExecution.getClassId(), classExecution::getName,
+				locationIncludeFilter);
+		if (classCoverageLookup == null || !classExecution.hasHits()) {
 			return null;
 		}
 
-		return classCoverageLookups.get(classId).getFileCoverage(executionData, logger);
+		return classCoverageLookup.getFileCoverage(classExecution, logger);
+	}
+
+	/**
+	 * Returns the {@link ClassCoverageLookup} for the given class ID or null if the class file has not been included in
+	 * the analysis. The class name is only computed in the latter case to log the missing class.
+	 */
+	private ClassCoverageLookup getLookup(long classId, Supplier<String> className,
+										  Predicate<String> locationIncludeFilter) {
+		ClassCoverageLookup classCoverageLookup = classCoverageLookups.get(classId);
+		if (classCoverageLookup == null) {
+			String fullyQualifiedClassName = new JavaNames().getQualifiedClassName(className.get());
+			if (locationIncludeFilter.test(fullyQualifiedClassName + ".class")) {
+				classNotFoundLogger.log(fullyQualifiedClassName);
+			}
+		}
+		return classCoverageLookup;
 	}
 
 	/** Returns true if the cache does not contain coverage for any class. */
@@ -15,6 +15,11 @@ public class LineRange {
 		this.end = end;
 	}
 
+	/** @see #start */
+	public int getStart() {
+		return start;
+	}
+
 	/** @see #end */
 	public int getEnd() {
 		return end;
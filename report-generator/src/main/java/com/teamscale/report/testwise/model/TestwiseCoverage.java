@@ -1,16 +1,26 @@
 package com.teamscale.report.testwise.model;
 
+import com.teamscale.report.testwise.model.builder.CoverageInterner;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
-/** Container for coverage produced by multiple tests. */
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Container for coverage produced by multiple tests. Each distinct coverage is only stored once (see {@link
+ * CoverageInterner}), so memory usage grows with the number of distinct code paths rather than with the number of
+ * tests.
+ */
 public class TestwiseCoverage {
 
-	/** A mapping from test ID to {@link TestCoverageBuilder}. */
-	private final Map<String, TestCoverageBuilder> tests = new HashMap<>();
+	/** A mapping from test ID to the ID of its coverage in the {@link #interner}. */
+	private final Map<String, String> coverageIds = new HashMap<>();
+
+	/** Holds the distinct coverage of all tests. */
+	private final CoverageInterner interner = new CoverageInterner();
 
 	/**
 	 * Adds the {@link TestCoverageBuilder} to the map.
@@ -20,12 +30,15 @@ public class TestwiseCoverage {
 		if (coverage == null || coverage.isEmpty()) {
 			return;
 		}
-		if (tests.containsKey(coverage.getUniformPath())) {
-			TestCoverageBuilder testCoverage = tests.get(coverage.getUniformPath());
+		String existingCoverageId = coverageIds.get(coverage.getUniformPath());
+		if (existingCoverageId != null) {
+			// The interned coverage may be shared with other tests, so we merge into a copy
+			TestCoverageBuilder testCoverage = interner.get(existingCoverageId).copyFor(coverage.getUniformPath());
 			testCoverage.addAll(coverage.getFiles());
-		} else {
-			tests.put(coverage.getUniformPath(), coverage);
+			interner.release(existingCoverageId);
+			coverage = testCoverage;
 		}
+		coverageIds.put(coverage.getUniformPath(), interner.intern(coverage));
 	}
 
 	/**
@@ -35,12 +48,43 @@ public class TestwiseCoverage {
 		if (testwiseCoverage == null) {
 			return;
 		}
-		for (TestCoverageBuilder value : testwiseCoverage.tests.values()) {
-			this.add(value);
+		for (Map.Entry<String, String> test : testwiseCoverage.coverageIds.entrySet()) {
+			// Interned coverage is never modified, so it can be shared between both containers
+			this.add(testwiseCoverage.interner.get(test.getValue()).shareWith(test.getKey()));
 		}
 	}
 
+	/**
+	 * Returns the coverage of all tests. Tests with the same coverage share the underlying data, so the returned
+	 * builders must not be modified.
+	 */
 	public Collection<TestCoverageBuilder> getTests() {
-		return tests.values();
+		return coverageIds.entrySet().stream()
+				.map(test -> interner.get(test.getValue()).shareWith(test.getKey()))
+				.collect(toList());
+	}
+
+	/**
+	 * Removes the given test and returns a copy of its coverage that can be modified, or null if there is no coverage
+	 * for the test.
+	 */
+	public TestCoverageBuilder remove(String uniformPath) {
+		String coverageId = coverageIds.remove(uniformPath);
+		if (coverageId == null) {
+			return null;
+		}
+		TestCoverageBuilder coverage = interner.get(coverageId).copyFor(uniformPath);
+		interner.release(coverageId);
+		return coverage;
+	}
+
+	/** Returns the ID of the coverage of the given test or null if the test has no coverage. */
+	public String getCoverageId(String uniformPath) {
+		return coverageIds.get(uniformPath);
+	}
+
+	/** Returns the distinct coverage of all tests by coverage ID. */
+	public Map<String, TestCoverageBuilder> getDistinctCoverage() {
+		return interner.getDistinctCoverage();
 	}
 }
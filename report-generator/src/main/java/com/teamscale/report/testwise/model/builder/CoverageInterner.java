@@ -0,0 +1,99 @@
+package com.teamscale.report.testwise.model.builder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores each distinct coverage only once. Parameterized tests and tests that exercise the same code path often have
+ * exactly the same covered lines. The coverage is identified by a hash of its canonical form (see {@link
+ * #computeCoverageId(TestCoverageBuilder)}), so tests with the same coverage can reference a single {@link
+ * TestCoverageBuilder} instead of each keeping its own copy.
+ */
+public class CoverageInterner {
+
+	/** Hash algorithm used to identify coverage. */
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	/** Maps coverage IDs to the first coverage that has been interned with this ID. */
+	private final Map<String, TestCoverageBuilder> distinctCoverage = new HashMap<>();
+
+	/** Number of references to each coverage ID. */
+	private final Map<String, Integer> referenceCounts = new HashMap<>();
+
+	/**
+	 * Interns the given coverage and returns its ID. If the same coverage has already been interned, the given builder
+	 * is not stored. The interned coverage must not be modified afterwards.
+	 */
+	public String intern(TestCoverageBuilder coverage) {
+		String coverageId = computeCoverageId(coverage);
+		distinctCoverage.putIfAbsent(coverageId, coverage);
+		referenceCounts.merge(coverageId, 1, Integer::sum);
+		return coverageId;
+	}
+
+	/** Removes one reference to the given coverage and drops the coverage once it is no longer referenced. */
+	public void release(String coverageId) {
+		Integer referenceCount = referenceCounts.get(coverageId);
+		if (referenceCount == null) {
+			return;
+		}
+		if (referenceCount > 1) {
+			referenceCounts.put(coverageId, referenceCount - 1);
+		} else {
+			referenceCounts.remove(coverageId);
+			distinctCoverage.remove(coverageId);
+		}
+	}
+
+	/** Returns the interned coverage with the given ID or null if there is none. */
+	public TestCoverageBuilder get(String coverageId) {
+		return distinctCoverage.get(coverageId);
+	}
+
+	/** Returns all distinct coverage by ID. */
+	public Map<String, TestCoverageBuilder> getDistinctCoverage() {
+		return Collections.unmodifiableMap(distinctCoverage);
+	}
+
+	/**
+	 * Computes the ID of the given coverage, which is the hex encoded SHA-256 hash of all covered files sorted by path
+	 * and file name together with their covered line ranges. The uniform path of the test is not part of the hash.
+	 */
+	public static String computeCoverageId(TestCoverageBuilder coverage) {
+		List<FileCoverageBuilder> files = coverage.getFiles();
+		files.sort(Comparator.comparing(FileCoverageBuilder::getPath).thenComparing(FileCoverageBuilder::getFileName));
+		MessageDigest digest = createDigest();
+		for (FileCoverageBuilder file : files) {
+			digest.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(file.getFileName().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(file.computeCompactifiedRangesAsString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '\n');
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(HASH_ALGORITHM + " is supported by every JVM.", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte value : bytes) {
+			hex.append(Character.forDigit((value >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(value & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
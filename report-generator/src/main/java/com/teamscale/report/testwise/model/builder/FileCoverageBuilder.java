@@ -90,12 +90,17 @@ public class FileCoverageBuilder {
 		return compactifiedRanges;
 	}
 
+	/** Returns the covered lines merged to sorted ranges. */
+	public List<LineRange> getCoveredLineRanges() {
+		return compactifyToRanges(coveredLines);
+	}
+
 	/**
 	 * Returns a compact string representation of the covered lines. Continuous line ranges are merged to ranges and
 	 * sorted. Individual ranges are separated by commas. E.g. 1-5,7,9-11.
 	 */
 	public String computeCompactifiedRangesAsString() {
-		List<LineRange> coveredRanges = compactifyToRanges(coveredLines);
+		List<LineRange> coveredRanges = getCoveredLineRanges();
 		return coveredRanges.stream().map(LineRange::toReportString).collect(Collectors.joining(","));
 	}
 
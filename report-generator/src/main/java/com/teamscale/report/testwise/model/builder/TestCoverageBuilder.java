@@ -16,11 +16,36 @@ public class TestCoverageBuilder {
 	private final String uniformPath;
 
 	/** Mapping from path names to all files on this path. */
-	private final Map<String, PathCoverageBuilder> pathCoverageList = new HashMap<>();
+	private final Map<String, PathCoverageBuilder> pathCoverageList;
 
 	/** Constructor. */
 	public TestCoverageBuilder(String uniformPath) {
+		this(uniformPath, new HashMap<>());
+	}
+
+	private TestCoverageBuilder(String uniformPath, Map<String, PathCoverageBuilder> pathCoverageList) {
 		this.uniformPath = uniformPath;
+		this.pathCoverageList = pathCoverageList;
+	}
+
+	/**
+	 * Returns a builder for the given test that shares the coverage with this builder, i.e. changes to the coverage of
+	 * one are visible in the other. Used to hand out interned coverage (see {@link CoverageInterner}) without copying
+	 * it.
+	 */
+	public TestCoverageBuilder shareWith(String uniformPath) {
+		return new TestCoverageBuilder(uniformPath, pathCoverageList);
+	}
+
+	/** Returns a deep copy of the coverage for the given test that can be modified independently of this builder. */
+	public TestCoverageBuilder copyFor(String uniformPath) {
+		TestCoverageBuilder copy = new TestCoverageBuilder(uniformPath);
+		for (FileCoverageBuilder fileCoverage : getFiles()) {
+			FileCoverageBuilder fileCopy = new FileCoverageBuilder(fileCoverage.getPath(), fileCoverage.getFileName());
+			fileCopy.merge(fileCoverage);
+			copy.add(fileCopy);
+		}
+		return copy;
 	}
 
 	/** @see #uniformPath */
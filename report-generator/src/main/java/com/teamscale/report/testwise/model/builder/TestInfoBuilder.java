@@ -49,6 +49,36 @@ public class TestInfoBuilder {
 		return uniformPath;
 	}
 
+	/** @see #sourcePath */
+	public String getSourcePath() {
+		return sourcePath;
+	}
+
+	/** @see #content */
+	public String getContent() {
+		return content;
+	}
+
+	/** @see #durationSeconds */
+	public Double getDurationSeconds() {
+		return durationSeconds;
+	}
+
+	/** @see #result */
+	public ETestExecutionResult getResult() {
+		return result;
+	}
+
+	/** @see #message */
+	public String getMessage() {
+		return message;
+	}
+
+	/** @see #coverage */
+	public TestCoverageBuilder getCoverage() {
+		return coverage;
+	}
+
 	/** Returns true if there is no coverage for the test yet. */
 	public boolean isEmpty() {
 		return coverage.isEmpty();
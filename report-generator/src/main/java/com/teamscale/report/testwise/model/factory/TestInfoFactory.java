@@ -14,6 +14,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static java.util.stream.Collectors.toList;
+
 /**
  * Factory class for converting {@link TestCoverageBuilder} to {@link TestInfo}s while augmenting them with information
  * from test details and test executions.
@@ -43,6 +45,14 @@ public class TestInfoFactory {
 	 * test executions.
 	 */
 	public TestInfo createFor(TestCoverageBuilder testCoverageBuilder) {
+		return createBuilderFor(testCoverageBuilder).build();
+	}
+
+	/**
+	 * Same as {@link #createFor(TestCoverageBuilder)}, but returns the {@link TestInfoBuilder} so that report writers
+	 * can access the coverage directly instead of its string representation.
+	 */
+	public TestInfoBuilder createBuilderFor(TestCoverageBuilder testCoverageBuilder) {
 		String resolvedUniformPath = resolveUniformPath(testCoverageBuilder.getUniformPath());
 		uniformPathsWithCoverage.add(resolvedUniformPath);
 
@@ -58,18 +68,23 @@ public class TestInfoFactory {
 			System.err.println("No test execution found for " + resolvedUniformPath);
 		}
 		container.setExecution(execution);
-		return container.build();
+		return container;
 	}
 
 	/** Returns {@link TestInfo}s for all tests that have not been used yet in {@link #createFor(TestCoverageBuilder)}. */
 	public List<TestInfo> createTestInfosWithoutCoverage() {
-		ArrayList<TestInfo> results = new ArrayList<>();
+		return createBuildersWithoutCoverage().stream().map(TestInfoBuilder::build).collect(toList());
+	}
+
+	/** Same as {@link #createTestInfosWithoutCoverage()}, but returns the {@link TestInfoBuilder}s. */
+	public List<TestInfoBuilder> createBuildersWithoutCoverage() {
+		ArrayList<TestInfoBuilder> results = new ArrayList<>();
 		for (TestDetails testDetails : testDetailsMap.values()) {
-			if (uniformPathsWithCoverage.contains(testDetails.uniformPath)) {
+			if (!uniformPathsWithCoverage.contains(testDetails.uniformPath)) {
 				TestInfoBuilder testInfo = new TestInfoBuilder(testDetails.uniformPath);
 				testInfo.setDetails(testDetails);
 				testInfo.setExecution(testExecutionsMap.get(testDetails.uniformPath));
-				results.add(testInfo.build());
+				results.add(testInfo);
 			}
 		}
 		return results;
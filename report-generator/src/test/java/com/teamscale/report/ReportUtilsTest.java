@@ -0,0 +1,45 @@
+package com.teamscale.report;
+
+import com.teamscale.client.EReportCompression;
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.testwise.ETestArtifactFormat;
+import okio.BufferedSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for {@link ReportUtils}. */
+class ReportUtilsTest {
+
+	/** Tests that compressed and compact reports are found and read transparently. */
+	@Test
+	void readsCompressedReports(@TempDir Path directory) throws IOException {
+		List<TestDetails> testDetails = Arrays.asList(new TestDetails("Test1", "src/Test1.java", "a"),
+				new TestDetails("Test2", "src/Test2.java", "b"));
+		for (EReportCompression compression : EReportCompression.values()) {
+			File reportFile = directory.resolve("test-list-" + compression.name() + ".json" + compression.fileSuffix)
+					.toFile();
+			ReportUtils.writeTestListReport(reportFile, testDetails, compression, compression != EReportCompression.NONE);
+			assertThat(Files.readAllBytes(reportFile.toPath())[0] == '[').isEqualTo(compression == EReportCompression.NONE);
+		}
+		try (BufferedSource source = EReportCompression
+				.openDecompressed(directory.resolve("test-list-DEFLATE.json.deflate").toFile())) {
+			assertThat(source.readUtf8()).doesNotContain("\t").doesNotContain("\n");
+		}
+
+		List<TestDetails> readTestDetails = ReportUtils.readObjects(ETestArtifactFormat.TEST_LIST,
+				TestDetails[].class, Collections.singletonList(directory.toFile()));
+
+		assertThat(readTestDetails).hasSize(6).extracting(details -> details.uniformPath)
+				.containsOnly("Test1", "Test2");
+	}
+}
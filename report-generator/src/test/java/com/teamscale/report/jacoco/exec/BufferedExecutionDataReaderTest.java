@@ -0,0 +1,92 @@
+package com.teamscale.report.jacoco.exec;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the {@link BufferedExecutionDataReader}. */
+class BufferedExecutionDataReaderTest {
+
+	private File execFile;
+
+	@BeforeEach
+	void createExecFile() throws IOException {
+		execFile = File.createTempFile("coverage", ".exec");
+		try (OutputStream output = new FileOutputStream(execFile)) {
+			ExecutionDataWriter writer = new ExecutionDataWriter(output);
+			writer.visitSessionInfo(new SessionInfo("Test1", 1, 2));
+			writer.visitClassExecution(new ExecutionData(1, "com/example/Foo", probes(0, 3, 8)));
+			writer.visitClassExecution(new ExecutionData(2, "com/example/B\u00e4r", new boolean[3]));
+			writer.visitSessionInfo(new SessionInfo("Test2", 3, 4));
+			writer.visitClassExecution(new ExecutionData(1, "com/example/Foo", probes(1, 3)));
+		}
+	}
+
+	@AfterEach
+	void deleteExecFile() {
+		execFile.delete();
+	}
+
+	/** Tests that sessions and probes are decoded like JaCoCo writes them, also across window boundaries. */
+	@Test
+	void readsAllRecords() throws IOException {
+		for (int windowSize : new int[]{7, 1024}) {
+			List<String> records = new ArrayList<>();
+			try (BufferedExecutionDataReader reader = new BufferedExecutionDataReader(execFile, windowSize)) {
+				reader.setSessionInfoVisitor(info -> records.add(info.getId() + " " + info.getStartTimeStamp()));
+				reader.setClassExecutionVisitor(view -> records
+						.add(view.getClassId() + " " + view.getName() + " " + view.getProbeCount() + " " +
+								view.hasHits() + " " + toString(view.copyProbes())));
+				assertThat(reader.read()).isTrue();
+			}
+			assertThat(records).containsExactly("Test1 1",
+					"1 com/example/Foo 12 true 100100001000",
+					"2 com/example/B\u00e4r 3 false 000",
+					"Test2 3",
+					"1 com/example/Foo 12 true 010100000000");
+		}
+	}
+
+	/** Tests that the {@link ExecutionDataMerger} merges probes of all sessions. */
+	@Test
+	void mergesSessions() throws IOException {
+		ExecutionDataMerger merger = new ExecutionDataMerger();
+		try (BufferedExecutionDataReader reader = new BufferedExecutionDataReader(execFile)) {
+			reader.setSessionInfoVisitor(merger);
+			reader.setClassExecutionVisitor(merger);
+			reader.read();
+		}
+		SessionInfo info = merger.createDump("merged").info;
+		assertThat(info.getStartTimeStamp()).isEqualTo(1);
+		assertThat(info.getDumpTimeStamp()).isEqualTo(4);
+		assertThat(toString(merger.createDump("merged").store.get(1).getProbes())).isEqualTo("110100001000");
+	}
+
+	private static boolean[] probes(int... executedProbes) {
+		boolean[] probes = new boolean[12];
+		for (int probe : executedProbes) {
+			probes[probe] = true;
+		}
+		return probes;
+	}
+
+	private static String toString(boolean[] probes) {
+		StringBuilder builder = new StringBuilder();
+		for (boolean probe : probes) {
+			builder.append(probe ? '1' : '0');
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,65 @@
+package com.teamscale.report.jacoco.exec;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the {@link SessionIndex}. */
+class SessionIndexTest {
+
+	private File execFile;
+
+	@BeforeEach
+	void createExecFile() throws IOException {
+		execFile = File.createTempFile("coverage", ".exec");
+		try (OutputStream output = new FileOutputStream(execFile)) {
+			ExecutionDataWriter writer = new ExecutionDataWriter(output);
+			for (int test = 1; test <= 4; test++) {
+				writer.visitSessionInfo(new SessionInfo("Test" + test, test, test));
+				for (int classId = 0; classId < test; classId++) {
+					writer.visitClassExecution(new ExecutionData(classId, "Class" + classId, new boolean[]{true}));
+				}
+			}
+		}
+	}
+
+	@AfterEach
+	void deleteExecFile() {
+		execFile.delete();
+	}
+
+	/** Tests that the indexed sessions can be read on their own and in any order with the same reader. */
+	@Test
+	void readSingleSessions() throws IOException {
+		SessionIndex index = SessionIndex.build(execFile);
+
+		assertThat(index.getSessions()).extracting(session -> session.sessionId)
+				.containsExactly("Test1", "Test2", "Test3", "Test4");
+		SessionIndex.Entry last = index.getSessions().get(3);
+		assertThat(last.offset + last.length).isEqualTo(execFile.length());
+
+		for (int windowSize : new int[]{7, 1024}) {
+			List<String> records = new ArrayList<>();
+			try (BufferedExecutionDataReader reader = new BufferedExecutionDataReader(execFile, windowSize)) {
+				reader.setSessionInfoVisitor(info -> records.add(info.getId()));
+				reader.setClassExecutionVisitor(view -> records.add(String.valueOf(view.getClassId())));
+				for (int session : new int[]{2, 0, 3}) {
+					reader.read(index.getSessions().get(session).offset, index.getSessions().get(session).length);
+				}
+			}
+			assertThat(records).containsExactly("Test3", "0", "1", "2", "Test1", "0", "Test4", "0", "1", "2", "3");
+		}
+	}
+}
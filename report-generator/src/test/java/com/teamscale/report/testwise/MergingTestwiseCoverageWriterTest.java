@@ -0,0 +1,135 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.client.EReportCompression;
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.ReportUtils;
+import com.teamscale.report.testwise.binary.BinaryTestwiseCoverageReader;
+import com.teamscale.report.testwise.binary.BinaryTestwiseCoverageWriter;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.report.testwise.model.TestwiseCoverage;
+import com.teamscale.report.testwise.model.TestwiseCoverageReport;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+import com.teamscale.report.util.CommandLineLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests for {@link MergingTestwiseCoverageWriter}. */
+class MergingTestwiseCoverageWriterTest {
+
+	private static final String TEST_A = "com/example/FooTest/testA()";
+
+	private static final String TEST_B = "com/example/FooTest/testB()";
+
+	private static final String TEST_P = "com/example/FooTest/testP()";
+
+	/**
+	 * Tests that a test whose coverage is spread over two .exec files (converted to sorted intermediate binary files)
+	 * and Closure coverage is written exactly once with the merged coverage and that coverage of tests without test
+	 * details is dropped.
+	 */
+	@Test
+	void mergesCoverageOfTestSpreadOverTwoFiles(@TempDir File directory) throws Exception {
+		List<TestDetails> testDetails = Arrays.asList(
+				new TestDetails(TEST_A, "com/example/FooTest", "content"),
+				new TestDetails(TEST_B, "com/example/FooTest", "content"),
+				new TestDetails(TEST_P, "com/example/FooTest", "content"));
+		List<TestExecution> testExecutions = Arrays.asList(
+				new TestExecution(TEST_A, 100, ETestExecutionResult.PASSED),
+				new TestExecution(TEST_B, 10, ETestExecutionResult.PASSED),
+				new TestExecution(TEST_P, 20, ETestExecutionResult.PASSED));
+		File firstExecFile = writeIntermediateFile(new File(directory, "first.twc"),
+				coverage(TEST_A, file("com/example", "Foo.java", 1, 2)),
+				coverage(TEST_P + "[1]", file("com/example", "Bar.java", 4)),
+				coverage("com/example/FooTest/withoutDetails()", file("com/example", "Foo.java", 7)));
+		File secondExecFile = writeIntermediateFile(new File(directory, "second.twc"),
+				coverage(TEST_A, file("com/example", "Foo.java", 3), file("com/example", "Bar.java", 9)),
+				coverage(TEST_P + "[2]", file("com/example", "Bar.java", 5)));
+		TestwiseCoverage closureCoverage = new TestwiseCoverage();
+		closureCoverage.add(coverage(TEST_A, file("js", "app.js", 1)));
+
+		File reportFile = new File(directory, "report.json");
+		MergingTestwiseCoverageWriter writer = new MergingTestwiseCoverageWriter(
+				new TestwiseCoverageReportWriter(new TestInfoFactory(testDetails, testExecutions), reportFile,
+						EReportCompression.NONE, false), testDetails, new CommandLineLogger());
+		try (BinaryTestwiseCoverageReader firstReader = new BinaryTestwiseCoverageReader(firstExecFile);
+			 BinaryTestwiseCoverageReader secondReader = new BinaryTestwiseCoverageReader(secondExecFile)) {
+			writer.merge(Arrays.asList(ISortedCoverageSource.of(closureCoverage), firstReader::readNextCoverage,
+					secondReader::readNextCoverage));
+		} finally {
+			writer.close();
+		}
+
+		TestwiseCoverageReport expected = new TestwiseCoverageReport();
+		TestInfoFactory testInfoFactory = new TestInfoFactory(testDetails, testExecutions);
+		expected.tests.add(testInfoFactory.createFor(coverage(TEST_A, file("com/example", "Foo.java", 1, 2, 3),
+				file("com/example", "Bar.java", 9), file("js", "app.js", 1))));
+		expected.tests.add(testInfoFactory.createFor(coverage(TEST_P, file("com/example", "Bar.java", 4, 5))));
+		expected.tests.addAll(testInfoFactory.createTestInfosWithoutCoverage());
+		JSONAssert.assertEquals(ReportUtils.getTestwiseCoverageReportAsString(expected),
+				new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8), JSONCompareMode.STRICT);
+	}
+
+	/** Tests that a test is written once the coverage of the next test arrives and that unsorted input is rejected. */
+	@Test
+	void writesEachTestWhenItIsComplete() throws Exception {
+		List<String> writtenTests = new ArrayList<>();
+		MergingTestwiseCoverageWriter writer = new MergingTestwiseCoverageWriter(new ITestwiseCoverageWriter() {
+			@Override
+			public void accept(TestCoverageBuilder test) {
+				writtenTests.add(test.getUniformPath());
+			}
+
+			@Override
+			public void close() {
+				writtenTests.add("closed");
+			}
+		}, Arrays.asList(new TestDetails(TEST_A, null, null), new TestDetails(TEST_B, null, null)),
+				new CommandLineLogger());
+
+		writer.accept(coverage(TEST_A, file("com/example", "Foo.java", 1)));
+		writer.accept(coverage(TEST_A, file("com/example", "Foo.java", 2)));
+		assertThat(writtenTests).isEmpty();
+		writer.accept(coverage(TEST_B, file("com/example", "Foo.java", 3)));
+		assertThat(writtenTests).containsExactly(TEST_A);
+		assertThatThrownBy(() -> writer.accept(coverage(TEST_A, file("com/example", "Foo.java", 4))))
+				.isInstanceOf(IllegalArgumentException.class);
+		writer.close();
+		assertThat(writtenTests).containsExactly(TEST_A, TEST_B, "closed");
+	}
+
+	private static File writeIntermediateFile(File file, TestCoverageBuilder... coverage) throws Exception {
+		try (BinaryTestwiseCoverageWriter writer = new BinaryTestwiseCoverageWriter(file)) {
+			Arrays.asList(coverage).forEach(writer);
+		}
+		return file;
+	}
+
+	private static TestCoverageBuilder coverage(String uniformPath, FileCoverageBuilder... files) {
+		TestCoverageBuilder testCoverage = new TestCoverageBuilder(uniformPath);
+		testCoverage.addAll(Arrays.asList(files));
+		return testCoverage;
+	}
+
+	private static FileCoverageBuilder file(String path, String fileName, int... lines) {
+		FileCoverageBuilder fileCoverage = new FileCoverageBuilder(path, fileName);
+		for (int line : lines) {
+			fileCoverage.addLine(line);
+		}
+		return fileCoverage;
+	}
+}
@@ -0,0 +1,74 @@
+package com.teamscale.report.testwise.binary;
+
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.ReportUtils;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.report.testwise.model.TestwiseCoverageReport;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/** Tests for {@link BinaryTestwiseCoverageWriter} and {@link BinaryTestwiseCoverageReader}. */
+class BinaryTestwiseCoverageTest {
+
+	/** Tests that writing and reading the binary format yields the same report as the JSON writer. */
+	@Test
+	void roundTrip() throws Exception {
+		List<TestDetails> testDetails = Arrays.asList(
+				new TestDetails("com/example/FooTest/testA()", "com/example/FooTest", "content"),
+				new TestDetails("com/example/FooTest/testB()", null, null),
+				new TestDetails("com/example/FooTest/testC()", "com/example/FooTest", "content"));
+		List<TestExecution> testExecutions = Arrays.asList(
+				new TestExecution("com/example/FooTest/testA()", 1200, ETestExecutionResult.PASSED),
+				new TestExecution("com/example/FooTest/testB()", 10, ETestExecutionResult.FAILURE, "Stack trace \u2603"),
+				new TestExecution("com/example/FooTest/testC()", 20, ETestExecutionResult.PASSED));
+		List<TestCoverageBuilder> coverage = Arrays.asList(
+				coverage("com/example/FooTest/testA()", file("com/example", "Foo.java", 1, 2, 3, 5, 300),
+						file("com/example", "Bar.java", 7), file("com/other", "Foo.java", 10, 11)),
+				coverage("com/example/FooTest/testB()", file("com/example", "Foo.java", 2)),
+				coverage("com/example/FooTest/testC()", file("com/other", "Foo.java", 10, 11),
+						file("com/example", "Bar.java", 7), file("com/example", "Foo.java", 1, 2, 3, 5, 300)));
+
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		try (BinaryTestwiseCoverageWriter writer = new BinaryTestwiseCoverageWriter(
+				new TestInfoFactory(testDetails, testExecutions), binary)) {
+			coverage.forEach(writer);
+		}
+		TestwiseCoverageReport actual = new TestwiseCoverageReport();
+		try (BinaryTestwiseCoverageReader reader = new BinaryTestwiseCoverageReader(
+				new ByteArrayInputStream(binary.toByteArray()))) {
+			reader.read(actual.tests::add);
+		}
+
+		TestwiseCoverageReport expected = new TestwiseCoverageReport();
+		TestInfoFactory testInfoFactory = new TestInfoFactory(testDetails, testExecutions);
+		coverage.forEach(test -> expected.tests.add(testInfoFactory.createFor(test)));
+		expected.tests.addAll(testInfoFactory.createTestInfosWithoutCoverage());
+
+		JSONAssert.assertEquals(ReportUtils.getTestwiseCoverageReportAsString(expected),
+				ReportUtils.getTestwiseCoverageReportAsString(actual), JSONCompareMode.STRICT);
+	}
+
+	private static TestCoverageBuilder coverage(String uniformPath, FileCoverageBuilder... files) {
+		TestCoverageBuilder testCoverage = new TestCoverageBuilder(uniformPath);
+		testCoverage.addAll(Arrays.asList(files));
+		return testCoverage;
+	}
+
+	private static FileCoverageBuilder file(String path, String fileName, int... lines) {
+		FileCoverageBuilder fileCoverage = new FileCoverageBuilder(path, fileName);
+		for (int line : lines) {
+			fileCoverage.addLine(line);
+		}
+		return fileCoverage;
+	}
+}
@@ -0,0 +1,80 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import com.teamscale.report.util.ILogger;
+import com.teamscale.report.util.SortedIntList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/** Tests the {@link PersistentProbesCache}. */
+class PersistentProbesCacheTest {
+
+	/** Tests that a stored lookup is restored with all its probes and that unknown classes are not found. */
+	@Test
+	void storeAndLoad(@TempDir Path cacheDirectory) throws IOException {
+		PersistentProbesCache cache = new PersistentProbesCache(cacheDirectory.toFile(), mock(ILogger.class));
+		ClassCoverageLookup lookup = new ClassCoverageLookup("com/example/Foo");
+		lookup.setSourceFileName("Foo.java");
+		lookup.setTotalProbeCount(3);
+		lookup.addProbe(0, lines(3, 4));
+		lookup.addProbe(2, lines(7));
+
+		cache.store(0xCAFEL, lookup);
+
+		assertThat(serialize(cache.load(0xCAFEL))).isEqualTo(serialize(lookup));
+		assertThat(cache.load(0xBABEL)).isNull();
+		try (Stream<Path> files = Files.walk(cacheDirectory)) {
+			assertThat(files.filter(file -> file.toString().endsWith(".tmp"))).isEmpty();
+		}
+	}
+
+	/** Tests that entries of other versions and entries that have not been used for a long time are evicted. */
+	@Test
+	void evictsStaleEntries(@TempDir Path cacheDirectory) throws IOException {
+		PersistentProbesCache cache = new PersistentProbesCache(cacheDirectory.toFile(), mock(ILogger.class));
+		ClassCoverageLookup lookup = new ClassCoverageLookup("com/example/Foo");
+		lookup.setSourceFileName("Foo.java");
+		lookup.setTotalProbeCount(1);
+		cache.store(0xCAFEL, lookup);
+		cache.store(0xBABEL, lookup);
+		Path otherVersionEntry = cacheDirectory.resolve("v0-jacoco-0.7.9/00/0000000000000001");
+		Files.createDirectories(otherVersionEntry.getParent());
+		Files.createFile(otherVersionEntry);
+
+		long twentyDaysAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(20);
+		try (Stream<Path> files = Files.walk(cacheDirectory)) {
+			files.filter(Files::isRegularFile).forEach(file -> file.toFile().setLastModified(twentyDaysAgo));
+		}
+		// Reading an entry that has not been used for more than a day marks it as used
+		assertThat(cache.load(0xCAFEL)).isNotNull();
+		cache.evictStaleEntries(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(15));
+
+		assertThat(cache.load(0xCAFEL)).isNotNull();
+		assertThat(cache.load(0xBABEL)).isNull();
+		assertThat(cacheDirectory.resolve("v0-jacoco-0.7.9")).doesNotExist();
+	}
+
+	private static SortedIntList lines(int... lines) {
+		SortedIntList list = new SortedIntList();
+		for (int line : lines) {
+			list.add(line);
+		}
+		return list;
+	}
+
+	private static byte[] serialize(ClassCoverageLookup lookup) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		lookup.writeTo(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,58 @@
+package com.teamscale.report.testwise.model.builder;
+
+import com.teamscale.report.testwise.model.TestwiseCoverage;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/** Tests the {@link CoverageInterner} and its use in {@link TestwiseCoverage}. */
+class CoverageInternerTest {
+
+	/** Tests that the coverage ID only depends on the covered lines, not on the test or the order of the files. */
+	@Test
+	void coverageIdIgnoresTestAndOrder() {
+		TestCoverageBuilder first = coverage("Test1", file("a", "A.java", 1, 2), file("b", "B.java", 5));
+		TestCoverageBuilder second = coverage("Test2", file("b", "B.java", 5), file("a", "A.java", 2, 1));
+		TestCoverageBuilder third = coverage("Test3", file("a", "A.java", 1, 2), file("b", "B.java", 6));
+
+		assertThat(CoverageInterner.computeCoverageId(first)).isEqualTo(CoverageInterner.computeCoverageId(second))
+				.isNotEqualTo(CoverageInterner.computeCoverageId(third));
+	}
+
+	/** Tests that tests with identical coverage share a single copy, which is not affected by merging. */
+	@Test
+	void testwiseCoverageStoresDistinctCoverageOnce() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		testwiseCoverage.add(coverage("Test1[1]", file("a", "A.java", 1, 2)));
+		testwiseCoverage.add(coverage("Test1[2]", file("a", "A.java", 1, 2)));
+		testwiseCoverage.add(coverage("Test2", file("a", "A.java", 3)));
+
+		assertThat(testwiseCoverage.getTests()).hasSize(3);
+		assertThat(testwiseCoverage.getDistinctCoverage()).hasSize(2);
+		assertThat(testwiseCoverage.getCoverageId("Test1[1]")).isEqualTo(testwiseCoverage.getCoverageId("Test1[2]"));
+
+		testwiseCoverage.add(coverage("Test1[2]", file("a", "A.java", 3)));
+
+		assertThat(testwiseCoverage.getDistinctCoverage()).hasSize(3);
+		assertThat(testwiseCoverage.getTests()).extracting(TestCoverageBuilder::getUniformPath,
+				test -> test.getFiles().get(0).computeCompactifiedRangesAsString())
+				.containsExactlyInAnyOrder(tuple("Test1[1]", "1-2"), tuple("Test1[2]", "1-3"), tuple("Test2", "3"));
+	}
+
+	private static TestCoverageBuilder coverage(String uniformPath, FileCoverageBuilder... files) {
+		TestCoverageBuilder testCoverage = new TestCoverageBuilder(uniformPath);
+		for (FileCoverageBuilder file : files) {
+			testCoverage.add(file);
+		}
+		return testCoverage;
+	}
+
+	private static FileCoverageBuilder file(String path, String fileName, int... lines) {
+		FileCoverageBuilder fileCoverage = new FileCoverageBuilder(path, fileName);
+		for (int line : lines) {
+			fileCoverage.addLine(line);
+		}
+		return fileCoverage;
+	}
+}
@@ -0,0 +1,75 @@
+package com.teamscale.client;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link CompletableFuture} that is completed by an asynchronously executed {@link Call}. The call runs on the
+ * dispatcher threads of the OkHttp client, so no thread of the caller is blocked while waiting for the server.
+ * Cancelling the future or completing it exceptionally, e.g. because of a timeout, cancels the call.
+ */
+/* package */ class CallFuture<T> extends CompletableFuture<Response<T>> implements Callback<T> {
+
+	/**
+	 * Completes futures that time out and starts delayed requests. A single daemon thread is enough, since the tasks
+	 * only complete futures or enqueue calls.
+	 */
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+			runnable -> {
+				Thread thread = new Thread(runnable, "Teamscale client scheduler");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	private CallFuture(Call<T> call) {
+		whenComplete((response, throwable) -> {
+			if (throwable != null) {
+				call.cancel();
+			}
+		});
+	}
+
+	/** Executes the call asynchronously and returns a future of its response. */
+	/* package */ static <T> CallFuture<T> enqueue(Call<T> call) {
+		CallFuture<T> future = new CallFuture<>(call);
+		call.enqueue(future);
+		return future;
+	}
+
+	/**
+	 * Completes the future with a {@link TimeoutException} if it did not complete within the given time. A timeout of
+	 * 0 or less means no timeout.
+	 */
+	/* package */ static <F extends CompletableFuture<?>> F failAfter(F future, long timeout, TimeUnit unit) {
+		if (timeout <= 0 || future.isDone()) {
+			return future;
+		}
+		ScheduledFuture<?> timeoutTask = SCHEDULER.schedule(() -> future.completeExceptionally(
+				new TimeoutException("Teamscale did not answer within " + timeout + " " + unit)), timeout, unit);
+		future.whenComplete((result, throwable) -> timeoutTask.cancel(false));
+		return future;
+	}
+
+	/** Runs the given task after the given delay without blocking a thread while waiting. */
+	/* package */ static void schedule(Runnable task, long delay, TimeUnit unit) {
+		SCHEDULER.schedule(task, delay, unit);
+	}
+
+	@Override
+	public void onResponse(Call<T> call, Response<T> response) {
+		complete(response);
+	}
+
+	@Override
+	public void onFailure(Call<T> call, Throwable throwable) {
+		completeExceptionally(throwable);
+	}
+}
@@ -0,0 +1,391 @@
+package com.teamscale.client;
+
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.HashingSink;
+import okio.Okio;
+import retrofit2.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Properties;
+
+/**
+ * Uploads reports in several requests to an upload session, which is committed once all parts have been uploaded.
+ * Testwise coverage reports are split into parts of about a fixed size, each of which is a valid report with a subset
+ * of the tests. Other reports cannot be split and are uploaded as a single part each.
+ * <p>
+ * Failed parts are retried individually. The SHA-256 checksum of every uploaded part is recorded in a state file, so
+ * an interrupted upload can be resumed by running it again with the same state file: The session is reused and parts
+ * whose checksum matches the recorded one are skipped. If the reports changed in the meantime or Teamscale does not
+ * know the session anymore (e.g. because it expired), the upload starts from scratch with a new session.
+ */
+/* package */ class ChunkedReportUpload {
+
+	/** How often the upload of a single part is attempted before the upload fails. */
+	private static final int MAX_ATTEMPTS_PER_PART = 3;
+
+	/** The status code with which Teamscale signals that it does not know the session (anymore). */
+	private static final int NOT_FOUND = 404;
+
+	/** State key of the description of the upload, which ensures that the state belongs to the same upload. */
+	private static final String UPLOAD_KEY = "upload";
+
+	/** State key of the session ID. */
+	private static final String SESSION_KEY = "session";
+
+	/** Prefix of the state keys of the uploaded parts' checksums. */
+	private static final String PART_KEY_PREFIX = "part.";
+
+	/** The Teamscale service. */
+	private final ITeamscaleService service;
+
+	/** The project ID within Teamscale. */
+	private final String projectId;
+
+	/** The format of the reports. */
+	private final EReportFormat format;
+
+	/** The size in bytes after which a part is completed. */
+	private final long partSize;
+
+	/** The file in which the progress of the upload is recorded. */
+	private final File stateFile;
+
+	/** How long to wait before retrying a part for the first time. Doubled for every further retry. */
+	private final long initialRetryBackoffMillis;
+
+	/** The progress of the upload. */
+	private final Properties state = new Properties();
+
+	/** The index of the next part. */
+	private int partIndex;
+
+	/** Constructor. */
+	/* package */ ChunkedReportUpload(ITeamscaleService service, String projectId, EReportFormat format, long partSize,
+									  File stateFile, long initialRetryBackoffMillis) {
+		this.service = service;
+		this.projectId = projectId;
+		this.format = format;
+		this.partSize = partSize;
+		this.stateFile = stateFile;
+		this.initialRetryBackoffMillis = initialRetryBackoffMillis;
+	}
+
+	/** Uploads the given reports and commits the session. Resumes a previously interrupted upload if possible. */
+	/* package */ void upload(Collection<File> reports, CommitDescriptor commit, String partition,
+							  String message) throws IOException {
+		try {
+			uploadOnce(reports, commit, partition, message);
+		} catch (ReportsChangedException | SessionNotFoundException e) {
+			Files.deleteIfExists(stateFile.toPath());
+			uploadOnce(reports, commit, partition, message);
+		}
+	}
+
+	/**
+	 * Returns the state file in the given directory for uploads with the given format, partition and message. The name
+	 * is derived from a SHA-256 hash of these, so it is the same in every build.
+	 */
+	/* package */ static File getStateFile(File stateDirectory, EReportFormat format, String partition,
+										  String message) {
+		String upload = format.name() + "\n" + partition + "\n" + message;
+		return new File(stateDirectory, ByteString.encodeUtf8(upload).sha256().hex() + ".state");
+	}
+
+	private void uploadOnce(Collection<File> reports, CommitDescriptor commit, String partition,
+							String message) throws IOException {
+		String upload = format + " " + commit + " " + partition + " " + message;
+		loadState();
+		if (!upload.equals(state.getProperty(UPLOAD_KEY))) {
+			state.clear();
+			state.setProperty(UPLOAD_KEY, upload);
+		}
+		String sessionId = state.getProperty(SESSION_KEY);
+		if (sessionId == null) {
+			sessionId = createSession(commit, partition, message);
+			state.setProperty(SESSION_KEY, sessionId);
+			saveState();
+		}
+
+		partIndex = 0;
+		for (File report : reports) {
+			if (format == EReportFormat.TESTWISE_COVERAGE) {
+				splitTestwiseCoverageReport(report, sessionId);
+			} else {
+				uploadPart(sessionId, createFilePart(report));
+			}
+		}
+
+		Response<ResponseBody> response = service.commitSession(projectId, sessionId).execute();
+		checkSessionFound(response, sessionId);
+		checkSuccessful(response, "Committing upload session " + sessionId);
+		Files.deleteIfExists(stateFile.toPath());
+	}
+
+	private String createSession(CommitDescriptor commit, String partition, String message) throws IOException {
+		Response<ResponseBody> response = service.createSession(projectId, commit, true, true, partition, message)
+				.execute();
+		checkSuccessful(response, "Creating an upload session");
+		String sessionId = response.body().string().trim();
+		// The ID may be returned as JSON string
+		if (sessionId.startsWith("\"") && sessionId.endsWith("\"") && sessionId.length() >= 2) {
+			sessionId = sessionId.substring(1, sessionId.length() - 1);
+		}
+		return sessionId;
+	}
+
+	/** Splits the testwise coverage report into parts of about {@link #partSize} bytes and uploads them. */
+	private void splitTestwiseCoverageReport(File report, String sessionId) throws IOException {
+		String name = EReportCompression.stripSuffix(report.getName()).replaceFirst("\\.json$", "");
+		int reportPartIndex = 0;
+		try (BufferedSource source = EReportCompression.openDecompressed(report);
+			 JsonReader reader = JsonReader.of(source)) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (!reader.nextName().equals("tests")) {
+					reader.skipValue();
+					continue;
+				}
+				reader.beginArray();
+				PartWriter partWriter = new PartWriter();
+				while (reader.hasNext()) {
+					copyValue(reader, partWriter.writer);
+					if (partWriter.size() >= partSize) {
+						uploadPart(sessionId, partWriter.finish(name + "-" + reportPartIndex++ + ".json"));
+						partWriter = new PartWriter();
+					}
+				}
+				reader.endArray();
+				if (!partWriter.isEmpty() || reportPartIndex == 0) {
+					uploadPart(sessionId, partWriter.finish(name + "-" + reportPartIndex++ + ".json"));
+				}
+			}
+			reader.endObject();
+		}
+	}
+
+	/** Copies the next value of the reader including all nested values to the writer. */
+	private static void copyValue(JsonReader reader, JsonWriter writer) throws IOException {
+		switch (reader.peek()) {
+			case BEGIN_ARRAY:
+				reader.beginArray();
+				writer.beginArray();
+				while (reader.hasNext()) {
+					copyValue(reader, writer);
+				}
+				reader.endArray();
+				writer.endArray();
+				break;
+			case BEGIN_OBJECT:
+				reader.beginObject();
+				writer.beginObject();
+				while (reader.hasNext()) {
+					writer.name(reader.nextName());
+					copyValue(reader, writer);
+				}
+				reader.endObject();
+				writer.endObject();
+				break;
+			case STRING:
+				writer.value(reader.nextString());
+				break;
+			case NUMBER:
+				writer.value(new BigDecimal(reader.nextString()));
+				break;
+			case BOOLEAN:
+				writer.value(reader.nextBoolean());
+				break;
+			case NULL:
+				reader.nextNull();
+				writer.nullValue();
+				break;
+			default:
+				throw new JsonDataException("Unexpected " + reader.peek() + " at " + reader.getPath());
+		}
+	}
+
+	/**
+	 * Creates a part with the whole content of the given report. Compressed reports are decompressed while they are
+	 * uploaded, so the checksum is computed from the decompressed content.
+	 */
+	private static Part createFilePart(File report) throws IOException {
+		HashingSink hashingSink = HashingSink.sha256(Okio.blackhole());
+		try (BufferedSource source = EReportCompression.openDecompressed(report)) {
+			source.readAll(hashingSink);
+		}
+		return new Part(EReportCompression.stripSuffix(report.getName()), hashingSink.hash().hex(),
+				TeamscaleClient.createReportPart(report));
+	}
+
+	/** Uploads the part unless it has already been uploaded before the upload was interrupted. */
+	private void uploadPart(String sessionId, Part part) throws IOException {
+		String key = PART_KEY_PREFIX + partIndex++;
+		String uploadedChecksum = state.getProperty(key);
+		if (part.checksum.equals(uploadedChecksum)) {
+			return;
+		}
+		if (uploadedChecksum != null) {
+			throw new ReportsChangedException();
+		}
+
+		IOException lastException = null;
+		long backoffMillis = initialRetryBackoffMillis;
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS_PER_PART; attempt++) {
+			try {
+				Response<ResponseBody> response = service.uploadSessionReports(projectId, sessionId, format,
+						Collections.singletonList(part.content)).execute();
+				checkSessionFound(response, sessionId);
+				checkSuccessful(response, "Uploading " + part.fileName);
+				state.setProperty(key, part.checksum);
+				saveState();
+				return;
+			} catch (SessionNotFoundException e) {
+				throw e;
+			} catch (IOException e) {
+				lastException = e;
+			}
+			if (attempt < MAX_ATTEMPTS_PER_PART) {
+				sleep(backoffMillis);
+				backoffMillis *= 2;
+			}
+		}
+		throw lastException;
+	}
+
+	/** Throws a {@link SessionNotFoundException} if Teamscale does not know the session. */
+	private static void checkSessionFound(Response<ResponseBody> response,
+										  String sessionId) throws SessionNotFoundException {
+		if (response.code() == NOT_FOUND) {
+			throw new SessionNotFoundException(sessionId);
+		}
+	}
+
+	private static void checkSuccessful(Response<ResponseBody> response, String action) throws IOException {
+		if (!response.isSuccessful()) {
+			ResponseBody errorBody = response.errorBody();
+			String bodyString = errorBody == null ? "<no body>" : errorBody.string();
+			throw new IOException(action + " failed with error code " + response.code() + ": " + bodyString);
+		}
+	}
+
+	private static void sleep(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry the upload");
+		}
+	}
+
+	private void loadState() throws IOException {
+		state.clear();
+		if (!stateFile.exists()) {
+			return;
+		}
+		try (InputStream input = Files.newInputStream(stateFile.toPath())) {
+			state.load(input);
+		}
+	}
+
+	/** Writes the state to a temporary file first, so that an interruption never leaves a corrupt state file. */
+	private void saveState() throws IOException {
+		Path stateDirectory = stateFile.getAbsoluteFile().getParentFile().toPath();
+		Files.createDirectories(stateDirectory);
+		Path temporaryFile = Files.createTempFile(stateDirectory, stateFile.getName(), ".tmp");
+		try (OutputStream output = Files.newOutputStream(temporaryFile)) {
+			state.store(output, null);
+		}
+		Files.move(temporaryFile, stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/** A single request of the upload. */
+	private static class Part {
+
+		/** The file name under which the part is uploaded. */
+		private final String fileName;
+
+		/** The SHA-256 checksum of the part's content. */
+		private final String checksum;
+
+		/** The multipart entry with the content of the part. */
+		private final MultipartBody.Part content;
+
+		private Part(String fileName, String checksum, MultipartBody.Part content) {
+			this.fileName = fileName;
+			this.checksum = checksum;
+			this.content = content;
+		}
+	}
+
+	/** Writes a part of a testwise coverage report to memory. */
+	private static class PartWriter {
+
+		/** The content of the part. */
+		private final Buffer buffer = new Buffer();
+
+		/** The writer of the JSON content. */
+		private final JsonWriter writer = JsonWriter.of(buffer);
+
+		/** The number of bytes of an empty part. */
+		private final long emptySize;
+
+		private PartWriter() throws IOException {
+			writer.setSerializeNulls(true);
+			writer.beginObject().name("tests").beginArray();
+			writer.flush();
+			emptySize = buffer.size();
+		}
+
+		/** Returns the number of bytes written so far. */
+		private long size() throws IOException {
+			writer.flush();
+			return buffer.size();
+		}
+
+		private boolean isEmpty() throws IOException {
+			return size() == emptySize;
+		}
+
+		/** Completes the JSON document and returns the part. */
+		private Part finish(String fileName) throws IOException {
+			writer.endArray().endObject();
+			writer.close();
+			ByteString content = buffer.readByteString();
+			return new Part(fileName, content.sha256().hex(),
+					MultipartBody.Part.createFormData("report", fileName, RequestBody.create(MultipartBody.FORM, content)));
+		}
+	}
+
+	/** Thrown if the reports do not match the parts that have been uploaded before the upload was interrupted. */
+	private static class ReportsChangedException extends IOException {
+
+		private ReportsChangedException() {
+			super("The reports changed since the upload was interrupted");
+		}
+	}
+
+	/** Thrown if Teamscale does not know the session, e.g. because it expired since the upload was interrupted. */
+	private static class SessionNotFoundException extends IOException {
+
+		private SessionNotFoundException(String sessionId) {
+			super("Teamscale does not know the upload session " + sessionId);
+		}
+	}
+}
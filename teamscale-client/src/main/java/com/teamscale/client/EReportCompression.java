@@ -0,0 +1,84 @@
+package com.teamscale.client;
+
+import okio.BufferedSource;
+import okio.DeflaterSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression formats in which reports can be written. The compression of a report is determined by the suffix of its
+ * file name (see {@link #fromFileName(String)}), so compressed reports must always be written with the corresponding
+ * {@link #fileSuffix}.
+ */
+public enum EReportCompression {
+
+	/** Plain text. */
+	NONE(""),
+
+	/** Gzip compressed (RFC 1952). */
+	GZIP(".gz"),
+
+	/** Deflate compressed with zlib header (RFC 1950). */
+	DEFLATE(".deflate");
+
+	/** Suffix that is appended to the file name of compressed reports. */
+	public final String fileSuffix;
+
+	EReportCompression(String fileSuffix) {
+		this.fileSuffix = fileSuffix;
+	}
+
+	/** Wraps the given sink so that everything written to it gets compressed. */
+	public Sink compress(Sink sink) {
+		switch (this) {
+			case GZIP:
+				return new GzipSink(sink);
+			case DEFLATE:
+				return new DeflaterSink(sink, new Deflater(Deflater.DEFAULT_COMPRESSION));
+			default:
+				return sink;
+		}
+	}
+
+	/** Wraps the given source so that everything read from it gets decompressed. */
+	public Source decompress(Source source) {
+		switch (this) {
+			case GZIP:
+				return new GzipSource(source);
+			case DEFLATE:
+				return new InflaterSource(source, new Inflater());
+			default:
+				return source;
+		}
+	}
+
+	/** Returns the given file name without a compression suffix. */
+	public static String stripSuffix(String fileName) {
+		EReportCompression compression = fromFileName(fileName);
+		return fileName.substring(0, fileName.length() - compression.fileSuffix.length());
+	}
+
+	/** Returns the compression of the file with the given name, which is determined by its suffix. */
+	public static EReportCompression fromFileName(String fileName) {
+		for (EReportCompression compression : values()) {
+			if (compression != NONE && fileName.endsWith(compression.fileSuffix)) {
+				return compression;
+			}
+		}
+		return NONE;
+	}
+
+	/** Opens the given file for reading and transparently decompresses it if its name marks it as compressed. */
+	public static BufferedSource openDecompressed(File file) throws IOException {
+		return Okio.buffer(fromFileName(file.getName()).decompress(Okio.source(file)));
+	}
+}
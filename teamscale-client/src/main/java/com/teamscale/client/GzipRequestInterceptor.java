@@ -0,0 +1,101 @@
+package com.teamscale.client;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * OkHttpInterceptor which compresses request bodies with gzip and sets the corresponding Content-Encoding header.
+ * Reports usually compress very well, so this reduces the upload time considerably. Not every server supports
+ * compressed requests, so the interceptor is only used if compression has been enabled explicitly (see {@link
+ * TeamscaleServiceGenerator#createService(Class, okhttp3.HttpUrl, String, String, boolean)}).
+ * <p>
+ * Requests that are already encoded are passed on unchanged. This includes multipart requests with a part that has its
+ * own Content-Encoding, so content is never compressed twice. Compressed reports are decompressed while they are
+ * uploaded (see {@link TeamscaleClient#createReportPart(java.io.File)}), so they are compressed only once on the wire.
+ * <p>
+ * Servers that do not support compressed requests answer with 415 (Unsupported Media Type, see RFC 7694). In this case
+ * the request is repeated uncompressed and no further requests are compressed.
+ */
+public class GzipRequestInterceptor implements Interceptor {
+
+	/** The status code of servers that do not support the content encoding. */
+	private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+
+	/** Whether the server has not rejected a compressed request yet. */
+	private volatile boolean serverAcceptsGzip = true;
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		if (!serverAcceptsGzip || request.body() == null || isEncoded(request)) {
+			return chain.proceed(request);
+		}
+
+		Request compressedRequest = request.newBuilder()
+				.header("Content-Encoding", "gzip")
+				.method(request.method(), new GzipRequestBody(request.body()))
+				.build();
+		Response response = chain.proceed(compressedRequest);
+		if (response.code() != UNSUPPORTED_MEDIA_TYPE) {
+			return response;
+		}
+
+		serverAcceptsGzip = false;
+		response.close();
+		return chain.proceed(request);
+	}
+
+	/** Returns whether the request or one of its parts already has a Content-Encoding. */
+	private static boolean isEncoded(Request request) {
+		if (request.header("Content-Encoding") != null) {
+			return true;
+		}
+		if (!(request.body() instanceof MultipartBody)) {
+			return false;
+		}
+		for (MultipartBody.Part part : ((MultipartBody) request.body()).parts()) {
+			if (part.headers() != null && part.headers().get("Content-Encoding") != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Compresses the wrapped body while it is written, so the body is never held in memory. */
+	private static class GzipRequestBody extends RequestBody {
+
+		/** The uncompressed body. */
+		private final RequestBody body;
+
+		private GzipRequestBody(RequestBody body) {
+			this.body = body;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return body.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			// Unknown in advance, so the body is sent with chunked transfer encoding
+			return -1;
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+				body.writeTo(gzipSink);
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.teamscale.client;
+
+import java.io.IOException;
+
+/**
+ * Thrown if Teamscale answered a request with an unsuccessful status code. Allows callers to distinguish server
+ * errors, which may go away when the request is repeated, from client errors, which will not.
+ */
+public class HttpStatusException extends IOException {
+
+	/** The HTTP status code of the response. */
+	public final int statusCode;
+
+	public HttpStatusException(int statusCode, String message) {
+		super(message);
+		this.statusCode = statusCode;
+	}
+
+	/** Returns whether the status code signals a server error (5xx). */
+	public boolean isServerError() {
+		return statusCode >= 500;
+	}
+}
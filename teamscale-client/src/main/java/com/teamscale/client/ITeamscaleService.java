@@ -48,6 +48,34 @@ public interface ITeamscaleService {
 			@Part List<MultipartBody.Part> report
 	);
 
+	/** Opens an upload session to which reports can be added with several requests. Returns the session ID. */
+	@POST("p/{projectName}/external-analysis/session")
+	Call<ResponseBody> createSession(
+			@Path("projectName") String projectName,
+			@Query("t") CommitDescriptor commit,
+			@Query("adjusttimestamp") boolean adjustTimestamp,
+			@Query("movetolastcommit") boolean moveToLastCommit,
+			@Query("partition") String partition,
+			@Query("message") String message
+	);
+
+	/** Adds reports to an upload session. */
+	@Multipart
+	@POST("p/{projectName}/external-analysis/session/{sessionId}/report")
+	Call<ResponseBody> uploadSessionReports(
+			@Path("projectName") String projectName,
+			@Path("sessionId") String sessionId,
+			@Query("format") EReportFormat format,
+			@Part List<MultipartBody.Part> report
+	);
+
+	/** Commits an upload session, which processes all reports that have been added to it at once. */
+	@POST("p/{projectName}/external-analysis/session/{sessionId}")
+	Call<ResponseBody> commitSession(
+			@Path("projectName") String projectName,
+			@Path("sessionId") String sessionId
+	);
+
 	/** Test Impact API. */
 	@PUT("p/{projectName}/test-impact")
 	Call<List<PrioritizableTestCluster>> getImpactedTests(
@@ -0,0 +1,68 @@
+package com.teamscale.client;
+
+import retrofit2.Response;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Decides how long to wait before polling Teamscale again. The interval starts small and doubles after every attempt
+ * up to a maximum, unless the server tells us how long to wait with a Retry-After header (RFC 7231), which is honored
+ * as long as it does not exceed the deadline.
+ */
+/* package */ class PollingBackoff {
+
+	/** The interval before the second attempt. */
+	private static final long INITIAL_INTERVAL_MILLIS = 500;
+
+	/** The maximum interval between two attempts. */
+	private static final long MAX_INTERVAL_MILLIS = 10000;
+
+	/** The point in time (epoch millis) after which no further attempt is made. */
+	private final long deadline;
+
+	/** The interval before the next attempt, unless the server requests a different one. */
+	private long nextInterval = INITIAL_INTERVAL_MILLIS;
+
+	/** Constructor. Polling stops after the given time. */
+	/* package */ PollingBackoff(long maxWaitMillis) {
+		this.deadline = System.currentTimeMillis() + maxWaitMillis;
+	}
+
+	/**
+	 * Returns how long to wait in milliseconds before polling again after the given response or -1 if the deadline
+	 * would be exceeded.
+	 */
+	/* package */ long nextDelay(Response<?> response) {
+		long now = System.currentTimeMillis();
+		long delay = getRetryAfterMillis(response.headers().get("Retry-After"), now);
+		if (delay < 0) {
+			delay = nextInterval;
+			nextInterval = Math.min(nextInterval * 2, MAX_INTERVAL_MILLIS);
+		}
+		if (now + delay > deadline) {
+			return -1;
+		}
+		return delay;
+	}
+
+	/** Parses the value of a Retry-After header, which is either a number of seconds or a date. Returns -1 if absent. */
+	/* package */ static long getRetryAfterMillis(String retryAfter, long now) {
+		if (retryAfter == null) {
+			return -1;
+		}
+		try {
+			return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+		} catch (NumberFormatException e) {
+			// Not a number of seconds, so it must be a date
+		}
+		try {
+			Instant retryTime = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+			return Math.max(0, retryTime.toEpochMilli() - now);
+		} catch (DateTimeParseException e) {
+			return -1;
+		}
+	}
+}
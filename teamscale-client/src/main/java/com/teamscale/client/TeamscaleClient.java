@@ -1,43 +1,63 @@
 package com.teamscale.client;
 
 import okhttp3.HttpUrl;
+import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import retrofit2.Call;
 import retrofit2.Response;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /** Helper class to interact with Teamscale. */
 public class TeamscaleClient {
 
+	/** The status code with which Teamscale signals that it has not processed all uploads yet. */
+	private static final int PRECONDITION_FAILED = 412;
+
+	/** How long to wait by default until Teamscale has processed all uploads before the impacted tests are returned. */
+	public static final long DEFAULT_IMPACTED_TESTS_MAX_WAIT_MILLIS = 60000;
+
+	/** How long to wait before retrying a failed part of a chunked upload for the first time. */
+	private static final long CHUNK_RETRY_BACKOFF_MILLIS = 1000;
+
 	/** Teamscale service implementation. */
 	private final ITeamscaleService service;
 
 	/** The project ID within Teamscale. */
 	private final String projectId;
 
-	/** Constructor. */
-	public TeamscaleClient(String baseUrl, String user, String accessToken, String projectId) {
-		this.projectId = projectId;
-		service = TeamscaleServiceGenerator
-				.createService(ITeamscaleService.class, HttpUrl.parse(baseUrl), user, accessToken);
+	private TeamscaleClient(Builder builder) {
+		this.projectId = builder.projectId;
+		HttpUrl baseUrl = HttpUrl.parse(builder.baseUrl);
+		if (builder.requestLogFile == null) {
+			service = TeamscaleServiceGenerator.createService(ITeamscaleService.class, baseUrl, builder.user,
+					builder.accessToken, builder.compressRequests);
+		} else {
+			service = TeamscaleServiceGenerator.createServiceWithRequestLogging(ITeamscaleService.class, baseUrl,
+					builder.user, builder.accessToken, builder.requestLogFile, builder.compressRequests);
+		}
 	}
 
-	/** Constructor. */
-	public TeamscaleClient(String baseUrl, String user, String accessToken, String projectId, File file) {
-		this.projectId = projectId;
-		service = TeamscaleServiceGenerator
-				.createServiceWithRequestLogging(ITeamscaleService.class, HttpUrl.parse(baseUrl), user, accessToken,
-						file);
+	/** Returns the builder for {@link TeamscaleClient}. */
+	public static Builder builder() {
+		return new Builder();
 	}
 
 	/**
-	 * Tries to retrieve the impacted tests from Teamscale.
+	 * Tries to retrieve the impacted tests from Teamscale. Waits for up to one minute until Teamscale has processed the
+	 * uploads for the end commit.
 	 *
 	 * @return A list of external IDs to execute or null in case Teamscale did not find a test details upload for the
 	 * given commit.
@@ -45,50 +65,308 @@ public class TeamscaleClient {
 	public Response<List<PrioritizableTestCluster>> getImpactedTests(List<ClusteredTestDetails> testList, Long baseline,
 																	 CommitDescriptor endCommit,
 																	 String partition) throws IOException {
-		long startTime = System.currentTimeMillis();
-		Response<List<PrioritizableTestCluster>> impactedTestsResponse;
-		do {
-			impactedTestsResponse = getImpactedTestsOnce(testList, baseline,
-					endCommit, partition);
-			// Retry for up to one minute until the coverage uploads are processed by Teamscale
-		} while (impactedTestsResponse.code() == 412 && System.currentTimeMillis() - startTime < 60000);
-		return impactedTestsResponse;
+		return getImpactedTests(testList, baseline, endCommit, partition, DEFAULT_IMPACTED_TESTS_MAX_WAIT_MILLIS);
 	}
 
 	/**
-	 * Tries to retrieve the impacted tests from Teamscale.
+	 * Tries to retrieve the impacted tests from Teamscale. As long as Teamscale answers that it has not processed all
+	 * uploads for the end commit yet, the request is repeated with exponential backoff (see {@link PollingBackoff}) for
+	 * at most the given time.
 	 *
 	 * @return A list of external IDs to execute or null in case Teamscale did not find a test details upload for the
 	 * given commit.
 	 */
-	private Response<List<PrioritizableTestCluster>> getImpactedTestsOnce(List<ClusteredTestDetails> testList,
-																		  Long baseline,
-																		  CommitDescriptor endCommit,
-																		  String partition) throws IOException {
+	public Response<List<PrioritizableTestCluster>> getImpactedTests(List<ClusteredTestDetails> testList, Long baseline,
+																	 CommitDescriptor endCommit, String partition,
+																	 long maxWaitMillis) throws IOException {
+		PollingBackoff backoff = new PollingBackoff(maxWaitMillis);
+		while (true) {
+			Response<List<PrioritizableTestCluster>> impactedTestsResponse = createImpactedTestsCall(testList, baseline,
+					endCommit, partition).execute();
+			long delay = getPollingDelay(impactedTestsResponse, backoff);
+			if (delay < 0) {
+				return impactedTestsResponse;
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for Teamscale to process the uploads");
+			}
+		}
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getImpactedTests(List, Long, CommitDescriptor, String)}, which does not block the
+	 * calling thread. Cancelling the returned future cancels the request. If Teamscale did not answer within the given
+	 * timeout (0 for none), the future completes with a {@link java.util.concurrent.TimeoutException}.
+	 */
+	public CompletableFuture<Response<List<PrioritizableTestCluster>>> getImpactedTestsAsync(
+			List<ClusteredTestDetails> testList, Long baseline, CommitDescriptor endCommit, String partition,
+			long timeout, TimeUnit unit) {
+		CompletableFuture<Response<List<PrioritizableTestCluster>>> result = new CompletableFuture<>();
+		AtomicReference<CompletableFuture<?>> currentCall = new AtomicReference<>();
+		result.whenComplete((response, throwable) -> {
+			CompletableFuture<?> call = currentCall.get();
+			if (throwable != null && call != null) {
+				call.cancel(false);
+			}
+		});
+		pollImpactedTests(result, currentCall, testList, baseline, endCommit, partition,
+				new PollingBackoff(DEFAULT_IMPACTED_TESTS_MAX_WAIT_MILLIS));
+		return CallFuture.failAfter(result, timeout, unit);
+	}
+
+	/** Requests the impacted tests and requests them again later until Teamscale has processed all uploads. */
+	private void pollImpactedTests(CompletableFuture<Response<List<PrioritizableTestCluster>>> result,
+								   AtomicReference<CompletableFuture<?>> currentCall,
+								   List<ClusteredTestDetails> testList, Long baseline, CommitDescriptor endCommit,
+								   String partition, PollingBackoff backoff) {
+		if (result.isDone()) {
+			// The result has been cancelled or timed out while waiting for the next attempt
+			return;
+		}
+		CallFuture<List<PrioritizableTestCluster>> call = CallFuture
+				.enqueue(createImpactedTestsCall(testList, baseline, endCommit, partition));
+		currentCall.set(call);
+		if (result.isDone()) {
+			// The result has been cancelled or timed out while the call was created
+			call.cancel(false);
+			return;
+		}
+		call.whenComplete((response, throwable) -> {
+			if (throwable != null) {
+				result.completeExceptionally(throwable);
+				return;
+			}
+			long delay = getPollingDelay(response, backoff);
+			if (delay < 0) {
+				result.complete(response);
+			} else if (!result.isDone()) {
+				CallFuture.schedule(() -> pollImpactedTests(result, currentCall, testList, baseline, endCommit,
+						partition, backoff), delay, TimeUnit.MILLISECONDS);
+			}
+		});
+	}
+
+	/**
+	 * Returns how long to wait before requesting the impacted tests again or -1 if the response should be returned,
+	 * either because Teamscale has processed all uploads or because we are not willing to wait any longer.
+	 */
+	private static long getPollingDelay(Response<?> response, PollingBackoff backoff) {
+		if (response.code() != PRECONDITION_FAILED) {
+			return -1;
+		}
+		return backoff.nextDelay(response);
+	}
+
+	/** Creates the call that retrieves the impacted tests from Teamscale. */
+	private Call<List<PrioritizableTestCluster>> createImpactedTestsCall(List<ClusteredTestDetails> testList,
+																		 Long baseline, CommitDescriptor endCommit,
+																		 String partition) {
 		if (baseline == null) {
-			return service
-					.getImpactedTests(projectId, endCommit, partition, testList)
-					.execute();
+			return service.getImpactedTests(projectId, endCommit, partition, testList);
 		} else {
-			return service
-					.getImpactedTests(projectId, baseline, endCommit, partition, testList)
-					.execute();
+			return service.getImpactedTests(projectId, baseline, endCommit, partition, testList);
 		}
 	}
 
-	/** Uploads multiple reports to Teamscale. */
+	/**
+	 * Uploads multiple reports to Teamscale. Compressed reports (see {@link EReportCompression}) are decompressed while
+	 * they are uploaded. Throws a {@link HttpStatusException} if Teamscale rejects the upload.
+	 */
 	public void uploadReports(EReportFormat reportFormat, Collection<File> reports, CommitDescriptor commitDescriptor,
 							  String partition, String message) throws IOException {
-		List<MultipartBody.Part> partList = reports.stream().map(file -> {
-			RequestBody requestBody = RequestBody.create(MultipartBody.FORM, file);
-			return MultipartBody.Part.createFormData("report", file.getName(), requestBody);
-		}).collect(Collectors.toList());
-
 		Response<ResponseBody> response = service
 				.uploadExternalReports(projectId, reportFormat, commitDescriptor, true, true, partition, message,
-						partList).execute();
+						createReportParts(reports)).execute();
 		if (!response.isSuccessful()) {
-			throw new IOException(response.errorBody().string());
+			throw new HttpStatusException(response.code(), response.errorBody().string());
+		}
+	}
+
+	/**
+	 * Asynchronous variant of {@link #uploadReports(EReportFormat, Collection, CommitDescriptor, String, String)},
+	 * which does not block the calling thread. Cancelling the returned future cancels the upload. If the upload did not
+	 * complete within the given timeout (0 for none), the future completes with a {@link
+	 * java.util.concurrent.TimeoutException}.
+	 */
+	public CompletableFuture<Void> uploadReportsAsync(EReportFormat reportFormat, Collection<File> reports,
+													  CommitDescriptor commitDescriptor, String partition,
+													  String message, long timeout, TimeUnit unit) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		CallFuture<ResponseBody> call = CallFuture.enqueue(service
+				.uploadExternalReports(projectId, reportFormat, commitDescriptor, true, true, partition, message,
+						createReportParts(reports)));
+		call.whenComplete((response, throwable) -> {
+			if (throwable != null) {
+				result.completeExceptionally(throwable);
+			} else if (!response.isSuccessful()) {
+				result.completeExceptionally(new HttpStatusException(response.code(), readErrorBody(response)));
+			} else {
+				result.complete(null);
+			}
+		});
+		result.whenComplete((nothing, throwable) -> {
+			if (throwable != null) {
+				call.cancel(false);
+			}
+		});
+		return CallFuture.failAfter(result, timeout, unit);
+	}
+
+	/** Returns the error body of the response or an explanation why it could not be read. */
+	private static String readErrorBody(Response<?> response) {
+		try {
+			return response.errorBody().string();
+		} catch (IOException e) {
+			return "Request failed with error code " + response.code();
+		}
+	}
+
+	/** Creates the multipart entries for the given report files. */
+	private static List<MultipartBody.Part> createReportParts(Collection<File> reports) {
+		List<MultipartBody.Part> partList = new ArrayList<>();
+		for (File file : reports) {
+			partList.add(createReportPart(file));
+		}
+		return partList;
+	}
+
+	/**
+	 * Uploads multiple reports to Teamscale in several requests of about the given size each, which are processed
+	 * together once all of them have been uploaded. Failed requests are retried individually and the progress is
+	 * recorded in a state file in the given directory, which is named after the format, partition and message. So
+	 * calling this method again with the same directory after it failed resumes the upload, e.g. in the next build.
+	 * Only testwise coverage reports can be split, other reports are uploaded with one request each.
+	 */
+	public void uploadReportsChunked(EReportFormat reportFormat, Collection<File> reports,
+									 CommitDescriptor commitDescriptor, String partition, String message,
+									 long partSizeBytes, File stateDirectory) throws IOException {
+		File stateFile = ChunkedReportUpload.getStateFile(stateDirectory, reportFormat, partition, message);
+		new ChunkedReportUpload(service, projectId, reportFormat, partSizeBytes, stateFile,
+				CHUNK_RETRY_BACKOFF_MILLIS).upload(reports, commitDescriptor, partition, message);
+	}
+
+	/**
+	 * Creates the multipart entry for the given report file. Teamscale expects plain reports, so compressed reports are
+	 * decompressed while they are uploaded without ever being held in memory or written to disk. Compressing the
+	 * request on the wire is left to the {@link GzipRequestInterceptor}.
+	 */
+	/* package */ static MultipartBody.Part createReportPart(File file) {
+		if (EReportCompression.fromFileName(file.getName()) == EReportCompression.NONE) {
+			return MultipartBody.Part.createFormData("report", file.getName(),
+					RequestBody.create(MultipartBody.FORM, file));
+		}
+		return MultipartBody.Part.createFormData("report", EReportCompression.stripSuffix(file.getName()),
+				new DecompressingFileRequestBody(file));
+	}
+
+	/**
+	 * Request body with the decompressed content of a compressed report file. The file is read again whenever the body
+	 * is written, so the request can be retried.
+	 */
+	private static class DecompressingFileRequestBody extends RequestBody {
+
+		/** The compressed report. */
+		private final File file;
+
+		private DecompressingFileRequestBody(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return MultipartBody.FORM;
+		}
+
+		@Override
+		public long contentLength() {
+			// Not known without decompressing the file
+			return -1;
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			try (BufferedSource source = EReportCompression.openDecompressed(file)) {
+				sink.writeAll(source);
+			}
+		}
+	}
+
+	/** The builder for {@link TeamscaleClient}. */
+	public static class Builder {
+
+		/** The URL of the Teamscale server. May not be null. */
+		private String baseUrl;
+
+		/** The name of the user to authenticate with. */
+		private String user;
+
+		/** The access token of the user. */
+		private String accessToken;
+
+		/** The project ID within Teamscale. May not be null. */
+		private String projectId;
+
+		/** The file to which all requests are logged. May be null to not log requests. */
+		private File requestLogFile;
+
+		/**
+		 * Whether request bodies are compressed with gzip, which should only be done if the server supports compressed
+		 * requests. Defaults to false.
+		 */
+		private boolean compressRequests = false;
+
+		private Builder() {
+			// Only needed to make constructor private
+		}
+
+		/** @see #baseUrl */
+		public Builder baseUrl(String baseUrl) {
+			this.baseUrl = baseUrl;
+			return this;
+		}
+
+		/** @see #user */
+		public Builder user(String user) {
+			this.user = user;
+			return this;
+		}
+
+		/** @see #accessToken */
+		public Builder accessToken(String accessToken) {
+			this.accessToken = accessToken;
+			return this;
+		}
+
+		/** @see #projectId */
+		public Builder projectId(String projectId) {
+			this.projectId = projectId;
+			return this;
+		}
+
+		/** @see #requestLogFile */
+		public Builder requestLogFile(File requestLogFile) {
+			this.requestLogFile = requestLogFile;
+			return this;
+		}
+
+		/** @see #compressRequests */
+		public Builder compressRequests(boolean compressRequests) {
+			this.compressRequests = compressRequests;
+			return this;
+		}
+
+		/** Checks field conditions and returns the built {@link TeamscaleClient}. */
+		public TeamscaleClient build() {
+			if (baseUrl == null) {
+				throw new IllegalStateException("Base URL must be set.");
+			}
+			if (projectId == null) {
+				throw new IllegalStateException("Project ID must be set.");
+			}
+			return new TeamscaleClient(this);
 		}
 	}
 }
@@ -1,33 +1,90 @@
 package com.teamscale.client;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import retrofit2.Retrofit;
 import retrofit2.converter.moshi.MoshiConverterFactory;
 
 import java.io.File;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /** Helper class for generating a teamscale compatible service. */
 public class TeamscaleServiceGenerator {
 
+	/** How many idle connections are kept open per client process. */
+	private static final int MAX_IDLE_CONNECTIONS = 10;
+
+	/** How long idle connections are kept open. */
+	private static final long KEEP_ALIVE_MINUTES = 5;
+
+	/** How long idle threads of the dispatcher, which executes asynchronous calls, are kept alive. */
+	private static final long DISPATCHER_KEEP_ALIVE_SECONDS = 60;
+
+	/**
+	 * The client from which all other clients are derived, so that they share their connection pool and dispatcher.
+	 * HTTP/1.1 with keep-alive is used, since neither Teamscale nor the agents are guaranteed to speak HTTP/2. The
+	 * dispatcher threads are daemon threads, so asynchronous calls, e.g. a query whose result is no longer needed,
+	 * never keep the JVM of a test run alive.
+	 */
+	private static final OkHttpClient SHARED_CLIENT = new OkHttpClient.Builder()
+			.protocols(Collections.singletonList(Protocol.HTTP_1_1))
+			.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+			.dispatcher(new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, DISPATCHER_KEEP_ALIVE_SECONDS,
+					TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+				Thread thread = new Thread(runnable, "Teamscale client dispatcher");
+				thread.setDaemon(true);
+				return thread;
+			})))
+			.build();
+
 	/**
 	 * Generates a {@link Retrofit} instance for the given service, which uses basic auth to authenticate against the
 	 * server and which sets the accept header to json.
 	 */
 	public static <S> S createService(Class<S> serviceClass, HttpUrl baseUrl, String username, String password) {
-		OkHttpClient client = getDefaultOkHttpClient(username, password);
-		return createService(serviceClass, baseUrl, client);
+		return createService(serviceClass, baseUrl, username, password, false);
+	}
+
+	/**
+	 * Same as {@link #createService(Class, HttpUrl, String, String)}, but optionally compresses request bodies with gzip
+	 * (see {@link GzipRequestInterceptor}). Compression should only be enabled for servers that support it.
+	 */
+	public static <S> S createService(Class<S> serviceClass, HttpUrl baseUrl, String username, String password,
+									  boolean compressRequests) {
+		OkHttpClient.Builder builder = getDefaultOkHttpClientBuilder(username, password);
+		if (compressRequests) {
+			builder.addInterceptor(new GzipRequestInterceptor());
+		}
+		return createService(serviceClass, baseUrl, builder.build());
 	}
 
 	public static <S> S createServiceWithRequestLogging(Class<S> serviceClass, HttpUrl baseUrl, String username,
 														String password, File file) {
-		OkHttpClient client = getDefaultOkHttpClient(username, password).newBuilder()
-				.addInterceptor(new FileLoggingInterceptor(file)).build();
-		return createService(serviceClass, baseUrl, client);
+		return createServiceWithRequestLogging(serviceClass, baseUrl, username, password, file, false);
+	}
+
+	/**
+	 * Same as {@link #createServiceWithRequestLogging(Class, HttpUrl, String, String, File)}, but optionally compresses
+	 * request bodies with gzip.
+	 */
+	public static <S> S createServiceWithRequestLogging(Class<S> serviceClass, HttpUrl baseUrl, String username,
+														String password, File file, boolean compressRequests) {
+		OkHttpClient.Builder builder = getDefaultOkHttpClientBuilder(username, password)
+				.addInterceptor(new FileLoggingInterceptor(file));
+		if (compressRequests) {
+			// The compression must come after the logging, so that the uncompressed requests are logged
+			builder.addInterceptor(new GzipRequestInterceptor());
+		}
+		return createService(serviceClass, baseUrl, builder.build());
 	}
 
 	private static <S> S createService(Class<S> serviceClass, HttpUrl baseUrl, OkHttpClient client) {
@@ -39,8 +96,16 @@ public class TeamscaleServiceGenerator {
 		return retrofit.create(serviceClass);
 	}
 
-	private static OkHttpClient getDefaultOkHttpClient(String username, String password) {
-		OkHttpClient.Builder httpClient = new OkHttpClient.Builder();
+	/**
+	 * Returns a builder for a client that shares its connection pool and dispatcher with all other clients created by
+	 * this class, so connections to the same server are reused instead of being set up again for every request.
+	 */
+	public static OkHttpClient.Builder newSharedOkHttpClientBuilder() {
+		return SHARED_CLIENT.newBuilder();
+	}
+
+	private static OkHttpClient.Builder getDefaultOkHttpClientBuilder(String username, String password) {
+		OkHttpClient.Builder httpClient = newSharedOkHttpClientBuilder();
 		httpClient.connectTimeout(60, TimeUnit.SECONDS);
 		httpClient.readTimeout(60, TimeUnit.SECONDS);
 		httpClient.writeTimeout(60, TimeUnit.SECONDS);
@@ -49,7 +114,7 @@ public class TeamscaleServiceGenerator {
 		httpClient.addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
 				.header("Accept", "application/json").build()));
 
-		return httpClient.build();
+		return httpClient;
 	}
 
 	/**
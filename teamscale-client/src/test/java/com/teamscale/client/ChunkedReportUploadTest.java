@@ -0,0 +1,213 @@
+package com.teamscale.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.HttpUrl;
+import okio.Okio;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests the {@link ChunkedReportUpload} against a local HTTP server that stands in for Teamscale. */
+public class ChunkedReportUploadTest {
+
+	/** Matches the tests in the uploaded parts. */
+	private static final Pattern UNIFORM_PATH_PATTERN = Pattern.compile("\"uniformPath\":\"(T\\d+)\"");
+
+	/** The number of tests in the report. */
+	private static final int TEST_COUNT = 20;
+
+	/** Temporary folder for the report and the state file. */
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/** The stand-in server. */
+	private HttpServer server;
+
+	/** The paths of all requests the server received. */
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+	/** The tests that have been uploaded successfully. */
+	private final List<String> uploadedTests = Collections.synchronizedList(new ArrayList<>());
+
+	/** The numbers of the report requests (starting at 1) that the server should fail. */
+	private final List<Integer> failingReportRequests = Collections.synchronizedList(new ArrayList<>());
+
+	/** The number of report requests the server received so far. */
+	private int reportRequestCount = 0;
+
+	/** The number of sessions the server created so far. */
+	private int sessionCount = 0;
+
+	/** The IDs of the sessions the server does not know anymore. */
+	private final List<String> expiredSessions = Collections.synchronizedList(new ArrayList<>());
+
+	private ITeamscaleService service;
+
+	private File report;
+
+	private File stateFile;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		service = TeamscaleServiceGenerator.createService(ITeamscaleService.class,
+				HttpUrl.parse("http://localhost:" + server.getAddress().getPort() + "/"), "user", "token");
+
+		report = temporaryFolder.newFile("testwise-coverage.json");
+		String tests = IntStream.range(0, TEST_COUNT).mapToObj(i -> "{\"uniformPath\":\"T" + i
+				+ "\",\"result\":\"PASSED\",\"duration\":0.5,\"paths\":[{\"path\":\"src\",\"files\":[{\"fileName\":\"A.java\",\"coveredLines\":\"1-5\"}]}]}")
+				.collect(Collectors.joining(","));
+		Files.write(report.toPath(), ("{\"tests\":[" + tests + "]}").getBytes(StandardCharsets.UTF_8));
+		stateFile = ChunkedReportUpload.getStateFile(temporaryFolder.getRoot(), EReportFormat.TESTWISE_COVERAGE,
+				"Tests", "msg");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	/** Tests that the report is uploaded in several valid parts and that a failed part is retried. */
+	@Test
+	public void uploadsPartsAndRetriesFailedParts() throws IOException {
+		failingReportRequests.add(2);
+
+		createUpload().upload(Collections.singletonList(report), new CommitDescriptor("master", 1), "Tests", "msg");
+
+		assertThat(uploadedTests).containsExactlyInAnyOrder(getAllTests());
+		assertThat(reportRequestCount).isGreaterThan(3);
+		assertThat(requests).filteredOn(path -> path.endsWith("/external-analysis/session")).hasSize(1);
+		assertThat(requests.get(requests.size() - 1)).isEqualTo("/p/project/external-analysis/session/session-1");
+		assertThat(stateFile).doesNotExist();
+	}
+
+	/** Tests that an interrupted upload skips the parts that have already been uploaded when it is resumed. */
+	@Test
+	public void resumesInterruptedUpload() throws IOException {
+		failingReportRequests.addAll(IntStream.rangeClosed(2, 4).boxed().collect(Collectors.toList()));
+		ChunkedReportUpload upload = createUpload();
+
+		assertThatThrownBy(() -> upload.upload(Collections.singletonList(report), new CommitDescriptor("master", 1),
+				"Tests", "msg")).isInstanceOf(IOException.class);
+		assertThat(stateFile).exists();
+		assertThat(uploadedTests).isNotEmpty();
+
+		upload.upload(Collections.singletonList(report), new CommitDescriptor("master", 1), "Tests", "msg");
+
+		assertThat(uploadedTests).containsExactlyInAnyOrder(getAllTests());
+		assertThat(requests).filteredOn(path -> path.endsWith("/external-analysis/session")).hasSize(1);
+		assertThat(stateFile).doesNotExist();
+	}
+
+	/**
+	 * Tests that an upload interrupted in one build is resumed by a new upload in the next build, which only shares
+	 * the state directory.
+	 */
+	@Test
+	public void resumesUploadOfPreviousBuild() throws IOException {
+		failingReportRequests.addAll(IntStream.rangeClosed(2, 4).boxed().collect(Collectors.toList()));
+
+		assertThatThrownBy(() -> createUpload().upload(Collections.singletonList(report),
+				new CommitDescriptor("master", 1), "Tests", "msg")).isInstanceOf(IOException.class);
+		assertThat(uploadedTests).isNotEmpty();
+		createUpload().upload(Collections.singletonList(report), new CommitDescriptor("master", 1), "Tests", "msg");
+
+		// Parts that have been uploaded before are not uploaded again
+		assertThat(uploadedTests).containsExactlyInAnyOrder(getAllTests());
+		assertThat(requests).filteredOn(path -> path.endsWith("/external-analysis/session")).hasSize(1);
+		assertThat(stateFile).doesNotExist();
+	}
+
+	/** Tests that the upload starts again with a new session if Teamscale does not know the resumed session. */
+	@Test
+	public void restartsUploadIfSessionExpired() throws IOException {
+		failingReportRequests.addAll(IntStream.rangeClosed(2, 4).boxed().collect(Collectors.toList()));
+		assertThatThrownBy(() -> createUpload().upload(Collections.singletonList(report),
+				new CommitDescriptor("master", 1), "Tests", "msg")).isInstanceOf(IOException.class);
+		expiredSessions.add("session-1");
+		uploadedTests.clear();
+
+		createUpload().upload(Collections.singletonList(report), new CommitDescriptor("master", 1), "Tests", "msg");
+
+		assertThat(uploadedTests).containsExactlyInAnyOrder(getAllTests());
+		assertThat(requests).filteredOn(path -> path.endsWith("/external-analysis/session")).hasSize(2);
+		assertThat(requests.get(requests.size() - 1)).isEqualTo("/p/project/external-analysis/session/session-2");
+		assertThat(stateFile).doesNotExist();
+	}
+
+	private ChunkedReportUpload createUpload() {
+		return new ChunkedReportUpload(service, "project", EReportFormat.TESTWISE_COVERAGE, 500, stateFile, 0);
+	}
+
+	private static String[] getAllTests() {
+		return IntStream.range(0, TEST_COUNT).mapToObj(i -> "T" + i).toArray(String[]::new);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		requests.add(path);
+		String body = readBody(exchange);
+		if (path.endsWith("/external-analysis/session")) {
+			sessionCount++;
+			respond(exchange, 200, "\"session-" + sessionCount + "\"");
+			return;
+		}
+		if (expiredSessions.stream().anyMatch(session -> path.contains("/session/" + session))) {
+			respond(exchange, 404, "Unknown session");
+			return;
+		}
+		if (path.endsWith("/report")) {
+			reportRequestCount++;
+			if (failingReportRequests.contains(reportRequestCount)) {
+				respond(exchange, 500, "Internal server error");
+				return;
+			}
+			assertThat(body).contains("{\"tests\":[");
+			Matcher matcher = UNIFORM_PATH_PATTERN.matcher(body);
+			while (matcher.find()) {
+				uploadedTests.add(matcher.group(1));
+			}
+		}
+		respond(exchange, 200, "");
+	}
+
+	private static String readBody(HttpExchange exchange) throws IOException {
+		InputStream input = exchange.getRequestBody();
+		if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+			input = new GZIPInputStream(input);
+		}
+		return Okio.buffer(Okio.source(input)).readUtf8();
+	}
+
+	private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.teamscale.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.GzipSink;
+import okio.Okio;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link GzipRequestInterceptor} against a local HTTP server. */
+public class GzipRequestInterceptorTest {
+
+	private static final MediaType TEXT = MediaType.parse("text/plain");
+
+	/** The stand-in server. */
+	private HttpServer server;
+
+	/** Whether the server rejects compressed requests. */
+	private volatile boolean rejectGzip = false;
+
+	/** The Content-Encoding headers of all requests the server received ("none" if missing). */
+	private final List<String> encodings = Collections.synchronizedList(new ArrayList<>());
+
+	/** The decompressed bodies of all requests the server accepted. */
+	private final List<String> bodies = Collections.synchronizedList(new ArrayList<>());
+
+	private final OkHttpClient client = TeamscaleServiceGenerator.newSharedOkHttpClientBuilder()
+			.addInterceptor(new GzipRequestInterceptor()).build();
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	/** Tests that request bodies are compressed. */
+	@Test
+	public void compressesRequests() throws IOException {
+		post(RequestBody.create(TEXT, "report"));
+
+		assertThat(encodings).containsExactly("gzip");
+		assertThat(bodies).containsExactly("report");
+	}
+
+	/** Tests that a request rejected with 415 is repeated uncompressed and later requests are not compressed. */
+	@Test
+	public void fallsBackToUncompressedRequestsOn415() throws IOException {
+		rejectGzip = true;
+
+		assertThat(post(RequestBody.create(TEXT, "first"))).isEqualTo(200);
+		assertThat(post(RequestBody.create(TEXT, "second"))).isEqualTo(200);
+
+		assertThat(encodings).containsExactly("gzip", "none", "none");
+		assertThat(bodies).containsExactly("first", "second");
+	}
+
+	/** Tests that requests and multipart requests with an encoded part are passed on unchanged. */
+	@Test
+	public void passesEncodedRequestsThrough() throws IOException {
+		Buffer compressed = new Buffer();
+		try (GzipSink sink = new GzipSink(compressed)) {
+			sink.write(new Buffer().writeUtf8("report"), 6);
+		}
+		byte[] compressedBytes = compressed.readByteArray();
+		Request encodedRequest = new Request.Builder().url(getUrl()).header("Content-Encoding", "gzip")
+				.post(RequestBody.create(TEXT, compressedBytes)).build();
+		try (Response response = client.newCall(encodedRequest).execute()) {
+			assertThat(response.code()).isEqualTo(200);
+		}
+
+		MultipartBody multipartBody = new MultipartBody.Builder().setType(MultipartBody.FORM)
+				.addPart(Headers.of("Content-Disposition", "form-data; name=\"report\"; filename=\"report.json\"",
+						"Content-Encoding", "gzip"), RequestBody.create(MultipartBody.FORM, compressedBytes))
+				.build();
+		post(multipartBody);
+
+		assertThat(encodings).containsExactly("gzip", "none");
+		assertThat(bodies.get(0)).isEqualTo("report");
+	}
+
+	private int post(RequestBody body) throws IOException {
+		try (Response response = client.newCall(new Request.Builder().url(getUrl()).post(body).build()).execute()) {
+			return response.code();
+		}
+	}
+
+	private String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/";
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+		encodings.add(encoding == null ? "none" : encoding);
+		InputStream input = exchange.getRequestBody();
+		if ("gzip".equals(encoding)) {
+			if (rejectGzip) {
+				Okio.buffer(Okio.source(input)).readByteArray();
+				respond(exchange, 415);
+				return;
+			}
+			input = new GZIPInputStream(input);
+		}
+		bodies.add(Okio.buffer(Okio.source(input)).readUtf8());
+		respond(exchange, 200);
+	}
+
+	private static void respond(HttpExchange exchange, int code) throws IOException {
+		exchange.sendResponseHeaders(code, -1);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.flush();
+		}
+	}
+}
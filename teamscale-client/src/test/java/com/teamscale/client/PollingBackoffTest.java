@@ -0,0 +1,56 @@
+package com.teamscale.client;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+import retrofit2.Response;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link PollingBackoff}. */
+public class PollingBackoffTest {
+
+	/** Tests that the interval doubles up to the maximum and that polling stops at the deadline. */
+	@Test
+	public void intervalGrowsExponentiallyUntilDeadline() {
+		PollingBackoff backoff = new PollingBackoff(9000);
+
+		assertThat(backoff.nextDelay(notReady(null))).isEqualTo(500);
+		assertThat(backoff.nextDelay(notReady(null))).isEqualTo(1000);
+		assertThat(backoff.nextDelay(notReady(null))).isEqualTo(2000);
+		assertThat(backoff.nextDelay(notReady(null))).isEqualTo(4000);
+		assertThat(backoff.nextDelay(notReady(null))).isEqualTo(8000);
+		// The next interval would be capped to 10 seconds, which exceeds the deadline
+		assertThat(backoff.nextDelay(notReady(null))).isEqualTo(-1);
+	}
+
+	/** Tests that the Retry-After header is honored in both of its forms. */
+	@Test
+	public void honorsRetryAfter() {
+		PollingBackoff backoff = new PollingBackoff(20000);
+
+		assertThat(backoff.nextDelay(notReady("3"))).isEqualTo(3000);
+		assertThat(backoff.nextDelay(notReady("60"))).isEqualTo(-1);
+		assertThat(backoff.nextDelay(notReady(null))).isEqualTo(500);
+
+		long now = System.currentTimeMillis();
+		String date = DateTimeFormatter.RFC_1123_DATE_TIME
+				.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10).withNano(0));
+		assertThat(PollingBackoff.getRetryAfterMillis(date, now)).isBetween(8000L, 10000L);
+		assertThat(PollingBackoff.getRetryAfterMillis("soon", now)).isEqualTo(-1);
+	}
+
+	private static Response<Object> notReady(String retryAfter) {
+		okhttp3.Response.Builder rawResponse = new okhttp3.Response.Builder().code(412).message("Precondition Failed")
+				.protocol(Protocol.HTTP_1_1).request(new Request.Builder().url("http://localhost/").build());
+		if (retryAfter != null) {
+			rawResponse.header("Retry-After", retryAfter);
+		}
+		return Response.error(ResponseBody.create(null, ""), rawResponse.build());
+	}
+}
@@ -0,0 +1,209 @@
+package com.teamscale.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okio.BufferedSink;
+import okio.Okio;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import retrofit2.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests the asynchronous API of the {@link TeamscaleClient} against a local HTTP server. */
+public class TeamscaleClientAsyncTest {
+
+	/** The stand-in server. */
+	private HttpServer server;
+
+	/** The number of impacted tests requests the server received. */
+	private final AtomicInteger impactedTestsRequests = new AtomicInteger();
+
+	/** How many requests the server answers with 412 before it returns the impacted tests. */
+	private volatile int notReadyResponses = 0;
+
+	/** How long the server waits before it answers. */
+	private volatile long responseDelayMillis = 0;
+
+	/** The number of report uploads the server received. */
+	private final AtomicInteger uploadRequests = new AtomicInteger();
+
+	/** The status code with which the server answers report uploads. */
+	private volatile int uploadResponseCode = 200;
+
+	/** The body of the last report upload the server received. */
+	private volatile String uploadBody = null;
+
+	/** Temporary folder for the uploaded reports. */
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private TeamscaleClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		client = TeamscaleClient.builder()
+				.baseUrl("http://localhost:" + server.getAddress().getPort() + "/")
+				.user("user")
+				.accessToken("token")
+				.projectId("project")
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	/** Tests that the impacted tests are requested again until Teamscale has processed all uploads. */
+	@Test
+	public void getImpactedTestsWaitsForProcessedUploads() throws Exception {
+		notReadyResponses = 2;
+
+		Response<List<PrioritizableTestCluster>> response = getImpactedTests(0).get(10, TimeUnit.SECONDS);
+
+		assertThat(response.code()).isEqualTo(200);
+		assertThat(response.body()).isEmpty();
+		assertThat(impactedTestsRequests.get()).isEqualTo(3);
+	}
+
+	/** Tests that a request that takes longer than the timeout fails with a {@link TimeoutException}. */
+	@Test
+	public void getImpactedTestsTimesOut() {
+		responseDelayMillis = 2000;
+
+		CompletableFuture<Response<List<PrioritizableTestCluster>>> future = getImpactedTests(100);
+
+		assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(TimeoutException.class);
+	}
+
+	/** Tests that cancelling the future stops polling Teamscale for the impacted tests. */
+	@Test
+	public void cancellingGetImpactedTestsStopsPolling() throws Exception {
+		notReadyResponses = Integer.MAX_VALUE;
+
+		CompletableFuture<Response<List<PrioritizableTestCluster>>> future = getImpactedTests(0);
+		while (impactedTestsRequests.get() == 0) {
+			Thread.sleep(10);
+		}
+		future.cancel(false);
+		// Longer than the delay before the next attempt
+		Thread.sleep(1500);
+
+		assertThat(future.isCancelled()).isTrue();
+		assertThat(impactedTestsRequests.get()).isEqualTo(1);
+	}
+
+	/** Tests that reports are uploaded asynchronously. */
+	@Test
+	public void uploadReportsAsyncUploadsReports() throws Exception {
+		uploadReports().get(10, TimeUnit.SECONDS);
+
+		assertThat(uploadRequests.get()).isEqualTo(1);
+	}
+
+	/** Tests that compressed reports are decompressed while they are uploaded. */
+	@Test
+	public void uploadsCompressedReportsDecompressed() throws Exception {
+		File report = temporaryFolder.newFile("report.xml.gz");
+		try (BufferedSink sink = Okio.buffer(EReportCompression.GZIP.compress(Okio.sink(report)))) {
+			sink.writeUtf8("<report/>");
+		}
+
+		client.uploadReportsAsync(EReportFormat.JACOCO, Collections.singletonList(report),
+				new CommitDescriptor("master", 1), "Tests", "message", 0, TimeUnit.MILLISECONDS)
+				.get(10, TimeUnit.SECONDS);
+
+		assertThat(uploadBody).contains("filename=\"report.xml\"").contains("<report/>")
+				.doesNotContain("Content-Encoding");
+	}
+
+	/** Tests that a rejected upload completes the future with a {@link HttpStatusException}. */
+	@Test
+	public void uploadReportsAsyncFailsIfUploadIsRejected() throws Exception {
+		uploadResponseCode = 400;
+
+		CompletableFuture<Void> future = uploadReports();
+
+		assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(HttpStatusException.class);
+		assertThat(uploadRequests.get()).isEqualTo(1);
+	}
+
+	/** Tests that an upload that takes longer than the timeout fails with a {@link TimeoutException}. */
+	@Test
+	public void uploadReportsAsyncTimesOut() throws Exception {
+		responseDelayMillis = 2000;
+
+		CompletableFuture<Void> future = uploadReports(100);
+
+		assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(TimeoutException.class);
+	}
+
+	private CompletableFuture<Void> uploadReports() throws IOException {
+		return uploadReports(0);
+	}
+
+	private CompletableFuture<Void> uploadReports(long timeoutMillis) throws IOException {
+		File report = temporaryFolder.newFile("report.xml");
+		Files.write(report.toPath(), "<report/>".getBytes(StandardCharsets.UTF_8));
+		return client.uploadReportsAsync(EReportFormat.JACOCO, Collections.singletonList(report),
+				new CommitDescriptor("master", 1), "Tests", "message", timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private CompletableFuture<Response<List<PrioritizableTestCluster>>> getImpactedTests(long timeoutMillis) {
+		return client.getImpactedTestsAsync(Collections.emptyList(), null, new CommitDescriptor("master", 1),
+				"Tests", timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			Thread.sleep(responseDelayMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (exchange.getRequestURI().getPath().contains("external-report")) {
+			uploadRequests.incrementAndGet();
+			uploadBody = Okio.buffer(Okio.source(exchange.getRequestBody())).readUtf8();
+			respond(exchange, uploadResponseCode, "");
+			return;
+		}
+		if (impactedTestsRequests.incrementAndGet() <= notReadyResponses) {
+			respond(exchange, 412, "Not all uploads have been processed yet");
+			return;
+		}
+		respond(exchange, 200, "[]");
+	}
+
+	private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+}
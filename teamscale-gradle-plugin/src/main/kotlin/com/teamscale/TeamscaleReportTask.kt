@@ -1,26 +1,22 @@
 package com.teamscale
 
-import com.teamscale.client.TestDetails
 import com.teamscale.config.GoogleClosureConfiguration
 import com.teamscale.config.SerializableFilter
 import com.teamscale.config.TeamscaleTaskExtension
-import com.teamscale.report.EDuplicateClassFileBehavior
-import com.teamscale.report.ReportUtils
-import com.teamscale.report.testwise.ETestArtifactFormat
-import com.teamscale.report.testwise.closure.ClosureTestwiseCoverageGenerator
-import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator
-import com.teamscale.report.testwise.model.TestExecution
-import com.teamscale.report.testwise.model.TestwiseCoverage
-import com.teamscale.report.testwise.model.builder.TestwiseCoverageReportBuilder
 import com.teamscale.report.util.ILogger
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.FileCollection
 import org.gradle.api.logging.Logger
 import org.gradle.api.tasks.*
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs
+import org.gradle.workers.IsolationMode
+import org.gradle.workers.WorkerExecutor
 import java.io.File
+import java.security.MessageDigest
+import javax.inject.Inject
 
 /** Task which runs the impacted tests. */
-open class TeamscaleReportTask : DefaultTask() {
+open class TeamscaleReportTask @Inject constructor(private val workerExecutor: WorkerExecutor) : DefaultTask() {
 
     /**
      * Test task's name for which reports are generated.
@@ -66,6 +62,21 @@ open class TeamscaleReportTask : DefaultTask() {
         @OutputDirectories
         get() = reportsToArtifacts.keys.map { it.reportFile.parentFile }
 
+    /**
+     * Holds the coverage converted from each .exec file in the binary testwise coverage format, so that unchanged
+     * .exec files do not need to be converted again.
+     */
+    val intermediateDirectory
+        @OutputDirectory
+        get() = File(project.buildDir, "teamscale/$name")
+
+    /**
+     * Caches the analyzed class files in the Gradle user home, so that they are shared between all builds on this
+     * machine. Entries are identified by the hash of the class file, so they never become stale.
+     */
+    private val probesCacheDirectory
+        get() = File(project.gradle.gradleUserHomeDir, "caches/teamscale/probes")
+
     init {
         group = "Teamscale"
         description = "Generates a testwise coverage report"
@@ -87,84 +98,117 @@ open class TeamscaleReportTask : DefaultTask() {
 
     /**
      * Generates a testwise coverage from the execution data and merges it with eventually existing closure coverage.
+     * Each report is generated by a separate worker, so the reports are generated in parallel up to the number of
+     * workers allowed by Gradle (org.gradle.workers.max). The workers run in a separate process, which keeps the
+     * analyzed class files between reports and builds (see [JaCoCoTestwiseReportGeneratorCache]).
+     *
+     * The task is incremental: Only .exec files that changed since the last run are converted again and only reports
+     * with changed test artifacts are merged again. Changes of the class files or of the task's configuration require
+     * converting everything.
      */
     @TaskAction
-    fun generateTestwiseCoverageReports() {
+    fun generateTestwiseCoverageReports(inputs: IncrementalTaskInputs) {
         if (reportsToArtifacts.isEmpty()) {
             logger.info("Skipping coverage report generation (No reports configured)")
             return
         }
-        val jaCoCoTestwiseReportGenerator = JaCoCoTestwiseReportGenerator(
-            classDirs.flatMap { it.files },
-            agentFilter.getPredicate(),
-            EDuplicateClassFileBehavior.IGNORE,
-            project.logger.wrapInILogger()
-        )
+        val classDirFiles = classDirs.flatMap { it.files }
+        // Only needed if any report has to be generated
+        val classDirsFingerprint by lazy { fingerprint(classDirFiles) }
+
+        val changedFiles = mutableListOf<File>()
+        if (inputs.isIncremental) {
+            inputs.outOfDate { changedFiles.add(it.file) }
+            inputs.removed { changedFiles.add(it.file) }
+        }
+        val testArtifactsChangedOnly = changedFiles.all { file -> testArtifacts.any { file.startsWith(it) } }
+        val fullRebuild = !inputs.isIncremental || !testArtifactsChangedOnly
+        if (fullRebuild) {
+            logger.info("Converting all test artifacts")
+            intermediateDirectory.deleteRecursively()
+        }
 
         logger.info("Generating coverage reports...")
+        val generatedReports = mutableListOf<Report>()
         for ((reportConfig, artifacts) in reportsToArtifacts.entries) {
-            generateTestwiseCoverageReport(reportConfig, artifacts, jaCoCoTestwiseReportGenerator)
+            val changedArtifacts = changedFiles.filter { file -> artifacts.any { file.startsWith(it) } }
+            if (!fullRebuild && changedArtifacts.isEmpty() && reportConfig.reportFile.exists()) {
+                logger.info("Skipping ${reportConfig.reportFile.name} (No changes)")
+                generatedReports.add(reportConfig)
+                continue
+            }
+            generatedReports.add(reportConfig)
+
+            // The worker does not write a report if there is no execution data, so a stale report must not remain
+            reportConfig.reportFile.delete()
+            val parameters = TestwiseCoverageReportParameters(
+                classDirFiles,
+                classDirsFingerprint,
+                agentFilter,
+                closureIncludeFilter,
+                artifacts.toList(),
+                reportConfig.reportFile,
+                File(intermediateDirectory, getIntermediateDirectoryName(reportConfig)),
+                changedArtifacts,
+                probesCacheDirectory
+            )
+            workerExecutor.submit(TestwiseCoverageReportWorker::class.java) { config ->
+                config.isolationMode = IsolationMode.PROCESS
+                config.displayName = "Generating ${reportConfig.reportFile.name}"
+                config.params(parameters)
+            }
         }
-    }
+        workerExecutor.await()
 
-    /** Generates a testwise coverage report and stores it on disk. */
-    private fun generateTestwiseCoverageReport(
-        reportConfig: Report,
-        artifacts: MutableList<File>,
-        jaCoCoTestwiseReportGenerator: JaCoCoTestwiseReportGenerator
-    ) {
-        val testDetails =
-            ReportUtils.readObjects(ETestArtifactFormat.TEST_LIST, Array<TestDetails>::class.java, artifacts)
-        val testExecutions = ReportUtils.readObjects(
-            ETestArtifactFormat.TEST_EXECUTION,
-            Array<TestExecution>::class.java,
-            artifacts
-        )
-
-        val testwiseCoverage = buildTestwiseCoverage(artifacts, jaCoCoTestwiseReportGenerator) ?: return
-
-        logger.info("Merging report with ${testDetails.size} Details/${testwiseCoverage.tests.size} Coverage/${testExecutions.size} Results")
-
-        val report = TestwiseCoverageReportBuilder.createFrom(testDetails, testwiseCoverage.tests, testExecutions)
-        logger.info("Writing report to ${reportConfig.reportFile}")
-        ReportUtils.writeTestwiseCoverageReport(reportConfig.reportFile, report)
-
-        if (reportConfig.upload) {
-            uploadTask.reports.add(reportConfig)
+        for (reportConfig in generatedReports) {
+            if (reportConfig.upload && reportConfig.reportFile.exists()) {
+                uploadTask.reports.add(reportConfig)
+            }
         }
     }
 
-    /** Collects JaCoCo's exec files from the artifacts folders and merges it with js coverage. */
-    private fun buildTestwiseCoverage(
-        artifacts: MutableList<File>,
-        jaCoCoTestwiseReportGenerator: JaCoCoTestwiseReportGenerator
-    ): TestwiseCoverage? {
-        val jacocoExecutionData = ReportUtils.listFiles(ETestArtifactFormat.JACOCO, artifacts)
-        if (jacocoExecutionData.isEmpty()) {
-            logger.error("No execution data provided!")
-            return null
+    /**
+     * Hashes the paths and contents of all files in the given directories and archives, so that any change of a class
+     * file results in a different fingerprint.
+     */
+    private fun fingerprint(classDirFiles: List<File>): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        val buffer = ByteArray(8192)
+        for (classDir in classDirFiles) {
+            digest.update(classDir.absolutePath.toByteArray())
+            digest.update(0.toByte())
+            for (file in classDir.walkTopDown().filter { it.isFile }.sortedBy { it.path }) {
+                digest.update(file.relativeTo(classDir).path.toByteArray())
+                digest.update(0.toByte())
+                file.inputStream().use { input ->
+                    var count = input.read(buffer)
+                    while (count >= 0) {
+                        digest.update(buffer, 0, count)
+                        count = input.read(buffer)
+                    }
+                }
+            }
+            digest.update(0.toByte())
         }
-        logger.info("Generating testwise coverage for $jacocoExecutionData")
+        return digest.digest().toHex()
+    }
 
-        val testwiseCoverage = TestwiseCoverage()
-        for (file in jacocoExecutionData) {
-            testwiseCoverage.add(jaCoCoTestwiseReportGenerator.convert(file))
-        }
+    /** Returns a unique name of the directory that holds the intermediate results for the given report. */
+    private fun getIntermediateDirectoryName(reportConfig: Report) = reportConfig.reportFile.uniqueName()
+}
 
-        val jsCoverageData = ReportUtils.listFiles(ETestArtifactFormat.CLOSURE, artifacts)
-        if (jsCoverageData.isNotEmpty()) {
-            testwiseCoverage.add(
-                ClosureTestwiseCoverageGenerator(
-                    jsCoverageData,
-                    closureIncludeFilter.getPredicate(),
-                    logger.wrapInILogger()
-                ).readTestCoverage()
-            )
-        }
-        return testwiseCoverage
-    }
+/**
+ * Returns a name for files derived from this file that is unique among all files, since it contains the SHA-256 hash
+ * of the absolute path.
+ */
+fun File.uniqueName(): String {
+    val pathHash = MessageDigest.getInstance("SHA-256").digest(absolutePath.toByteArray()).toHex()
+    return "$nameWithoutExtension-$pathHash"
 }
 
+/** Returns the hexadecimal representation of the bytes. */
+private fun ByteArray.toHex() = joinToString("") { "%02x".format(it) }
+
 /** Wraps the gradle log4j logger into an ILogger. */
 fun Logger.wrapInILogger(): ILogger {
     val logger = this
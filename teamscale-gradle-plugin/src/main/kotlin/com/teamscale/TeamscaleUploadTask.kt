@@ -1,14 +1,23 @@
 package com.teamscale
 
+import com.teamscale.client.CommitDescriptor
+import com.teamscale.client.EReportFormat
+import com.teamscale.client.HttpStatusException
 import com.teamscale.client.TeamscaleClient
 import com.teamscale.config.TeamscalePluginExtension
 import org.gradle.api.DefaultTask
 import org.gradle.api.GradleException
+import org.gradle.api.logging.Logger
 import org.gradle.api.tasks.Input
 import org.gradle.api.tasks.Internal
 import org.gradle.api.tasks.TaskAction
+import java.io.File
+import java.io.IOException
 import java.net.ConnectException
 import java.net.SocketTimeoutException
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 /** Handles report uploads to Teamscale. */
 open class TeamscaleUploadTask : DefaultTask() {
@@ -34,6 +43,17 @@ open class TeamscaleUploadTask : DefaultTask() {
     @Input
     var ignoreFailures: Boolean = false
 
+    /** How many partitions are uploaded at the same time at most. */
+    @Internal
+    var maxParallelUploads: Int = 4
+
+    /**
+     * Testwise coverage reports that are bigger than this (in bytes) are uploaded in several requests of about this
+     * size, which can be retried individually.
+     */
+    @Internal
+    var chunkedUploadPartSize: Long = 64L * 1024 * 1024
+
     init {
         group = "Teamscale"
         description = "Uploads reports to Teamscale"
@@ -48,6 +68,12 @@ open class TeamscaleUploadTask : DefaultTask() {
         }
 
         server.validate()
+        if (maxParallelUploads < 1) {
+            throw GradleException("maxParallelUploads must be at least 1, but is $maxParallelUploads")
+        }
+        if (chunkedUploadPartSize < 1) {
+            throw GradleException("chunkedUploadPartSize must be at least 1 byte, but is $chunkedUploadPartSize")
+        }
 
         try {
             logger.info("Uploading to $server at $commitDescriptor...")
@@ -65,45 +91,115 @@ open class TeamscaleUploadTask : DefaultTask() {
     private fun uploadReports() {
         // We want to upload e.g. all JUnit test reports that go to the same partition
         // as one commit so we group them before uploading them
+        val uploads = mutableMapOf<Triple<EReportFormat, String, String>, List<File>>()
         for ((key, reports) in reports.groupBy { Triple(it.format, it.partition, it.message) }) {
-            val (format, partition, message) = key
+            val (format, partition) = key
             val reportFiles = reports.map { it.reportFile }.distinct()
             logger.info("Uploading ${reportFiles.size} ${format.name} report(s) to partition $partition...")
             if (reportFiles.isEmpty()) {
                 logger.info("Skipped empty upload!")
                 continue
             }
+            uploads[key] = reportFiles
+        }
+        if (uploads.isEmpty()) {
+            return
+        }
+
+        // The groups are independent of each other, so they are uploaded concurrently over the same connection pool
+        val client = TeamscaleClient.builder()
+            .baseUrl(server.url)
+            .user(server.userName)
+            .accessToken(server.userAccessToken)
+            .projectId(server.project)
+            .compressRequests(server.compressRequests)
+            .build()
+        val commit = commitDescriptor
+        val executor = Executors.newFixedThreadPool(Math.min(maxParallelUploads, uploads.size))
+        try {
+            val futures = uploads.map { (key, reportFiles) ->
+                key to executor.submit(Callable { upload(client, commit, key, reportFiles) })
+            }
+            val failures = futures.mapNotNull { (key, future) ->
+                try {
+                    future.get()
+                    null
+                } catch (e: ExecutionException) {
+                    key to (e.cause ?: e)
+                }
+            }
+            if (failures.isNotEmpty()) {
+                val summary = failures.joinToString("\n") { (key, e) ->
+                    " - ${key.first.name} report(s) to partition ${key.second}: ${e.message}"
+                }
+                val exception =
+                    GradleException("Upload failed for ${failures.size} of ${uploads.size} partition(s):\n$summary")
+                failures.forEach { exception.addSuppressed(it.second) }
+                throw exception
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
 
-            try {
-                retry(3) {
-                    val client =
-                        TeamscaleClient(server.url, server.userName, server.userAccessToken, server.project)
-                    client.uploadReports(
-                        format, reportFiles, commitDescriptor, partition, "$message ($partition)"
-                    )
+    /** Uploads the report files of a single format, partition and message. Failed attempts are retried with backoff. */
+    private fun upload(
+        client: TeamscaleClient,
+        commit: CommitDescriptor,
+        key: Triple<EReportFormat, String, String>,
+        reportFiles: List<File>
+    ) {
+        val (format, partition, message) = key
+        try {
+            val reportSize = reportFiles.map { it.length() }.sum()
+            if (format == EReportFormat.TESTWISE_COVERAGE && reportSize > chunkedUploadPartSize) {
+                // Parts are retried individually and a failed upload resumes where it stopped in the next build
+                client.uploadReportsChunked(
+                    format, reportFiles, commit, partition, "$message ($partition)", chunkedUploadPartSize,
+                    File(project.buildDir, "teamscale/upload")
+                )
+            } else {
+                retry(3, INITIAL_RETRY_BACKOFF_MILLIS, logger) {
+                    client.uploadReports(format, reportFiles, commit, partition, "$message ($partition)")
                 }
-            } catch (e: ConnectException) {
-                throw GradleException("Upload failed (${e.message})", e)
-            } catch (e: SocketTimeoutException) {
-                throw GradleException("Upload failed (${e.message})", e)
             }
+        } catch (e: ConnectException) {
+            throw GradleException("Upload failed (${e.message})", e)
+        } catch (e: SocketTimeoutException) {
+            throw GradleException("Upload failed (${e.message})", e)
         }
+        logger.info("Uploaded ${reportFiles.size} ${format.name} report(s) to partition $partition")
+    }
+
+    companion object {
+
+        /** How long to wait before retrying a failed upload for the first time. Doubled for every further retry. */
+        private const val INITIAL_RETRY_BACKOFF_MILLIS = 1000L
     }
 }
 
 /**
- * Retries the given block numOfRetries-times catching any thrown exceptions.
- * If none of the retries succeeded the latest catched exception is rethrown.
+ * Retries the given block numOfRetries-times as long as it fails with an I/O error or a server error (5xx), which may
+ * go away when the request is repeated. Other exceptions, e.g. for rejected requests (4xx), are rethrown immediately.
+ * If none of the retries succeeded the latest caught exception is rethrown.
+ * Waits initialBackoffMillis before the first retry and twice as long before every further retry.
  */
-fun <T> retry(numOfRetries: Int, block: () -> T): T {
-    var throwable: Throwable? = null
-    (1..numOfRetries).forEach { attempt ->
+fun <T> retry(numOfRetries: Int, initialBackoffMillis: Long = 0, logger: Logger, block: () -> T): T {
+    var backoffMillis = initialBackoffMillis
+    var attempt = 1
+    while (true) {
         try {
             return block()
-        } catch (e: Throwable) {
-            throwable = e
-            println("Failed attempt $attempt / $numOfRetries")
+        } catch (e: IOException) {
+            if (attempt >= numOfRetries || (e is HttpStatusException && !e.isServerError)) {
+                throw e
+            }
+            logger.warn("Failed attempt $attempt / $numOfRetries: ${e.message}")
+            if (backoffMillis > 0) {
+                Thread.sleep(backoffMillis)
+                backoffMillis *= 2
+            }
+            attempt++
         }
     }
-    throw throwable!!
 }
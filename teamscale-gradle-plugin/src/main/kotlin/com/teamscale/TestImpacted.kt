@@ -11,6 +11,7 @@ import org.gradle.api.tasks.testing.Test
 import org.gradle.api.tasks.testing.junit.JUnitOptions
 import org.gradle.api.tasks.testing.junitplatform.JUnitPlatformOptions
 import org.gradle.api.tasks.testing.testng.TestNGOptions
+import java.io.File
 
 /** Task which runs the impacted tests. */
 @CacheableTask
@@ -36,6 +37,47 @@ open class TestImpacted : Test() {
     )
     var runAllTests: Boolean = false
 
+    /**
+     * The wall-clock time in seconds, counted from the start of the test engine, within which impacted tests must
+     * finish. Which tests fit is estimated from the durations of previous runs. Impacted tests that do not fit are
+     * reported as skipped. Null means no limit.
+     */
+    @Input
+    @Optional
+    var timeBudgetSeconds: Long? = null
+
+    /**
+     * The index (starting at 0) of the shard to execute if the tests are distributed among [shardCount] machines. The
+     * available tests are distributed before Teamscale is queried, so each shard only asks for and executes the
+     * impacted tests among its own tests. All shards must use the same test durations
+     * (build/teamscale/<task>/test-durations.json) to agree on the distribution, e.g. the ones of a previous unsharded
+     * run. Sharded runs only read this file. Tests of other shards are skipped.
+     */
+    @Input
+    @Optional
+    var shardIndex: Int? = null
+
+    /** The number of shards among which the tests are distributed. Null means no sharding. */
+    @Input
+    @Optional
+    var shardCount: Int? = null
+
+    /**
+     * How long in milliseconds the test engine waits for the agents to acknowledge the start or end of a test. Agents
+     * that repeatedly fail to answer in time are not contacted for a while. Null means the engine's default (5s).
+     */
+    @Input
+    @Optional
+    var agentNotificationTimeoutMillis: Long? = null
+
+    /**
+     * Whether the impacted tests are cached on disk, so re-runs with identical inputs don't query Teamscale again.
+     * The impacted tests of HEAD or of end commits younger than ten minutes are never cached, since Teamscale may
+     * still be processing uploads for them.
+     */
+    @Input
+    var cacheImpactedTests: Boolean = true
+
     /**
      * Reference to the configuration that should be used for this task.
      */
@@ -166,6 +208,26 @@ open class TestImpacted : Test() {
         super.executeTests()
     }
 
+    /**
+     * Whether tests are filtered by tags or name patterns. These filters are applied after the discovery, so the
+     * discovered tests can't be cached.
+     */
+    private fun usesPostDiscoveryFilters(): Boolean {
+        return junitPlatformOptions.includeTags.isNotEmpty() || junitPlatformOptions.excludeTags.isNotEmpty()
+                || filter.includePatterns.isNotEmpty() || filter.excludePatterns.isNotEmpty()
+                || usesCommandLineTestFilter()
+    }
+
+    /**
+     * Whether tests are filtered with --tests on the command line. Gradle does not expose these patterns through its
+     * public API, so any such option disables the cache, even if it belongs to another task.
+     */
+    private fun usesCommandLineTestFilter(): Boolean {
+        return project.gradle.startParameter.taskRequests.any { taskRequest ->
+            taskRequest.args.any { it == "--tests" || it.startsWith("--tests=") }
+        }
+    }
+
     private fun writeEngineProperty(name: String, value: String?) {
         if (value != null) {
             systemProperties["teamscale.test.impacted.$name"] = value
@@ -178,11 +240,37 @@ open class TestImpacted : Test() {
         writeEngineProperty("server.project", serverConfiguration.project!!)
         writeEngineProperty("server.userName", serverConfiguration.userName!!)
         writeEngineProperty("server.userAccessToken", serverConfiguration.userAccessToken!!)
+        writeEngineProperty("server.compressRequests", serverConfiguration.compressRequests.toString())
         writeEngineProperty("partition", report.partition)
         writeEngineProperty("endCommit", endCommit.toString())
         writeEngineProperty("baseline", baseline?.toString())
         writeEngineProperty("reportDirectory", reportOutputDir.absolutePath)
+        if (cacheImpactedTests) {
+            writeEngineProperty(
+                "impactedTestsCacheDirectory",
+                File(project.buildDir, "teamscale/impacted-tests-cache").absolutePath
+            )
+        }
+        if (!usesPostDiscoveryFilters()) {
+            writeEngineProperty(
+                "testDiscoveryCacheDirectory",
+                File(project.buildDir, "teamscale/$name/test-discovery-cache").absolutePath
+            )
+            // The test classes are loaded by a separate class loader, so they are not on the classpath the engine sees
+            writeEngineProperty(
+                "testClassesDirs",
+                testClassesDirs.files.joinToString(File.pathSeparator) { it.absolutePath }
+            )
+        }
+        writeEngineProperty(
+            "testDurationsFile",
+            File(project.buildDir, "teamscale/$name/test-durations.json").absolutePath
+        )
+        writeEngineProperty("timeBudgetSeconds", timeBudgetSeconds?.toString())
+        writeEngineProperty("shardIndex", shardIndex?.toString())
+        writeEngineProperty("shardCount", shardCount?.toString())
         writeEngineProperty("agentsUrls", taskExtension.agent.getAllAgents().map { it.url }.joinToString(","))
+        writeEngineProperty("agentNotificationTimeoutMillis", agentNotificationTimeoutMillis?.toString())
         writeEngineProperty("runImpacted", runImpacted.toString())
         writeEngineProperty("runAllTests", runAllTests.toString())
         writeEngineProperty("engines", includeEngines.joinToString(","))
@@ -0,0 +1,212 @@
+package com.teamscale
+
+import com.teamscale.client.EReportCompression
+import com.teamscale.client.TestDetails
+import com.teamscale.config.GoogleClosureConfiguration
+import com.teamscale.config.SerializableFilter
+import com.teamscale.report.EDuplicateClassFileBehavior
+import com.teamscale.report.ReportUtils
+import com.teamscale.report.testwise.ETestArtifactFormat
+import com.teamscale.report.testwise.ISortedCoverageSource
+import com.teamscale.report.testwise.MergingTestwiseCoverageWriter
+import com.teamscale.report.testwise.TestwiseCoverageReportWriter
+import com.teamscale.report.testwise.binary.BinaryTestwiseCoverageReader
+import com.teamscale.report.testwise.binary.BinaryTestwiseCoverageWriter
+import com.teamscale.report.testwise.closure.ClosureTestwiseCoverageGenerator
+import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator
+import com.teamscale.report.testwise.model.TestExecution
+import com.teamscale.report.testwise.model.TestwiseCoverage
+import com.teamscale.report.testwise.model.factory.TestInfoFactory
+import org.gradle.api.logging.Logging
+import java.io.File
+import java.io.Serializable
+import javax.inject.Inject
+
+/** Everything a [TestwiseCoverageReportWorker] needs to generate a single report. */
+data class TestwiseCoverageReportParameters(
+
+    /** All directories and archives that contain the relevant class files. */
+    val classDirs: List<File>,
+
+    /** Hash of the contents of the [classDirs], which identifies them in the [JaCoCoTestwiseReportGeneratorCache]. */
+    val classDirsFingerprint: String,
+
+    /** Includes and excludes from jacoco which will control which classes will be profiled. */
+    val agentFilter: SerializableFilter,
+
+    /** Includes and excludes for js files that should be packaged into the testwise coverage report. */
+    val closureIncludeFilter: GoogleClosureConfiguration.FileNameFilter,
+
+    /** The test artifacts that should be included in the report. */
+    val artifacts: List<File>,
+
+    /** The report file to write. */
+    val reportFile: File,
+
+    /** The directory that holds the coverage converted from each .exec file of the report. */
+    val intermediateDirectory: File,
+
+    /** Test artifacts that changed since the intermediate results have been written. */
+    val changedArtifacts: List<File>,
+
+    /** The directory in which the analyzed class files are cached across builds. */
+    val probesCacheDirectory: File
+) : Serializable
+
+/**
+ * Generates a single testwise coverage report. Runs as a Gradle worker action, so that the reports of all test tasks
+ * are generated in parallel.
+ */
+open class TestwiseCoverageReportWorker @Inject constructor(private val parameters: TestwiseCoverageReportParameters) :
+    Runnable {
+
+    private val logger = Logging.getLogger(TestwiseCoverageReportWorker::class.java)
+
+    /**
+     * Generates a testwise coverage report and stores it on disk. Changed .exec files are first converted to
+     * intermediate results in the binary testwise coverage format. Then the intermediate results of all .exec files are
+     * merged with the test details, test executions and Closure coverage. A test may have been recorded in several
+     * .exec files, so the coverage is merged by the test's uniform path before each test is written exactly once. The
+     * intermediate files are sorted by uniform path, so they are merged in a single pass and each test is written as
+     * soon as all its coverage has been read.
+     */
+    override fun run() {
+        val artifacts = parameters.artifacts
+        val jacocoExecutionData = ReportUtils.listFiles(ETestArtifactFormat.JACOCO, artifacts)
+        if (jacocoExecutionData.isEmpty()) {
+            logger.error("No execution data provided!")
+            return
+        }
+
+        val intermediateFiles = jacocoExecutionData.associate { it to getIntermediateFile(it) }
+        parameters.intermediateDirectory.listFiles()?.filter { it !in intermediateFiles.values }?.forEach { it.delete() }
+        for ((executionDataFile, intermediateFile) in intermediateFiles) {
+            if (!intermediateFile.exists() || executionDataFile in parameters.changedArtifacts) {
+                convert(executionDataFile, intermediateFile)
+            }
+        }
+
+        val testDetails =
+            ReportUtils.readObjects(ETestArtifactFormat.TEST_LIST, Array<TestDetails>::class.java, artifacts)
+        val testExecutions = ReportUtils.readObjects(
+            ETestArtifactFormat.TEST_EXECUTION,
+            Array<TestExecution>::class.java,
+            artifacts
+        )
+
+        logger.info("Writing report with ${testDetails.size} Details/${testExecutions.size} Results to ${parameters.reportFile}")
+        val writer = MergingTestwiseCoverageWriter(
+            TestwiseCoverageReportWriter(
+                TestInfoFactory(testDetails, testExecutions),
+                parameters.reportFile,
+                EReportCompression.NONE,
+                false
+            ),
+            testDetails,
+            logger.wrapInILogger()
+        )
+        val readers = mutableListOf<BinaryTestwiseCoverageReader>()
+        try {
+            val sources = mutableListOf(ISortedCoverageSource.of(readClosureCoverage(artifacts)))
+            for (intermediateFile in intermediateFiles.values) {
+                val reader = BinaryTestwiseCoverageReader(intermediateFile)
+                readers.add(reader)
+                sources.add(ISortedCoverageSource { reader.readNextCoverage() })
+            }
+            writer.merge(sources)
+        } finally {
+            readers.forEach { it.close() }
+            writer.close()
+        }
+    }
+
+    /**
+     * Converts the given .exec file to the intermediate file. The tests are written sorted by their uniform path, so
+     * the intermediate files can be merged in a single pass.
+     */
+    private fun convert(executionDataFile: File, intermediateFile: File) {
+        logger.info("Generating testwise coverage for $executionDataFile")
+        val jaCoCoTestwiseReportGenerator =
+            JaCoCoTestwiseReportGeneratorCache.get(
+                parameters.classDirs,
+                parameters.classDirsFingerprint,
+                parameters.agentFilter,
+                parameters.probesCacheDirectory
+            )
+        intermediateFile.parentFile.mkdirs()
+        try {
+            val writer = BinaryTestwiseCoverageWriter(intermediateFile)
+            try {
+                jaCoCoTestwiseReportGenerator.convertSortedAndConsume(executionDataFile, writer)
+            } finally {
+                writer.close()
+            }
+        } catch (e: Exception) {
+            // An incomplete intermediate file must not be mistaken for an up-to-date one in the next run
+            intermediateFile.delete()
+            throw e
+        }
+    }
+
+    /** Returns the file that holds the converted coverage of the given .exec file. */
+    private fun getIntermediateFile(executionDataFile: File): File {
+        val name = executionDataFile.uniqueName()
+        return File(parameters.intermediateDirectory, "$name.${ETestArtifactFormat.BINARY_TESTWISE_COVERAGE.extension}")
+    }
+
+    /** Reads the js coverage from the artifacts folders, which is merged into the tests while they are written. */
+    private fun readClosureCoverage(artifacts: List<File>): TestwiseCoverage {
+        val jsCoverageData = ReportUtils.listFiles(ETestArtifactFormat.CLOSURE, artifacts)
+        if (jsCoverageData.isEmpty()) {
+            return TestwiseCoverage()
+        }
+        return ClosureTestwiseCoverageGenerator(
+            jsCoverageData,
+            parameters.closureIncludeFilter.getPredicate(),
+            logger.wrapInILogger()
+        ).readTestCoverage()
+    }
+}
+
+/**
+ * Keeps the analyzed class files of the last few class directory configurations, so that all reports generated in
+ * the same worker process share them. Analyzing the class files is the most expensive part of the conversion and the
+ * [JaCoCoTestwiseReportGenerator] can be used by several workers at the same time once it has been created. Class
+ * directories are identified by a hash of their contents, since worker processes outlive a single build and the class
+ * files may have changed in the meantime. The hash is computed once per task action by the
+ * [TeamscaleReportTask], so looking up a generator is cheap. Generators of other worker processes are not shared, but only class files
+ * that are not contained in the persistent probes cache are actually analyzed when a generator is created.
+ */
+object JaCoCoTestwiseReportGeneratorCache {
+
+    /** How many generators are kept at most. */
+    private const val MAX_CACHED_GENERATORS = 4
+
+    private val generators = object : LinkedHashMap<List<Any>, JaCoCoTestwiseReportGenerator>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<List<Any>, JaCoCoTestwiseReportGenerator>?) =
+            size > MAX_CACHED_GENERATORS
+    }
+
+    /**
+     * Returns the generator for the given class directories, which are identified by the given fingerprint, and filter
+     * and creates it if necessary.
+     */
+    @Synchronized
+    fun get(
+        classDirs: List<File>,
+        classDirsFingerprint: String,
+        agentFilter: SerializableFilter,
+        probesCacheDirectory: File
+    ): JaCoCoTestwiseReportGenerator {
+        val key = listOf(agentFilter, probesCacheDirectory, classDirsFingerprint)
+        return generators.getOrPut(key) {
+            JaCoCoTestwiseReportGenerator(
+                classDirs,
+                agentFilter.getPredicate(),
+                EDuplicateClassFileBehavior.IGNORE,
+                probesCacheDirectory,
+                Logging.getLogger(JaCoCoTestwiseReportGeneratorCache::class.java).wrapInILogger()
+            )
+        }
+    }
+}
@@ -109,7 +109,7 @@ class AgentConfiguration(val project: Project, val jacocoExtension: JacocoTaskEx
 }
 
 
-class SerializableFilter(private val includes: List<String>?, private val excludes: List<String>?) : Serializable {
+data class SerializableFilter(private val includes: List<String>?, private val excludes: List<String>?) : Serializable {
 
     /** Returns a filter predicate that respects the configured wildcard include and exclude patterns. */
     fun getPredicate(): Predicate<String>? {
@@ -17,8 +17,11 @@ class ServerConfiguration : Serializable {
     /** The access token of the user.   */
     var userAccessToken: String? = null
 
+    /** Whether request bodies are compressed with gzip. Only enable this if the server supports compressed requests. */
+    var compressRequests: Boolean = false
+
     override fun toString(): String {
-        return "ServerConfiguration(url=$url, project=$project, userName=$userName, userAccessToken=$userAccessToken)"
+        return "ServerConfiguration(url=$url, project=$project, userName=$userName, userAccessToken=$userAccessToken, compressRequests=$compressRequests)"
     }
 
     fun validate() {